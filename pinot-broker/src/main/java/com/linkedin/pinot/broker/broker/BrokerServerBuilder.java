@@ -35,9 +35,11 @@ import com.linkedin.pinot.transport.conf.TransportClientConf;
 import com.linkedin.pinot.transport.conf.TransportClientConf.RoutingMode;
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.netty.MultiplexedConnectionManager;
 import com.linkedin.pinot.transport.netty.PooledNettyClientResourceManager;
 import com.linkedin.pinot.transport.pool.KeyedPool;
 import com.linkedin.pinot.transport.pool.KeyedPoolImpl;
+import com.linkedin.pinot.transport.scattergather.HedgingPolicy;
 import com.linkedin.pinot.transport.scattergather.ScatterGather;
 import com.linkedin.pinot.transport.scattergather.ScatterGatherImpl;
 import com.yammer.metrics.core.MetricsRegistry;
@@ -67,14 +69,16 @@ public class BrokerServerBuilder {
   private static final String BROKER_ACCESS_CONTROL_PREFIX = "pinot.broker.access.control";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerServerBuilder.class);
-  // Connection Pool Related
+  // Connection Pool Related (no pool with multiplexed connections)
   private KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> _connPool;
   private ScheduledThreadPoolExecutor _poolTimeoutExecutor;
   private ExecutorService _requestSenderPool;
 
   // Netty Specific
   private EventLoopGroup _eventLoopGroup;
+  private HashedWheelTimer _timer;
   private PooledNettyClientResourceManager _resourceManager;
+  private MultiplexedConnectionManager _multiplexedConnectionManager;
 
   private TimeBoundaryService _timeBoundaryService;
 
@@ -142,8 +146,8 @@ public class BrokerServerBuilder {
      */
     final NettyClientMetrics clientMetrics = new NettyClientMetrics(_registry, "client_");
 
-    // Setup Netty Connection Pool
-    _resourceManager = new PooledNettyClientResourceManager(_eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    // Timer for the request timeouts, shared by all the connections
+    _timer = new HashedWheelTimer();
     _poolTimeoutExecutor = new ScheduledThreadPoolExecutor(50);
     // _requestSenderPool = MoreExecutors.sameThreadExecutor();
 
@@ -151,11 +155,16 @@ public class BrokerServerBuilder {
 
     final ConnectionPoolConfig connPoolCfg = conf.getConnPool();
 
-    _connPool = new KeyedPoolImpl<PooledNettyClientResourceManager.PooledClientConnection>(connPoolCfg.getMinConnectionsPerServer(),
-        connPoolCfg.getMaxConnectionsPerServer(), connPoolCfg.getIdleTimeoutMs(), connPoolCfg.getMaxBacklogPerServer(),
-        _resourceManager, _poolTimeoutExecutor, _requestSenderPool, _registry);
-    // MoreExecutors.sameThreadExecutor(), _registry);
-    _resourceManager.setPool(_connPool);
+    // Setup Netty Connection Pool (not used with multiplexed connections)
+    if (!connPoolCfg.isMultiplexed()) {
+      _resourceManager = new PooledNettyClientResourceManager(_eventLoopGroup, _timer, clientMetrics);
+      _connPool = new KeyedPoolImpl<PooledNettyClientResourceManager.PooledClientConnection>(
+          connPoolCfg.getMinConnectionsPerServer(), connPoolCfg.getMaxConnectionsPerServer(),
+          connPoolCfg.getIdleTimeoutMs(), connPoolCfg.getMaxBacklogPerServer(), _resourceManager,
+          _poolTimeoutExecutor, _requestSenderPool, _registry);
+      // MoreExecutors.sameThreadExecutor(), _registry);
+      _resourceManager.setPool(_connPool);
+    }
 
     // Setup Routing Table
     if (conf.getRoutingMode() == RoutingMode.CONFIG) {
@@ -167,7 +176,20 @@ public class BrokerServerBuilder {
     }
 
     // Setup ScatterGather
-    _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool);
+    ScatterGatherImpl scatterGather;
+    if (connPoolCfg.isMultiplexed()) {
+      _multiplexedConnectionManager = new MultiplexedConnectionManager(_eventLoopGroup, _timer, clientMetrics,
+          connPoolCfg.getMultiplexedConnectionsPerServer());
+      scatterGather = new ScatterGatherImpl(_multiplexedConnectionManager, _requestSenderPool);
+    } else {
+      scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool);
+    }
+    if (conf.getHedging().isEnabled()) {
+      scatterGather.setHedgingPolicy(new HedgingPolicy(conf.getHedging(), _poolTimeoutExecutor));
+    }
+    // Server stats are fed from each request actually sent, including the hedged ones
+    scatterGather.setServerRequestListener(_routingTable.getAdaptiveServerSelector());
+    _scatterGather = scatterGather;
 
     // Setup the broker pruner service
     String[] prunerNames = _config.getStringArray(BROKER_SEGMENT_PRUNERS);
@@ -224,10 +246,12 @@ public class BrokerServerBuilder {
       return;
     }
     _state.set(State.STARTING);
-    _connPool.start();
+    if (_connPool != null) {
+      _connPool.start();
+    }
     _state.set(State.RUNNING);
     if (listener != null) {
-      listener.init(_connPool, CommonConstants.Broker.DEFAULT_BROKER_TIMEOUT_MS);
+      listener.init(_connPool, _multiplexedConnectionManager, CommonConstants.Broker.DEFAULT_BROKER_TIMEOUT_MS);
     }
     LOGGER.info("Network running !!");
   }
@@ -240,8 +264,14 @@ public class BrokerServerBuilder {
       LOGGER.error("Interrupted while waiting for shutdown delay period of {} ms.", delayedShutdownTimeMs, e);
     }
     _state.set(State.SHUTTING_DOWN);
-    _connPool.shutdown();
+    if (_connPool != null) {
+      _connPool.shutdown();
+    }
+    if (_multiplexedConnectionManager != null) {
+      _multiplexedConnectionManager.shutdown();
+    }
     _eventLoopGroup.shutdownGracefully();
+    _timer.stop();
     _poolTimeoutExecutor.shutdown();
     _requestSenderPool.shutdown();
     _state.set(State.SHUTDOWN);
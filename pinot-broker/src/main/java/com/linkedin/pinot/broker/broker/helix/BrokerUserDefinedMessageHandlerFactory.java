@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.broker.helix;
+
+import com.linkedin.pinot.broker.requesthandler.BrokerResultCache;
+import com.linkedin.pinot.common.messages.SegmentRefreshMessage;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.messaging.handling.HelixTaskResult;
+import org.apache.helix.messaging.handling.MessageHandler;
+import org.apache.helix.messaging.handling.MessageHandlerFactory;
+import org.apache.helix.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Handles the user defined messages sent by the controller to the broker.
+ * <p>Segment refresh messages invalidate the cached results for the table, as refreshing a segment does not change
+ * the external view.
+ */
+public class BrokerUserDefinedMessageHandlerFactory implements MessageHandlerFactory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerUserDefinedMessageHandlerFactory.class);
+
+  private final BrokerResultCache _resultCache;
+
+  public BrokerUserDefinedMessageHandlerFactory(BrokerResultCache resultCache) {
+    _resultCache = resultCache;
+  }
+
+  @Override
+  public MessageHandler createHandler(Message message, NotificationContext context) {
+    String msgSubType = message.getMsgSubType();
+    switch (msgSubType) {
+      case SegmentRefreshMessage.REFRESH_SEGMENT_MSG_SUB_TYPE:
+        return new SegmentRefreshMessageHandler(new SegmentRefreshMessage(message), context);
+      default:
+        // Log a warning and return no-op message handler for unsupported message sub-types
+        LOGGER.warn("Unsupported user defined message sub type: {} for segment: {}", msgSubType,
+            message.getPartitionName());
+        return new NoOpMessageHandler(message, context);
+    }
+  }
+
+  @Override
+  public String getMessageType() {
+    return Message.MessageType.USER_DEFINE_MSG.toString();
+  }
+
+  @Override
+  public void reset() {
+  }
+
+  private class SegmentRefreshMessageHandler extends MessageHandler {
+    private final String _tableNameWithType;
+
+    public SegmentRefreshMessageHandler(SegmentRefreshMessage refreshMessage, NotificationContext context) {
+      super(refreshMessage, context);
+      // Messages sent to the broker resource use the table name as the partition name
+      _tableNameWithType = refreshMessage.getPartitionName();
+    }
+
+    @Override
+    public HelixTaskResult handleMessage() {
+      LOGGER.info("Invalidating cached results for table: {} on segment refresh", _tableNameWithType);
+      _resultCache.invalidate(_tableNameWithType);
+      HelixTaskResult result = new HelixTaskResult();
+      result.setSuccess(true);
+      return result;
+    }
+
+    @Override
+    public void onError(Exception e, ErrorCode code, ErrorType type) {
+      LOGGER.error("Got error while invalidating cached results for table: {} (error code: {}, error type: {})",
+          _tableNameWithType, code, type, e);
+    }
+  }
+
+  private static class NoOpMessageHandler extends MessageHandler {
+
+    public NoOpMessageHandler(Message message, NotificationContext context) {
+      super(message, context);
+    }
+
+    @Override
+    public HelixTaskResult handleMessage() {
+      HelixTaskResult result = new HelixTaskResult();
+      result.setSuccess(true);
+      return result;
+    }
+
+    @Override
+    public void onError(Exception e, ErrorCode code, ErrorType type) {
+      LOGGER.error("Got error for no-op message handling (error code: {}, error type: {})", code, type, e);
+    }
+  }
+}
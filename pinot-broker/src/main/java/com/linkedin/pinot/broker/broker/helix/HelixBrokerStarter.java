@@ -40,7 +40,9 @@ import org.apache.helix.HelixManagerFactory;
 import org.apache.helix.InstanceType;
 import org.apache.helix.PreConnectCallback;
 import org.apache.helix.ZNRecord;
+import org.apache.helix.messaging.handling.MessageHandlerFactory;
 import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.Message;
 import org.apache.helix.participant.StateMachineEngine;
 import org.apache.helix.participant.statemachine.StateModelFactory;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
@@ -135,6 +137,11 @@ public class HelixBrokerStarter {
             _helixExternalViewBasedRouting, _tableQueryQuotaManager);
     stateMachineEngine.registerStateModelFactory(BrokerResourceOnlineOfflineStateModelFactory.getStateModelDef(),
         stateModelFactory);
+    // Segment refresh messages invalidate the cached results
+    MessageHandlerFactory messageHandlerFactory =
+        new BrokerUserDefinedMessageHandlerFactory(_brokerServerBuilder.getBrokerRequestHandler().getResultCache());
+    _helixManager.getMessagingService()
+        .registerMessageHandlerFactory(Message.MessageType.USER_DEFINE_MSG.toString(), messageHandlerFactory);
     _helixManager.connect();
     addInstanceTagIfNeeded(helixClusterName, brokerId);
 
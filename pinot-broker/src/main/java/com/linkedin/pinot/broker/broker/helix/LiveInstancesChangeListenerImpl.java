@@ -17,11 +17,16 @@ package com.linkedin.pinot.broker.broker.helix;
 
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.transport.netty.MultiplexedConnectionManager;
 import com.linkedin.pinot.transport.netty.PooledNettyClientResourceManager;
 import com.linkedin.pinot.transport.pool.KeyedPool;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.helix.LiveInstanceChangeListener;
 import org.apache.helix.NotificationContext;
 import org.apache.helix.model.LiveInstance;
@@ -38,51 +43,60 @@ public class LiveInstancesChangeListenerImpl implements LiveInstanceChangeListen
   private long timeout;
   private final Map<String, String> liveInstanceToSessionIdMap;
   private KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> connectionPool;
+  private MultiplexedConnectionManager multiplexedConnectionManager;
 
   public LiveInstancesChangeListenerImpl(String clusterName) {
     this.liveInstanceToSessionIdMap = new HashMap<String, String>();
   }
 
   public void init(final KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> connectionPool, final long timeout) {
+    init(connectionPool, null, timeout);
+  }
+
+  /**
+   * Either the connection pool or the multiplexed connection manager is used to connect to the servers, the other one
+   * is null.
+   */
+  public void init(@Nullable final KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> connectionPool,
+      @Nullable final MultiplexedConnectionManager multiplexedConnectionManager, final long timeout) {
     this.connectionPool = connectionPool;
+    this.multiplexedConnectionManager = multiplexedConnectionManager;
     this.timeout = timeout;
   }
 
   @Override
   public void onLiveInstanceChange(List<LiveInstance> liveInstances, NotificationContext changeContext) {
-    if (connectionPool == null) {
+    if (connectionPool == null && multiplexedConnectionManager == null) {
       LOGGER.warn("init has not been called on the live instances listener, ignoring live instance change.");
       return;
     }
 
+    Set<String> liveInstanceIds = new HashSet<>();
     for (LiveInstance instance : liveInstances) {
 
       String instanceId = instance.getInstanceName();
       String sessionId = instance.getSessionId();
+      liveInstanceIds.add(instanceId);
 
       if (!instanceId.startsWith(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)) {
         LOGGER.debug("Skipping non-server instance {}", instanceId);
         continue;
       }
 
-      String namePortStr = instanceId.split(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)[1];
-      String hostName = namePortStr.split("_")[0];
-      int port;
-      try {
-        port = Integer.parseInt(namePortStr.split("_")[1]);
-      } catch (Exception e) {
-        port = CommonConstants.Helix.DEFAULT_SERVER_NETTY_PORT;
-        LOGGER.warn("Port for server instance {} does not appear to be numeric, defaulting to {}.", instanceId, port, e);
-      }
-
       if (liveInstanceToSessionIdMap.containsKey(instanceId)) {
         // sessionId has changed
         if (!sessionId.equals(liveInstanceToSessionIdMap.get(instanceId))) {
           try {
             LOGGER.info("Instance {} has changed session id {} -> {}, validating connection pool for this instance.", instanceId, sessionId,
                 liveInstanceToSessionIdMap.get(instanceId));
-            ServerInstance ins = ServerInstance.forHostPort(hostName, port);
-            connectionPool.validatePool(ins, DO_NOT_RECREATE);
+            ServerInstance ins = getServerInstance(instanceId);
+            if (connectionPool != null) {
+              connectionPool.validatePool(ins, DO_NOT_RECREATE);
+            }
+            // The server has restarted, its multiplexed connections are connected to the previous process
+            if (multiplexedConnectionManager != null) {
+              multiplexedConnectionManager.removeServer(ins);
+            }
             liveInstanceToSessionIdMap.put(instanceId, sessionId);
           } catch (Exception e) {
             LOGGER.error("Error trying to validate & destroy dead connections for {}", instanceId, e);
@@ -93,13 +107,45 @@ public class LiveInstancesChangeListenerImpl implements LiveInstanceChangeListen
         // we don't have this instanceId
         // lets first check if the connection is valid or not
         try {
-          ServerInstance ins = ServerInstance.forHostPort(hostName, port);
-          connectionPool.validatePool(ins, DO_NOT_RECREATE);
+          ServerInstance ins = getServerInstance(instanceId);
+          if (connectionPool != null) {
+            connectionPool.validatePool(ins, DO_NOT_RECREATE);
+          }
           liveInstanceToSessionIdMap.put(instanceId, sessionId);
         } catch (Exception e) {
           LOGGER.error("Error trying to destroy dead connections for {}", instanceId, e);
         }
       }
     }
+
+    // Close the multiplexed connections to the servers which are no longer live
+    if (multiplexedConnectionManager != null) {
+      Iterator<String> iterator = liveInstanceToSessionIdMap.keySet().iterator();
+      while (iterator.hasNext()) {
+        String instanceId = iterator.next();
+        if (!liveInstanceIds.contains(instanceId)) {
+          LOGGER.info("Instance {} is no longer live, closing its multiplexed connections.", instanceId);
+          iterator.remove();
+          try {
+            multiplexedConnectionManager.removeServer(getServerInstance(instanceId));
+          } catch (Exception e) {
+            LOGGER.error("Error trying to close connections for {}", instanceId, e);
+          }
+        }
+      }
+    }
+  }
+
+  private static ServerInstance getServerInstance(String instanceId) {
+    String namePortStr = instanceId.split(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)[1];
+    String hostName = namePortStr.split("_")[0];
+    int port;
+    try {
+      port = Integer.parseInt(namePortStr.split("_")[1]);
+    } catch (Exception e) {
+      port = CommonConstants.Helix.DEFAULT_SERVER_NETTY_PORT;
+      LOGGER.warn("Port for server instance {} does not appear to be numeric, defaulting to {}.", instanceId, port, e);
+    }
+    return ServerInstance.forHostPort(hostName, port);
   }
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.pruner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+
+/**
+ * Immutable interval tree over the time ranges of the segments of a table, used to find the segments overlapping with
+ * the time range of a query without checking every segment.
+ * <p>The tree is laid out implicitly over the segments sorted by start time: the node of a sub-array is its middle
+ * element, and each node keeps the max end time of its sub-tree so that sub-trees ending before the queried range are
+ * skipped.
+ * <p>Segments without a valid time range are tracked separately and never pruned.
+ */
+public class SegmentTimeRangeIndex {
+  private final String[] _segmentNames;
+  private final long[] _startTimes;
+  private final long[] _endTimes;
+  private final long[] _maxEndTimes;
+  private final Set<String> _segmentsWithTimeRange;
+
+  /**
+   * Time range of a segment, both ends inclusive.
+   */
+  public static class SegmentTimeRange {
+    private final String _segmentName;
+    private final long _startTime;
+    private final long _endTime;
+
+    public SegmentTimeRange(@Nonnull String segmentName, long startTime, long endTime) {
+      _segmentName = segmentName;
+      _startTime = startTime;
+      _endTime = endTime;
+    }
+  }
+
+  public SegmentTimeRangeIndex(@Nonnull List<SegmentTimeRange> segmentTimeRanges) {
+    List<SegmentTimeRange> sortedTimeRanges = new ArrayList<>(segmentTimeRanges);
+    Collections.sort(sortedTimeRanges, new Comparator<SegmentTimeRange>() {
+      @Override
+      public int compare(SegmentTimeRange o1, SegmentTimeRange o2) {
+        return Long.compare(o1._startTime, o2._startTime);
+      }
+    });
+
+    int numSegments = sortedTimeRanges.size();
+    _segmentNames = new String[numSegments];
+    _startTimes = new long[numSegments];
+    _endTimes = new long[numSegments];
+    _maxEndTimes = new long[numSegments];
+    _segmentsWithTimeRange = new HashSet<>(numSegments);
+    for (int i = 0; i < numSegments; i++) {
+      SegmentTimeRange segmentTimeRange = sortedTimeRanges.get(i);
+      _segmentNames[i] = segmentTimeRange._segmentName;
+      _startTimes[i] = segmentTimeRange._startTime;
+      _endTimes[i] = segmentTimeRange._endTime;
+      _segmentsWithTimeRange.add(segmentTimeRange._segmentName);
+    }
+    Arrays.fill(_maxEndTimes, Long.MIN_VALUE);
+    computeMaxEndTimes(0, numSegments - 1);
+  }
+
+  private long computeMaxEndTimes(int low, int high) {
+    if (low > high) {
+      return Long.MIN_VALUE;
+    }
+    int mid = (low + high) >>> 1;
+    long maxEndTime =
+        Math.max(_endTimes[mid], Math.max(computeMaxEndTimes(low, mid - 1), computeMaxEndTimes(mid + 1, high)));
+    _maxEndTimes[mid] = maxEndTime;
+    return maxEndTime;
+  }
+
+  /**
+   * Returns true if the time range of the given segment is tracked by the index.
+   */
+  public boolean hasTimeRange(@Nonnull String segmentName) {
+    return _segmentsWithTimeRange.contains(segmentName);
+  }
+
+  /**
+   * Returns the names of the segments whose time range overlaps with the given time range (both ends inclusive).
+   */
+  @Nonnull
+  public Set<String> getOverlappingSegments(long startTime, long endTime) {
+    Set<String> overlappingSegments = new HashSet<>();
+    collectOverlappingSegments(0, _segmentNames.length - 1, startTime, endTime, overlappingSegments);
+    return overlappingSegments;
+  }
+
+  private void collectOverlappingSegments(int low, int high, long startTime, long endTime,
+      Set<String> overlappingSegments) {
+    if (low > high) {
+      return;
+    }
+    int mid = (low + high) >>> 1;
+    // All the segments in the sub-tree end before the range starts
+    if (_maxEndTimes[mid] < startTime) {
+      return;
+    }
+    collectOverlappingSegments(low, mid - 1, startTime, endTime, overlappingSegments);
+    // The segment and all the segments on its right start after the range ends
+    if (_startTimes[mid] > endTime) {
+      return;
+    }
+    if (_endTimes[mid] >= startTime) {
+      overlappingSegments.add(_segmentNames[mid]);
+    }
+    collectOverlappingSegments(mid + 1, high, startTime, endTime, overlappingSegments);
+  }
+
+  public int getNumSegments() {
+    return _segmentNames.length;
+  }
+}
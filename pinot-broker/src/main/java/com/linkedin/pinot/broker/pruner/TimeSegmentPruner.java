@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.pruner;
+
+import com.linkedin.pinot.common.config.SegmentsValidationAndRetentionConfig;
+import com.linkedin.pinot.common.config.TableConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.common.utils.time.TimeUtils;
+import com.linkedin.pinot.core.common.predicate.BaseInPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Broker side pruner that removes from the routing table the segments whose time range (from the segment ZK
+ * metadata) does not overlap with the time range of the query, so that servers only hosting out of range segments are
+ * not queried.
+ * <ul>
+ *   <li> The time ranges of the segments of each table are cached in a {@link SegmentTimeRangeIndex}, which is
+ *        rebuilt from the property store when the external view of the table changes. </li>
+ *   <li> The time range of the query is derived from the predicates on the time column of the table: AND intersects
+ *        the ranges of its children, OR takes their union. </li>
+ *   <li> Segments without time range (e.g. consuming segments) or not yet indexed are never pruned. </li>
+ * </ul>
+ */
+public class TimeSegmentPruner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TimeSegmentPruner.class);
+
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private final Map<String, TableTimeRangeIndex> _tableIndexMap = new ConcurrentHashMap<>();
+
+  private static class TableTimeRangeIndex {
+    final String _timeColumn;
+    final SegmentTimeRangeIndex _segmentTimeRangeIndex;
+
+    TableTimeRangeIndex(String timeColumn, SegmentTimeRangeIndex segmentTimeRangeIndex) {
+      _timeColumn = timeColumn;
+      _segmentTimeRangeIndex = segmentTimeRangeIndex;
+    }
+  }
+
+  public TimeSegmentPruner(@Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  /**
+   * Rebuilds the segment time range index of the given table from the property store. Should be called when the
+   * segments of the table change.
+   */
+  public void updateTable(@Nonnull String tableNameWithType) {
+    try {
+      TableConfig tableConfig = ZKMetadataProvider.getTableConfig(_propertyStore, tableNameWithType);
+      if (tableConfig == null) {
+        _tableIndexMap.remove(tableNameWithType);
+        return;
+      }
+      SegmentsValidationAndRetentionConfig validationConfig = tableConfig.getValidationConfig();
+      String timeColumn = validationConfig.getTimeColumnName();
+      TimeUnit tableTimeUnit = TimeUtils.timeUnitFromString(validationConfig.getTimeType());
+      if (timeColumn == null || tableTimeUnit == null) {
+        LOGGER.info("Skipping time based segment pruning for table: {} without time column or time unit",
+            tableNameWithType);
+        _tableIndexMap.remove(tableNameWithType);
+        return;
+      }
+
+      // Bulk reading all segment zk-metadata at once is more efficient than reading one at a time.
+      List<? extends SegmentZKMetadata> segmentZKMetadataList;
+      String rawTableName = TableNameBuilder.extractRawTableName(tableNameWithType);
+      if (TableNameBuilder.getTableTypeFromTableName(tableNameWithType) == CommonConstants.Helix.TableType.OFFLINE) {
+        segmentZKMetadataList =
+            ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(_propertyStore, rawTableName);
+      } else {
+        segmentZKMetadataList =
+            ZKMetadataProvider.getRealtimeSegmentZKMetadataListForTable(_propertyStore, rawTableName);
+      }
+
+      List<SegmentTimeRangeIndex.SegmentTimeRange> segmentTimeRanges = new ArrayList<>(segmentZKMetadataList.size());
+      for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+        // The time range of consuming segments is not known yet
+        if (segmentZKMetadata instanceof RealtimeSegmentZKMetadata
+            && ((RealtimeSegmentZKMetadata) segmentZKMetadata).getStatus()
+            != CommonConstants.Segment.Realtime.Status.DONE) {
+          continue;
+        }
+        long startTime = segmentZKMetadata.getStartTime();
+        long endTime = segmentZKMetadata.getEndTime();
+        TimeUnit segmentTimeUnit = segmentZKMetadata.getTimeUnit();
+        if (startTime < 0 || endTime < 0 || startTime > endTime || segmentTimeUnit == null) {
+          continue;
+        }
+        // Convert all segment times to table's time unit, before comparison.
+        segmentTimeRanges.add(
+            new SegmentTimeRangeIndex.SegmentTimeRange(segmentZKMetadata.getSegmentName(),
+                tableTimeUnit.convert(startTime, segmentTimeUnit), tableTimeUnit.convert(endTime, segmentTimeUnit)));
+      }
+      _tableIndexMap.put(tableNameWithType,
+          new TableTimeRangeIndex(timeColumn, new SegmentTimeRangeIndex(segmentTimeRanges)));
+      LOGGER.info("Updated segment time range index for table: {} with {} segments", tableNameWithType,
+          segmentTimeRanges.size());
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while updating segment time range index for table: {}, disabling time based "
+          + "segment pruning for the table", tableNameWithType, e);
+      _tableIndexMap.remove(tableNameWithType);
+    }
+  }
+
+  public void removeTable(@Nonnull String tableNameWithType) {
+    _tableIndexMap.remove(tableNameWithType);
+  }
+
+  /**
+   * Returns the routing table without the segments out of the time range of the query, and without the servers left
+   * with no segment. The given routing table is not modified.
+   */
+  @Nonnull
+  public Map<String, List<String>> prune(@Nonnull BrokerRequest brokerRequest,
+      @Nonnull Map<String, List<String>> routingTable) {
+    TableTimeRangeIndex tableIndex = _tableIndexMap.get(brokerRequest.getQuerySource().getTableName());
+    if (tableIndex == null) {
+      return routingTable;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    if (filterQueryTree == null) {
+      return routingTable;
+    }
+    long[] timeRange = getTimeRange(filterQueryTree, tableIndex._timeColumn);
+    if (timeRange[0] == Long.MIN_VALUE && timeRange[1] == Long.MAX_VALUE) {
+      return routingTable;
+    }
+
+    SegmentTimeRangeIndex segmentTimeRangeIndex = tableIndex._segmentTimeRangeIndex;
+    Set<String> overlappingSegments = segmentTimeRangeIndex.getOverlappingSegments(timeRange[0], timeRange[1]);
+    Map<String, List<String>> prunedRoutingTable = new HashMap<>();
+    for (Map.Entry<String, List<String>> entry : routingTable.entrySet()) {
+      List<String> segments = entry.getValue();
+      List<String> selectedSegments = new ArrayList<>(segments.size());
+      for (String segment : segments) {
+        if (overlappingSegments.contains(segment) || !segmentTimeRangeIndex.hasTimeRange(segment)) {
+          selectedSegments.add(segment);
+        }
+      }
+      if (!selectedSegments.isEmpty()) {
+        prunedRoutingTable.put(entry.getKey(), selectedSegments);
+      }
+    }
+    return prunedRoutingTable;
+  }
+
+  /**
+   * Returns the time range (both ends inclusive) matched by the given filter, where {Long.MIN_VALUE, Long.MAX_VALUE}
+   * means unbounded and a start larger than the end means no time matches.
+   */
+  static long[] getTimeRange(@Nonnull FilterQueryTree filterQueryTree, @Nonnull String timeColumn) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    FilterOperator operator = filterQueryTree.getOperator();
+    if (children != null && !children.isEmpty()) {
+      if (operator == FilterOperator.AND) {
+        long[] timeRange = {Long.MIN_VALUE, Long.MAX_VALUE};
+        for (FilterQueryTree child : children) {
+          long[] childTimeRange = getTimeRange(child, timeColumn);
+          timeRange[0] = Math.max(timeRange[0], childTimeRange[0]);
+          timeRange[1] = Math.min(timeRange[1], childTimeRange[1]);
+        }
+        return timeRange;
+      } else {
+        long[] timeRange = {Long.MAX_VALUE, Long.MIN_VALUE};
+        for (FilterQueryTree child : children) {
+          long[] childTimeRange = getTimeRange(child, timeColumn);
+          // Skip children matching no time
+          if (childTimeRange[0] <= childTimeRange[1]) {
+            timeRange[0] = Math.min(timeRange[0], childTimeRange[0]);
+            timeRange[1] = Math.max(timeRange[1], childTimeRange[1]);
+          }
+        }
+        return timeRange;
+      }
+    }
+
+    long[] unbounded = {Long.MIN_VALUE, Long.MAX_VALUE};
+    if (!timeColumn.equals(filterQueryTree.getColumn())) {
+      return unbounded;
+    }
+    List<String> values = filterQueryTree.getValue();
+    switch (operator) {
+      case EQUALITY: {
+        Long value = parseTime(values.get(0));
+        return value != null ? new long[]{value, value} : unbounded;
+      }
+      case IN: {
+        if (values.size() == 1) {
+          values = Arrays.asList(StringUtils.splitByWholeSeparator(values.get(0), BaseInPredicate.DELIMITER));
+        }
+        long[] timeRange = {Long.MAX_VALUE, Long.MIN_VALUE};
+        for (String stringValue : values) {
+          Long value = parseTime(stringValue);
+          if (value == null) {
+            return unbounded;
+          }
+          timeRange[0] = Math.min(timeRange[0], value);
+          timeRange[1] = Math.max(timeRange[1], value);
+        }
+        return timeRange;
+      }
+      case RANGE: {
+        RangePredicate rangePredicate = new RangePredicate(timeColumn, values);
+        long[] timeRange = unbounded;
+        String lowerBoundary = rangePredicate.getLowerBoundary();
+        if (!lowerBoundary.equals(RangePredicate.UNBOUNDED)) {
+          Long lower = parseTime(lowerBoundary);
+          if (lower == null) {
+            return unbounded;
+          }
+          timeRange[0] = rangePredicate.includeLowerBoundary() ? lower : lower + 1;
+        }
+        String upperBoundary = rangePredicate.getUpperBoundary();
+        if (!upperBoundary.equals(RangePredicate.UNBOUNDED)) {
+          Long upper = parseTime(upperBoundary);
+          if (upper == null) {
+            return unbounded;
+          }
+          timeRange[1] = rangePredicate.includeUpperBoundary() ? upper : upper - 1;
+        }
+        return timeRange;
+      }
+      default:
+        return unbounded;
+    }
+  }
+
+  @Nullable
+  private static Long parseTime(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
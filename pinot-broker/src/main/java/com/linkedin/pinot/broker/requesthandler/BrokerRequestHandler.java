@@ -36,7 +36,6 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.FilterQuery;
 import com.linkedin.pinot.common.request.FilterQueryMap;
-import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.response.BrokerResponse;
 import com.linkedin.pinot.common.response.BrokerResponseFactory;
 import com.linkedin.pinot.common.response.BrokerResponseFactory.ResponseType;
@@ -46,11 +45,13 @@ import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.core.common.datatable.DataTableFactory;
 import com.linkedin.pinot.pql.parsers.Pql2Compiler;
-import com.linkedin.pinot.serde.SerDe;
 import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.GatherCompletionCondition;
 import com.linkedin.pinot.transport.scattergather.ScatterGather;
 import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
 import com.linkedin.pinot.transport.scattergather.ScatterGatherStats;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -66,7 +67,7 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.TException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -98,6 +99,7 @@ public class BrokerRequestHandler {
   private final AtomicLong _requestIdGenerator;
   private final String _brokerId;
   private final TableQueryQuotaManager _tableQueryQuotaManager;
+  private final BrokerResultCache _resultCache;
 
   public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
       ScatterGather scatterGatherer, ReduceServiceRegistry reduceServiceRegistry,
@@ -117,6 +119,14 @@ public class BrokerRequestHandler {
     _segmentPrunerService = segmentPrunerService;
     _accessControlFactory = accessControlFactory;
     _tableQueryQuotaManager = tableQueryQuotaManager;
+    _resultCache = new BrokerResultCache(
+        config.getLong(CONFIG_OF_BROKER_RESULT_CACHE_MAX_SIZE_BYTES, DEFAULT_BROKER_RESULT_CACHE_MAX_SIZE_BYTES),
+        config.getLong(CONFIG_OF_BROKER_RESULT_CACHE_OFFLINE_TTL_MS, DEFAULT_BROKER_RESULT_CACHE_OFFLINE_TTL_MS),
+        config.getLong(CONFIG_OF_BROKER_RESULT_CACHE_REALTIME_TTL_MS, DEFAULT_BROKER_RESULT_CACHE_REALTIME_TTL_MS),
+        brokerMetrics);
+    if (_resultCache.isEnabled()) {
+      _routingTable.addRoutingTableChangeListener(_resultCache);
+    }
 
     LOGGER.info("Broker response limit is: " + _queryResponseLimit);
     LOGGER.info("Broker timeout is - " + _brokerTimeOutMs + " ms");
@@ -471,24 +481,47 @@ public class BrokerRequestHandler {
     PhaseTimes phaseTimes = new PhaseTimes();
 
     // Step 1: find the candidate servers to be queried for each set of segments from the routing table.
+    Map<String, List<String>> offlineRoutingTable = null;
+    if (offlineBrokerRequest != null) {
+      offlineRoutingTable = getRoutingTable(offlineBrokerRequest, phaseTimes);
+    }
+    Map<String, List<String>> realtimeRoutingTable = null;
+    if (realtimeBrokerRequest != null) {
+      realtimeRoutingTable = getRoutingTable(realtimeBrokerRequest, phaseTimes);
+    }
+    if ((offlineRoutingTable == null) && (realtimeRoutingTable == null)) {
+      // No server found in either OFFLINE or REALTIME table.
+      return BrokerResponseFactory.getStaticEmptyBrokerResponse(serverResponseType);
+    }
+
+    // Serve the request from the result cache if the same requests were processed on the same segments.
+    BrokerResultCache.Key resultCacheKey =
+        _resultCache.getKey(offlineBrokerRequest, offlineRoutingTable, realtimeBrokerRequest, realtimeRoutingTable);
+    if (resultCacheKey != null) {
+      BrokerResponse cachedBrokerResponse = _resultCache.get(resultCacheKey);
+      if (cachedBrokerResponse != null) {
+        return cachedBrokerResponse;
+      }
+    }
+
     // Step 2: select servers for each segment set and scatter request to the servers.
+    // Selection only queries stop gathering responses once enough rows are gathered from the servers.
+    SelectionLimitCondition selectionLimitCondition = SelectionLimitCondition.forBrokerRequest(originalBrokerRequest);
     String offlineTableName = null;
     CompositeFuture<byte[]> offlineCompositeFuture = null;
-    if (offlineBrokerRequest != null) {
+    if (offlineRoutingTable != null) {
       offlineTableName = offlineBrokerRequest.getQuerySource().getTableName();
       offlineCompositeFuture =
-          routeAndScatterBrokerRequest(offlineBrokerRequest, phaseTimes, scatterGatherStats, true, requestId);
+          scatterBrokerRequest(offlineBrokerRequest, offlineRoutingTable, selectionLimitCondition, phaseTimes,
+              scatterGatherStats, true, requestId);
     }
     String realtimeTableName = null;
     CompositeFuture<byte[]> realtimeCompositeFuture = null;
-    if (realtimeBrokerRequest != null) {
+    if (realtimeRoutingTable != null) {
       realtimeTableName = realtimeBrokerRequest.getQuerySource().getTableName();
       realtimeCompositeFuture =
-          routeAndScatterBrokerRequest(realtimeBrokerRequest, phaseTimes, scatterGatherStats, false, requestId);
-    }
-    if ((offlineCompositeFuture == null) && (realtimeCompositeFuture == null)) {
-      // No server found in either OFFLINE or REALTIME table.
-      return BrokerResponseFactory.getStaticEmptyBrokerResponse(serverResponseType);
+          scatterBrokerRequest(realtimeBrokerRequest, realtimeRoutingTable, selectionLimitCondition, phaseTimes,
+              scatterGatherStats, false, requestId);
     }
 
     // Step 3: gather response from the servers.
@@ -502,6 +535,10 @@ public class BrokerRequestHandler {
       offlineServerResponseMap =
           gatherServerResponses(offlineCompositeFuture, scatterGatherStats, true, offlineTableName,
               processingExceptions);
+      if (realtimeCompositeFuture != null && selectionLimitCondition != null && selectionLimitCondition.isMet()) {
+        // Enough rows gathered from the OFFLINE table, no need to wait for the REALTIME table
+        realtimeCompositeFuture.cancel(true);
+      }
     }
     if (realtimeCompositeFuture != null) {
       numServersQueried += realtimeCompositeFuture.getNumFutures();
@@ -553,25 +590,31 @@ public class BrokerRequestHandler {
       _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.BROKER_RESPONSES_WITH_PROCESSING_EXCEPTIONS, 1L);
     }
     if (numServersQueried > numServersResponded) {
-      _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.BROKER_RESPONSES_WITH_PARTIAL_SERVERS_RESPONDED,
-          1L);
+      if (selectionLimitCondition != null && selectionLimitCondition.isMet()) {
+        _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.SELECTION_QUERIES_GATHERED_EARLY, 1L);
+      } else {
+        _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.BROKER_RESPONSES_WITH_PARTIAL_SERVERS_RESPONDED,
+            1L);
+      }
     }
     _brokerMetrics.addMeteredQueryValue(originalBrokerRequest, BrokerMeter.TOTAL_SERVER_RESPONSE_SIZE,
         totalServerResponseSize);
 
+    if (resultCacheKey != null) {
+      _resultCache.put(resultCacheKey, brokerResponse, numServersQueried, numServersResponded);
+    }
+
     return brokerResponse;
   }
 
   /**
-   * Route and scatter the broker request.
+   * Find the candidate servers to be queried for each set of segments from the routing table.
    *
-   * @return composite future used to gather responses.
+   * @return routing table, or null if no server found or all segments are pruned.
    */
   @Nullable
-  private CompositeFuture<byte[]> routeAndScatterBrokerRequest(@Nonnull BrokerRequest brokerRequest,
-      @Nonnull PhaseTimes phaseTimes, @Nonnull ScatterGatherStats scatterGatherStats, boolean isOfflineTable,
-      long requestId) throws InterruptedException {
-    // Step 1: find the candidate servers to be queried for each set of segments from the routing table.
+  private Map<String, List<String>> getRoutingTable(@Nonnull BrokerRequest brokerRequest,
+      @Nonnull PhaseTimes phaseTimes) {
     // TODO: add checks for whether all segments are covered.
     long routingStartTime = System.nanoTime();
     Map<String, List<String>> routingTable =
@@ -583,11 +626,24 @@ public class BrokerRequestHandler {
       _brokerMetrics.addMeteredTableValue(tableNameWithType, BrokerMeter.NO_SERVER_FOUND_EXCEPTIONS, 1L);
       return null;
     }
+    return routingTable;
+  }
 
-    // Step 2: select servers for each segment set and scatter request to the servers.
+  /**
+   * Select servers for each segment set and scatter the broker request to the servers.
+   *
+   * @return composite future used to gather responses.
+   */
+  @Nullable
+  private CompositeFuture<byte[]> scatterBrokerRequest(@Nonnull BrokerRequest brokerRequest,
+      @Nonnull Map<String, List<String>> routingTable, @Nullable SelectionLimitCondition selectionLimitCondition,
+      @Nonnull PhaseTimes phaseTimes,
+      @Nonnull ScatterGatherStats scatterGatherStats, boolean isOfflineTable, long requestId)
+      throws InterruptedException {
     long scatterStartTime = System.nanoTime();
     ScatterGatherRequestImpl scatterRequest =
-        new ScatterGatherRequestImpl(brokerRequest, routingTable, requestId, _brokerTimeOutMs, _brokerId);
+        new ScatterGatherRequestImpl(brokerRequest, routingTable, _routingTable, selectionLimitCondition, requestId,
+            _brokerTimeOutMs, _brokerId);
     CompositeFuture<byte[]> compositeFuture =
         _scatterGatherer.scatterGather(scatterRequest, scatterGatherStats, isOfflineTable, _brokerMetrics);
     phaseTimes.addToScatterTime(System.nanoTime() - scatterStartTime);
@@ -649,7 +705,8 @@ public class BrokerRequestHandler {
     for (Entry<ServerInstance, byte[]> entry : responseMap.entrySet()) {
       ServerInstance serverInstance = entry.getKey();
       if (!isOfflineTable) {
-        serverInstance = serverInstance.withSeq(1);
+        // Negative sequences never collide with the offline responses, including the ones of hedged requests
+        serverInstance = serverInstance.withSeq(-1 - serverInstance.getSeq());
       }
       byte[] responseInBytes = entry.getValue();
       totalResponseSize += responseInBytes.length;
@@ -706,17 +763,27 @@ public class BrokerRequestHandler {
   private static class ScatterGatherRequestImpl implements ScatterGatherRequest {
     private final BrokerRequest _brokerRequest;
     private final Map<String, List<String>> _routingTable;
+    private final RoutingTable _routingTableManager;
+    private final SelectionLimitCondition _selectionLimitCondition;
     private final long _requestId;
     private final long _requestTimeoutMs;
-    private final String _brokerId;
+    private final InstanceRequestSerializer _instanceRequestSerializer;
 
-    public ScatterGatherRequestImpl(BrokerRequest request, Map<String, List<String>> routingTable, long requestId,
+    public ScatterGatherRequestImpl(BrokerRequest request, Map<String, List<String>> routingTable,
+        RoutingTable routingTableManager, SelectionLimitCondition selectionLimitCondition, long requestId,
         long requestTimeoutMs, String brokerId) {
       _brokerRequest = request;
       _routingTable = routingTable;
+      _routingTableManager = routingTableManager;
+      _selectionLimitCondition = selectionLimitCondition;
       _requestId = requestId;
       _requestTimeoutMs = requestTimeoutMs;
-      _brokerId = brokerId;
+      // The broker request is serialized once here and shared by the requests to all the servers
+      try {
+        _instanceRequestSerializer = new InstanceRequestSerializer(request, requestId, brokerId, requestTimeoutMs);
+      } catch (TException e) {
+        throw new IllegalStateException("Unable to serialize broker request for request id: " + requestId, e);
+      }
     }
 
     @Override
@@ -725,15 +792,23 @@ public class BrokerRequestHandler {
     }
 
     @Override
-    public byte[] getRequestForService(List<String> segments) {
-      InstanceRequest r = new InstanceRequest();
-      r.setRequestId(_requestId);
-      r.setEnableTrace(_brokerRequest.isEnableTrace());
-      r.setQuery(_brokerRequest);
-      r.setSearchSegments(segments);
-      r.setBrokerId(_brokerId);
-      // _serde is not threadsafe.
-      return new SerDe(new TCompactProtocol.Factory()).serialize(r);
+    public Map<String, List<String>> getReplicaRoutingTable(String server, List<String> segments) {
+      return _routingTableManager.getReplicaRoutingTable(_brokerRequest.getQuerySource().getTableName(), server,
+          segments);
+    }
+
+    @Override
+    public GatherCompletionCondition<byte[]> getGatherCompletionCondition() {
+      return _selectionLimitCondition;
+    }
+
+    @Override
+    public ByteBuf getRequestForService(List<String> segments) {
+      try {
+        return _instanceRequestSerializer.serialize(segments, PooledByteBufAllocator.DEFAULT);
+      } catch (TException e) {
+        throw new IllegalStateException("Unable to serialize instance request for request id: " + _requestId, e);
+      }
     }
 
     @Override
@@ -755,4 +830,8 @@ public class BrokerRequestHandler {
   public String getRoutingTableSnapshot(String tableName) throws Exception {
     return _routingTable.dumpSnapshot(tableName);
   }
+
+  public BrokerResultCache getResultCache() {
+    return _resultCache;
+  }
 }
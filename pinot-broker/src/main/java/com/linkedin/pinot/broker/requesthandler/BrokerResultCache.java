@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.broker.routing.RoutingTableChangeListener;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metrics.BrokerMeter;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.serde.SerDe;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Broker level cache of query results, so that queries repeatedly sent with the same PQL (e.g. by dashboards) are not
+ * scattered to the servers again as long as the segments they hit do not change.
+ * <ul>
+ *   <li> Results are keyed by the optimized broker requests sent to the servers and the set of segments chosen by the
+ *        routing for each of the OFFLINE and REALTIME tables. </li>
+ *   <li> All the results for a table are invalidated when its routing table changes (e.g. on external view change),
+ *        and when the controller sends a segment refresh message for it, as a refreshed segment keeps its name and
+ *        does not change the external view. </li>
+ *   <li> Results computed before an invalidation are dropped instead of being cached after it. </li>
+ *   <li> Servers may pick up a refreshed segment after the refresh message reaches the broker, so results for OFFLINE
+ *        tables are still bounded by the configured OFFLINE TTL (1 hour by default). </li>
+ *   <li> Consuming segments keep changing without any routing table change, so results for REALTIME tables are only
+ *        cached with the configured REALTIME TTL, and not cached at all by default. </li>
+ *   <li> Each hit gets its own copy of the cached response, sharing the (read-only) results, so that setting the time
+ *        used on the response does not affect the other requests. </li>
+ *   <li> The total size of the cached results (estimated from their JSON size) is bounded by the configured memory
+ *        budget, least recently used results are evicted first. </li>
+ * </ul>
+ * With a memory budget of 0 (the default), lookups always miss and nothing is stored, and the request handler does
+ * not register the cache for routing table changes.
+ */
+@ThreadSafe
+public class BrokerResultCache implements RoutingTableChangeListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerResultCache.class);
+
+  private final long _maxSizeBytes;
+  private final long _offlineTtlMs;
+  private final long _realtimeTtlMs;
+  private final BrokerMetrics _brokerMetrics;
+  private final Cache<Key, CachedResult> _cache;
+  // Bumped on each invalidation of a table, so that results computed before it are not cached
+  private final ConcurrentMap<String, AtomicLong> _generations = new ConcurrentHashMap<>();
+
+  public BrokerResultCache(long maxSizeBytes, long offlineTtlMs, long realtimeTtlMs,
+      @Nullable BrokerMetrics brokerMetrics) {
+    _maxSizeBytes = maxSizeBytes;
+    _offlineTtlMs = offlineTtlMs;
+    _realtimeTtlMs = realtimeTtlMs;
+    _brokerMetrics = brokerMetrics;
+    if (maxSizeBytes > 0) {
+      LOGGER.info("Initializing broker result cache with max size: {} bytes, offline TTL: {} ms, realtime TTL: {} ms",
+          maxSizeBytes, offlineTtlMs, realtimeTtlMs);
+      _cache = CacheBuilder.newBuilder().maximumWeight(maxSizeBytes).weigher(new Weigher<Key, CachedResult>() {
+        @Override
+        public int weigh(Key key, CachedResult value) {
+          return key.getSizeInBytes() + value.getSizeInBytes();
+        }
+      }).build();
+    } else {
+      _cache = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return _maxSizeBytes > 0;
+  }
+
+  /**
+   * Returns the cache key for the given optimized broker requests and routing tables, or null if the result should
+   * not be cached.
+   *
+   * @param offlineBrokerRequest Broker request for the OFFLINE table
+   * @param offlineRoutingTable Routing table for the OFFLINE table
+   * @param realtimeBrokerRequest Broker request for the REALTIME table
+   * @param realtimeRoutingTable Routing table for the REALTIME table
+   * @return Cache key, or null if the result should not be cached
+   */
+  @Nullable
+  public Key getKey(@Nullable BrokerRequest offlineBrokerRequest,
+      @Nullable Map<String, List<String>> offlineRoutingTable, @Nullable BrokerRequest realtimeBrokerRequest,
+      @Nullable Map<String, List<String>> realtimeRoutingTable) {
+    if (!isEnabled()) {
+      return null;
+    }
+    if ((offlineBrokerRequest != null && _offlineTtlMs <= 0) || (realtimeBrokerRequest != null
+        && _realtimeTtlMs <= 0)) {
+      return null;
+    }
+    // Trace info is specific to each execution
+    if ((offlineBrokerRequest != null && offlineBrokerRequest.isEnableTrace()) || (realtimeBrokerRequest != null
+        && realtimeBrokerRequest.isEnableTrace())) {
+      return null;
+    }
+    // SerDe is not thread-safe
+    SerDe serDe = new SerDe(new TCompactProtocol.Factory());
+    String offlineTableName = null;
+    byte[] offlineRequestBytes = null;
+    if (offlineBrokerRequest != null) {
+      offlineTableName = offlineBrokerRequest.getQuerySource().getTableName();
+      offlineRequestBytes = serDe.serialize(offlineBrokerRequest);
+      if (offlineRequestBytes == null) {
+        return null;
+      }
+    }
+    String realtimeTableName = null;
+    byte[] realtimeRequestBytes = null;
+    if (realtimeBrokerRequest != null) {
+      realtimeTableName = realtimeBrokerRequest.getQuerySource().getTableName();
+      realtimeRequestBytes = serDe.serialize(realtimeBrokerRequest);
+      if (realtimeRequestBytes == null) {
+        return null;
+      }
+    }
+    return new Key(offlineTableName, offlineRequestBytes, getSegments(offlineRoutingTable), realtimeTableName,
+        realtimeRequestBytes, getSegments(realtimeRoutingTable), getGeneration(offlineTableName),
+        getGeneration(realtimeTableName));
+  }
+
+  /**
+   * Returns the cached broker response for the given key, or null if there is no valid cached result.
+   */
+  @Nullable
+  public BrokerResponse get(@Nonnull Key key) {
+    if (!isEnabled()) {
+      return null;
+    }
+    String rawTableName = key.getRawTableName();
+    CachedResult cachedResult = _cache.getIfPresent(key);
+    if (cachedResult != null && cachedResult._expirationTimeMs < System.currentTimeMillis()) {
+      _cache.invalidate(key);
+      cachedResult = null;
+    }
+    if (cachedResult == null) {
+      addMeteredValue(rawTableName, BrokerMeter.RESULT_CACHE_MISSES);
+      return null;
+    }
+    addMeteredValue(rawTableName, BrokerMeter.RESULT_CACHE_HITS);
+    return copyOf(cachedResult._brokerResponse);
+  }
+
+  /**
+   * Caches the given broker response. Responses with processing exceptions or missing server responses are not cached,
+   * neither are responses for keys created before the last invalidation of their tables.
+   */
+  public void put(@Nonnull Key key, @Nonnull BrokerResponse brokerResponse, int numServersQueried,
+      int numServersResponded) {
+    if (!isEnabled() || !(brokerResponse instanceof BrokerResponseNative) || brokerResponse.getExceptionsSize() > 0
+        || numServersQueried > numServersResponded) {
+      return;
+    }
+    if (isStale(key)) {
+      return;
+    }
+    long ttlMs;
+    if (key._realtimeTableName == null) {
+      ttlMs = _offlineTtlMs;
+    } else if (key._offlineTableName == null) {
+      ttlMs = _realtimeTtlMs;
+    } else {
+      ttlMs = Math.min(_offlineTtlMs, _realtimeTtlMs);
+    }
+    long expirationTimeMs = System.currentTimeMillis() + ttlMs;
+    try {
+      int sizeInBytes = 2 * brokerResponse.toJsonString().length();
+      _cache.put(key, new CachedResult((BrokerResponseNative) brokerResponse, sizeInBytes, expirationTimeMs));
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while serializing result for table: {}", key.getRawTableName(), e);
+      return;
+    }
+    // The table might have been invalidated after the check above but before the result got into the cache, in which
+    // case the invalidation might have missed it
+    if (isStale(key)) {
+      _cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Removes all the cached results for the given table.
+   *
+   * @param tableNameWithType Table name with type suffix
+   */
+  public void invalidate(@Nonnull String tableNameWithType) {
+    if (!isEnabled()) {
+      return;
+    }
+    // Bump the generation first so that the results being computed are not cached after the entries are removed
+    getOrCreateGeneration(tableNameWithType).incrementAndGet();
+    for (Key key : _cache.asMap().keySet()) {
+      if (tableNameWithType.equals(key._offlineTableName) || tableNameWithType.equals(key._realtimeTableName)) {
+        _cache.invalidate(key);
+      }
+    }
+  }
+
+  @Override
+  public void onRoutingTableChange(String tableNameWithType) {
+    invalidate(tableNameWithType);
+  }
+
+  /**
+   * Returns the number of cached results.
+   */
+  public long size() {
+    if (!isEnabled()) {
+      return 0L;
+    }
+    return _cache.size();
+  }
+
+  private long getGeneration(@Nullable String tableNameWithType) {
+    if (tableNameWithType == null) {
+      return 0L;
+    }
+    return getOrCreateGeneration(tableNameWithType).get();
+  }
+
+  private AtomicLong getOrCreateGeneration(String tableNameWithType) {
+    AtomicLong generation = _generations.get(tableNameWithType);
+    if (generation == null) {
+      AtomicLong newGeneration = new AtomicLong();
+      generation = _generations.putIfAbsent(tableNameWithType, newGeneration);
+      if (generation == null) {
+        generation = newGeneration;
+      }
+    }
+    return generation;
+  }
+
+  private boolean isStale(Key key) {
+    return key._offlineGeneration != getGeneration(key._offlineTableName)
+        || key._realtimeGeneration != getGeneration(key._realtimeTableName);
+  }
+
+  private void addMeteredValue(String rawTableName, BrokerMeter meter) {
+    if (_brokerMetrics != null) {
+      _brokerMetrics.addMeteredTableValue(rawTableName, meter, 1L);
+    }
+  }
+
+  private static BrokerResponseNative copyOf(BrokerResponseNative brokerResponse) {
+    BrokerResponseNative copy = new BrokerResponseNative();
+    copy.setSelectionResults(brokerResponse.getSelectionResults());
+    copy.setAggregationResults(brokerResponse.getAggregationResults());
+    copy.setNumServersQueried(brokerResponse.getNumServersQueried());
+    copy.setNumServersResponded(brokerResponse.getNumServersResponded());
+    copy.setNumDocsScanned(brokerResponse.getNumDocsScanned());
+    copy.setNumEntriesScannedInFilter(brokerResponse.getNumEntriesScannedInFilter());
+    copy.setNumEntriesScannedPostFilter(brokerResponse.getNumEntriesScannedPostFilter());
+    copy.setTotalDocs(brokerResponse.getTotalDocs());
+    copy.setTimeUsedMs(brokerResponse.getTimeUsedMs());
+    copy.setSegmentStatistics(brokerResponse.getSegmentStatistics());
+    copy.setTraceInfo(brokerResponse.getTraceInfo());
+    return copy;
+  }
+
+  private static Set<String> getSegments(@Nullable Map<String, List<String>> routingTable) {
+    if (routingTable == null) {
+      return Collections.emptySet();
+    }
+    // The servers chosen for the segments may differ across requests, only the segments matter
+    Set<String> segments = new HashSet<>();
+    for (List<String> segmentsForServer : routingTable.values()) {
+      segments.addAll(segmentsForServer);
+    }
+    return segments;
+  }
+
+  public static final class Key {
+    private final String _offlineTableName;
+    private final byte[] _offlineRequestBytes;
+    private final Set<String> _offlineSegments;
+    private final String _realtimeTableName;
+    private final byte[] _realtimeRequestBytes;
+    private final Set<String> _realtimeSegments;
+    // Generations of the tables when the key was created, not part of the key identity
+    private final long _offlineGeneration;
+    private final long _realtimeGeneration;
+    private final int _hashCode;
+    private final int _sizeInBytes;
+
+    private Key(String offlineTableName, byte[] offlineRequestBytes, Set<String> offlineSegments,
+        String realtimeTableName, byte[] realtimeRequestBytes, Set<String> realtimeSegments, long offlineGeneration,
+        long realtimeGeneration) {
+      _offlineTableName = offlineTableName;
+      _offlineRequestBytes = offlineRequestBytes;
+      _offlineSegments = offlineSegments;
+      _realtimeTableName = realtimeTableName;
+      _realtimeRequestBytes = realtimeRequestBytes;
+      _realtimeSegments = realtimeSegments;
+      _offlineGeneration = offlineGeneration;
+      _realtimeGeneration = realtimeGeneration;
+      int hashCode = Arrays.hashCode(offlineRequestBytes);
+      hashCode = 31 * hashCode + offlineSegments.hashCode();
+      hashCode = 31 * hashCode + Arrays.hashCode(realtimeRequestBytes);
+      hashCode = 31 * hashCode + realtimeSegments.hashCode();
+      _hashCode = hashCode;
+      _sizeInBytes = getSizeInBytes(offlineRequestBytes, offlineSegments) + getSizeInBytes(realtimeRequestBytes,
+          realtimeSegments);
+    }
+
+    private String getRawTableName() {
+      return TableNameBuilder.extractRawTableName(
+          (_offlineTableName != null) ? _offlineTableName : _realtimeTableName);
+    }
+
+    private int getSizeInBytes() {
+      return _sizeInBytes;
+    }
+
+    private static int getSizeInBytes(byte[] requestBytes, Set<String> segments) {
+      int sizeInBytes = (requestBytes != null) ? requestBytes.length : 0;
+      for (String segment : segments) {
+        sizeInBytes += 2 * segment.length();
+      }
+      return sizeInBytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _hashCode == that._hashCode && Arrays.equals(_offlineRequestBytes, that._offlineRequestBytes)
+          && Arrays.equals(_realtimeRequestBytes, that._realtimeRequestBytes) && _offlineSegments.equals(
+          that._offlineSegments) && _realtimeSegments.equals(that._realtimeSegments);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  private static final class CachedResult {
+    final BrokerResponseNative _brokerResponse;
+    final int _sizeInBytes;
+    final long _expirationTimeMs;
+
+    CachedResult(BrokerResponseNative brokerResponse, int sizeInBytes, long expirationTimeMs) {
+      _brokerResponse = brokerResponse;
+      _sizeInBytes = sizeInBytes;
+      _expirationTimeMs = expirationTimeMs;
+    }
+
+    int getSizeInBytes() {
+      return _sizeInBytes;
+    }
+  }
+}
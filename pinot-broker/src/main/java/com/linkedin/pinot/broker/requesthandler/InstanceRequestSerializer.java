@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import java.util.List;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+
+/**
+ * Serializes the {@link InstanceRequest}s sent to the servers for a query.
+ *
+ * The {@link BrokerRequest}, which is the bulk of the request (e.g. large IN lists), is serialized only once, and its
+ * bytes are copied as is into the request of each server. Only the small per-server envelope (request id, segments to
+ * query, time budget, ...) is serialized for each server. The output is byte-for-byte the same as serializing the whole
+ * {@link InstanceRequest} with {@link TCompactProtocol}, so servers are not affected.
+ */
+@ThreadSafe
+public class InstanceRequestSerializer {
+  // Per segment name overhead of the list encoding (varint length)
+  private static final int SEGMENT_OVERHEAD_BYTES = 5;
+  // Size of the envelope other than the query and the segments
+  private static final int ENVELOPE_BYTES = 64;
+
+  private final long _requestId;
+  private final boolean _enableTrace;
+  private final String _brokerId;
+  private final long _timeoutMs;
+  private final SerializedBrokerRequest _serializedQuery;
+
+  /**
+   * @param timeoutMs time budget of the query on the servers, used by the servers to schedule and drop the query
+   */
+  public InstanceRequestSerializer(BrokerRequest brokerRequest, long requestId, String brokerId, long timeoutMs)
+      throws TException {
+    _requestId = requestId;
+    _enableTrace = brokerRequest.isEnableTrace();
+    _brokerId = brokerId;
+    _timeoutMs = timeoutMs;
+    brokerRequest.validate();
+    _serializedQuery =
+        new SerializedBrokerRequest(new TSerializer(new TCompactProtocol.Factory()).serialize(brokerRequest));
+  }
+
+  /**
+   * Serializes the request for the given segments into a buffer from the given allocator. The caller owns the returned
+   * buffer.
+   */
+  public ByteBuf serialize(List<String> segments, ByteBufAllocator allocator)
+      throws TException {
+    InstanceRequest instanceRequest = new InstanceRequest();
+    instanceRequest.setRequestId(_requestId);
+    instanceRequest.setEnableTrace(_enableTrace);
+    instanceRequest.setQuery(_serializedQuery);
+    instanceRequest.setSearchSegments(segments);
+    instanceRequest.setBrokerId(_brokerId);
+    instanceRequest.setTimeoutMs(_timeoutMs);
+
+    int estimatedSize = _serializedQuery._bytes.length + ENVELOPE_BYTES;
+    if (segments != null) {
+      for (String segment : segments) {
+        estimatedSize += segment.length() + SEGMENT_OVERHEAD_BYTES;
+      }
+    }
+    ByteBuf buffer = allocator.buffer(estimatedSize);
+    try {
+      instanceRequest.write(new TCompactProtocol(new TIOStreamTransport(new ByteBufOutputStream(buffer))));
+      return buffer;
+    } catch (TException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    }
+  }
+
+  /**
+   * {@link BrokerRequest} which writes its pre-serialized bytes instead of its fields.
+   *
+   * Writing a nested struct with {@link TCompactProtocol} produces the same bytes as serializing it on its own, and
+   * leaves the protocol in the same state, so the bytes can be copied directly into the transport.
+   */
+  private static class SerializedBrokerRequest extends BrokerRequest {
+    private final byte[] _bytes;
+
+    SerializedBrokerRequest(byte[] bytes) {
+      _bytes = bytes;
+    }
+
+    @Override
+    public void write(TProtocol oprot)
+        throws TException {
+      oprot.getTransport().write(_bytes);
+    }
+
+    @Override
+    public void validate() {
+      // Validated before being serialized
+    }
+  }
+}
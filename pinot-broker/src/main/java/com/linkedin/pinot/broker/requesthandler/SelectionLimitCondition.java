@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.core.common.datatable.DataTableFactory;
+import com.linkedin.pinot.transport.common.GatherCompletionCondition;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Gather completion condition for selection only queries (without ORDER BY), met once the servers returned as many
+ * rows as the selection size, so that ad-hoc queries such as <code>SELECT * FROM table LIMIT 10</code> do not wait for
+ * the slowest server. The outstanding server requests get cancelled once the condition is met.
+ * <p>The same condition is shared by the OFFLINE and REALTIME requests of a hybrid table.
+ */
+@ThreadSafe
+class SelectionLimitCondition implements GatherCompletionCondition<byte[]> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SelectionLimitCondition.class);
+
+  private final int _numRowsToSelect;
+  private final AtomicInteger _numRowsGathered = new AtomicInteger();
+
+  private SelectionLimitCondition(int numRowsToSelect) {
+    _numRowsToSelect = numRowsToSelect;
+  }
+
+  /**
+   * Returns the condition for the given broker request, or null if the query needs the responses from all servers.
+   */
+  @Nullable
+  static SelectionLimitCondition forBrokerRequest(@Nonnull BrokerRequest brokerRequest) {
+    Selection selection = brokerRequest.getSelections();
+    if (selection == null || selection.isSetSelectionSortSequence() || selection.getSize() <= 0) {
+      return null;
+    }
+    return new SelectionLimitCondition(selection.getSize());
+  }
+
+  @Override
+  public boolean onResponse(ServerInstance server, byte[] response) {
+    if (response == null || response.length == 0) {
+      return isMet();
+    }
+    int numRows;
+    try {
+      numRows = DataTableFactory.getNumRows(response);
+    } catch (Exception e) {
+      // Failure will be reported while de-serializing the response
+      LOGGER.debug("Caught exception while reading number of rows in response from server: {}", server, e);
+      return isMet();
+    }
+    return _numRowsGathered.addAndGet(numRows) >= _numRowsToSelect;
+  }
+
+  /**
+   * Returns true if enough rows have been gathered.
+   */
+  boolean isMet() {
+    return _numRowsGathered.get() >= _numRowsToSelect;
+  }
+}
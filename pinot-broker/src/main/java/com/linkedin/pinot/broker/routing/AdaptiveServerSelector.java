@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.routing;
+
+import com.linkedin.pinot.transport.scattergather.ServerRequestListener;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * Selects the routing table of a query among the pre-computed ones based on the live health of the servers.
+ * <p>The selector tracks for each server the exponentially weighted moving average (EWMA) of the response latency and
+ * of the error rate, and the number of in-flight requests. The expected latency of a server is its latency EWMA scaled
+ * by its number of in-flight requests and penalized by its error rate. The expected latency of a routing table is the
+ * one of its slowest server, so the selected routing table avoids overloaded and recently failing servers.
+ * <p>The selector is fed by the scatter-gather as a {@link ServerRequestListener}, so that the requests hedged to
+ * replica servers are accounted to the servers they were actually sent to.
+ * <p>The latency and error rate of a server decay when it is not queried, so that a server avoided after a slow
+ * period gets queried again.
+ */
+@ThreadSafe
+public class AdaptiveServerSelector implements ServerRequestListener {
+  // Weight of the latest sample in the moving averages
+  private static final double EWMA_ALPHA = 0.3;
+  // Half life of the latency and error rate of a server which is not queried
+  private static final long DECAY_HALF_LIFE_MS = 10_000L;
+  // Expected latency multiplier for a server with 100% errors
+  private static final double ERROR_PENALTY = 10.0;
+
+  private final ConcurrentHashMap<String, ServerStats> _serverStatsMap = new ConcurrentHashMap<>();
+
+  /**
+   * Selects the routing table with the lowest expected latency, breaking ties randomly.
+   */
+  @Nonnull
+  public Map<String, List<String>> selectRoutingTable(@Nonnull List<Map<String, List<String>>> routingTables) {
+    long currentTimeMs = System.currentTimeMillis();
+    Map<String, List<String>> selectedRoutingTable = null;
+    double minExpectedLatencyMs = Double.MAX_VALUE;
+    int numTies = 0;
+    for (Map<String, List<String>> routingTable : routingTables) {
+      double expectedLatencyMs = 0.0;
+      for (String server : routingTable.keySet()) {
+        expectedLatencyMs = Math.max(expectedLatencyMs, getExpectedLatencyMs(server, currentTimeMs));
+      }
+      if (expectedLatencyMs < minExpectedLatencyMs) {
+        selectedRoutingTable = routingTable;
+        minExpectedLatencyMs = expectedLatencyMs;
+        numTies = 1;
+      } else if (expectedLatencyMs == minExpectedLatencyMs
+          && ThreadLocalRandom.current().nextInt(++numTies) == 0) {
+        // Reservoir sampling among the routing tables with the same expected latency
+        selectedRoutingTable = routingTable;
+      }
+    }
+    return selectedRoutingTable;
+  }
+
+  /**
+   * Returns the expected latency of a request to the given server.
+   */
+  public double getExpectedLatencyMs(@Nonnull String server) {
+    return getExpectedLatencyMs(server, System.currentTimeMillis());
+  }
+
+  private double getExpectedLatencyMs(String server, long currentTimeMs) {
+    ServerStats serverStats = _serverStatsMap.get(server);
+    if (serverStats == null) {
+      return 1.0;
+    }
+    return serverStats.getExpectedLatencyMs(currentTimeMs);
+  }
+
+  /**
+   * Marks a request sent to the given server.
+   */
+  @Override
+  public void onRequestSent(@Nonnull String server) {
+    getServerStats(server)._numInFlightRequests.incrementAndGet();
+  }
+
+  /**
+   * Marks a request to the given server completed successfully after the given latency.
+   */
+  @Override
+  public void onResponse(@Nonnull String server, long latencyMs) {
+    ServerStats serverStats = getServerStats(server);
+    serverStats._numInFlightRequests.decrementAndGet();
+    serverStats.update(latencyMs, false);
+  }
+
+  /**
+   * Marks a request to the given server failed.
+   */
+  @Override
+  public void onError(@Nonnull String server) {
+    ServerStats serverStats = getServerStats(server);
+    serverStats._numInFlightRequests.decrementAndGet();
+    serverStats.update(-1L, true);
+  }
+
+  /**
+   * Marks a request to the given server completed without outcome, e.g. cancelled because another server failed.
+   */
+  @Override
+  public void onRequestCancelled(@Nonnull String server) {
+    getServerStats(server)._numInFlightRequests.decrementAndGet();
+  }
+
+  private ServerStats getServerStats(String server) {
+    ServerStats serverStats = _serverStatsMap.get(server);
+    if (serverStats == null) {
+      serverStats = new ServerStats();
+      ServerStats existingServerStats = _serverStatsMap.putIfAbsent(server, serverStats);
+      if (existingServerStats != null) {
+        serverStats = existingServerStats;
+      }
+    }
+    return serverStats;
+  }
+
+  private static class ServerStats {
+    final AtomicInteger _numInFlightRequests = new AtomicInteger();
+
+    // Guarded by this
+    double _latencyMs;
+    double _errorRate;
+    long _lastUpdateTimeMs;
+
+    synchronized void update(long latencyMs, boolean error) {
+      long currentTimeMs = System.currentTimeMillis();
+      double decay = getDecay(currentTimeMs);
+      _latencyMs *= decay;
+      _errorRate *= decay;
+      if (latencyMs >= 0) {
+        _latencyMs = _lastUpdateTimeMs == 0 ? latencyMs : _latencyMs + EWMA_ALPHA * (latencyMs - _latencyMs);
+      }
+      _errorRate += EWMA_ALPHA * ((error ? 1.0 : 0.0) - _errorRate);
+      _lastUpdateTimeMs = currentTimeMs;
+    }
+
+    synchronized double getExpectedLatencyMs(long currentTimeMs) {
+      double decay = getDecay(currentTimeMs);
+      // Add 1ms so that the in-flight requests count for servers with no latency yet
+      double latencyMs = _latencyMs * decay + 1.0;
+      int numInFlightRequests = Math.max(_numInFlightRequests.get(), 0);
+      return latencyMs * (1 + numInFlightRequests) * (1 + ERROR_PENALTY * _errorRate * decay);
+    }
+
+    private double getDecay(long currentTimeMs) {
+      if (_lastUpdateTimeMs == 0 || currentTimeMs <= _lastUpdateTimeMs) {
+        return 1.0;
+      }
+      return Math.pow(0.5, (double) (currentTimeMs - _lastUpdateTimeMs) / DECAY_HALF_LIFE_MS);
+    }
+  }
+}
@@ -48,6 +48,18 @@ public class CfgBasedRouting implements RoutingTable {
     return cfg.buildRequestRoutingMap();
   }
 
+  @Override
+  public Map<String, List<String>> getReplicaRoutingTable(String tableName, String serverName,
+      List<String> segments) {
+    // Routing tables from the config have no replicas
+    return null;
+  }
+
+  @Override
+  public AdaptiveServerSelector getAdaptiveServerSelector() {
+    return null;
+  }
+
   @Override
   public boolean routingTableExists(String tableName) {
     return _cfg.getPerTableRoutingCfg().containsKey(tableName);
@@ -57,4 +69,9 @@ public class CfgBasedRouting implements RoutingTable {
   public String dumpSnapshot(String tableName) throws Exception {
     return null;
   }
+
+  @Override
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    // Routing tables from the config never change
+  }
 }
@@ -17,6 +17,10 @@
 package com.linkedin.pinot.broker.routing;
 
 import com.google.common.collect.Sets;
+import com.linkedin.pinot.broker.pruner.TimeSegmentPruner;
+import com.linkedin.pinot.broker.routing.builder.BalancedRandomRoutingTableBuilder;
+import com.linkedin.pinot.broker.routing.builder.DefaultOfflineRoutingTableBuilder;
+import com.linkedin.pinot.broker.routing.builder.LargeClusterRoutingTableBuilder;
 import com.linkedin.pinot.broker.routing.builder.RoutingTableBuilder;
 import com.linkedin.pinot.common.config.TableConfig;
 import com.linkedin.pinot.common.config.TableNameBuilder;
@@ -35,7 +39,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration.Configuration;
 import org.apache.helix.AccessOption;
 import org.apache.helix.HelixDataAccessor;
@@ -68,11 +75,20 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
   private final Map<String, Map<String, InstanceConfig>> _lastKnownInstanceConfigsForTable = new ConcurrentHashMap<>();
   private final Map<String, InstanceConfig> _lastKnownInstanceConfigs = new ConcurrentHashMap<>();
   private final Map<String, Set<String>> _tablesForInstance = new ConcurrentHashMap<>();
+  private final List<RoutingTableChangeListener> _routingTableChangeListeners = new CopyOnWriteArrayList<>();
+  // Map from table to the servers of each segment in the routing tables, lazily computed to hedge requests
+  private final Map<String, Map<String, Set<String>>> _segmentToServersMap = new ConcurrentHashMap<>();
 
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
   private final HelixManager _helixManager;
   private static final int INVALID_EXTERNAL_VIEW_VERSION = Integer.MIN_VALUE;
 
+  // Whether to prune the segments whose time range (from the segment ZK metadata) does not overlap with the queries
+  private static final String TIME_SEGMENT_PRUNING_ENABLED_KEY = "timeSegmentPruning.enabled";
+  private static final boolean DEFAULT_TIME_SEGMENT_PRUNING_ENABLED = false;
+  private static final String ADAPTIVE_SERVER_SELECTION_ENABLED_KEY = "adaptiveServerSelection.enabled";
+  private static final boolean DEFAULT_ADAPTIVE_SERVER_SELECTION_ENABLED = false;
+
   private BrokerMetrics _brokerMetrics;
 
   private Configuration _configuration;
@@ -81,6 +97,12 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
 
   private RoutingTableBuilderFactory _routingTableBuilderFactory;
 
+  // Prunes the segments out of the time range of the queries, null if time based segment pruning is disabled
+  private final TimeSegmentPruner _timeSegmentPruner;
+
+  // Selects the routing tables based on the server latencies, null if adaptive server selection is disabled
+  private final AdaptiveServerSelector _adaptiveServerSelector;
+
   public HelixExternalViewBasedRouting(ZkHelixPropertyStore<ZNRecord> propertyStore, HelixManager helixManager,
       Configuration configuration) {
     _propertyStore = propertyStore;
@@ -89,13 +111,146 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     _routingTableBuilderMap = new HashMap<>();
     _helixManager = helixManager;
     _routingTableBuilderFactory = new RoutingTableBuilderFactory(_configuration, propertyStore);
+    if (propertyStore != null && configuration.getBoolean(TIME_SEGMENT_PRUNING_ENABLED_KEY,
+        DEFAULT_TIME_SEGMENT_PRUNING_ENABLED)) {
+      LOGGER.info("Enabling time based segment pruning");
+      _timeSegmentPruner = new TimeSegmentPruner(propertyStore);
+    } else {
+      _timeSegmentPruner = null;
+    }
+    if (configuration.getBoolean(ADAPTIVE_SERVER_SELECTION_ENABLED_KEY, DEFAULT_ADAPTIVE_SERVER_SELECTION_ENABLED)) {
+      LOGGER.info("Enabling adaptive server selection");
+      _adaptiveServerSelector = new AdaptiveServerSelector();
+    } else {
+      _adaptiveServerSelector = null;
+    }
   }
 
   @Override
   public Map<String, List<String>> getRoutingTable(RoutingTableLookupRequest request) {
     String tableName = request.getTableName();
     RoutingTableBuilder routingTableBuilder = _routingTableBuilderMap.get(tableName);
-    return routingTableBuilder.getRoutingTable(request);
+    Map<String, List<String>> routingTable = null;
+    if (_adaptiveServerSelector != null && isAdaptiveServerSelectionSupported(routingTableBuilder)) {
+      List<Map<String, List<String>>> routingTables = routingTableBuilder.getRoutingTables();
+      if (routingTables != null && !routingTables.isEmpty()) {
+        routingTable = _adaptiveServerSelector.selectRoutingTable(routingTables);
+      }
+    }
+    if (routingTable == null) {
+      routingTable = routingTableBuilder.getRoutingTable(request);
+    }
+    if (_timeSegmentPruner == null || routingTable == null || routingTable.isEmpty()) {
+      return routingTable;
+    }
+
+    Map<String, List<String>> prunedRoutingTable = _timeSegmentPruner.prune(request.getBrokerRequest(), routingTable);
+    if (_brokerMetrics != null && prunedRoutingTable != routingTable) {
+      int numPrunedSegments = getNumSegments(routingTable) - getNumSegments(prunedRoutingTable);
+      _brokerMetrics.addMeteredTableValue(tableName, BrokerMeter.SEGMENTS_PRUNED_BY_TIME, numPrunedSegments);
+      _brokerMetrics.addMeteredTableValue(tableName, BrokerMeter.SERVERS_PRUNED_BY_TIME,
+          routingTable.size() - prunedRoutingTable.size());
+    }
+    return prunedRoutingTable;
+  }
+
+  /**
+   * Adaptive server selection picks one of the pre-computed routing tables, which is only valid for the builders
+   * whose routing tables are interchangeable.
+   */
+  private static boolean isAdaptiveServerSelectionSupported(RoutingTableBuilder routingTableBuilder) {
+    return routingTableBuilder instanceof DefaultOfflineRoutingTableBuilder
+        || routingTableBuilder instanceof BalancedRandomRoutingTableBuilder
+        || routingTableBuilder instanceof LargeClusterRoutingTableBuilder;
+  }
+
+  @Nullable
+  @Override
+  public AdaptiveServerSelector getAdaptiveServerSelector() {
+    return _adaptiveServerSelector;
+  }
+
+  @Nullable
+  @Override
+  public Map<String, List<String>> getReplicaRoutingTable(String tableName, String serverName,
+      List<String> segments) {
+    Map<String, Set<String>> segmentToServers = _segmentToServersMap.get(tableName);
+    if (segmentToServers == null) {
+      RoutingTableBuilder routingTableBuilder = _routingTableBuilderMap.get(tableName);
+      if (routingTableBuilder == null) {
+        return null;
+      }
+      segmentToServers = computeSegmentToServersMap(routingTableBuilder);
+      _segmentToServersMap.put(tableName, segmentToServers);
+    }
+    return computeReplicaRoutingTable(segmentToServers, serverName, segments);
+  }
+
+  /**
+   * Computes the map from segment to the servers it is routed to in any of the pre-computed routing tables.
+   */
+  private static Map<String, Set<String>> computeSegmentToServersMap(RoutingTableBuilder routingTableBuilder) {
+    Map<String, Set<String>> segmentToServers = new HashMap<>();
+    List<Map<String, List<String>>> routingTables;
+    try {
+      routingTables = routingTableBuilder.getRoutingTables();
+    } catch (UnsupportedOperationException e) {
+      // Routing tables are computed per request, requests to this table cannot be hedged
+      return segmentToServers;
+    }
+    for (Map<String, List<String>> routingTable : routingTables) {
+      for (Map.Entry<String, List<String>> entry : routingTable.entrySet()) {
+        for (String segment : entry.getValue()) {
+          Set<String> servers = segmentToServers.get(segment);
+          if (servers == null) {
+            servers = new HashSet<>();
+            segmentToServers.put(segment, servers);
+          }
+          servers.add(entry.getKey());
+        }
+      }
+    }
+    return segmentToServers;
+  }
+
+  /**
+   * Routes all the given segments to a single other server serving all of them, so that the hedged request gets
+   * exactly one response in place of the response of the original server.
+   */
+  @Nullable
+  static Map<String, List<String>> computeReplicaRoutingTable(Map<String, Set<String>> segmentToServers,
+      String serverName, List<String> segments) {
+    Set<String> replicaServers = null;
+    for (String segment : segments) {
+      Set<String> servers = segmentToServers.get(segment);
+      if (servers == null) {
+        return null;
+      }
+      if (replicaServers == null) {
+        replicaServers = new HashSet<>(servers);
+        replicaServers.remove(serverName);
+      } else {
+        replicaServers.retainAll(servers);
+      }
+      if (replicaServers.isEmpty()) {
+        return null;
+      }
+    }
+    if (replicaServers == null) {
+      return null;
+    }
+    List<String> candidates = new ArrayList<>(replicaServers);
+    Map<String, List<String>> replicaRoutingTable = new HashMap<>();
+    replicaRoutingTable.put(candidates.get(ThreadLocalRandom.current().nextInt(candidates.size())), segments);
+    return replicaRoutingTable;
+  }
+
+  private static int getNumSegments(Map<String, List<String>> routingTable) {
+    int numSegments = 0;
+    for (List<String> segments : routingTable.values()) {
+      numSegments += segments.size();
+    }
+    return numSegments;
   }
 
   @Override
@@ -103,6 +258,21 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     return _routingTableBuilderMap.containsKey(tableName);
   }
 
+  @Override
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    _routingTableChangeListeners.add(listener);
+  }
+
+  private void notifyRoutingTableChange(String tableNameWithType) {
+    for (RoutingTableChangeListener listener : _routingTableChangeListeners) {
+      try {
+        listener.onRoutingTableChange(tableNameWithType);
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while notifying routing table change for table {}", tableNameWithType, e);
+      }
+    }
+  }
+
 
   public void setBrokerMetrics(BrokerMetrics brokerMetrics) {
     _brokerMetrics = brokerMetrics;
@@ -237,6 +407,7 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       Map<String, InstanceConfig> relevantInstanceConfigs = new HashMap<>();
 
       routingTableBuilder.computeRoutingTableFromExternalView(tableNameWithType, externalView, instanceConfigs);
+      _segmentToServersMap.remove(tableNameWithType);
 
       // Keep track of the instance configs that are used in that routing table
       updateInstanceConfigsMapFromExternalView(relevantInstanceConfigs, instanceConfigs, externalView);
@@ -315,6 +486,12 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       LOGGER.error("Failed to update the TimeBoundaryService for {}", tableNameWithType, e);
     }
 
+    if (_timeSegmentPruner != null) {
+      _timeSegmentPruner.updateTable(tableNameWithType);
+    }
+
+    notifyRoutingTableChange(tableNameWithType);
+
     long updateTime = System.currentTimeMillis() - startTimeMillis;
 
     if (_brokerMetrics != null) {
@@ -358,9 +535,13 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
   public void markDataResourceOffline(String tableName) {
     LOGGER.info("Trying to remove data table from broker for {}", tableName);
     _routingTableBuilderMap.remove(tableName);
+    _segmentToServersMap.remove(tableName);
     _lastKnownExternalViewVersionMap.remove(tableName);
     _lastKnownInstanceConfigsForTable.remove(tableName);
     _timeBoundaryService.remove(tableName);
+    if (_timeSegmentPruner != null) {
+      _timeSegmentPruner.removeTable(tableName);
+    }
 
     // Remove table from all instances
     synchronized (_tablesForInstance) {
@@ -375,6 +556,8 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       }
 
     }
+
+    notifyRoutingTableChange(tableName);
   }
 
   public void processExternalViewChange() {
@@ -17,6 +17,7 @@ package com.linkedin.pinot.broker.routing;
 
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 
 /**
@@ -32,6 +33,25 @@ public interface RoutingTable {
    */
   Map<String, List<String>> getRoutingTable(RoutingTableLookupRequest request);
 
+  /**
+   * Get a routing table for the given segments which excludes the given server, used to hedge slow requests to
+   * replica servers.
+   *
+   * @param tableName Table name
+   * @param serverName Server to exclude
+   * @param segments List of segments queried on the server
+   * @return Map from replica server to list of segments, or null if the segments are not served by another server
+   */
+  @Nullable
+  Map<String, List<String>> getReplicaRoutingTable(String tableName, String serverName, List<String> segments);
+
+  /**
+   * Get the selector tracking the server latencies to pick the routing tables, or null if adaptive server selection
+   * is disabled.
+   */
+  @Nullable
+  AdaptiveServerSelector getAdaptiveServerSelector();
+
   /**
    * Return whether the routing table for the given table exists.
    *
@@ -47,4 +67,11 @@ public interface RoutingTable {
    * @throws Exception
    */
   String dumpSnapshot(String tableName) throws Exception;
+
+  /**
+   * Register a listener to be notified when the routing table for a table changes.
+   *
+   * @param listener Routing table change listener
+   */
+  void addRoutingTableChangeListener(RoutingTableChangeListener listener);
 }
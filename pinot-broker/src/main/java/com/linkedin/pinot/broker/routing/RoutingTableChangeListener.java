@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.routing;
+
+/**
+ * Listener notified when the routing table of a table is rebuilt or removed, e.g. after a change in the external view
+ * of the table. Anything derived from the segments served for the table (e.g. cached query results) becomes stale.
+ */
+public interface RoutingTableChangeListener {
+
+  /**
+   * Invoked after the routing table for the given table has changed.
+   *
+   * @param tableNameWithType Table name with type suffix
+   */
+  void onRoutingTableChange(String tableNameWithType);
+}
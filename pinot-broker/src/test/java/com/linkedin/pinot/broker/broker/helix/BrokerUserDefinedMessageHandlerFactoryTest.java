@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.broker.helix;
+
+import com.linkedin.pinot.broker.requesthandler.BrokerResultCache;
+import com.linkedin.pinot.common.messages.SegmentRefreshMessage;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.helix.messaging.handling.MessageHandler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class BrokerUserDefinedMessageHandlerFactoryTest {
+  private static final String OFFLINE_TABLE_NAME = "myTable_OFFLINE";
+
+  @Test
+  public void testSegmentRefreshInvalidatesResults()
+      throws Exception {
+    BrokerResultCache resultCache = new BrokerResultCache(1024 * 1024, 3_600_000L, 0L, null);
+    BrokerRequest brokerRequest = new Pql2Compiler().compileToBrokerRequest("SELECT COUNT(*) FROM myTable_OFFLINE");
+    Map<String, List<String>> routingTable =
+        Collections.singletonMap("server1", Collections.singletonList("segment1"));
+    BrokerResultCache.Key key = resultCache.getKey(brokerRequest, routingTable, null, null);
+    resultCache.put(key, new BrokerResponseNative(), 1, 1);
+    Assert.assertNotNull(resultCache.get(key));
+
+    // Helix sets the resource and partition of the message to the ones of the recipient
+    SegmentRefreshMessage refreshMessage = new SegmentRefreshMessage(OFFLINE_TABLE_NAME, "segment1", 123L);
+    refreshMessage.setResourceName(CommonConstants.Helix.BROKER_RESOURCE_INSTANCE);
+    refreshMessage.setPartitionName(OFFLINE_TABLE_NAME);
+    MessageHandler messageHandler =
+        new BrokerUserDefinedMessageHandlerFactory(resultCache).createHandler(refreshMessage, null);
+    Assert.assertTrue(messageHandler.handleMessage().isSuccess());
+    Assert.assertNull(resultCache.get(key));
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.pruner;
+
+import com.linkedin.pinot.broker.routing.FakePropertyStore;
+import com.linkedin.pinot.common.config.TableConfig;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.ZNRecord;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class TimeSegmentPrunerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final String OFFLINE_TABLE_NAME = "myTable_OFFLINE";
+  private static final String TIME_COLUMN = "daysSinceEpoch";
+
+  @Test
+  public void testSegmentTimeRangeIndex() {
+    Random random = new Random();
+    List<SegmentTimeRangeIndex.SegmentTimeRange> segmentTimeRanges = new ArrayList<>();
+    Map<String, long[]> expectedTimeRanges = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      long startTime = random.nextInt(10000);
+      long endTime = startTime + random.nextInt(100);
+      String segmentName = "segment_" + i;
+      segmentTimeRanges.add(new SegmentTimeRangeIndex.SegmentTimeRange(segmentName, startTime, endTime));
+      expectedTimeRanges.put(segmentName, new long[]{startTime, endTime});
+    }
+    SegmentTimeRangeIndex segmentTimeRangeIndex = new SegmentTimeRangeIndex(segmentTimeRanges);
+    Assert.assertEquals(segmentTimeRangeIndex.getNumSegments(), 1000);
+    Assert.assertTrue(segmentTimeRangeIndex.hasTimeRange("segment_0"));
+    Assert.assertFalse(segmentTimeRangeIndex.hasTimeRange("segment_1000"));
+
+    for (int i = 0; i < 100; i++) {
+      long startTime = random.nextInt(11000) - 500;
+      long endTime = startTime + random.nextInt(500);
+      Set<String> expectedSegments = new HashSet<>();
+      for (Map.Entry<String, long[]> entry : expectedTimeRanges.entrySet()) {
+        long[] timeRange = entry.getValue();
+        if (timeRange[0] <= endTime && timeRange[1] >= startTime) {
+          expectedSegments.add(entry.getKey());
+        }
+      }
+      Assert.assertEquals(segmentTimeRangeIndex.getOverlappingSegments(startTime, endTime), expectedSegments);
+    }
+    Assert.assertTrue(segmentTimeRangeIndex.getOverlappingSegments(20000L, 30000L).isEmpty());
+  }
+
+  @Test
+  public void testGetTimeRange() {
+    assertTimeRange("SELECT * FROM myTable WHERE column = 5", Long.MIN_VALUE, Long.MAX_VALUE);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch = 5", 5L, 5L);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch IN (7, 3, 5)", 3L, 7L);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch > 5", 6L, Long.MAX_VALUE);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch <= 5", Long.MIN_VALUE, 5L);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch BETWEEN 3 AND 5", 3L, 5L);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch >= 3 AND daysSinceEpoch < 10 AND column = 5", 3L,
+        9L);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch = 3 OR daysSinceEpoch = 10", 3L, 10L);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch = 3 OR column = 10", Long.MIN_VALUE, Long.MAX_VALUE);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch <> 3", Long.MIN_VALUE, Long.MAX_VALUE);
+    assertTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch = 'abc'", Long.MIN_VALUE, Long.MAX_VALUE);
+
+    // No time matches
+    long[] timeRange = getTimeRange("SELECT * FROM myTable WHERE daysSinceEpoch > 10 AND daysSinceEpoch < 5");
+    Assert.assertTrue(timeRange[0] > timeRange[1]);
+  }
+
+  @Test
+  public void testPrune() throws Exception {
+    SegmentPropertyStore propertyStore = new SegmentPropertyStore();
+    TableConfig tableConfig = new TableConfig.Builder(CommonConstants.Helix.TableType.OFFLINE).setTableName("myTable")
+        .setTimeColumnName(TIME_COLUMN)
+        .setTimeType("DAYS")
+        .build();
+    propertyStore.setContents(ZKMetadataProvider.constructPropertyStorePathForResourceConfig(OFFLINE_TABLE_NAME),
+        TableConfig.toZnRecord(tableConfig));
+    // Segment i covers days [10 * i, 10 * i + 9], segment 3 has no time range
+    for (int i = 0; i < 4; i++) {
+      OfflineSegmentZKMetadata segmentZKMetadata = new OfflineSegmentZKMetadata();
+      segmentZKMetadata.setSegmentName("segment_" + i);
+      segmentZKMetadata.setTableName(OFFLINE_TABLE_NAME);
+      if (i < 3) {
+        // Segment time ranges are converted to the table time unit
+        segmentZKMetadata.setStartTime(TimeUnit.DAYS.toHours(10 * i));
+        segmentZKMetadata.setEndTime(TimeUnit.DAYS.toHours(10 * i + 9));
+        segmentZKMetadata.setTimeUnit(TimeUnit.HOURS);
+      } else {
+        segmentZKMetadata.setStartTime(-1L);
+        segmentZKMetadata.setEndTime(-1L);
+      }
+      propertyStore.setContents(
+          ZKMetadataProvider.constructPropertyStorePathForSegment(OFFLINE_TABLE_NAME, "segment_" + i),
+          segmentZKMetadata.toZNRecord());
+    }
+
+    TimeSegmentPruner timeSegmentPruner = new TimeSegmentPruner(propertyStore);
+    Map<String, List<String>> routingTable = new HashMap<>();
+    routingTable.put("server_0", Arrays.asList("segment_0", "segment_1"));
+    routingTable.put("server_1", Arrays.asList("segment_2", "segment_3"));
+    // Segment 4 was added after the index was built
+    routingTable.put("server_2", Collections.singletonList("segment_4"));
+
+    // Table not indexed
+    String query = "SELECT COUNT(*) FROM myTable_OFFLINE WHERE daysSinceEpoch = 5";
+    Assert.assertSame(timeSegmentPruner.prune(COMPILER.compileToBrokerRequest(query), routingTable), routingTable);
+
+    timeSegmentPruner.updateTable(OFFLINE_TABLE_NAME);
+    Map<String, List<String>> prunedRoutingTable =
+        timeSegmentPruner.prune(COMPILER.compileToBrokerRequest(query), routingTable);
+    Assert.assertEquals(prunedRoutingTable.size(), 3);
+    Assert.assertEquals(prunedRoutingTable.get("server_0"), Collections.singletonList("segment_0"));
+    Assert.assertEquals(prunedRoutingTable.get("server_1"), Collections.singletonList("segment_3"));
+    Assert.assertEquals(prunedRoutingTable.get("server_2"), Collections.singletonList("segment_4"));
+
+    query = "SELECT COUNT(*) FROM myTable_OFFLINE WHERE daysSinceEpoch BETWEEN 15 AND 25";
+    prunedRoutingTable = timeSegmentPruner.prune(COMPILER.compileToBrokerRequest(query), routingTable);
+    Assert.assertEquals(prunedRoutingTable.get("server_0"), Collections.singletonList("segment_1"));
+    Assert.assertEquals(prunedRoutingTable.get("server_1"), Arrays.asList("segment_2", "segment_3"));
+
+    // Queries without time predicate are not pruned
+    query = "SELECT COUNT(*) FROM myTable_OFFLINE WHERE column = 5";
+    Assert.assertSame(timeSegmentPruner.prune(COMPILER.compileToBrokerRequest(query), routingTable), routingTable);
+
+    // Routing table is not modified
+    Assert.assertEquals(routingTable.get("server_0"), Arrays.asList("segment_0", "segment_1"));
+
+    timeSegmentPruner.removeTable(OFFLINE_TABLE_NAME);
+    query = "SELECT COUNT(*) FROM myTable_OFFLINE WHERE daysSinceEpoch = 5";
+    Assert.assertSame(timeSegmentPruner.prune(COMPILER.compileToBrokerRequest(query), routingTable), routingTable);
+  }
+
+  private static void assertTimeRange(String query, long expectedStartTime, long expectedEndTime) {
+    long[] timeRange = getTimeRange(query);
+    Assert.assertEquals(timeRange[0], expectedStartTime, query);
+    Assert.assertEquals(timeRange[1], expectedEndTime, query);
+  }
+
+  private static long[] getTimeRange(String query) {
+    return TimeSegmentPruner.getTimeRange(
+        RequestUtils.generateFilterQueryTree(COMPILER.compileToBrokerRequest(query)), TIME_COLUMN);
+  }
+
+  /**
+   * Property store also supporting listing the children of a path.
+   */
+  private static class SegmentPropertyStore extends FakePropertyStore {
+    private final Map<String, ZNRecord> _records = new HashMap<>();
+
+    @Override
+    public void setContents(String path, ZNRecord contents) throws Exception {
+      super.setContents(path, contents);
+      _records.put(path, contents);
+    }
+
+    @Override
+    public boolean exists(String path, int options) {
+      for (String recordPath : _records.keySet()) {
+        if (recordPath.startsWith(path)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public List<ZNRecord> getChildren(String parentPath, List<Stat> stats, int options) {
+      List<ZNRecord> children = new ArrayList<>();
+      for (Map.Entry<String, ZNRecord> entry : _records.entrySet()) {
+        if (entry.getKey().startsWith(parentPath + "/")) {
+          children.add(entry.getValue());
+        }
+      }
+      return children;
+    }
+  }
+}
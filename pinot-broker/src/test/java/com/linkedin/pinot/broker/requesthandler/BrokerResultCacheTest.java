@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.QueryProcessingException;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class BrokerResultCacheTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final String OFFLINE_TABLE_NAME = "myTable_OFFLINE";
+  private static final String REALTIME_TABLE_NAME = "myTable_REALTIME";
+  private static final long MAX_SIZE_BYTES = 1024 * 1024;
+  private static final long OFFLINE_TTL_MS = 3_600_000L;
+
+  @Test
+  public void testOfflineResults() {
+    BrokerResultCache resultCache = new BrokerResultCache(MAX_SIZE_BYTES, OFFLINE_TTL_MS, 0L, null);
+    BrokerRequest brokerRequest = compile("SELECT COUNT(*) FROM myTable_OFFLINE WHERE foo = 'bar'");
+    Map<String, List<String>> routingTable = routingTable("server1", "segment1", "segment2");
+
+    BrokerResultCache.Key key = resultCache.getKey(brokerRequest, routingTable, null, null);
+    Assert.assertNotNull(key);
+    Assert.assertNull(resultCache.get(key));
+    resultCache.put(key, countResponse(100L), 1, 1);
+
+    // Same request on the same segments served by different servers
+    BrokerResultCache.Key sameKey = resultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE WHERE foo = 'bar'"),
+        routingTable("server2", "segment2", "segment1"), null, null);
+    BrokerResponse cachedResponse = resultCache.get(sameKey);
+    Assert.assertNotNull(cachedResponse);
+    Assert.assertEquals(cachedResponse.getNumDocsScanned(), 100L);
+    Assert.assertEquals(((BrokerResponseNative) cachedResponse).getAggregationResults().get(0).getValue(), "100");
+    // Each hit gets its own response
+    Assert.assertNotSame(resultCache.get(sameKey), cachedResponse);
+
+    // Different request
+    Assert.assertNull(resultCache.get(
+        resultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE WHERE foo = 'baz'"), routingTable, null,
+            null)));
+
+    // Different segments
+    Assert.assertNull(
+        resultCache.get(resultCache.getKey(brokerRequest, routingTable("server1", "segment1"), null, null)));
+
+    // Routing table change
+    resultCache.onRoutingTableChange(REALTIME_TABLE_NAME);
+    Assert.assertNotNull(resultCache.get(key));
+    resultCache.onRoutingTableChange(OFFLINE_TABLE_NAME);
+    Assert.assertNull(resultCache.get(key));
+    Assert.assertEquals(resultCache.size(), 0L);
+  }
+
+  @Test
+  public void testResultsNotCached() {
+    BrokerResultCache resultCache = new BrokerResultCache(MAX_SIZE_BYTES, OFFLINE_TTL_MS, 0L, null);
+    BrokerRequest brokerRequest = compile("SELECT COUNT(*) FROM myTable_OFFLINE");
+    Map<String, List<String>> routingTable = routingTable("server1", "segment1");
+    BrokerResultCache.Key key = resultCache.getKey(brokerRequest, routingTable, null, null);
+
+    // Missing server responses
+    resultCache.put(key, countResponse(100L), 2, 1);
+    Assert.assertNull(resultCache.get(key));
+
+    // Processing exceptions
+    BrokerResponseNative brokerResponse = countResponse(100L);
+    brokerResponse.addToExceptions(new QueryProcessingException(200, "error"));
+    resultCache.put(key, brokerResponse, 1, 1);
+    Assert.assertNull(resultCache.get(key));
+
+    // Trace enabled
+    brokerRequest.setEnableTrace(true);
+    Assert.assertNull(resultCache.getKey(brokerRequest, routingTable, null, null));
+
+    // Realtime tables without TTL
+    Assert.assertNull(
+        resultCache.getKey(null, null, compile("SELECT COUNT(*) FROM myTable_REALTIME"), routingTable));
+
+    // Disabled cache
+    BrokerResultCache disabledResultCache = new BrokerResultCache(0L, OFFLINE_TTL_MS, 0L, null);
+    Assert.assertFalse(disabledResultCache.isEnabled());
+    Assert.assertNull(disabledResultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE"), routingTable, null,
+        null));
+  }
+
+  @Test
+  public void testRealtimeResultsExpire()
+      throws Exception {
+    BrokerResultCache resultCache = new BrokerResultCache(MAX_SIZE_BYTES, OFFLINE_TTL_MS, 100L, null);
+    BrokerRequest offlineBrokerRequest = compile("SELECT COUNT(*) FROM myTable_OFFLINE");
+    BrokerRequest realtimeBrokerRequest = compile("SELECT COUNT(*) FROM myTable_REALTIME");
+    BrokerResultCache.Key key =
+        resultCache.getKey(offlineBrokerRequest, routingTable("server1", "segment1"), realtimeBrokerRequest,
+            routingTable("server2", "consumingSegment"));
+    Assert.assertNotNull(key);
+    resultCache.put(key, countResponse(100L), 2, 2);
+    Assert.assertNotNull(resultCache.get(key));
+
+    Thread.sleep(200L);
+    Assert.assertNull(resultCache.get(key));
+  }
+
+  @Test
+  public void testOfflineResultsExpire()
+      throws Exception {
+    BrokerResultCache resultCache = new BrokerResultCache(MAX_SIZE_BYTES, 100L, 0L, null);
+    BrokerResultCache.Key key =
+        resultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE"), routingTable("server1", "segment1"), null,
+            null);
+    Assert.assertNotNull(key);
+    resultCache.put(key, countResponse(100L), 1, 1);
+    Assert.assertNotNull(resultCache.get(key));
+
+    Thread.sleep(200L);
+    Assert.assertNull(resultCache.get(key));
+
+    // Offline tables without TTL
+    BrokerResultCache noTtlResultCache = new BrokerResultCache(MAX_SIZE_BYTES, 0L, 0L, null);
+    Assert.assertNull(
+        noTtlResultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE"), routingTable("server1", "segment1"),
+            null, null));
+  }
+
+  @Test
+  public void testResultComputedBeforeInvalidation() {
+    BrokerResultCache resultCache = new BrokerResultCache(MAX_SIZE_BYTES, OFFLINE_TTL_MS, 0L, null);
+    BrokerRequest brokerRequest = compile("SELECT COUNT(*) FROM myTable_OFFLINE");
+    Map<String, List<String>> routingTable = routingTable("server1", "segment1");
+
+    // Segment refreshed while the query is being processed
+    BrokerResultCache.Key staleKey = resultCache.getKey(brokerRequest, routingTable, null, null);
+    resultCache.invalidate(OFFLINE_TABLE_NAME);
+    resultCache.put(staleKey, countResponse(100L), 1, 1);
+    Assert.assertNull(resultCache.get(staleKey));
+    Assert.assertEquals(resultCache.size(), 0L);
+
+    // Invalidating another table does not affect the results
+    BrokerResultCache.Key key = resultCache.getKey(brokerRequest, routingTable, null, null);
+    resultCache.invalidate(REALTIME_TABLE_NAME);
+    resultCache.put(key, countResponse(200L), 1, 1);
+    BrokerResponse cachedResponse = resultCache.get(resultCache.getKey(brokerRequest, routingTable, null, null));
+    Assert.assertNotNull(cachedResponse);
+    Assert.assertEquals(cachedResponse.getNumDocsScanned(), 200L);
+  }
+
+  @Test
+  public void testSizeBound() {
+    BrokerResultCache resultCache = new BrokerResultCache(64 * 1024, OFFLINE_TTL_MS, 0L, null);
+    Map<String, List<String>> routingTable = routingTable("server1", "segment1");
+    BrokerResultCache.Key firstKey =
+        resultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE WHERE foo = 0"), routingTable, null, null);
+    resultCache.put(firstKey, countResponse(0L), 1, 1);
+    for (int i = 1; i < 1000; i++) {
+      BrokerResultCache.Key key =
+          resultCache.getKey(compile("SELECT COUNT(*) FROM myTable_OFFLINE WHERE foo = " + i), routingTable, null,
+              null);
+      resultCache.put(key, countResponse(i), 1, 1);
+    }
+    Assert.assertTrue(resultCache.size() < 1000L);
+    Assert.assertNull(resultCache.get(firstKey));
+  }
+
+  private static BrokerRequest compile(String query) {
+    return COMPILER.compileToBrokerRequest(query);
+  }
+
+  private static Map<String, List<String>> routingTable(String server, String... segments) {
+    Map<String, List<String>> routingTable = new HashMap<>();
+    routingTable.put(server, Arrays.asList(segments));
+    return routingTable;
+  }
+
+  private static BrokerResponseNative countResponse(long count) {
+    BrokerResponseNative brokerResponse = new BrokerResponseNative();
+    brokerResponse.setAggregationResults(
+        Collections.singletonList(new AggregationResult("count_star", Long.toString(count))));
+    brokerResponse.setNumDocsScanned(count);
+    return brokerResponse;
+  }
+}
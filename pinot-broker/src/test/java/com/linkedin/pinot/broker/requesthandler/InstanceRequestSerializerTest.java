@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.serde.SerDe;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class InstanceRequestSerializerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final long REQUEST_ID = 123L;
+  private static final String BROKER_ID = "Broker_localhost";
+  private static final long TIMEOUT_MS = 15000L;
+
+  @Test
+  public void testSameBytesAsInstanceRequest()
+      throws Exception {
+    StringBuilder inList = new StringBuilder("1");
+    for (int i = 2; i <= 1000; i++) {
+      inList.append(", ").append(i);
+    }
+    List<String> queries = Arrays.asList("SELECT COUNT(*) FROM myTable",
+        "SELECT SUM(met), MAX(met) FROM myTable WHERE foo = 'bar' AND baz BETWEEN 1 AND 10 GROUP BY dim TOP 20",
+        "SELECT * FROM myTable WHERE id IN (" + inList + ") ORDER BY foo LIMIT 100");
+    List<List<String>> segmentLists = new ArrayList<>();
+    segmentLists.add(Arrays.asList("segment_0", "segment_1", "segment_2"));
+    segmentLists.add(Collections.<String>emptyList());
+    segmentLists.add(null);
+
+    for (String query : queries) {
+      for (boolean enableTrace : new boolean[]{false, true}) {
+        BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+        brokerRequest.setEnableTrace(enableTrace);
+        InstanceRequestSerializer serializer = new InstanceRequestSerializer(brokerRequest, REQUEST_ID, BROKER_ID, TIMEOUT_MS);
+        for (List<String> segments : segmentLists) {
+          ByteBuf buffer = serializer.serialize(segments, PooledByteBufAllocator.DEFAULT);
+          byte[] bytes = new byte[buffer.readableBytes()];
+          buffer.readBytes(bytes);
+          buffer.release();
+
+          SerDe serDe = new SerDe(new TCompactProtocol.Factory());
+          InstanceRequest expected = new InstanceRequest();
+          expected.setRequestId(REQUEST_ID);
+          expected.setEnableTrace(enableTrace);
+          expected.setQuery(brokerRequest);
+          expected.setSearchSegments(segments);
+          expected.setBrokerId(BROKER_ID);
+          expected.setTimeoutMs(TIMEOUT_MS);
+          Assert.assertEquals(bytes, serDe.serialize(expected));
+
+          InstanceRequest actual = new InstanceRequest();
+          Assert.assertTrue(serDe.deserialize(actual, bytes));
+          Assert.assertEquals(actual, expected);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.requesthandler;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataSchema;
+import com.linkedin.pinot.core.common.datatable.DataTableBuilder;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SelectionLimitConditionTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final ServerInstance SERVER_INSTANCE = new ServerInstance("localhost:1111");
+
+  @Test
+  public void testForBrokerRequest() {
+    Assert.assertNotNull(
+        SelectionLimitCondition.forBrokerRequest(COMPILER.compileToBrokerRequest("SELECT * FROM table LIMIT 10")));
+    Assert.assertNull(SelectionLimitCondition.forBrokerRequest(
+        COMPILER.compileToBrokerRequest("SELECT * FROM table ORDER BY column LIMIT 10")));
+    Assert.assertNull(
+        SelectionLimitCondition.forBrokerRequest(COMPILER.compileToBrokerRequest("SELECT * FROM table LIMIT 0")));
+    Assert.assertNull(
+        SelectionLimitCondition.forBrokerRequest(COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM table")));
+  }
+
+  @Test
+  public void testOnResponse()
+      throws Exception {
+    SelectionLimitCondition condition =
+        SelectionLimitCondition.forBrokerRequest(COMPILER.compileToBrokerRequest("SELECT * FROM table LIMIT 10"));
+    Assert.assertNotNull(condition);
+    Assert.assertFalse(condition.isMet());
+
+    // Empty and invalid responses are ignored
+    Assert.assertFalse(condition.onResponse(SERVER_INSTANCE, new byte[0]));
+    Assert.assertFalse(condition.onResponse(SERVER_INSTANCE, new byte[]{1}));
+
+    Assert.assertFalse(condition.onResponse(SERVER_INSTANCE, getResponse(4)));
+    Assert.assertFalse(condition.onResponse(SERVER_INSTANCE, getResponse(0)));
+    Assert.assertFalse(condition.isMet());
+    Assert.assertTrue(condition.onResponse(SERVER_INSTANCE, getResponse(6)));
+    Assert.assertTrue(condition.isMet());
+  }
+
+  private static byte[] getResponse(int numRows)
+      throws Exception {
+    DataSchema dataSchema =
+        new DataSchema(new String[]{"column"}, new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT});
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(dataSchema);
+    for (int i = 0; i < numRows; i++) {
+      dataTableBuilder.startRow();
+      dataTableBuilder.setColumn(0, i);
+      dataTableBuilder.finishRow();
+    }
+    return dataTableBuilder.build().toBytes();
+  }
+}
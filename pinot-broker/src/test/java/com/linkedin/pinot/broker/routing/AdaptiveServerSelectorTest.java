@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.routing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class AdaptiveServerSelectorTest {
+  private static final String SERVER_0 = "Server_host0_8098";
+  private static final String SERVER_1 = "Server_host1_8098";
+  private static final String SERVER_2 = "Server_host2_8098";
+
+  @Test
+  public void testSelectRoutingTable() {
+    AdaptiveServerSelector selector = new AdaptiveServerSelector();
+    Map<String, List<String>> routingTable0 = createRoutingTable(SERVER_0, SERVER_1);
+    Map<String, List<String>> routingTable1 = createRoutingTable(SERVER_1, SERVER_2);
+    Map<String, List<String>> routingTable2 = createRoutingTable(SERVER_0, SERVER_2);
+    List<Map<String, List<String>>> routingTables = Arrays.asList(routingTable0, routingTable1, routingTable2);
+
+    // Without any stats, routing tables are selected randomly
+    Set<Map<String, List<String>>> selectedRoutingTables = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      selectedRoutingTables.add(selector.selectRoutingTable(routingTables));
+    }
+    Assert.assertEquals(selectedRoutingTables.size(), 3);
+
+    // Avoid the slow server
+    selector.onRequestSent(SERVER_0);
+    selector.onRequestSent(SERVER_1);
+    selector.onRequestSent(SERVER_2);
+    selector.onResponse(SERVER_0, 100L);
+    selector.onResponse(SERVER_1, 10L);
+    selector.onResponse(SERVER_2, 20L);
+    Assert.assertTrue(selector.getExpectedLatencyMs(SERVER_0) > selector.getExpectedLatencyMs(SERVER_2));
+    for (int i = 0; i < 100; i++) {
+      Assert.assertSame(selector.selectRoutingTable(routingTables), routingTable1);
+    }
+
+    // Avoid the overloaded server
+    for (int i = 0; i < 100; i++) {
+      selector.onRequestSent(SERVER_2);
+    }
+    Assert.assertSame(selector.selectRoutingTable(routingTables), routingTable0);
+    for (int i = 0; i < 100; i++) {
+      selector.onRequestCancelled(SERVER_2);
+    }
+    Assert.assertSame(selector.selectRoutingTable(routingTables), routingTable1);
+
+    // Avoid the failing server
+    for (int i = 0; i < 10; i++) {
+      selector.onRequestSent(SERVER_1);
+      selector.onError(SERVER_1);
+    }
+    Assert.assertTrue(selector.getExpectedLatencyMs(SERVER_1) > selector.getExpectedLatencyMs(SERVER_2));
+    Assert.assertSame(selector.selectRoutingTable(routingTables), routingTable2);
+  }
+
+  private static Map<String, List<String>> createRoutingTable(String... servers) {
+    Map<String, List<String>> routingTable = new HashMap<>();
+    for (String server : servers) {
+      routingTable.put(server, Collections.singletonList("segment_" + server));
+    }
+    return routingTable;
+  }
+}
@@ -94,6 +94,50 @@ public class RoutingTableTest {
   }
 
 
+  @Test
+  public void testReplicaRoutingTable() throws Exception {
+    // Replicas are collected from the pre-computed routing tables, use enough of them to contain all the replicas
+    BaseConfiguration configuration = new BaseConfiguration();
+    configuration.setProperty("numOfRoutingTables", 100);
+    HelixExternalViewBasedRouting routingTable = new HelixExternalViewBasedRouting(null, null, configuration);
+    List<InstanceConfig> instanceConfigs = generateInstanceConfigs("dataServer_instance", 0, 2);
+
+    ExternalView externalView = new ExternalView("testResource0_OFFLINE");
+    externalView.setState("segment0", "dataServer_instance_0", "ONLINE");
+    externalView.setState("segment0", "dataServer_instance_1", "ONLINE");
+    externalView.setState("segment1", "dataServer_instance_0", "ONLINE");
+    externalView.setState("segment1", "dataServer_instance_2", "ONLINE");
+    externalView.setState("segment2", "dataServer_instance_0", "ONLINE");
+    routingTable.markDataResourceOnline(generateTableConfig("testResource0_OFFLINE"), externalView, instanceConfigs);
+
+    // Segments are routed to the single replica serving all of them
+    Map<String, List<String>> replicaRoutingTable = routingTable.getReplicaRoutingTable("testResource0_OFFLINE",
+        "dataServer_instance_0", Arrays.asList("segment0"));
+    Assert.assertNotNull(replicaRoutingTable);
+    Assert.assertEquals(replicaRoutingTable.size(), 1);
+    Assert.assertEquals(replicaRoutingTable.get("dataServer_instance_1"), Arrays.asList("segment0"));
+    replicaRoutingTable = routingTable.getReplicaRoutingTable("testResource0_OFFLINE", "dataServer_instance_1",
+        Arrays.asList("segment0"));
+    Assert.assertNotNull(replicaRoutingTable);
+    Assert.assertEquals(replicaRoutingTable.get("dataServer_instance_0"), Arrays.asList("segment0"));
+
+    // No replica serving all segments, or no replica at all
+    Assert.assertNull(routingTable.getReplicaRoutingTable("testResource0_OFFLINE", "dataServer_instance_0",
+        Arrays.asList("segment0", "segment1")));
+    Assert.assertNull(routingTable.getReplicaRoutingTable("testResource0_OFFLINE", "dataServer_instance_0",
+        Arrays.asList("segment2")));
+    Assert.assertNull(routingTable.getReplicaRoutingTable("unknownTable_OFFLINE", "dataServer_instance_0",
+        Arrays.asList("segment0")));
+
+    // Replicas are recomputed with the routing table
+    externalView.setState("segment2", "dataServer_instance_2", "ONLINE");
+    routingTable.markDataResourceOnline(generateTableConfig("testResource0_OFFLINE"), externalView, instanceConfigs);
+    replicaRoutingTable = routingTable.getReplicaRoutingTable("testResource0_OFFLINE", "dataServer_instance_0",
+        Arrays.asList("segment1", "segment2"));
+    Assert.assertNotNull(replicaRoutingTable);
+    Assert.assertEquals(replicaRoutingTable.get("dataServer_instance_2"), Arrays.asList("segment1", "segment2"));
+  }
+
   @Test
   public void testTimeBoundaryRegression() throws Exception {
     final FakePropertyStore propertyStore = new FakePropertyStore();
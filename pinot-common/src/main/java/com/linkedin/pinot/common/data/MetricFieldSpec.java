@@ -29,7 +29,8 @@ import org.codehaus.jackson.annotate.JsonIgnoreProperties;
  * <p>Different with {@link DimensionFieldSpec}, inside <code>MetricFieldSpec</code> we allow user defined
  * {@link DerivedMetricType} and <code>fieldSize</code>.
  * <p>{@link DerivedMetricType} is used when the metric field is derived from some other fields (e.g. HLL).
- * <p><code>fieldSize</code> is used to mark the size of the value when the size is not constant (e.g. STRING).
+ * <p><code>fieldSize</code> is used to mark the size of the value when the size is not constant (e.g. STRING). For
+ * BYTES sketch metrics, it is the maximum size of the serialized sketch.
  */
 @SuppressWarnings("unused")
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -80,7 +81,7 @@ public final class MetricFieldSpec extends FieldSpec {
   // Required by JSON de-serializer. DO NOT REMOVE.
   public void setFieldSize(int fieldSize) {
     Preconditions.checkArgument(fieldSize > 0, "Field size: " + fieldSize + " is not a positive number.");
-    if (_dataType != null && _dataType != DataType.STRING) {
+    if (_dataType != null && _dataType != DataType.STRING && _dataType != DataType.BYTES) {
       Preconditions.checkArgument(fieldSize == _dataType.size(),
           "Field size: " + fieldSize + " does not match data type: " + _dataType);
     }
@@ -132,15 +133,19 @@ public final class MetricFieldSpec extends FieldSpec {
    * {@link com.linkedin.pinot.common.data.FieldSpec.DataType} for storage, and converted back when needed.
    */
   public enum DerivedMetricType {
-    // HLL derived metric type.
-    HLL
+    // HLL derived metric type (stored as STRING or BYTES).
+    HLL,
+    // Pre-aggregated TDigest sketch (stored as BYTES).
+    TDIGEST,
+    // Pre-aggregated theta sketch (stored as BYTES).
+    THETA_SKETCH
   }
 
   @Nonnull
   @Override
   public JsonObject toJsonObject() {
     JsonObject jsonObject = super.toJsonObject();
-    if (_dataType == DataType.STRING && _fieldSize != UNDEFINED_METRIC_SIZE) {
+    if ((_dataType == DataType.STRING || _dataType == DataType.BYTES) && _fieldSize != UNDEFINED_METRIC_SIZE) {
       jsonObject.addProperty("fieldSize", _fieldSize);
     }
     if (_derivedMetricType != null) {
@@ -83,7 +83,22 @@ public enum BrokerMeter implements AbstractMetrics.Meter {
   GROUP_BY_SIZE("queries", false),
   TOTAL_SERVER_RESPONSE_SIZE("queries", false),
 
-  QUERY_QUOTA_EXCEEDED("exceptions", false);
+  QUERY_QUOTA_EXCEEDED("exceptions", false),
+
+  // These metrics track the hit rate of the broker result cache.
+  RESULT_CACHE_HITS("queries", false),
+  RESULT_CACHE_MISSES("queries", false),
+
+  // Number of segments and servers removed from the routing table by the broker side time based segment pruning
+  SEGMENTS_PRUNED_BY_TIME("segments", false),
+  SERVERS_PRUNED_BY_TIME("servers", false),
+
+  // Number of server requests hedged to replica servers, and number of those answered first by the replica servers
+  HEDGED_REQUESTS("requests", false),
+  HEDGED_RESPONSES_USED("responses", false),
+
+  // Number of selection only queries which stopped gathering server responses once enough rows were gathered
+  SELECTION_QUERIES_GATHERED_EARLY("queries", false);
 
 
   private final String brokerMeterName;
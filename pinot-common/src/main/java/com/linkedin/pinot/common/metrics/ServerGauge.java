@@ -36,7 +36,8 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
   REALTIME_OFFHEAP_MEMORY_USED("bytes", false),
   RUNNING_QUERIES("runningQueries", false),
   NUM_SEGMENTS_SEARCHED("numSegmentsSearched", false),
-  REALTIME_SEGMENT_PARTITION_WIDTH("realtimeSegmentPartitionWidth", false);
+  REALTIME_SEGMENT_PARTITION_WIDTH("realtimeSegmentPartitionWidth", false),
+  HOT_COLUMN_CACHE_SIZE_BYTES("bytes", true);
 
   private final String gaugeName;
   private final String unit;
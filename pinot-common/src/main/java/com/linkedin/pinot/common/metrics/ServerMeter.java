@@ -28,6 +28,11 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   REQUEST_DESERIALIZATION_EXCEPTIONS("exceptions", true),
   RESPONSE_SERIALIZATION_EXCEPTIONS("exceptions", true),
   QUERY_EXECUTION_EXCEPTIONS("exceptions", false),
+  QUERIES_CANCELLED("queries", false),
+  QUERIES_DROPPED_PAST_DEADLINE("queries", false),
+  QUERIES_KILLED_MEMORY_LIMIT("queries", false),
+  QUERY_WORKER_CPU_TIME_NS("nanoseconds", false),
+  QUERY_WORKER_ALLOCATED_BYTES("bytes", false),
   HELIX_ZOOKEEPER_RECONNECTS("reconnects", true),
   DELETED_SEGMENT_COUNT("segments", false),
   REALTIME_ROWS_CONSUMED("rows", true),
@@ -46,7 +51,18 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   LLC_CONTROLLER_RESPONSE_KEEP("messages", false),
   LLC_CONTROLLER_RESPONSE_NOT_LEADER("messages", false),
   LLC_CONTROLLER_RESPONSE_FAILED("messages", false),
-  LLC_CONTROLLER_RESPONSE_COMMIT_SUCCESS("messages", false);
+  LLC_CONTROLLER_RESPONSE_COMMIT_SUCCESS("messages", false),
+  HOT_COLUMN_CACHE_HITS("lookups", true),
+  HOT_COLUMN_CACHE_MISSES("lookups", true),
+  HOT_COLUMN_CACHE_PROMOTIONS("columns", true),
+  HOT_COLUMN_CACHE_EVICTIONS("columns", true),
+  DECOMPRESSED_CHUNK_CACHE_HITS("chunks", true),
+  DECOMPRESSED_CHUNK_CACHE_MISSES("chunks", true),
+  SEGMENT_RESULT_CACHE_HITS("segments", true),
+  SEGMENT_RESULT_CACHE_MISSES("segments", true),
+  FILTER_BITMAP_CACHE_HITS("predicates", true),
+  FILTER_BITMAP_CACHE_MISSES("predicates", true),
+  FILTER_BITMAP_CACHE_EVICTIONS("bitmaps", true);
 
   private final String meterName;
   private final String unit;
@@ -22,6 +22,7 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
 import com.linkedin.pinot.common.utils.request.RequestUtils;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -41,6 +42,15 @@ public class ServerQueryRequest {
 
   private int _segmentCountAfterPruning = -1;
 
+  // Set once the broker no longer waits for the response, checked by the operators processing the query
+  private volatile boolean _cancelled = false;
+
+  // Bytes allocated by the threads processing the query, only accounted once memory tracking is enabled
+  private final AtomicLong _allocatedBytes = new AtomicLong();
+  private volatile boolean _memoryTracked = false;
+  private volatile long _maxAllocatedBytes = Long.MAX_VALUE;
+  private volatile boolean _memoryLimitExceeded = false;
+
   public ServerQueryRequest(@Nonnull InstanceRequest instanceRequest, @Nonnull ServerMetrics serverMetrics) {
     _instanceRequest = instanceRequest;
     _serverMetrics = serverMetrics;
@@ -110,4 +120,70 @@ public class ServerQueryRequest {
   public void setSegmentCountAfterPruning(int segmentCountAfterPruning) {
     _segmentCountAfterPruning = segmentCountAfterPruning;
   }
+
+  /**
+   * Cancel the query, so that it stops being processed at the next block boundary.
+   */
+  public void cancel() {
+    _cancelled = true;
+  }
+
+  /**
+   * Return whether the query has been cancelled.
+   */
+  public boolean isCancelled() {
+    return _cancelled;
+  }
+
+  /**
+   * Enable the accounting of the bytes allocated while processing the query.
+   *
+   * @param maxAllocatedBytes the query is cancelled once it allocates more bytes, no limit if not positive
+   */
+  public void enableMemoryTracking(long maxAllocatedBytes) {
+    _maxAllocatedBytes = maxAllocatedBytes > 0 ? maxAllocatedBytes : Long.MAX_VALUE;
+    _memoryTracked = true;
+  }
+
+  /**
+   * Return whether the bytes allocated while processing the query are accounted.
+   */
+  public boolean isMemoryTracked() {
+    return _memoryTracked;
+  }
+
+  /**
+   * Add bytes allocated while processing the query, and cancel the query if it exceeds its memory limit.
+   *
+   * @return total bytes allocated while processing the query
+   */
+  public long addAllocatedBytes(long allocatedBytes) {
+    long totalAllocatedBytes = _allocatedBytes.addAndGet(allocatedBytes);
+    if (totalAllocatedBytes > _maxAllocatedBytes && !_memoryLimitExceeded) {
+      _memoryLimitExceeded = true;
+      cancel();
+    }
+    return totalAllocatedBytes;
+  }
+
+  /**
+   * Get the total bytes allocated while processing the query.
+   */
+  public long getAllocatedBytes() {
+    return _allocatedBytes.get();
+  }
+
+  /**
+   * Get the maximum bytes the query can allocate before being cancelled.
+   */
+  public long getMaxAllocatedBytes() {
+    return _maxAllocatedBytes;
+  }
+
+  /**
+   * Return whether the query has been cancelled because it exceeded its memory limit.
+   */
+  public boolean isMemoryLimitExceeded() {
+    return _memoryLimitExceeded;
+  }
 }
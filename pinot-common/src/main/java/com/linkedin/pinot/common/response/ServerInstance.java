@@ -141,6 +141,10 @@ public class ServerInstance implements Comparable<ServerInstance> {
     return _ipAddress;
   }
 
+  public int getSeq() {
+    return _seq;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
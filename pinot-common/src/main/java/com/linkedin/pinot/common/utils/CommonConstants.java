@@ -208,6 +208,15 @@ public class CommonConstants {
     public static final String CONFIG_OF_BROKER_TIMEOUT_MS = "pinot.broker.timeoutMs";
     public static final long DEFAULT_BROKER_TIMEOUT_MS = 10_000L;
     public static final String CONFIG_OF_BROKER_ID = "pinot.broker.id";
+    // Broker result cache is disabled when the max size is 0
+    public static final String CONFIG_OF_BROKER_RESULT_CACHE_MAX_SIZE_BYTES = "pinot.broker.resultCache.maxSizeBytes";
+    public static final long DEFAULT_BROKER_RESULT_CACHE_MAX_SIZE_BYTES = 0L;
+    // Results of queries hitting offline tables are not cached when the TTL is 0
+    public static final String CONFIG_OF_BROKER_RESULT_CACHE_OFFLINE_TTL_MS = "pinot.broker.resultCache.offlineTtlMs";
+    public static final long DEFAULT_BROKER_RESULT_CACHE_OFFLINE_TTL_MS = 3_600_000L;
+    // Results of queries hitting realtime tables are not cached when the TTL is 0
+    public static final String CONFIG_OF_BROKER_RESULT_CACHE_REALTIME_TTL_MS = "pinot.broker.resultCache.realtimeTtlMs";
+    public static final long DEFAULT_BROKER_RESULT_CACHE_REALTIME_TTL_MS = 0L;
     public static final BrokerResponseFactory.ResponseType DEFAULT_BROKER_RESPONSE_TYPE =
         BrokerResponseFactory.ResponseType.BROKER_RESPONSE_TYPE_NATIVE;
     public static class Request {
@@ -17,6 +17,7 @@ package com.linkedin.pinot.common.utils.request;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
@@ -175,13 +176,19 @@ public class RequestUtils {
 
   public static final Set<String> STAR_TREE_AGGREGATION_FUNCTIONS = ImmutableSet.of("sum", "fasthll");
 
+  // Aggregation functions that merge pre-aggregated sketches, only fit for star tree index on BYTES metric columns
+  // NOTE: star tree builder only accepts sketch metrics for BYTES data type, so they can be merged across aggregated docs
+  public static final Set<String> STAR_TREE_SKETCH_AGGREGATION_FUNCTIONS =
+      ImmutableSet.of("percentiletdigest", "distinctcountthetasketch");
+
   /**
    * Return whether the query is fit for star tree index.
    * <p>The query is fit for star tree index if the following conditions are met:
    * <ul>
    *   <li>Segment contains star tree</li>
    *   <li>BrokerRequest debug options have not explicitly disabled use of star tree</li>
-   *   <li>Query is aggregation/group-by with all aggregation functions in {@link #STAR_TREE_AGGREGATION_FUNCTIONS}</li>
+   *   <li>Query is aggregation/group-by with all aggregation functions in {@link #STAR_TREE_AGGREGATION_FUNCTIONS}, or
+   *   in {@link #STAR_TREE_SKETCH_AGGREGATION_FUNCTIONS} without extra arguments on BYTES metric column</li>
    *   <li>The aggregations must apply on metric column</li>
    *   <li>All predicate columns and group-by columns are materialized dimensions</li>
    *   <li>All predicates are conjoined by AND</li>
@@ -210,11 +217,19 @@ public class RequestUtils {
       return false;
     }
     for (AggregationInfo aggregationInfo : aggregationsInfo) {
-      if (!STAR_TREE_AGGREGATION_FUNCTIONS.contains(aggregationInfo.getAggregationType().toLowerCase())) {
+      String column = aggregationInfo.getAggregationParams().get("column").trim();
+      if (!metrics.contains(column)) {
         return false;
       }
-      if (!metrics.contains(aggregationInfo.getAggregationParams().get("column").trim())) {
-        return false;
+      String aggregationType = aggregationInfo.getAggregationType().toLowerCase();
+      if (!STAR_TREE_AGGREGATION_FUNCTIONS.contains(aggregationType)) {
+        // Percentile is encoded in the function name (e.g. percentileTDigest95)
+        String functionName = StringUtils.stripEnd(aggregationType, "0123456789");
+        if (!STAR_TREE_SKETCH_AGGREGATION_FUNCTIONS.contains(functionName)
+            || aggregationInfo.getAggregationParams().size() != 1
+            || segmentMetadata.getSchema().getFieldSpecFor(column).getDataType() != FieldSpec.DataType.BYTES) {
+          return false;
+        }
       }
     }
 
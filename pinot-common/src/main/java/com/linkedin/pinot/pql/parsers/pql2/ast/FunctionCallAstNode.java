@@ -18,6 +18,8 @@ package com.linkedin.pinot.pql.parsers.pql2.ast;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.utils.EqualityUtils;
 import com.linkedin.pinot.pql.parsers.Pql2CompilationException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -72,6 +74,7 @@ public class FunctionCallAstNode extends BaseAstNode {
 
   public AggregationInfo buildAggregationInfo() {
     String identifier = null;
+    List<String> arguments = new ArrayList<>();
     for (AstNode astNode : getChildren()) {
       if (astNode instanceof IdentifierAstNode) {
         IdentifierAstNode node = (IdentifierAstNode) astNode;
@@ -83,9 +86,14 @@ public class FunctionCallAstNode extends BaseAstNode {
       } else if (astNode instanceof StarExpressionAstNode) {
         identifier = "*";
       } else if (astNode instanceof StringLiteralAstNode) {
-        // Pinot quirk: Passing a string as an aggregation function is probably a column name
         StringLiteralAstNode node = (StringLiteralAstNode) astNode;
-        identifier = node.getText();
+        if (identifier == null) {
+          // Pinot quirk: Passing a string as an aggregation function is probably a column name
+          identifier = node.getText();
+        } else {
+          // String literals after the column are additional arguments of the aggregation function
+          arguments.add(node.getText());
+        }
       } else {
         throw new Pql2CompilationException("Child node of aggregation function is not an identifier, star or string literal.");
       }
@@ -102,6 +110,9 @@ public class FunctionCallAstNode extends BaseAstNode {
     AggregationInfo aggregationInfo = new AggregationInfo();
     aggregationInfo.setAggregationType(function);
     aggregationInfo.putToAggregationParams("column", identifier);
+    for (int i = 0; i < arguments.size(); i++) {
+      aggregationInfo.putToAggregationParams("arg" + (i + 1), arguments.get(i));
+    }
     aggregationInfo.setIsInSelectList(_isInSelectList);
 
     return aggregationInfo;
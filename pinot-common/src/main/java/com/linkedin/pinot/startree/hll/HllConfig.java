@@ -18,6 +18,7 @@ package com.linkedin.pinot.startree.hll;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.google.common.base.Preconditions;
 import com.linkedin.pinot.common.config.ConfigKey;
+import com.linkedin.pinot.common.data.FieldSpec;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +40,9 @@ import static com.linkedin.pinot.common.utils.EqualityUtils.isSameReference;
  *
  * If columnsToDeriveHllFields are specified and not empty,
  * segment builder will generate corresponding hll derived fields on the fly.
+ *
+ * Derived fields are stored as STRING by default. With hllDeriveColumnDataType set to BYTES, the serialized hll is
+ * stored as is, which avoids the char conversion when merging hlls at query time.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class HllConfig {
@@ -51,6 +55,9 @@ public class HllConfig {
   @ConfigKey("hllDeriveColumnSuffix")
   private String hllDeriveColumnSuffix = HllConstants.DEFAULT_HLL_DERIVE_COLUMN_SUFFIX;
 
+  @ConfigKey("hllDeriveColumnDataType")
+  private FieldSpec.DataType hllDeriveColumnDataType = FieldSpec.DataType.STRING;
+
   private Set<String> columnsToDeriveHllFields = new HashSet<>();
 
   private transient Map<String, String> derivedHllFieldToOriginMap;
@@ -107,6 +114,17 @@ public class HllConfig {
     this.hllDeriveColumnSuffix = hllDeriveColumnSuffix;
   }
 
+  public FieldSpec.DataType getHllDeriveColumnDataType() {
+    return hllDeriveColumnDataType;
+  }
+
+  public void setHllDeriveColumnDataType(FieldSpec.DataType hllDeriveColumnDataType) {
+    Preconditions.checkArgument(
+        hllDeriveColumnDataType == FieldSpec.DataType.STRING || hllDeriveColumnDataType == FieldSpec.DataType.BYTES,
+        "HLL derived field can only be stored as STRING or BYTES.");
+    this.hllDeriveColumnDataType = hllDeriveColumnDataType;
+  }
+
   public Set<String> getColumnsToDeriveHllFields() {
     return columnsToDeriveHllFields;
   }
@@ -168,6 +186,7 @@ public class HllConfig {
     return isEqual(hllLog2m, hllConfig.hllLog2m) &&
         isEqual(hllFieldSize, hllConfig.hllFieldSize) &&
         isEqual(hllDeriveColumnSuffix, hllConfig.hllDeriveColumnSuffix) &&
+        isEqual(hllDeriveColumnDataType, hllConfig.hllDeriveColumnDataType) &&
         isEqual(columnsToDeriveHllFields, hllConfig.columnsToDeriveHllFields) &&
         isEqual(derivedHllFieldToOriginMap, hllConfig.derivedHllFieldToOriginMap);
   }
@@ -177,6 +196,7 @@ public class HllConfig {
     int result = hashCodeOf(hllLog2m);
     result = hashCodeOf(result, hllFieldSize);
     result = hashCodeOf(result, hllDeriveColumnSuffix);
+    result = hashCodeOf(result, hllDeriveColumnDataType);
     result = hashCodeOf(result, columnsToDeriveHllFields);
     result = hashCodeOf(result, derivedHllFieldToOriginMap);
     return result;
@@ -24,6 +24,7 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.Collections;
+import java.util.Map;
 
 
 /**
@@ -126,6 +127,25 @@ public class Pql2CompilerTest {
     Assert.fail("Query " + query + " compiled successfully but was expected to fail compilation");
   }
 
+  @Test
+  public void testAggregationFunctionArguments() {
+    Pql2Compiler compiler = new Pql2Compiler();
+
+    BrokerRequest brokerRequest = compiler.compileToBrokerRequest(
+        "select distinctCountThetaSketch(userId, 'country = ''US''', 'SET_UNION($1)') from vegetables");
+    Map<String, String> aggregationParams = brokerRequest.getAggregationsInfo().get(0).getAggregationParams();
+    Assert.assertEquals(aggregationParams.get("column"), "userId");
+    Assert.assertEquals(aggregationParams.get("arg1"), "country = 'US'");
+    Assert.assertEquals(aggregationParams.get("arg2"), "SET_UNION($1)");
+    Assert.assertFalse(aggregationParams.containsKey("arg3"));
+
+    // A string literal as the first argument is still treated as the column
+    brokerRequest = compiler.compileToBrokerRequest("select sum('foo') from vegetables");
+    aggregationParams = brokerRequest.getAggregationsInfo().get(0).getAggregationParams();
+    Assert.assertEquals(aggregationParams.get("column"), "foo");
+    Assert.assertFalse(aggregationParams.containsKey("arg1"));
+  }
+
   @Test
   public void testCStyleInequalityOperator() {
     Pql2Compiler compiler = new Pql2Compiler();
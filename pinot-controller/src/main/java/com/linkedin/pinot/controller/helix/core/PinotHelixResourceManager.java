@@ -1628,6 +1628,20 @@ public class PinotHelixResourceManager {
       LOGGER.warn("Unable to send segment refresh message for {} of table {}, nMsgs={}", segmentName, offlineTableName,
           nMsgsSent);
     }
+
+    // Send the refresh message to the brokers serving the table as well, so that they invalidate their cached results
+    // (the external view does not change when a segment is refreshed)
+    Criteria brokerRecipientCriteria = new Criteria();
+    brokerRecipientCriteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+    brokerRecipientCriteria.setInstanceName("%");
+    brokerRecipientCriteria.setResource(CommonConstants.Helix.BROKER_RESOURCE_INSTANCE);
+    brokerRecipientCriteria.setPartition(offlineTableName);
+    brokerRecipientCriteria.setSessionSpecific(true);
+    SegmentRefreshMessage brokerRefreshMessage =
+        new SegmentRefreshMessage(offlineTableName, segmentName, segmentZKMetadata.getCrc());
+    int nBrokerMsgsSent = messagingService.send(brokerRecipientCriteria, brokerRefreshMessage, null, timeoutMs);
+    LOGGER.info("Sent {} msgs to brokers for refreshed segment {} of table {}", nBrokerMsgsSent, segmentName,
+        rawTableName);
   }
 
   /**
@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.common;
 
 import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 /**
@@ -137,4 +138,9 @@ public abstract class BaseBlockValSet implements BlockValSet {
   public int[] getNumMVEntries() {
     throw new UnsupportedOperationException();
   }
+
+  @Override
+  public Dictionary getDictionary() {
+    return null;
+  }
 }
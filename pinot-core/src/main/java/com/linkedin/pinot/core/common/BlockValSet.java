@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.common;
 
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 public interface BlockValSet {
@@ -209,4 +210,12 @@ public interface BlockValSet {
    * @return Array of number of MV entries
    */
   int[] getNumMVEntries();
+
+  /**
+   * Returns the dictionary for the dictionary ids of the column, or null if the values are not dictionary encoded
+   * (e.g. no-dictionary columns and transformed values).
+   *
+   * @return Dictionary of the column
+   */
+  Dictionary getDictionary();
 }
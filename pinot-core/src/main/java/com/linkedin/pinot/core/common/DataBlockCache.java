@@ -18,6 +18,7 @@ package com.linkedin.pinot.core.common;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.utils.EqualityUtils;
 import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -339,6 +340,16 @@ public class DataBlockCache {
     return numValues;
   }
 
+  /**
+   * Get the dictionary for a column.
+   *
+   * @param column Column name
+   * @return Dictionary of the column, or null if the column is not dictionary encoded
+   */
+  public Dictionary getDictionary(String column) {
+    return _dataFetcher.getDictionary(column);
+  }
+
   /**
    * Helper class to store pair of column name and data type.
    */
@@ -74,6 +74,16 @@ public class DataFetcher {
     _reusableMVDictIds = new int[maxNumMultiValues];
   }
 
+  /**
+   * Get the dictionary for a column.
+   *
+   * @param column Column name
+   * @return Dictionary of the column, or null if the column is not dictionary encoded
+   */
+  public Dictionary getDictionary(String column) {
+    return _dictionaryMap.get(column);
+  }
+
   /**
    * SINGLE-VALUED COLUMN API
    */
@@ -26,4 +26,11 @@ public abstract class DataSource extends BaseOperator {
   public abstract InvertedIndexReader getInvertedIndex();
 
   public abstract Dictionary getDictionary();
+
+  /**
+   * Optional operation. Asynchronously loads the forward index data for documents in range [startDocId, endDocId]
+   * (inclusive) that is about to be scanned. Does nothing by default.
+   */
+  public void prefetch(int startDocId, int endDocId) {
+  }
 }
@@ -35,4 +35,18 @@ public class DataTableFactory {
         throw new UnsupportedOperationException("Unsupported data table version: " + version);
     }
   }
+
+  /**
+   * Get the number of rows of a serialized data table by reading its header only.
+   */
+  public static int getNumRows(byte[] bytes) {
+    ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    int version = byteBuffer.getInt();
+    switch (version) {
+      case 2:
+        return byteBuffer.getInt();
+      default:
+        throw new UnsupportedOperationException("Unsupported data table version: " + version);
+    }
+  }
 }
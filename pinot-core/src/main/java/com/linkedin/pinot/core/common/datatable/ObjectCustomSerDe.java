@@ -20,10 +20,16 @@ import com.clearspring.analytics.stream.quantile.TDigest;
 import com.linkedin.pinot.core.query.aggregation.function.customobject.AvgPair;
 import com.linkedin.pinot.core.query.aggregation.function.customobject.MinMaxRangePair;
 import com.linkedin.pinot.core.query.aggregation.function.customobject.QuantileDigest;
+import com.linkedin.pinot.core.query.aggregation.function.customobject.ThetaSketch;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import it.unimi.dsi.fastutil.doubles.Double2LongMap;
+import it.unimi.dsi.fastutil.doubles.Double2LongOpenHashMap;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -74,6 +80,16 @@ public class ObjectCustomSerDe {
       return serializeIntOpenHashSet((IntOpenHashSet) object);
     } else if (object instanceof TDigest) {
       return serializeTDigest((TDigest) object);
+    } else if (object instanceof LongOpenHashSet) {
+      return serializeLongOpenHashSet((LongOpenHashSet) object);
+    } else if (object instanceof ObjectOpenHashSet) {
+      return serializeObjectOpenHashSet((ObjectOpenHashSet<Object>) object);
+    } else if (object instanceof ThetaSketch) {
+      return ((ThetaSketch) object).toBytes();
+    } else if (object instanceof ThetaSketch[]) {
+      return serializeThetaSketchArray((ThetaSketch[]) object);
+    } else if (object instanceof Double2LongOpenHashMap) {
+      return serializeDouble2LongOpenHashMap((Double2LongOpenHashMap) object);
     } else {
       throw new IllegalArgumentException("Illegal class for serialization: " + object.getClass().getName());
     }
@@ -109,6 +125,16 @@ public class ObjectCustomSerDe {
         return (T) deserializeIntOpenHashSet(bytes);
       case TDigest:
         return (T) TDigest.fromBytes(ByteBuffer.wrap(bytes));
+      case LongOpenHashSet:
+        return (T) deserializeLongOpenHashSet(ByteBuffer.wrap(bytes));
+      case ObjectOpenHashSet:
+        return (T) deserializeObjectOpenHashSet(ByteBuffer.wrap(bytes));
+      case ThetaSketch:
+        return (T) ThetaSketch.fromBytes(bytes);
+      case ThetaSketchArray:
+        return (T) deserializeThetaSketchArray(ByteBuffer.wrap(bytes));
+      case Double2LongOpenHashMap:
+        return (T) deserializeDouble2LongOpenHashMap(ByteBuffer.wrap(bytes));
       default:
         throw new IllegalArgumentException("Illegal object type for de-serialization: " + objectType);
     }
@@ -147,6 +173,16 @@ public class ObjectCustomSerDe {
         return (T) deserializeIntOpenHashSet(byteBuffer);
       case TDigest:
         return (T) TDigest.fromBytes(byteBuffer);
+      case LongOpenHashSet:
+        return (T) deserializeLongOpenHashSet(byteBuffer);
+      case ObjectOpenHashSet:
+        return (T) deserializeObjectOpenHashSet(byteBuffer);
+      case ThetaSketch:
+        return (T) ThetaSketch.fromByteBuffer(byteBuffer);
+      case ThetaSketchArray:
+        return (T) deserializeThetaSketchArray(byteBuffer);
+      case Double2LongOpenHashMap:
+        return (T) deserializeDouble2LongOpenHashMap(byteBuffer);
       default:
         throw new IllegalArgumentException("Illegal object type for de-serialization: " + objectType);
     }
@@ -191,6 +227,16 @@ public class ObjectCustomSerDe {
       return ObjectType.IntOpenHashSet;
     } else if (object instanceof TDigest) {
       return ObjectType.TDigest;
+    } else if (object instanceof LongOpenHashSet) {
+      return ObjectType.LongOpenHashSet;
+    } else if (object instanceof ObjectOpenHashSet) {
+      return ObjectType.ObjectOpenHashSet;
+    } else if (object instanceof ThetaSketch) {
+      return ObjectType.ThetaSketch;
+    } else if (object instanceof ThetaSketch[]) {
+      return ObjectType.ThetaSketchArray;
+    } else if (object instanceof Double2LongOpenHashMap) {
+      return ObjectType.Double2LongOpenHashMap;
     } else {
       throw new IllegalArgumentException("No object type matches class: " + object.getClass().getName());
     }
@@ -396,4 +442,153 @@ public class ObjectCustomSerDe {
   private static IntOpenHashSet deserializeIntOpenHashSet(byte[] bytes) {
     return deserializeIntOpenHashSet(ByteBuffer.wrap(bytes));
   }
+
+  /**
+   * Helper method to serialize a {@link LongOpenHashSet}.
+   */
+  private static byte[] serializeLongOpenHashSet(LongOpenHashSet longOpenHashSet) {
+    int size = longOpenHashSet.size();
+    ByteBuffer byteBuffer =
+        ByteBuffer.allocate(V1Constants.Numbers.INTEGER_SIZE + (size * V1Constants.Numbers.LONG_SIZE));
+
+    // Write the size of the set.
+    byteBuffer.putInt(size);
+
+    LongIterator longIterator = longOpenHashSet.iterator();
+    while (longIterator.hasNext()) {
+      byteBuffer.putLong(longIterator.nextLong());
+    }
+
+    return byteBuffer.array();
+  }
+
+  /**
+   * Helper method to de-serialize a {@link LongOpenHashSet} from a ByteBuffer.
+   */
+  private static LongOpenHashSet deserializeLongOpenHashSet(ByteBuffer byteBuffer) {
+    int size = byteBuffer.getInt();
+    LongOpenHashSet longOpenHashSet = new LongOpenHashSet(size);
+    for (int i = 0; i < size; i++) {
+      longOpenHashSet.add(byteBuffer.getLong());
+    }
+
+    return longOpenHashSet;
+  }
+
+  /**
+   * Helper method to serialize an {@link ObjectOpenHashSet}.
+   */
+  private static byte[] serializeObjectOpenHashSet(ObjectOpenHashSet<Object> objectOpenHashSet)
+      throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+    // Write the size of the set.
+    dataOutputStream.writeInt(objectOpenHashSet.size());
+
+    // Write the serialized values.
+    boolean first = true;
+    for (Object value : objectOpenHashSet) {
+
+      // Write the value type before writing the first value.
+      if (first) {
+        dataOutputStream.writeInt(getObjectType(value).getValue());
+        first = false;
+      }
+
+      byte[] valueBytes = serialize(value);
+      dataOutputStream.writeInt(valueBytes.length);
+      dataOutputStream.write(valueBytes);
+    }
+
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Helper method to de-serialize an {@link ObjectOpenHashSet} from a ByteBuffer.
+   */
+  private static ObjectOpenHashSet<Object> deserializeObjectOpenHashSet(ByteBuffer byteBuffer)
+      throws IOException {
+    int size = byteBuffer.getInt();
+    ObjectOpenHashSet<Object> objectOpenHashSet = new ObjectOpenHashSet<>(size);
+    if (size == 0) {
+      return objectOpenHashSet;
+    }
+
+    ObjectType valueType = ObjectType.getObjectType(byteBuffer.getInt());
+    for (int i = 0; i < size; i++) {
+      int valueNumBytes = byteBuffer.getInt();
+      Object value = deserialize(getByteBufferSlice(byteBuffer, valueNumBytes), valueType);
+      byteBuffer.position(byteBuffer.position() + valueNumBytes);
+      objectOpenHashSet.add(value);
+    }
+
+    return objectOpenHashSet;
+  }
+
+  /**
+   * Helper method to serialize an array of {@link ThetaSketch}.
+   */
+  private static byte[] serializeThetaSketchArray(ThetaSketch[] thetaSketches)
+      throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+    // Write the number of sketches, then the size and bytes of each sketch.
+    dataOutputStream.writeInt(thetaSketches.length);
+    for (ThetaSketch thetaSketch : thetaSketches) {
+      byte[] sketchBytes = thetaSketch.toBytes();
+      dataOutputStream.writeInt(sketchBytes.length);
+      dataOutputStream.write(sketchBytes);
+    }
+
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Helper method to de-serialize an array of {@link ThetaSketch} from a ByteBuffer.
+   */
+  private static ThetaSketch[] deserializeThetaSketchArray(ByteBuffer byteBuffer) {
+    int length = byteBuffer.getInt();
+    ThetaSketch[] thetaSketches = new ThetaSketch[length];
+    for (int i = 0; i < length; i++) {
+      int sketchNumBytes = byteBuffer.getInt();
+      thetaSketches[i] = ThetaSketch.fromByteBuffer(getByteBufferSlice(byteBuffer, sketchNumBytes));
+      byteBuffer.position(byteBuffer.position() + sketchNumBytes);
+    }
+
+    return thetaSketches;
+  }
+
+  /**
+   * Helper method to serialize a {@link Double2LongOpenHashMap}.
+   */
+  private static byte[] serializeDouble2LongOpenHashMap(Double2LongOpenHashMap double2LongOpenHashMap) {
+    int size = double2LongOpenHashMap.size();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(
+        V1Constants.Numbers.INTEGER_SIZE + size * (V1Constants.Numbers.DOUBLE_SIZE + V1Constants.Numbers.LONG_SIZE));
+
+    // Write the size of the map, then the key-value pairs.
+    byteBuffer.putInt(size);
+    for (Double2LongMap.Entry entry : double2LongOpenHashMap.double2LongEntrySet()) {
+      byteBuffer.putDouble(entry.getDoubleKey());
+      byteBuffer.putLong(entry.getLongValue());
+    }
+
+    return byteBuffer.array();
+  }
+
+  /**
+   * Helper method to de-serialize a {@link Double2LongOpenHashMap} from a ByteBuffer.
+   */
+  private static Double2LongOpenHashMap deserializeDouble2LongOpenHashMap(ByteBuffer byteBuffer) {
+    int size = byteBuffer.getInt();
+    Double2LongOpenHashMap double2LongOpenHashMap = new Double2LongOpenHashMap(size);
+    for (int i = 0; i < size; i++) {
+      double key = byteBuffer.getDouble();
+      double2LongOpenHashMap.put(key, byteBuffer.getLong());
+    }
+
+    return double2LongOpenHashMap;
+  }
 }
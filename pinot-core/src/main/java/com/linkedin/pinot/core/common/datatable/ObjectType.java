@@ -34,7 +34,12 @@ public enum ObjectType {
   QuantileDigest(7),
   HashMap(8),
   IntOpenHashSet(9),
-  TDigest(10);
+  TDigest(10),
+  LongOpenHashSet(11),
+  ObjectOpenHashSet(12),
+  ThetaSketch(13),
+  ThetaSketchArray(14),
+  Double2LongOpenHashMap(15);
 
   // Map from type value to type.
   private static Map<Integer, ObjectType> _objectTypeMap = new HashMap<>();
@@ -23,12 +23,15 @@ import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.offline.ImmutableSegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegment;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
 import com.linkedin.pinot.core.segment.index.loader.IndexLoadingConfig;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
@@ -46,6 +49,8 @@ public abstract class BaseTableDataManager implements TableDataManager {
   protected String _instanceId;
   protected ZkHelixPropertyStore<ZNRecord> _propertyStore;
   protected ServerMetrics _serverMetrics;
+  protected SegmentResultCache _segmentResultCache;
+  protected FilterBitmapCache _filterBitmapCache;
   protected String _tableNameWithType;
   protected String _tableDataDir;
   protected File _indexDir;
@@ -53,13 +58,16 @@ public abstract class BaseTableDataManager implements TableDataManager {
 
   @Override
   public void init(@Nonnull TableDataManagerConfig tableDataManagerConfig, @Nonnull String instanceId,
-      @Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore, @Nonnull ServerMetrics serverMetrics) {
+      @Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore, @Nonnull ServerMetrics serverMetrics,
+      @Nullable SegmentResultCache segmentResultCache, @Nullable FilterBitmapCache filterBitmapCache) {
     LOGGER.info("Initializing table data manager for table: {}", tableDataManagerConfig.getTableName());
 
     _tableDataManagerConfig = tableDataManagerConfig;
     _instanceId = instanceId;
     _propertyStore = propertyStore;
     _serverMetrics = serverMetrics;
+    _segmentResultCache = segmentResultCache;
+    _filterBitmapCache = filterBitmapCache;
 
     _tableNameWithType = tableDataManagerConfig.getTableName();
     _tableDataDir = tableDataManagerConfig.getDataDir();
@@ -200,6 +208,13 @@ public abstract class BaseTableDataManager implements TableDataManager {
     _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_SEGMENT_COUNT, 1L);
     _serverMetrics.addValueToTableGauge(_tableNameWithType, ServerGauge.DOCUMENT_COUNT,
         -segmentDataManager.getSegment().getSegmentMetadata().getTotalRawDocs());
+    // The segment was replaced or unloaded, its cached results will never be served again
+    if (_segmentResultCache != null) {
+      _segmentResultCache.invalidate(segmentDataManager.getSegment());
+    }
+    if (_filterBitmapCache != null) {
+      _filterBitmapCache.invalidate(segmentDataManager.getSegment());
+    }
     segmentDataManager.destroy();
     _logger.info("Closed segment: {} of table: {}", segmentName, _tableNameWithType);
   }
@@ -16,6 +16,8 @@
 package com.linkedin.pinot.core.data.manager;
 
 import com.linkedin.pinot.common.data.DataManager;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
 import java.util.Collection;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -37,4 +39,16 @@ public interface InstanceDataManager extends DataManager {
 
   @Nonnull
   Collection<TableDataManager> getTableDataManagers();
+
+  /**
+   * Returns the cache of per-segment query results shared by the tables of the instance, or null if disabled.
+   */
+  @Nullable
+  SegmentResultCache getSegmentResultCache();
+
+  /**
+   * Returns the cache of predicate matching documents shared by the tables of the instance, or null if disabled.
+   */
+  @Nullable
+  FilterBitmapCache getFilterBitmapCache();
 }
@@ -19,10 +19,13 @@ import com.linkedin.pinot.common.config.TableConfig;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegment;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
 import com.linkedin.pinot.core.segment.index.loader.IndexLoadingConfig;
 import java.io.File;
 import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
@@ -36,9 +39,12 @@ public interface TableDataManager {
 
   /**
    * Initializes the table data manager. Should be called only once and before calling any other method.
+   * <p>The cached query results and filter bitmaps of the segments are removed from the given caches (if any) when the
+   * segments are closed.
    */
   void init(@Nonnull TableDataManagerConfig tableDataManagerConfig, @Nonnull String instanceId,
-      @Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore, @Nonnull ServerMetrics serverMetrics);
+      @Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore, @Nonnull ServerMetrics serverMetrics,
+      @Nullable SegmentResultCache segmentResultCache, @Nullable FilterBitmapCache filterBitmapCache);
 
   /**
    * Starts the table data manager. Should be called only once after table data manager gets initialized but before
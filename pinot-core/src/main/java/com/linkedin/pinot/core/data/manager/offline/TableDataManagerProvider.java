@@ -20,7 +20,10 @@ import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.core.data.manager.TableDataManager;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.realtime.RealtimeTableDataManager;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 
@@ -35,6 +38,13 @@ public class TableDataManagerProvider {
   public static TableDataManager getTableDataManager(@Nonnull TableDataManagerConfig tableDataManagerConfig,
       @Nonnull String instanceId, @Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore,
       @Nonnull ServerMetrics serverMetrics) {
+    return getTableDataManager(tableDataManagerConfig, instanceId, propertyStore, serverMetrics, null, null);
+  }
+
+  public static TableDataManager getTableDataManager(@Nonnull TableDataManagerConfig tableDataManagerConfig,
+      @Nonnull String instanceId, @Nonnull ZkHelixPropertyStore<ZNRecord> propertyStore,
+      @Nonnull ServerMetrics serverMetrics, @Nullable SegmentResultCache segmentResultCache,
+      @Nullable FilterBitmapCache filterBitmapCache) {
     TableDataManager tableDataManager;
     switch (CommonConstants.Helix.TableType.valueOf(tableDataManagerConfig.getTableDataManagerType())) {
       case OFFLINE:
@@ -46,7 +56,8 @@ public class TableDataManagerProvider {
       default:
         throw new IllegalStateException();
     }
-    tableDataManager.init(tableDataManagerConfig, instanceId, propertyStore, serverMetrics);
+    tableDataManager.init(tableDataManagerConfig, instanceId, propertyStore, serverMetrics, segmentResultCache,
+        filterBitmapCache);
     return tableDataManager;
   }
 }
@@ -21,6 +21,7 @@ import com.linkedin.pinot.core.indexsegment.IndexSegmentUtils;
 import com.linkedin.pinot.core.io.reader.DataFileReader;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
+import com.linkedin.pinot.core.segment.index.column.HotColumnCache;
 import com.linkedin.pinot.core.segment.index.data.source.ColumnDataSource;
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
@@ -29,6 +30,7 @@ import com.linkedin.pinot.core.startree.StarTree;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,13 +42,16 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
   private final SegmentMetadataImpl _segmentMetadata;
   private final Map<String, ColumnIndexContainer> _indexContainerMap;
   private final StarTree _starTree;
+  private final HotColumnCache _hotColumnCache;
 
   public ImmutableSegmentImpl(SegmentDirectory segmentDirectory, SegmentMetadataImpl segmentMetadata,
-      Map<String, ColumnIndexContainer> columnIndexContainerMap, StarTree starTree) {
+      Map<String, ColumnIndexContainer> columnIndexContainerMap, StarTree starTree,
+      @Nullable HotColumnCache hotColumnCache) {
     _segmentDirectory = segmentDirectory;
     _segmentMetadata = segmentMetadata;
     _indexContainerMap = columnIndexContainerMap;
     _starTree = starTree;
+    _hotColumnCache = hotColumnCache;
   }
 
   @Override
@@ -81,7 +86,11 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
 
   @Override
   public ColumnDataSource getDataSource(String column) {
-    return new ColumnDataSource(_indexContainerMap.get(column), _segmentMetadata.getColumnMetadataFor(column));
+    ColumnIndexContainer indexContainer = _indexContainerMap.get(column);
+    if (_hotColumnCache != null) {
+      indexContainer = _hotColumnCache.get(indexContainer);
+    }
+    return new ColumnDataSource(indexContainer, _segmentMetadata.getColumnMetadataFor(column));
   }
 
   @Override
@@ -94,6 +103,9 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
     LOGGER.info("Trying to destroy segment : {}", this.getSegmentName());
     for (String column : _indexContainerMap.keySet()) {
       ColumnIndexContainer columnIndexContainer = _indexContainerMap.get(column);
+      if (_hotColumnCache != null) {
+        _hotColumnCache.invalidate(columnIndexContainer);
+      }
 
       try {
         ImmutableDictionaryReader dictionary = columnIndexContainer.getDictionary();
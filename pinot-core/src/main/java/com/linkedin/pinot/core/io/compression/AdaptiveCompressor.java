@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.io.compression;
+
+import com.github.luben.zstd.Zstd;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Implementation of {@link ChunkCompressor} which picks the codec separately for each chunk, based on how well a
+ * sample from the beginning of the chunk compresses:
+ * <ul>
+ *   <li> PASS_THROUGH if neither LZ4 nor Zstandard saves at least 10% of the sample size. </li>
+ *   <li> ZSTANDARD if it compresses the sample at least 20% smaller than LZ4. </li>
+ *   <li> LZ4 otherwise, as it decompresses much faster than Zstandard. </li>
+ * </ul>
+ * The codec of the chunk is recorded in the first byte of the compressed chunk, and is used by
+ * {@link AdaptiveDecompressor} to decompress it.
+ * <p>Both input and output ByteBuffers must be direct.
+ */
+public class AdaptiveCompressor implements ChunkCompressor {
+  static final int SAMPLE_SIZE = 64 * 1024;
+  private static final double MAX_COMPRESSION_RATIO = 0.9;
+  private static final double MAX_ZSTANDARD_TO_LZ4_RATIO = 0.8;
+
+  private final ChunkCompressor _passThroughCompressor = new PassThroughCompressor();
+  private final ChunkCompressor _lz4Compressor = new LZ4Compressor();
+  private final ChunkCompressor _zstandardCompressor = new ZstandardCompressor();
+
+  // Reusable buffer to compress the samples into, allocated on first use.
+  private ByteBuffer _sampleBuffer;
+
+  @Override
+  public int compress(ByteBuffer inUncompressed, ByteBuffer outCompressed)
+      throws IOException {
+    ChunkCompressorFactory.CompressionType compressionType = chooseCompressionType(inUncompressed);
+    ChunkCompressor compressor;
+    switch (compressionType) {
+      case LZ4:
+        compressor = _lz4Compressor;
+        break;
+      case ZSTANDARD:
+        compressor = _zstandardCompressor;
+        break;
+      default:
+        compressor = _passThroughCompressor;
+        break;
+    }
+
+    int startPosition = outCompressed.position();
+    outCompressed.put((byte) compressionType.getValue());
+    int compressedSize = compressor.compress(inUncompressed, outCompressed.slice()) + 1;
+
+    // Make the output ByteBuffer ready for read.
+    outCompressed.limit(startPosition + compressedSize);
+    outCompressed.position(startPosition);
+    return compressedSize;
+  }
+
+  /**
+   * Helper method to choose the compression type for the given chunk from a sample of its data.
+   *
+   * @param inUncompressed Uncompressed chunk data
+   * @return Compression type to use for the chunk
+   */
+  ChunkCompressorFactory.CompressionType chooseCompressionType(ByteBuffer inUncompressed)
+      throws IOException {
+    ByteBuffer sample = inUncompressed.duplicate();
+    int sampleSize = Math.min(sample.remaining(), SAMPLE_SIZE);
+    if (sampleSize == 0) {
+      return ChunkCompressorFactory.CompressionType.PASS_THROUGH;
+    }
+    sample.limit(sample.position() + sampleSize);
+
+    int lz4Size = compressSample(_lz4Compressor, sample);
+    int zstandardSize = compressSample(_zstandardCompressor, sample);
+    if (Math.min(lz4Size, zstandardSize) > sampleSize * MAX_COMPRESSION_RATIO) {
+      return ChunkCompressorFactory.CompressionType.PASS_THROUGH;
+    }
+    if (zstandardSize <= lz4Size * MAX_ZSTANDARD_TO_LZ4_RATIO) {
+      return ChunkCompressorFactory.CompressionType.ZSTANDARD;
+    }
+    return ChunkCompressorFactory.CompressionType.LZ4;
+  }
+
+  private int compressSample(ChunkCompressor compressor, ByteBuffer sample)
+      throws IOException {
+    if (_sampleBuffer == null) {
+      int maxCompressedSize = (int) Math.max(Zstd.compressBound(SAMPLE_SIZE),
+          LZ4Compressor.LZ4_FACTORY.fastCompressor().maxCompressedLength(SAMPLE_SIZE));
+      _sampleBuffer = ByteBuffer.allocateDirect(maxCompressedSize);
+    }
+    _sampleBuffer.clear();
+    return compressor.compress(sample.duplicate(), _sampleBuffer);
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.io.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Implementation of {@link ChunkDecompressor} for chunks compressed by {@link AdaptiveCompressor}: reads the codec of
+ * the chunk from its first byte, and decompresses the rest of the chunk with it.
+ */
+public class AdaptiveDecompressor implements ChunkDecompressor {
+  private final ChunkDecompressor[] _decompressors;
+
+  public AdaptiveDecompressor() {
+    ChunkCompressorFactory.CompressionType[] compressionTypes = ChunkCompressorFactory.CompressionType.values();
+    _decompressors = new ChunkDecompressor[compressionTypes.length];
+    for (ChunkCompressorFactory.CompressionType compressionType : compressionTypes) {
+      if (compressionType != ChunkCompressorFactory.CompressionType.ADAPTIVE) {
+        _decompressors[compressionType.getValue()] = ChunkCompressorFactory.getDecompressor(compressionType);
+      }
+    }
+  }
+
+  @Override
+  public int decompress(ByteBuffer compressedInput, ByteBuffer decompressedOutput)
+      throws IOException {
+    int compressionType = compressedInput.get(compressedInput.position());
+    ByteBuffer chunkData = compressedInput.duplicate();
+    chunkData.position(compressedInput.position() + 1);
+    return _decompressors[compressionType].decompress(chunkData.slice(), decompressedOutput);
+  }
+}
@@ -25,9 +25,21 @@ public class ChunkCompressorFactory {
 
   }
 
+  /**
+   * Compression types of raw forward indexes. The value of each type is persisted in the index files, so new types
+   * should only be appended.
+   * <ul>
+   *   <li> LZ4: faster decompression than SNAPPY for a similar compression ratio. </li>
+   *   <li> ZSTANDARD: better compression ratio, slower decompression. </li>
+   *   <li> ADAPTIVE: codec picked separately for each chunk, see {@link AdaptiveCompressor}. </li>
+   * </ul>
+   */
   public enum CompressionType {
     PASS_THROUGH(0),
-    SNAPPY(1);
+    SNAPPY(1),
+    LZ4(2),
+    ZSTANDARD(3),
+    ADAPTIVE(4);
 
     private final int _value;
 
@@ -55,6 +67,15 @@ public class ChunkCompressorFactory {
       case SNAPPY:
         return new SnappyCompressor();
 
+      case LZ4:
+        return new LZ4Compressor();
+
+      case ZSTANDARD:
+        return new ZstandardCompressor();
+
+      case ADAPTIVE:
+        return new AdaptiveCompressor();
+
       default:
         throw new IllegalArgumentException("Illegal compressor name " + compressionType);
     }
@@ -74,6 +95,15 @@ public class ChunkCompressorFactory {
       case SNAPPY:
         return new SnappyDecompressor();
 
+      case LZ4:
+        return new LZ4Decompressor();
+
+      case ZSTANDARD:
+        return new ZstandardDecompressor();
+
+      case ADAPTIVE:
+        return new AdaptiveDecompressor();
+
       default:
         throw new IllegalArgumentException("Illegal compressor name " + compressionType);
     }
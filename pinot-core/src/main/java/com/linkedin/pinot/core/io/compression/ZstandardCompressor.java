@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.io.compression;
+
+import com.github.luben.zstd.Zstd;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Implementation of {@link ChunkCompressor} using Zstandard, which gives better compression ratio than Snappy and LZ4
+ * at the cost of slower compression and decompression.
+ * <p>Both input and output ByteBuffers must be direct.
+ */
+public class ZstandardCompressor implements ChunkCompressor {
+  static final int COMPRESSION_LEVEL = 3;
+
+  @Override
+  public int compress(ByteBuffer inUncompressed, ByteBuffer outCompressed) {
+    int startPosition = outCompressed.position();
+    int compressedSize = Zstd.compress(outCompressed, inUncompressed, COMPRESSION_LEVEL);
+
+    // Make the output ByteBuffer ready for read.
+    outCompressed.limit(startPosition + compressedSize);
+    outCompressed.position(startPosition);
+    return compressedSize;
+  }
+}
@@ -19,7 +19,16 @@ import java.io.IOException;
 
 public abstract class BaseSingleColumnSingleValueReader<T extends ReaderContext>
     implements SingleColumnSingleValueReader<T> {
- 
+
+  /**
+   * Optional operation. Asynchronously loads the data for rows in range [startRow, endRow] (inclusive), so that the
+   * following reads do not block on page faults. Does nothing by default.
+   *
+   * @param startRow Start row (inclusive)
+   * @param endRow End row (inclusive)
+   */
+  public void prefetch(int startRow, int endRow) {
+  }
 
   @Override
   public void close() throws IOException {
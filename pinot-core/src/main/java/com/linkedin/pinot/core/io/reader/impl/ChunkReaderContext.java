@@ -25,15 +25,20 @@ import java.nio.ByteBuffer;
  *   <li> Chunk Buffer from the previous read. Useful if the subsequent read is from the same buffer,
  *        as it avoids chunk decompression. </li>
  *   <li> Id for the chunk </li>
+ *   <li> Read ahead window of a sequential scan over the chunks </li>
  * </ul>
  */
 public class ChunkReaderContext extends UnSortedValueReaderContext {
   int _chunkId;
   ByteBuffer _chunkBuffer;
+  int _readAheadEndChunkId;
+  int _readAheadTriggerChunkId;
 
   public ChunkReaderContext(int maxChunkSize) {
     _chunkBuffer = ByteBuffer.allocateDirect(maxChunkSize);
     _chunkId = -1;
+    _readAheadEndChunkId = -1;
+    _readAheadTriggerChunkId = 0;
   }
 
   public ByteBuffer getChunkBuffer() {
@@ -47,4 +52,23 @@ public class ChunkReaderContext extends UnSortedValueReaderContext {
   public void setChunkId(int chunkId) {
     _chunkId = chunkId;
   }
+
+  /**
+   * Returns the last chunk id requested to be read ahead.
+   */
+  public int getReadAheadEndChunkId() {
+    return _readAheadEndChunkId;
+  }
+
+  /**
+   * Returns the chunk id at which the next read ahead window should be requested.
+   */
+  public int getReadAheadTriggerChunkId() {
+    return _readAheadTriggerChunkId;
+  }
+
+  public void setReadAheadWindow(int readAheadTriggerChunkId, int readAheadEndChunkId) {
+    _readAheadTriggerChunkId = readAheadTriggerChunkId;
+    _readAheadEndChunkId = readAheadEndChunkId;
+  }
 }
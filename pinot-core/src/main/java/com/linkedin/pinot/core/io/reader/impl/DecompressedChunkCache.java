@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.io.reader.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * Server level cache of decompressed chunks of raw forward indexes, shared across queries so that chunks of hot raw
+ * columns are not decompressed again by every query.
+ * <ul>
+ *   <li> Chunks are keyed by the identity of their reader and the chunk id. The cached chunks are also
+ *        indexed per reader, so that invalidating a reader only touches its own chunks. </li>
+ *   <li> Chunks are copied to heap when cached and copied out on hits, so that the cached chunks are never modified by
+ *        the readers. </li>
+ *   <li> The total size of the cached chunks is bounded by the configured memory budget, least recently used chunks
+ *        are evicted first. </li>
+ * </ul>
+ * One instance is shared by all the raw forward index readers of the server, which get it when their segment is
+ * loaded.
+ */
+@ThreadSafe
+public class DecompressedChunkCache {
+  public static final String MAX_SIZE_BYTES_CONFIG_KEY = "maxSizeBytes";
+  public static final long DEFAULT_MAX_SIZE_BYTES = 0L;
+
+  private final long _maxSizeBytes;
+  private final ServerMetrics _serverMetrics;
+  private final Cache<ChunkKey, ByteBuffer> _cache;
+  // Cached chunks of each reader, kept in sync with the cache through its removal listener
+  private final ConcurrentHashMap<Object, ReaderChunks> _chunksByReader = new ConcurrentHashMap<>();
+
+  public DecompressedChunkCache(long maxSizeBytes, @Nullable ServerMetrics serverMetrics) {
+    _maxSizeBytes = maxSizeBytes;
+    _serverMetrics = serverMetrics;
+    if (maxSizeBytes > 0) {
+      _cache = CacheBuilder.newBuilder().maximumWeight(maxSizeBytes).weigher(new Weigher<ChunkKey, ByteBuffer>() {
+        @Override
+        public int weigh(ChunkKey key, ByteBuffer value) {
+          return value.capacity();
+        }
+      }).removalListener(new RemovalListener<ChunkKey, ByteBuffer>() {
+        @Override
+        public void onRemoval(RemovalNotification<ChunkKey, ByteBuffer> notification) {
+          // Only unregister the removed chunk if it has not been cached again (e.g. replaced) in the meantime. This
+          // does not lock the reader, as the listener can run on a thread already holding the lock of another reader.
+          ChunkKey key = notification.getKey();
+          final ByteBuffer removedChunk = notification.getValue();
+          ReaderChunks readerChunks = _chunksByReader.get(key._reader);
+          if (readerChunks != null) {
+            // Chunks are compared by identity, as chunks with the same content are equal
+            readerChunks._chunks.computeIfPresent(key._chunkId, new BiFunction<Integer, ByteBuffer, ByteBuffer>() {
+              @Override
+              public ByteBuffer apply(Integer chunkId, ByteBuffer chunk) {
+                return chunk == removedChunk ? null : chunk;
+              }
+            });
+          }
+        }
+      }).build();
+    } else {
+      _cache = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return _maxSizeBytes > 0;
+  }
+
+  /**
+   * Copies the cached chunk into the given buffer, and makes the buffer ready for read.
+   *
+   * @param reader Reader of the chunk
+   * @param chunkId Id of the chunk
+   * @param outDecompressed Buffer to copy the chunk into
+   * @return True if the chunk was cached, false otherwise
+   */
+  public boolean get(@Nonnull Object reader, int chunkId, @Nonnull ByteBuffer outDecompressed) {
+    if (!isEnabled()) {
+      return false;
+    }
+    ByteBuffer chunk = _cache.getIfPresent(new ChunkKey(reader, chunkId));
+    if (chunk == null) {
+      addMeteredValue(ServerMeter.DECOMPRESSED_CHUNK_CACHE_MISSES);
+      return false;
+    }
+    addMeteredValue(ServerMeter.DECOMPRESSED_CHUNK_CACHE_HITS);
+    int startPosition = outDecompressed.position();
+    outDecompressed.put(chunk.duplicate());
+    outDecompressed.limit(outDecompressed.position());
+    outDecompressed.position(startPosition);
+    return true;
+  }
+
+  /**
+   * Caches a copy of the given decompressed chunk (from its position to its limit).
+   *
+   * @param reader Reader of the chunk
+   * @param chunkId Id of the chunk
+   * @param decompressed Decompressed chunk
+   */
+  public void put(@Nonnull Object reader, int chunkId, @Nonnull ByteBuffer decompressed) {
+    if (!isEnabled()) {
+      return;
+    }
+    ByteBuffer chunk = ByteBuffer.allocate(decompressed.remaining());
+    chunk.put(decompressed.duplicate());
+    chunk.flip();
+    ReaderChunks readerChunks = _chunksByReader.get(reader);
+    if (readerChunks == null) {
+      readerChunks = new ReaderChunks();
+      ReaderChunks existing = _chunksByReader.putIfAbsent(reader, readerChunks);
+      if (existing != null) {
+        readerChunks = existing;
+      }
+    }
+    // Registering and caching the chunk is atomic with respect to invalidating the reader, so that no chunk of an
+    // invalidated reader is left in the cache
+    synchronized (readerChunks) {
+      if (readerChunks._invalidated) {
+        return;
+      }
+      readerChunks._chunks.put(chunkId, chunk);
+      _cache.put(new ChunkKey(reader, chunkId), chunk);
+    }
+  }
+
+  /**
+   * Removes all the chunks of the given reader. Should be called when the reader is closed.
+   */
+  public void invalidate(@Nonnull Object reader) {
+    if (!isEnabled()) {
+      return;
+    }
+    ReaderChunks readerChunks = _chunksByReader.remove(reader);
+    if (readerChunks != null) {
+      synchronized (readerChunks) {
+        readerChunks._invalidated = true;
+      }
+      for (int chunkId : readerChunks._chunks.keySet()) {
+        _cache.invalidate(new ChunkKey(reader, chunkId));
+      }
+    }
+  }
+
+  /**
+   * Returns the total size in bytes of the cached chunks.
+   */
+  public long getSizeBytes() {
+    if (!isEnabled()) {
+      return 0L;
+    }
+    long sizeBytes = 0L;
+    for (ByteBuffer chunk : _cache.asMap().values()) {
+      sizeBytes += chunk.capacity();
+    }
+    return sizeBytes;
+  }
+
+  private void addMeteredValue(ServerMeter meter) {
+    if (_serverMetrics != null) {
+      _serverMetrics.addMeteredGlobalValue(meter, 1L);
+    }
+  }
+
+  private static final class ReaderChunks {
+    // Chunks currently cached for the reader, keyed by chunk id
+    final ConcurrentHashMap<Integer, ByteBuffer> _chunks = new ConcurrentHashMap<>();
+    // Set once the reader is invalidated, after which no chunk of the reader can be cached through this instance
+    boolean _invalidated;
+  }
+
+  private static final class ChunkKey {
+    final Object _reader;
+    final int _chunkId;
+
+    ChunkKey(Object reader, int chunkId) {
+      _reader = reader;
+      _chunkId = chunkId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ChunkKey)) {
+        return false;
+      }
+      ChunkKey that = (ChunkKey) o;
+      return _reader == that._reader && _chunkId == that._chunkId;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_reader) + _chunkId;
+    }
+  }
+}
@@ -19,9 +19,11 @@ import com.linkedin.pinot.core.io.compression.ChunkCompressorFactory;
 import com.linkedin.pinot.core.io.compression.ChunkDecompressor;
 import com.linkedin.pinot.core.io.reader.BaseSingleColumnSingleValueReader;
 import com.linkedin.pinot.core.io.reader.impl.ChunkReaderContext;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,12 +41,16 @@ public abstract class BaseChunkSingleValueReader extends BaseSingleColumnSingleV
   protected static final int FLOAT_SIZE = Float.SIZE / Byte.SIZE;
   protected static final int DOUBLE_SIZE = Double.SIZE / Byte.SIZE;
 
+  // Size of the (compressed) data read ahead at once by sequential scans
+  private static final int READ_AHEAD_WINDOW_BYTES = 2 * 1024 * 1024;
+
   protected final PinotDataBuffer _dataBuffer;
   protected final PinotDataBuffer _dataHeader;
   protected final int _chunkSize;
   private final PinotDataBuffer _rawData;
   private final boolean _isCompressed;
   protected ChunkDecompressor _chunkDecompressor;
+  private final DecompressedChunkCache _chunkCache;
 
   protected final int _numDocsPerChunk;
   protected final int _numChunks;
@@ -54,8 +60,9 @@ public abstract class BaseChunkSingleValueReader extends BaseSingleColumnSingleV
    * Constructor for the class.
    *
    * @param pinotDataBuffer Data buffer
+   * @param chunkCache Cache to share the decompressed chunks across queries, or null to decompress them every time
    */
-  public BaseChunkSingleValueReader(PinotDataBuffer pinotDataBuffer) {
+  public BaseChunkSingleValueReader(PinotDataBuffer pinotDataBuffer, @Nullable DecompressedChunkCache chunkCache) {
     _dataBuffer = pinotDataBuffer;
 
     int headerOffset = 0;
@@ -97,11 +104,56 @@ public abstract class BaseChunkSingleValueReader extends BaseSingleColumnSingleV
 
     // Useful for uncompressed data.
     _rawData = _dataBuffer.view(rawDataStart, _dataBuffer.size());
+
+    // Uncompressed chunks are read in place, so there is nothing to cache for them
+    _chunkCache = _isCompressed ? chunkCache : null;
   }
 
   @Override
   public void close() {
-    // Nothing to close here.
+    if (_chunkCache != null) {
+      _chunkCache.invalidate(this);
+    }
+  }
+
+  @Override
+  public void prefetch(int startRow, int endRow) {
+    int startChunkId = startRow / _numDocsPerChunk;
+    int endChunkId = endRow / _numDocsPerChunk;
+    prefetchChunks(startChunkId, endChunkId);
+  }
+
+  /**
+   * Helper method to prefetch the (compressed) data for chunks in range [startChunkId, endChunkId] (inclusive).
+   */
+  private void prefetchChunks(int startChunkId, int endChunkId) {
+    endChunkId = Math.min(endChunkId, _numChunks - 1);
+    if (startChunkId > endChunkId) {
+      return;
+    }
+    long startOffset = getChunkPosition(startChunkId);
+    long endOffset = (endChunkId == (_numChunks - 1)) ? _dataBuffer.size() : getChunkPosition(endChunkId + 1);
+    _dataBuffer.prefetch(startOffset, endOffset);
+  }
+
+  /**
+   * Helper method to request the next read ahead window (of about {@link #READ_AHEAD_WINDOW_BYTES}) after the given
+   * chunk, skipping the chunks already requested. The following window is requested once the scan reaches the middle
+   * of this one, so that a scan issues one request per window instead of one per chunk.
+   */
+  private void readAhead(int chunkId, ChunkReaderContext context) {
+    int startChunkId = Math.max(chunkId + 1, context.getReadAheadEndChunkId() + 1);
+    if (startChunkId >= _numChunks) {
+      context.setReadAheadWindow(Integer.MAX_VALUE, _numChunks - 1);
+      return;
+    }
+    int startOffset = getChunkPosition(startChunkId);
+    int endChunkId = startChunkId;
+    while (endChunkId + 1 < _numChunks && getChunkPosition(endChunkId + 1) - startOffset < READ_AHEAD_WINDOW_BYTES) {
+      endChunkId++;
+    }
+    prefetchChunks(startChunkId, endChunkId);
+    context.setReadAheadWindow(startChunkId + (endChunkId - startChunkId) / 2, endChunkId);
   }
 
   /**
@@ -134,11 +186,23 @@ public abstract class BaseChunkSingleValueReader extends BaseSingleColumnSingleV
     ByteBuffer decompressedBuffer = context.getChunkBuffer();
     decompressedBuffer.clear();
 
-    try {
-      _chunkDecompressor.decompress(_dataBuffer.toDirectByteBuffer(chunkPosition, chunkSize), decompressedBuffer);
-    } catch (IOException e) {
-      LOGGER.error("Exception caught while decompressing data chunk", e);
-      throw new RuntimeException(e);
+    // Decompressed chunks are shared across queries through the chunk cache (if any)
+    if (_chunkCache == null || !_chunkCache.get(this, chunkId, decompressedBuffer)) {
+      try {
+        _chunkDecompressor.decompress(_dataBuffer.toDirectByteBuffer(chunkPosition, chunkSize), decompressedBuffer);
+      } catch (IOException e) {
+        LOGGER.error("Exception caught while decompressing data chunk", e);
+        throw new RuntimeException(e);
+      }
+      if (_chunkCache != null) {
+        _chunkCache.put(this, chunkId, decompressedBuffer);
+      }
+    }
+    // Read ahead the following chunks for sequentially scanned data, so that they are paged in while the current ones
+    // are processed
+    if (_dataBuffer.getAccessPattern() == PinotDataBuffer.AccessPattern.SEQUENTIAL
+        && context.getChunkId() == chunkId - 1 && chunkId >= context.getReadAheadTriggerChunkId()) {
+      readAhead(chunkId, context);
     }
     context.setChunkId(chunkId);
     return decompressedBuffer;
@@ -22,12 +22,23 @@ import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 
 
 public final class FixedBitSingleValueReader extends BaseSingleColumnSingleValueReader {
+  private final PinotDataBuffer _dataBuffer;
+  private final int _numBitsPerValue;
   private final FixedBitIntReaderWriter _reader;
 
   public FixedBitSingleValueReader(PinotDataBuffer dataBuffer, int numRows, int numBitsPerValue) {
+    _dataBuffer = dataBuffer;
+    _numBitsPerValue = numBitsPerValue;
     _reader = new FixedBitIntReaderWriter(dataBuffer, numRows, numBitsPerValue);
   }
 
+  @Override
+  public void prefetch(int startRow, int endRow) {
+    long startOffset = (long) startRow * _numBitsPerValue / Byte.SIZE;
+    long endOffset = ((long) (endRow + 1) * _numBitsPerValue + Byte.SIZE - 1) / Byte.SIZE;
+    _dataBuffer.prefetch(startOffset, endOffset);
+  }
+
   @Override
   public int getInt(int row) {
     return _reader.readInt(row);
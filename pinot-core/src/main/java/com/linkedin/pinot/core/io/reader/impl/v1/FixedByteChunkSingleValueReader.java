@@ -16,10 +16,12 @@
 package com.linkedin.pinot.core.io.reader.impl.v1;
 
 import com.linkedin.pinot.core.io.reader.impl.ChunkReaderContext;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
 import com.linkedin.pinot.core.io.writer.impl.v1.FixedByteChunkSingleValueWriter;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 
 /**
@@ -40,7 +42,19 @@ public class FixedByteChunkSingleValueReader extends BaseChunkSingleValueReader
    */
   public FixedByteChunkSingleValueReader(PinotDataBuffer pinotDataBuffer)
       throws IOException {
-    super(pinotDataBuffer);
+    this(pinotDataBuffer, null);
+  }
+
+  /**
+   * Constructor for the class.
+   *
+   * @param pinotDataBuffer Data buffer to read from
+   * @param chunkCache Cache of decompressed chunks shared across queries, or null for no caching
+   * @throws IOException
+   */
+  public FixedByteChunkSingleValueReader(PinotDataBuffer pinotDataBuffer, @Nullable DecompressedChunkCache chunkCache)
+      throws IOException {
+    super(pinotDataBuffer, chunkCache);
   }
 
   @Override
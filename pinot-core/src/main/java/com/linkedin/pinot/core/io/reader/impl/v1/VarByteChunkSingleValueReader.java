@@ -16,10 +16,12 @@
 package com.linkedin.pinot.core.io.reader.impl.v1;
 
 import com.linkedin.pinot.core.io.reader.impl.ChunkReaderContext;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
 import com.linkedin.pinot.core.io.writer.impl.v1.VarByteChunkSingleValueWriter;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import javax.annotation.Nullable;
 
 
 /**
@@ -39,7 +41,17 @@ public class VarByteChunkSingleValueReader extends BaseChunkSingleValueReader {
    * @param pinotDataBuffer Data buffer to read from
    */
   public VarByteChunkSingleValueReader(PinotDataBuffer pinotDataBuffer) {
-    super(pinotDataBuffer);
+    this(pinotDataBuffer, null);
+  }
+
+  /**
+   * Constructor for the class.
+   *
+   * @param pinotDataBuffer Data buffer to read from
+   * @param chunkCache Cache of decompressed chunks shared across queries, or null for no caching
+   */
+  public VarByteChunkSingleValueReader(PinotDataBuffer pinotDataBuffer, @Nullable DecompressedChunkCache chunkCache) {
+    super(pinotDataBuffer, chunkCache);
 
     int chunkHeaderSize = _numDocsPerChunk * INT_SIZE;
     _maxChunkSize = chunkHeaderSize + (_lengthOfLongestEntry * _numDocsPerChunk);
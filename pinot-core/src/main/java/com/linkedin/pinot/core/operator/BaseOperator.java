@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.operator;
 
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.util.trace.CancellationContext;
 import com.linkedin.pinot.core.util.trace.TraceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +31,8 @@ public abstract class BaseOperator<T extends Block> implements Operator<T> {
 
   @Override
   public final T nextBlock() {
+    // Stop processing at block boundaries once the query has been cancelled
+    CancellationContext.checkCancelled();
     if (TraceContext.traceEnabled()) {
       long start = System.currentTimeMillis();
       T nextBlock = getNextBlock();
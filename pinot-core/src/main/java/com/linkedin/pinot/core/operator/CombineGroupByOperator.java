@@ -27,6 +27,7 @@ import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionUti
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByTrimmingService;
 import com.linkedin.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.query.exception.QueryCancelledException;
 import com.linkedin.pinot.core.util.trace.TraceRunnable;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -39,6 +40,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -114,7 +117,8 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
    * 2. The result of the concurrent map is then translated into what is expected by
    *    the broker (List<Map<String, Object>>).
    *
-   * 3. This result is then sorted and then trimmed as per 'TOP N' in the brokerRequest.
+   * 3. This result is then sorted and then trimmed as per 'TOP N' in the brokerRequest. If the groups trimmed on the
+   *    segments have bounded results, the groups that cannot be among the top groups are pruned first.
    *
    * @return IntermediateResultBlock containing the final results from combine operation.
    */
@@ -123,6 +127,9 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
     final CountDownLatch operatorLatch = new CountDownLatch(numOperators);
     final Map<String, Object[]> resultsMap = new ConcurrentHashMap<>();
     final ConcurrentLinkedQueue<ProcessingException> mergedProcessingExceptions = new ConcurrentLinkedQueue<>();
+    // Sum of the trim thresholds from the segments, used to bound the results of the groups trimmed on the segments
+    final double[] trimThresholdSums;
+    final AtomicInteger numBoundedResults = new AtomicInteger();
 
     AggregationFunctionContext[] aggregationFunctionContexts =
         AggregationFunctionUtils.getAggregationFunctionContexts(_brokerRequest.getAggregationsInfo(), null);
@@ -131,6 +138,7 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
     for (int i = 0; i < numAggregationFunctions; i++) {
       aggregationFunctions[i] = aggregationFunctionContexts[i].getAggregationFunction();
     }
+    trimThresholdSums = new double[numAggregationFunctions];
 
     Future[] futures = new Future[numOperators];
     for (int i = 0; i < numOperators; i++) {
@@ -154,6 +162,10 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
             // Merge aggregation group-by result.
             aggregationGroupByResult = intermediateResultsBlock.getAggregationGroupByResult();
             if (aggregationGroupByResult != null) {
+              if (addTrimThresholds(trimThresholdSums, aggregationGroupByResult.getTrimThresholds())) {
+                numBoundedResults.incrementAndGet();
+              }
+
               // Iterate over the group-by keys, for each key, update the group-by result in the resultsMap.
               Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
               while (groupKeyIterator.hasNext()) {
@@ -180,6 +192,39 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
                 }
               }
             }
+
+            // Merge aggregation group-by result already materialized into maps (e.g. served from the segment result
+            // cache).
+            List<Map<String, Object>> combinedAggregationGroupByResult =
+                intermediateResultsBlock.getCombinedAggregationGroupByResult();
+            if (combinedAggregationGroupByResult != null) {
+              if (addTrimThresholds(trimThresholdSums,
+                  intermediateResultsBlock.getCombinedAggregationGroupByTrimThresholds())) {
+                numBoundedResults.incrementAndGet();
+              }
+              for (String groupKeyString : combinedAggregationGroupByResult.get(0).keySet()) {
+                int lockIndex = (groupKeyString.hashCode() & Integer.MAX_VALUE) % NUM_LOCKS;
+                synchronized (LOCKS[lockIndex]) {
+                  Object[] results = resultsMap.get(groupKeyString);
+
+                  if (results == null) {
+                    results = new Object[numAggregationFunctions];
+                    for (int j = 0; j < numAggregationFunctions; j++) {
+                      results[j] = combinedAggregationGroupByResult.get(j).get(groupKeyString);
+                    }
+                    resultsMap.put(groupKeyString, results);
+                  } else {
+                    for (int j = 0; j < numAggregationFunctions; j++) {
+                      results[j] = aggregationFunctions[j].merge(results[j],
+                          combinedAggregationGroupByResult.get(j).get(groupKeyString));
+                    }
+                  }
+                }
+              }
+            }
+          } catch (QueryCancelledException e) {
+            LOGGER.debug("Query cancelled, stop processing CombineGroupBy for index {}", index);
+            mergedProcessingExceptions.add(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
           } catch (Exception e) {
             LOGGER.error("Exception processing CombineGroupBy for index {}, operator {}", index,
                 _operators.get(index).getClass().getName(), e);
@@ -203,6 +248,11 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
       // Trim the results map.
       AggregationGroupByTrimmingService aggregationGroupByTrimmingService =
           new AggregationGroupByTrimmingService(aggregationFunctions, (int) _brokerRequest.getGroupBy().getTopN());
+      // When the results of the groups trimmed on all the segments are bounded, first prune the groups that cannot be
+      // among the top groups.
+      if (numBoundedResults.get() == numOperators && mergedProcessingExceptions.isEmpty()) {
+        aggregationGroupByTrimmingService.pruneIntermediateResultsMap(resultsMap, trimThresholdSums);
+      }
       List<Map<String, Object>> trimmedResults =
           aggregationGroupByTrimmingService.trimIntermediateResultsMap(resultsMap);
       IntermediateResultsBlock mergedBlock =
@@ -239,6 +289,23 @@ public class CombineGroupByOperator extends BaseOperator<IntermediateResultsBloc
     }
   }
 
+  /**
+   * Helper method to add the trim thresholds of a segment result to the sums of the trim thresholds.
+   *
+   * @return Whether the results of the groups trimmed on the segment are bounded
+   */
+  private static boolean addTrimThresholds(double[] trimThresholdSums, @Nullable double[] trimThresholds) {
+    if (trimThresholds == null) {
+      return false;
+    }
+    synchronized (trimThresholdSums) {
+      for (int i = 0; i < trimThresholdSums.length; i++) {
+        trimThresholdSums[i] += trimThresholds[i];
+      }
+    }
+    return true;
+  }
+
   @Override
   public String getOperatorName() {
     return OPERATOR_NAME;
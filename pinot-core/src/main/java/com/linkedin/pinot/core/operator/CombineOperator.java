@@ -17,13 +17,17 @@ package com.linkedin.pinot.core.operator;
 
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.Selection;
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.exception.QueryCancelledException;
 import com.linkedin.pinot.core.query.reduce.CombineService;
 import com.linkedin.pinot.core.util.trace.TraceCallable;
 import com.linkedin.pinot.core.util.trace.TraceRunnable;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -32,12 +36,14 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
  * The <code>CombineOperator</code> class is the operator to combine selection results and aggregation only results.
+ * <p>For selection only queries, the remaining segments are skipped once the selection size is reached.
  */
 public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
   private static final Logger LOGGER = LoggerFactory.getLogger(CombineOperator.class);
@@ -85,6 +91,12 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
       operatorGroups.get(i % numGroups).add(_operators.get(i));
     }
 
+    // For selection only queries, stop processing segments once enough rows are selected
+    Selection selection = _brokerRequest.getSelections();
+    final int numRowsToSelect =
+        (selection != null && !selection.isSetSelectionSortSequence()) ? selection.getSize() : Integer.MAX_VALUE;
+    final AtomicInteger numRowsSelected = new AtomicInteger();
+
     final BlockingQueue<Block> blockingQueue = new ArrayBlockingQueue<>(numGroups);
     // Submit operators.
     for (final List<Operator> operatorGroup : operatorGroups) {
@@ -94,7 +106,14 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
           IntermediateResultsBlock mergedBlock = null;
           try {
             for (Operator operator : operatorGroup) {
+              if (mergedBlock != null && numRowsSelected.get() >= numRowsToSelect) {
+                break;
+              }
               IntermediateResultsBlock blockToMerge = (IntermediateResultsBlock) operator.nextBlock();
+              Collection<Serializable[]> selectionResult = blockToMerge.getSelectionResult();
+              if (selectionResult != null) {
+                numRowsSelected.addAndGet(selectionResult.size());
+              }
               if (mergedBlock == null) {
                 mergedBlock = blockToMerge;
               } else {
@@ -107,6 +126,9 @@ public class CombineOperator extends BaseOperator<IntermediateResultsBlock> {
                 }
               }
             }
+          } catch (QueryCancelledException e) {
+            LOGGER.debug("Query cancelled, stop processing segments.");
+            mergedBlock = new IntermediateResultsBlock(e);
           } catch (Exception e) {
             LOGGER.error("Caught exception while executing query.", e);
             mergedBlock = new IntermediateResultsBlock(e);
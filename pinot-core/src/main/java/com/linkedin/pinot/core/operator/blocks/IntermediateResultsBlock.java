@@ -48,6 +48,7 @@ public class IntermediateResultsBlock implements Block {
   private List<Object> _aggregationResult;
   private AggregationGroupByResult _aggregationGroupByResult;
   private List<Map<String, Object>> _combinedAggregationGroupByResult;
+  private double[] _combinedAggregationGroupByTrimThresholds;
   private List<ProcessingException> _processingExceptions;
   private long _numDocsScanned;
   private long _numEntriesScannedInFilter;
@@ -144,6 +145,28 @@ public class IntermediateResultsBlock implements Block {
     return _aggregationGroupByResult;
   }
 
+  /**
+   * Returns the aggregation group-by result as a list of maps from group keys to aggregation values, one per
+   * aggregation function.
+   */
+  @Nullable
+  public List<Map<String, Object>> getCombinedAggregationGroupByResult() {
+    return _combinedAggregationGroupByResult;
+  }
+
+  /**
+   * Returns the trim thresholds of the groups trimmed on the segment for the combined aggregation group-by result, or
+   * null if the results of the trimmed groups are not bounded. See {@link AggregationGroupByResult#getTrimThresholds()}.
+   */
+  @Nullable
+  public double[] getCombinedAggregationGroupByTrimThresholds() {
+    return _combinedAggregationGroupByTrimThresholds;
+  }
+
+  public void setCombinedAggregationGroupByTrimThresholds(@Nullable double[] trimThresholds) {
+    _combinedAggregationGroupByTrimThresholds = trimThresholds;
+  }
+
   @Nullable
   public List<ProcessingException> getProcessingExceptions() {
     return _processingExceptions;
@@ -19,6 +19,7 @@ import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.common.BaseBlockValSet;
 import com.linkedin.pinot.core.common.DataBlockCache;
 import com.linkedin.pinot.core.operator.ProjectionOperator;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 /**
@@ -127,6 +128,11 @@ public class ProjectionBlockValSet extends BaseBlockValSet {
     return _dataBlockCache.getDictIdsForMVColumn(_column);
   }
 
+  @Override
+  public Dictionary getDictionary() {
+    return _dataBlockCache.getDictionary(_column);
+  }
+
   @Override
   public int[] getNumMVEntries() {
     return _dataBlockCache.getNumValuesForMVColumn(_column);
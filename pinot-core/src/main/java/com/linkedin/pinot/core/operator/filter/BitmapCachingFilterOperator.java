@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter;
+
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.blocks.BaseFilterBlock;
+import com.linkedin.pinot.core.operator.blocks.BitmapBlock;
+import com.linkedin.pinot.core.operator.docidsets.BitmapDocIdSet;
+import com.linkedin.pinot.core.operator.docidsets.FilterBlockDocIdSet;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Filter operator admitted into the {@link FilterBitmapCache}, which evaluates the wrapped leaf filter operator on the
+ * whole document range when executed, and caches the matching documents as a bitmap.
+ */
+public class BitmapCachingFilterOperator extends BaseFilterOperator {
+  private static final String OPERATOR_NAME = "BitmapCachingFilterOperator";
+
+  private final FilterBitmapCache _filterBitmapCache;
+  private final IndexSegment _indexSegment;
+  private final String _predicateKey;
+  private final BaseFilterOperator _filterOperator;
+  private final int _startDocId;
+  private final int _endDocId;
+
+  BitmapCachingFilterOperator(FilterBitmapCache filterBitmapCache, IndexSegment indexSegment, String predicateKey,
+      BaseFilterOperator filterOperator, int startDocId, int endDocId) {
+    _filterBitmapCache = filterBitmapCache;
+    _indexSegment = indexSegment;
+    _predicateKey = predicateKey;
+    _filterOperator = filterOperator;
+    _startDocId = startDocId;
+    _endDocId = endDocId;
+  }
+
+  /**
+   * Returns the wrapped leaf filter operator.
+   */
+  BaseFilterOperator getFilterOperator() {
+    return _filterOperator;
+  }
+
+  @Override
+  protected BaseFilterBlock getNextBlock() {
+    FilterBlockDocIdSet docIdSet = _filterOperator.nextBlock().getFilteredBlockDocIdSet();
+    ImmutableRoaringBitmap bitmap;
+    if (docIdSet instanceof BitmapDocIdSet) {
+      bitmap = docIdSet.getRaw();
+    } else {
+      MutableRoaringBitmap mutableBitmap = new MutableRoaringBitmap();
+      BlockDocIdIterator iterator = docIdSet.iterator();
+      int docId;
+      while ((docId = iterator.next()) != Constants.EOF) {
+        mutableBitmap.add(docId);
+      }
+      mutableBitmap.runOptimize();
+      bitmap = mutableBitmap;
+    }
+    _filterBitmapCache.put(_indexSegment, _predicateKey, bitmap);
+    return new BitmapBlock(new ImmutableRoaringBitmap[]{bitmap}, _startDocId, _endDocId, false);
+  }
+
+  @Override
+  public boolean isResultEmpty() {
+    return _filterOperator.isResultEmpty();
+  }
+
+  @Override
+  public String getOperatorName() {
+    return OPERATOR_NAME;
+  }
+}
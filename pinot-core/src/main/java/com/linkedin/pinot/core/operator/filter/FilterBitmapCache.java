@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.predicate.BaseInPredicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.lang3.StringUtils;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+
+/**
+ * Server level cache of the matching documents of leaf filter predicates on immutable segments, so that predicates
+ * repeated across queries (e.g. <code>country = 'US'</code>) are evaluated once per segment.
+ * <ul>
+ *   <li> Results are keyed by the identity of the segment, the column and a normalized form of the predicate (IN and
+ *        NOT_IN values are sorted), and cached as immutable roaring bitmaps. </li>
+ *   <li> Only predicates seen again on a segment whose estimated evaluation cost reaches the configured threshold are
+ *        admitted, using the cost model of {@link FilterOperatorUtils}. Sorted index lookups are never cached. </li>
+ *   <li> Admitted predicates are evaluated on the whole segment when the query executes them, not when the query is
+ *        planned. </li>
+ *   <li> The total size of the cached bitmaps is bounded by the configured memory budget, least recently used bitmaps
+ *        are evicted first. The cached bitmaps are also indexed per segment, so that removing the bitmaps of a
+ *        segment when it is closed (after being replaced or unloaded) only touches its own bitmaps. </li>
+ * </ul>
+ * The plan maker hands the cache to the filter plans it builds; filters planned without one evaluate their predicates
+ * on every query.
+ */
+@ThreadSafe
+public class FilterBitmapCache {
+  public static final String MAX_SIZE_BYTES_CONFIG_KEY = "maxSizeBytes";
+  public static final long DEFAULT_MAX_SIZE_BYTES = 0L;
+  public static final String MIN_ADMISSION_COST_CONFIG_KEY = "minAdmissionCost";
+  public static final long DEFAULT_MIN_ADMISSION_COST = 10_000L;
+
+  // Bound of the number of predicates seen once per segment, past which the seen predicates are forgotten
+  private static final int MAX_NUM_SEEN_PREDICATES_PER_SEGMENT = 1000;
+
+  private final long _maxSizeBytes;
+  private final long _minAdmissionCost;
+  private final ServerMetrics _serverMetrics;
+  private final Cache<BitmapKey, ImmutableRoaringBitmap> _cache;
+  // Cached bitmaps and seen predicates of each segment, kept in sync with the cache through its removal listener
+  private final ConcurrentHashMap<IndexSegment, SegmentBitmaps> _bitmapsBySegment = new ConcurrentHashMap<>();
+
+  public FilterBitmapCache(long maxSizeBytes, long minAdmissionCost, @Nullable ServerMetrics serverMetrics) {
+    _maxSizeBytes = maxSizeBytes;
+    _minAdmissionCost = minAdmissionCost;
+    _serverMetrics = serverMetrics;
+    if (maxSizeBytes > 0) {
+      _cache = CacheBuilder.newBuilder()
+          .maximumWeight(maxSizeBytes)
+          .weigher(new Weigher<BitmapKey, ImmutableRoaringBitmap>() {
+            @Override
+            public int weigh(BitmapKey key, ImmutableRoaringBitmap value) {
+              return 2 * key._predicateKey.length() + value.getSizeInBytes();
+            }
+          })
+          .removalListener(new RemovalListener<BitmapKey, ImmutableRoaringBitmap>() {
+            @Override
+            public void onRemoval(RemovalNotification<BitmapKey, ImmutableRoaringBitmap> notification) {
+              if (notification.wasEvicted()) {
+                addMeteredValue(ServerMeter.FILTER_BITMAP_CACHE_EVICTIONS);
+              }
+              // Only unregister the removed bitmap if it has not been cached again (e.g. replaced) in the meantime
+              BitmapKey key = notification.getKey();
+              final ImmutableRoaringBitmap removedBitmap = notification.getValue();
+              SegmentBitmaps segmentBitmaps = _bitmapsBySegment.get(key._indexSegment);
+              if (segmentBitmaps != null) {
+                segmentBitmaps._bitmaps.computeIfPresent(key._predicateKey,
+                    new BiFunction<String, ImmutableRoaringBitmap, ImmutableRoaringBitmap>() {
+                      @Override
+                      public ImmutableRoaringBitmap apply(String predicateKey, ImmutableRoaringBitmap bitmap) {
+                        return bitmap == removedBitmap ? null : bitmap;
+                      }
+                    });
+              }
+            }
+          })
+          .build();
+    } else {
+      _cache = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return _maxSizeBytes > 0;
+  }
+
+  /**
+   * Returns the normalized form of the given leaf filter, where the values of IN/NOT_IN are sorted.
+   */
+  public static String getPredicateKey(@Nonnull FilterQueryTree filterQueryTree) {
+    FilterOperator operator = filterQueryTree.getOperator();
+    List<String> values = filterQueryTree.getValue();
+    if (operator == FilterOperator.IN || operator == FilterOperator.NOT_IN) {
+      if (values.size() == 1) {
+        values = Arrays.asList(StringUtils.splitByWholeSeparator(values.get(0), BaseInPredicate.DELIMITER));
+      }
+      values = new ArrayList<>(values);
+      Collections.sort(values);
+    }
+    return filterQueryTree.getColumn() + ' ' + operator + ' ' + values;
+  }
+
+  /**
+   * Returns a filter operator on the cached matching documents of the given predicate, or null if not cached.
+   *
+   * @param indexSegment Segment
+   * @param predicateKey Predicate key returned by {@link #getPredicateKey(FilterQueryTree)}
+   * @param startDocId Start document id
+   * @param endDocId End document id (inclusive)
+   * @return Filter operator on the cached bitmap, or null if not cached
+   */
+  @Nullable
+  public BaseFilterOperator getFilterOperator(@Nonnull IndexSegment indexSegment, @Nonnull String predicateKey,
+      int startDocId, int endDocId) {
+    if (!isEnabled()) {
+      return null;
+    }
+    ImmutableRoaringBitmap bitmap = _cache.getIfPresent(new BitmapKey(indexSegment, predicateKey));
+    if (bitmap == null) {
+      addMeteredValue(ServerMeter.FILTER_BITMAP_CACHE_MISSES);
+      return null;
+    }
+    addMeteredValue(ServerMeter.FILTER_BITMAP_CACHE_HITS);
+    return new BitmapBasedFilterOperator(new ImmutableRoaringBitmap[]{bitmap}, startDocId, endDocId, false);
+  }
+
+  /**
+   * Returns a filter operator which caches the matching documents of the given leaf filter operator when executed, if
+   * the estimated evaluation cost reaches the admission threshold and the predicate has already been seen on the
+   * segment. Predicates evaluated once (e.g. ad-hoc queries) are never cached, so they do not evict the repeated
+   * ones. Nothing is evaluated until the returned operator is executed.
+   * <p>Scan based filter operators under an AND should not be admitted, as they only scan the documents matching the
+   * other children of the AND, while caching them would scan the whole segment.
+   *
+   * @param indexSegment Segment
+   * @param predicateKey Predicate key returned by {@link #getPredicateKey(FilterQueryTree)}
+   * @param filterOperator Leaf filter operator for the predicate
+   * @param predicateEvaluator Predicate evaluator used by the filter operator
+   * @param dataSource Data source of the column
+   * @param startDocId Start document id
+   * @param endDocId End document id (inclusive)
+   * @return Filter operator caching the matching documents, or the given filter operator if the predicate is not
+   *         admitted
+   */
+  public BaseFilterOperator admit(@Nonnull IndexSegment indexSegment, @Nonnull String predicateKey,
+      @Nonnull BaseFilterOperator filterOperator, @Nonnull PredicateEvaluator predicateEvaluator,
+      @Nonnull DataSource dataSource, int startDocId, int endDocId) {
+    if (!isEnabled() || filterOperator.isResultEmpty()
+        || FilterOperatorUtils.getEstimatedCost(filterOperator, predicateEvaluator, dataSource, startDocId, endDocId)
+        < _minAdmissionCost) {
+      return filterOperator;
+    }
+
+    // Only admit the predicates seen before on the segment
+    Set<String> seenPredicateKeys = getSegmentBitmaps(indexSegment)._seenPredicateKeys;
+    if (seenPredicateKeys.add(predicateKey)) {
+      if (seenPredicateKeys.size() > MAX_NUM_SEEN_PREDICATES_PER_SEGMENT) {
+        // Forget the predicates seen so far, so that the set stays bounded with many distinct predicates
+        seenPredicateKeys.clear();
+      }
+      return filterOperator;
+    }
+    seenPredicateKeys.remove(predicateKey);
+    return new BitmapCachingFilterOperator(this, indexSegment, predicateKey, filterOperator, startDocId, endDocId);
+  }
+
+  /**
+   * Caches the matching documents of the given predicate. Called by {@link BitmapCachingFilterOperator} once the
+   * predicate is evaluated.
+   */
+  void put(@Nonnull IndexSegment indexSegment, @Nonnull String predicateKey, @Nonnull ImmutableRoaringBitmap bitmap) {
+    SegmentBitmaps segmentBitmaps = getSegmentBitmaps(indexSegment);
+    // Registering and caching the bitmap is atomic with respect to invalidating the segment, so that no bitmap of an
+    // invalidated segment is left in the cache
+    synchronized (segmentBitmaps) {
+      if (segmentBitmaps._invalidated) {
+        return;
+      }
+      segmentBitmaps._bitmaps.put(predicateKey, bitmap);
+      _cache.put(new BitmapKey(indexSegment, predicateKey), bitmap);
+    }
+  }
+
+  private SegmentBitmaps getSegmentBitmaps(IndexSegment indexSegment) {
+    SegmentBitmaps segmentBitmaps = _bitmapsBySegment.get(indexSegment);
+    if (segmentBitmaps == null) {
+      segmentBitmaps = new SegmentBitmaps();
+      SegmentBitmaps existing = _bitmapsBySegment.putIfAbsent(indexSegment, segmentBitmaps);
+      if (existing != null) {
+        segmentBitmaps = existing;
+      }
+    }
+    return segmentBitmaps;
+  }
+
+  /**
+   * Removes all the cached bitmaps of the given segment. Should be called when the segment is closed.
+   */
+  public void invalidate(@Nonnull IndexSegment indexSegment) {
+    if (!isEnabled()) {
+      return;
+    }
+    SegmentBitmaps segmentBitmaps = _bitmapsBySegment.remove(indexSegment);
+    if (segmentBitmaps != null) {
+      synchronized (segmentBitmaps) {
+        segmentBitmaps._invalidated = true;
+      }
+      for (String predicateKey : segmentBitmaps._bitmaps.keySet()) {
+        _cache.invalidate(new BitmapKey(indexSegment, predicateKey));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached bitmaps.
+   */
+  public long size() {
+    if (!isEnabled()) {
+      return 0L;
+    }
+    return _cache.size();
+  }
+
+  private void addMeteredValue(ServerMeter meter) {
+    if (_serverMetrics != null) {
+      _serverMetrics.addMeteredGlobalValue(meter, 1L);
+    }
+  }
+
+  private static final class SegmentBitmaps {
+    // Bitmaps currently cached for the segment, keyed by predicate key
+    final ConcurrentHashMap<String, ImmutableRoaringBitmap> _bitmaps = new ConcurrentHashMap<>();
+    // Predicates seen once on the segment, admitted when seen again
+    final Set<String> _seenPredicateKeys = ConcurrentHashMap.newKeySet();
+    // Set once the segment is invalidated, after which no bitmap of the segment can be cached through this instance
+    boolean _invalidated;
+  }
+
+  private static final class BitmapKey {
+    final IndexSegment _indexSegment;
+    final String _predicateKey;
+
+    BitmapKey(IndexSegment indexSegment, String predicateKey) {
+      _indexSegment = indexSegment;
+      _predicateKey = predicateKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BitmapKey)) {
+        return false;
+      }
+      BitmapKey that = (BitmapKey) o;
+      return _indexSegment == that._indexSegment && _predicateKey.equals(that._predicateKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_indexSegment) + _predicateKey.hashCode();
+    }
+  }
+}
@@ -19,12 +19,18 @@ import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.DataSourceMetadata;
 import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 
 public class FilterOperatorUtils {
+  // Estimated cost of merging one inverted index bitmap, in number of documents scanned
+  private static final long BITMAP_MERGE_COST = 1000L;
+  // IN/NOT_IN predicates with fewer values than this always use the inverted index
+  private static final int MIN_NUM_BITMAPS_FOR_SCAN = 1000;
+
   private FilterOperatorUtils() {
   }
 
@@ -44,12 +50,75 @@ public class FilterOperatorUtils {
         != Predicate.Type.REGEXP_LIKE)) {
       if (dataSourceMetadata.isSorted()) {
         return new SortedInvertedIndexBasedFilterOperator(predicateEvaluator, dataSource, startDocId, endDocId);
-      } else {
+      } else if (!isBitmapMergeMoreExpensiveThanScan(predicateEvaluator, dataSource, startDocId, endDocId)) {
         return new BitmapBasedFilterOperator(predicateEvaluator, dataSource, startDocId, endDocId);
       }
-    } else {
-      return new ScanBasedFilterOperator(predicateEvaluator, dataSource, startDocId, endDocId);
     }
+    return new ScanBasedFilterOperator(predicateEvaluator, dataSource, startDocId, endDocId);
+  }
+
+  /**
+   * For IN/NOT_IN predicates with a large number of values (at least {@link #MIN_NUM_BITMAPS_FOR_SCAN}), merging the
+   * inverted index bitmaps of all the values can be more expensive than scanning the forward index with a dictionary
+   * id lookup. Predicates with fewer values always use the inverted index, whatever the size of the segment.
+   */
+  private static boolean isBitmapMergeMoreExpensiveThanScan(PredicateEvaluator predicateEvaluator,
+      DataSource dataSource, int startDocId, int endDocId) {
+    Predicate.Type predicateType = predicateEvaluator.getPredicateType();
+    if (predicateType != Predicate.Type.IN && predicateType != Predicate.Type.NOT_IN) {
+      return false;
+    }
+    if (getNumBitmaps(predicateEvaluator) < MIN_NUM_BITMAPS_FOR_SCAN) {
+      return false;
+    }
+    return getBitmapMergeCost(predicateEvaluator, dataSource, startDocId, endDocId) > getScanCost(dataSource,
+        startDocId, endDocId);
+  }
+
+  /**
+   * Returns the estimated cost of evaluating the given leaf filter operator, in number of documents scanned.
+   */
+  static long getEstimatedCost(BaseFilterOperator filterOperator, PredicateEvaluator predicateEvaluator,
+      DataSource dataSource, int startDocId, int endDocId) {
+    if (filterOperator instanceof ScanBasedFilterOperator) {
+      return getScanCost(dataSource, startDocId, endDocId);
+    }
+    if (filterOperator instanceof BitmapBasedFilterOperator) {
+      return getBitmapMergeCost(predicateEvaluator, dataSource, startDocId, endDocId);
+    }
+    return 0L;
+  }
+
+  /**
+   * Scanning costs one dictionary id lookup per value, i.e. numDocs times the number of values per document.
+   */
+  private static long getScanCost(DataSource dataSource, int startDocId, int endDocId) {
+    long numDocs = endDocId - startDocId + 1;
+    DataSourceMetadata dataSourceMetadata = dataSource.getDataSourceMetadata();
+    if (!dataSourceMetadata.isSingleValue()) {
+      numDocs *= Math.max(dataSourceMetadata.getMaxNumMultiValues(), 1);
+    }
+    return numDocs;
+  }
+
+  /**
+   * Merging the bitmaps costs (numBitmaps * BITMAP_MERGE_COST + numMatchingDocs), where the number of matching
+   * documents assumes a uniform distribution of the values.
+   */
+  private static long getBitmapMergeCost(PredicateEvaluator predicateEvaluator, DataSource dataSource,
+      int startDocId, int endDocId) {
+    long numBitmaps = getNumBitmaps(predicateEvaluator);
+    long bitmapMergeCost = numBitmaps * BITMAP_MERGE_COST;
+    Dictionary dictionary = dataSource.getDictionary();
+    if (dictionary != null && dictionary.length() > 0) {
+      bitmapMergeCost += (endDocId - startDocId + 1L) * numBitmaps / dictionary.length();
+    }
+    return bitmapMergeCost;
+  }
+
+  private static int getNumBitmaps(PredicateEvaluator predicateEvaluator) {
+    return predicateEvaluator.isExclusive() ? predicateEvaluator.getNonMatchingDictIds().length
+        : predicateEvaluator.getMatchingDictIds().length;
   }
 
   /**
@@ -66,6 +135,9 @@ public class FilterOperatorUtils {
       }
 
       int getPriority(BaseFilterOperator filterOperator) {
+        if (filterOperator instanceof BitmapCachingFilterOperator) {
+          return getPriority(((BitmapCachingFilterOperator) filterOperator).getFilterOperator());
+        }
         if (filterOperator instanceof SortedInvertedIndexBasedFilterOperator) {
           return 0;
         }
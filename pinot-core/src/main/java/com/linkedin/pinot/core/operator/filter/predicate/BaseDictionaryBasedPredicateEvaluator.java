@@ -15,7 +15,43 @@
  */
 package com.linkedin.pinot.core.operator.filter.predicate;
 
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.BitSet;
+import javax.annotation.Nullable;
+
+
 public abstract class BaseDictionaryBasedPredicateEvaluator extends BasePredicateEvaluator {
+  // Bitsets up to this number of bits are always allowed
+  private static final int MIN_BITSET_MAX_CARDINALITY = 1 << 16;
+  // Otherwise, bitsets may use up to this number of bits per dictionary id in the set, so that IN lists of a few
+  // thousand values (e.g. ids) on dictionaries with millions of values still get a bitset
+  private static final int BITSET_MAX_BITS_PER_DICT_ID = 1024;
+  // Bitsets never go beyond this number of bits (2MB)
+  private static final int MAX_BITSET_CARDINALITY = 1 << 24;
+
+  /**
+   * Returns a bitset keyed by dictionary id containing the given dictionary ids, or <code>null</code> if the bitset
+   * would be too large compared with the number of dictionary ids. Checking the membership of a dictionary id against
+   * the bitset is much cheaper than probing a hash set, which matters when scanning with large IN/NOT_IN lists.
+   *
+   * @param dictIds Set of dictionary ids
+   * @param cardinality Cardinality of the dictionary
+   * @return Bitset containing the dictionary ids, or <code>null</code> if too large
+   */
+  @Nullable
+  static BitSet toDictIdBitSet(IntSet dictIds, int cardinality) {
+    if (cardinality > MIN_BITSET_MAX_CARDINALITY && (cardinality > MAX_BITSET_CARDINALITY
+        || cardinality > (long) dictIds.size() * BITSET_MAX_BITS_PER_DICT_ID)) {
+      return null;
+    }
+    BitSet bitSet = new BitSet(cardinality);
+    IntIterator iterator = dictIds.iterator();
+    while (iterator.hasNext()) {
+      bitSet.set(iterator.nextInt());
+    }
+    return bitSet;
+  }
 
   @Override
   public final boolean isDictionaryBased() {
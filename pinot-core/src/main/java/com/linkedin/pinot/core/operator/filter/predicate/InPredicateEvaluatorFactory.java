@@ -27,6 +27,7 @@ import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -78,6 +79,7 @@ public class InPredicateEvaluatorFactory {
 
   private static final class DictionaryBasedInPredicateEvaluator extends BaseDictionaryBasedPredicateEvaluator {
     final IntSet _matchingDictIdSet;
+    final BitSet _matchingDictIdBitSet;
     int[] _matchingDictIds;
 
     DictionaryBasedInPredicateEvaluator(InPredicate inPredicate, Dictionary dictionary) {
@@ -89,6 +91,7 @@ public class InPredicateEvaluatorFactory {
           _matchingDictIdSet.add(dictId);
         }
       }
+      _matchingDictIdBitSet = toDictIdBitSet(_matchingDictIdSet, dictionary.length());
     }
 
     @Override
@@ -103,6 +106,9 @@ public class InPredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(int dictId) {
+      if (_matchingDictIdBitSet != null) {
+        return _matchingDictIdBitSet.get(dictId);
+      }
       return _matchingDictIdSet.contains(dictId);
     }
 
@@ -27,6 +27,7 @@ import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -78,6 +79,7 @@ public class NotInPredicateEvaluatorFactory {
 
   public static final class DictionaryBasedNotInPredicateEvaluator extends BaseDictionaryBasedPredicateEvaluator {
     final IntSet _nonMatchingDictIdSet;
+    final BitSet _nonMatchingDictIdBitSet;
     final Dictionary _dictionary;
     int[] _matchingDictIds;
     int[] _nonMatchingDictIds;
@@ -91,6 +93,7 @@ public class NotInPredicateEvaluatorFactory {
           _nonMatchingDictIdSet.add(dictId);
         }
       }
+      _nonMatchingDictIdBitSet = toDictIdBitSet(_nonMatchingDictIdSet, dictionary.length());
       _dictionary = dictionary;
     }
 
@@ -106,6 +109,9 @@ public class NotInPredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(int dictId) {
+      if (_nonMatchingDictIdBitSet != null) {
+        return !_nonMatchingDictIdBitSet.get(dictId);
+      }
       return !_nonMatchingDictIdSet.contains(dictId);
     }
 
@@ -116,7 +122,7 @@ public class NotInPredicateEvaluatorFactory {
         _matchingDictIds = new int[dictionarySize - _nonMatchingDictIdSet.size()];
         int index = 0;
         for (int dictId = 0; dictId < dictionarySize; dictId++) {
-          if (!_nonMatchingDictIdSet.contains(dictId)) {
+          if (applySV(dictId)) {
             _matchingDictIds[index++] = dictId;
           }
         }
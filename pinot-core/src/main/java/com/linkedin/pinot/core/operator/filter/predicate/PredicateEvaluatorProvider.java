@@ -26,6 +26,7 @@ import com.linkedin.pinot.core.common.predicate.RangePredicate;
 import com.linkedin.pinot.core.common.predicate.RegexpLikePredicate;
 import com.linkedin.pinot.core.query.exception.BadQueryRequestException;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import javax.annotation.Nullable;
 
 
 public class PredicateEvaluatorProvider {
@@ -33,9 +34,18 @@ public class PredicateEvaluatorProvider {
   }
 
   public static PredicateEvaluator getPredicateEvaluator(Predicate predicate, DataSource dataSource) {
+    Dictionary dictionary = dataSource.getDataSourceMetadata().hasDictionary() ? dataSource.getDictionary() : null;
+    return getPredicateEvaluator(predicate, dictionary, dataSource.getDataSourceMetadata().getDataType());
+  }
+
+  /**
+   * Returns a dictionary based predicate evaluator if the dictionary is provided, or a raw value based predicate
+   * evaluator for the given data type otherwise.
+   */
+  public static PredicateEvaluator getPredicateEvaluator(Predicate predicate, @Nullable Dictionary dictionary,
+      DataType dataType) {
     try {
-      if (dataSource.getDataSourceMetadata().hasDictionary()) {
-        Dictionary dictionary = dataSource.getDictionary();
+      if (dictionary != null) {
         switch (predicate.getType()) {
           case EQ:
             return EqualsPredicateEvaluatorFactory.newDictionaryBasedEvaluator((EqPredicate) predicate, dictionary);
@@ -54,7 +64,6 @@ public class PredicateEvaluatorProvider {
             throw new UnsupportedOperationException("Unsupported predicate type: " + predicate.getType());
         }
       } else {
-        DataType dataType = dataSource.getDataSourceMetadata().getDataType();
         switch (predicate.getType()) {
           case EQ:
             return EqualsPredicateEvaluatorFactory.newRawValueBasedEvaluator((EqPredicate) predicate, dataType);
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import com.linkedin.pinot.common.utils.DataSchema;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.ExecutionStatistics;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionContext;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>SegmentResultCacheOperator</code> class provides the operator for aggregation (and aggregation group-by)
+ * queries on a single immutable segment, which serves the intermediate results from the {@link SegmentResultCache}
+ * when possible, and otherwise runs the underlying plan and caches its results.
+ */
+public class SegmentResultCacheOperator extends BaseOperator<IntermediateResultsBlock> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCacheOperator.class);
+  private static final String OPERATOR_NAME = "SegmentResultCacheOperator";
+  // Only kept in the cached data tables, never sent to the broker
+  private static final String GROUP_BY_TRIM_THRESHOLDS_METADATA_KEY = "groupByTrimThresholds";
+
+  private final SegmentResultCache _segmentResultCache;
+  private final IndexSegment _indexSegment;
+  private final String _queryKey;
+  private final AggregationFunctionContext[] _functionContexts;
+  private final boolean _isGroupBy;
+  private final PlanNode _planNode;
+
+  private ExecutionStatistics _executionStatistics;
+
+  public SegmentResultCacheOperator(@Nonnull SegmentResultCache segmentResultCache, @Nonnull IndexSegment indexSegment,
+      @Nonnull String queryKey, @Nonnull AggregationFunctionContext[] functionContexts, boolean isGroupBy,
+      @Nonnull PlanNode planNode) {
+    _segmentResultCache = segmentResultCache;
+    _indexSegment = indexSegment;
+    _queryKey = queryKey;
+    _functionContexts = functionContexts;
+    _isGroupBy = isGroupBy;
+    _planNode = planNode;
+  }
+
+  @Override
+  protected IntermediateResultsBlock getNextBlock() {
+    DataTable cachedDataTable = _segmentResultCache.get(_indexSegment, _queryKey);
+    if (cachedDataTable != null) {
+      return getCachedResultsBlock(cachedDataTable);
+    }
+
+    Operator operator = _planNode.run();
+    IntermediateResultsBlock resultsBlock = (IntermediateResultsBlock) operator.nextBlock();
+    _executionStatistics = operator.getExecutionStatistics();
+    if (resultsBlock.getProcessingExceptions() != null) {
+      return resultsBlock;
+    }
+    // The group-by results are materialized once, both to be cached and to be merged by the combine operator
+    if (_isGroupBy) {
+      resultsBlock = getMaterializedGroupByResultsBlock(resultsBlock);
+    }
+    try {
+      _segmentResultCache.put(_indexSegment, _queryKey, getDataTable(resultsBlock));
+    } catch (Exception e) {
+      // Results are still returned, only not cached
+      LOGGER.error("Caught exception while caching results for segment: {}", _indexSegment.getSegmentName(), e);
+    }
+    return resultsBlock;
+  }
+
+  /**
+   * Materializes the group-by results into maps from group key to result (one per aggregation function), the form in
+   * which they are cached, keeping the group-by trim thresholds.
+   */
+  private IntermediateResultsBlock getMaterializedGroupByResultsBlock(IntermediateResultsBlock resultsBlock) {
+    int numAggregationFunctions = _functionContexts.length;
+    List<Map<String, Object>> groupByResults = new ArrayList<>(numAggregationFunctions);
+    for (int i = 0; i < numAggregationFunctions; i++) {
+      groupByResults.add(new HashMap<String, Object>());
+    }
+    double[] trimThresholds = null;
+    AggregationGroupByResult aggregationGroupByResult = resultsBlock.getAggregationGroupByResult();
+    if (aggregationGroupByResult != null) {
+      trimThresholds = aggregationGroupByResult.getTrimThresholds();
+      Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
+      while (groupKeyIterator.hasNext()) {
+        GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+        for (int i = 0; i < numAggregationFunctions; i++) {
+          groupByResults.get(i).put(groupKey._stringKey, aggregationGroupByResult.getResultForKey(groupKey, i));
+        }
+      }
+    }
+    IntermediateResultsBlock materializedResultsBlock =
+        new IntermediateResultsBlock(_functionContexts, groupByResults, true);
+    materializedResultsBlock.setCombinedAggregationGroupByTrimThresholds(trimThresholds);
+    return materializedResultsBlock;
+  }
+
+  /**
+   * Serializes the segment results into a data table, with the execution statistics and the group-by trim thresholds
+   * (so that the combine operator can still prune the groups on cache hits) in the metadata.
+   */
+  private DataTable getDataTable(IntermediateResultsBlock resultsBlock)
+      throws Exception {
+    IntermediateResultsBlock blockToSerialize;
+    if (_isGroupBy) {
+      blockToSerialize = new IntermediateResultsBlock(_functionContexts,
+          resultsBlock.getCombinedAggregationGroupByResult(), true);
+    } else {
+      blockToSerialize = new IntermediateResultsBlock(_functionContexts, resultsBlock.getAggregationResult(), false);
+    }
+    blockToSerialize.setNumDocsScanned(_executionStatistics.getNumDocsScanned());
+    blockToSerialize.setNumEntriesScannedInFilter(_executionStatistics.getNumEntriesScannedInFilter());
+    blockToSerialize.setNumEntriesScannedPostFilter(_executionStatistics.getNumEntriesScannedPostFilter());
+    blockToSerialize.setNumTotalRawDocs(_executionStatistics.getNumTotalRawDocs());
+    DataTable dataTable = blockToSerialize.getDataTable();
+    double[] trimThresholds = resultsBlock.getCombinedAggregationGroupByTrimThresholds();
+    if (trimThresholds != null) {
+      dataTable.getMetadata().put(GROUP_BY_TRIM_THRESHOLDS_METADATA_KEY, StringUtils.join(trimThresholds, ','));
+    }
+    return dataTable;
+  }
+
+  /**
+   * De-serializes the cached segment results, and restores the execution statistics and the group-by trim thresholds
+   * from the metadata.
+   */
+  @SuppressWarnings("unchecked")
+  private IntermediateResultsBlock getCachedResultsBlock(DataTable dataTable) {
+    Map<String, String> metadata = dataTable.getMetadata();
+    _executionStatistics = new ExecutionStatistics(Long.parseLong(metadata.get(DataTable.NUM_DOCS_SCANNED_METADATA_KEY)),
+        Long.parseLong(metadata.get(DataTable.NUM_ENTRIES_SCANNED_IN_FILTER_METADATA_KEY)),
+        Long.parseLong(metadata.get(DataTable.NUM_ENTRIES_SCANNED_POST_FILTER_METADATA_KEY)),
+        Long.parseLong(metadata.get(DataTable.TOTAL_DOCS_METADATA_KEY)));
+
+    int numAggregationFunctions = _functionContexts.length;
+    if (_isGroupBy) {
+      List<Map<String, Object>> groupByResults = new ArrayList<>(numAggregationFunctions);
+      for (int i = 0; i < numAggregationFunctions; i++) {
+        groupByResults.add((Map<String, Object>) dataTable.getObject(i, 1));
+      }
+      IntermediateResultsBlock resultsBlock = new IntermediateResultsBlock(_functionContexts, groupByResults, true);
+      String trimThresholdsString = metadata.get(GROUP_BY_TRIM_THRESHOLDS_METADATA_KEY);
+      if (trimThresholdsString != null) {
+        String[] trimThresholdStrings = StringUtils.split(trimThresholdsString, ',');
+        double[] trimThresholds = new double[numAggregationFunctions];
+        for (int i = 0; i < numAggregationFunctions; i++) {
+          trimThresholds[i] = Double.parseDouble(trimThresholdStrings[i]);
+        }
+        resultsBlock.setCombinedAggregationGroupByTrimThresholds(trimThresholds);
+      }
+      return resultsBlock;
+    } else {
+      DataSchema dataSchema = dataTable.getDataSchema();
+      List<Object> aggregationResults = new ArrayList<>(numAggregationFunctions);
+      for (int i = 0; i < numAggregationFunctions; i++) {
+        switch (dataSchema.getColumnDataType(i)) {
+          case LONG:
+            aggregationResults.add(dataTable.getLong(0, i));
+            break;
+          case DOUBLE:
+            aggregationResults.add(dataTable.getDouble(0, i));
+            break;
+          case OBJECT:
+            aggregationResults.add(dataTable.getObject(0, i));
+            break;
+          default:
+            throw new UnsupportedOperationException(
+                "Unsupported aggregation column data type: " + dataSchema.getColumnDataType(i) + " for column: "
+                    + dataSchema.getColumnName(i));
+        }
+      }
+      return new IntermediateResultsBlock(_functionContexts, aggregationResults, false);
+    }
+  }
+
+  @Override
+  public String getOperatorName() {
+    return OPERATOR_NAME;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    return _executionStatistics;
+  }
+}
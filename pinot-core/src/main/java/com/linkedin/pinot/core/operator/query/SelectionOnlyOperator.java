@@ -59,6 +59,9 @@ public class SelectionOnlyOperator extends BaseOperator<IntermediateResultsBlock
     _dataSchema = SelectionOperatorUtils.extractDataSchema(null, selectionColumns, indexSegment);
     _blocks = new Block[selectionColumns.size()];
     _rowEvents = new ArrayList<>();
+    // Segments skipped once enough rows are selected from other segments still count towards the total docs
+    _executionStatistics =
+        new ExecutionStatistics(0L, 0L, 0L, indexSegment.getSegmentMetadata().getTotalRawDocs());
   }
 
   @Override
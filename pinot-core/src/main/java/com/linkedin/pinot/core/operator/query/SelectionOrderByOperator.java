@@ -78,13 +78,20 @@ public class SelectionOrderByOperator extends BaseOperator<IntermediateResultsBl
   protected IntermediateResultsBlock getNextBlock() {
     int numDocsScanned = 0;
 
+    // Only read the sort columns while scanning, and fetch the selection columns for the top documents at the end
     ProjectionBlock projectionBlock;
+    ProjectionBlock lastProjectionBlock = null;
     while ((projectionBlock = _projectionOperator.nextBlock()) != null) {
+      DocIdSetBlock docIdSetBlock = projectionBlock.getDocIdSetBlock();
+      _selectionOperatorService.collectDocIdsWithOrdering(docIdSetBlock.getDocIdSet(),
+          docIdSetBlock.getSearchableLength());
+      lastProjectionBlock = projectionBlock;
+    }
+    if (lastProjectionBlock != null) {
       for (int i = 0; i < _dataSchema.size(); i++) {
-        _blocks[i] = projectionBlock.getBlock(_dataSchema.getColumnName(i));
+        _blocks[i] = lastProjectionBlock.getBlock(_dataSchema.getColumnName(i));
       }
-      DocIdSetBlock docIdSetBlock = projectionBlock.getDocIdSetBlock();
-      _selectionOperatorService.iterateOnBlocksWithOrdering(docIdSetBlock.getBlockDocIdSet().iterator(), _blocks);
+      _selectionOperatorService.fetchRowsWithOrdering(_blocks);
     }
 
     // Create execution statistics.
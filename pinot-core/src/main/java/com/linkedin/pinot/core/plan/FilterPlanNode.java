@@ -23,17 +23,21 @@ import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegment;
 import com.linkedin.pinot.core.operator.filter.AndOperator;
 import com.linkedin.pinot.core.operator.filter.BaseFilterOperator;
 import com.linkedin.pinot.core.operator.filter.EmptyFilterOperator;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
 import com.linkedin.pinot.core.operator.filter.FilterOperatorUtils;
 import com.linkedin.pinot.core.operator.filter.MatchEntireSegmentOperator;
 import com.linkedin.pinot.core.operator.filter.OrOperator;
+import com.linkedin.pinot.core.operator.filter.ScanBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.StarTreeIndexBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
 import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,10 +46,25 @@ public class FilterPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(FilterPlanNode.class);
   private final BrokerRequest _brokerRequest;
   private final IndexSegment _segment;
+  private final FilterBitmapCache _filterBitmapCache;
 
   public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest) {
+    this(segment, brokerRequest, null);
+  }
+
+  /**
+   * Constructor for the class.
+   *
+   * @param segment Index segment
+   * @param brokerRequest Broker request
+   * @param filterBitmapCache Cache serving the matching documents of repeated predicates, or null to always evaluate
+   *                          the predicates
+   */
+  public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest,
+      @Nullable FilterBitmapCache filterBitmapCache) {
     _segment = segment;
     _brokerRequest = brokerRequest;
+    _filterBitmapCache = filterBitmapCache;
   }
 
   @Override
@@ -54,7 +73,7 @@ public class FilterPlanNode implements PlanNode {
     if (RequestUtils.isFitForStarTreeIndex(_segment.getSegmentMetadata(), _brokerRequest, rootFilterNode)) {
       return new StarTreeIndexBasedFilterOperator(_segment, _brokerRequest, rootFilterNode);
     } else {
-      return constructPhysicalOperator(rootFilterNode, _segment);
+      return constructPhysicalOperator(rootFilterNode, _segment, false, _filterBitmapCache);
     }
   }
 
@@ -67,6 +86,21 @@ public class FilterPlanNode implements PlanNode {
    */
   @VisibleForTesting
   public static BaseFilterOperator constructPhysicalOperator(FilterQueryTree filterQueryTree, IndexSegment segment) {
+    return constructPhysicalOperator(filterQueryTree, segment, false, null);
+  }
+
+  /**
+   * Helper method to build the operator tree from the filter query tree.
+   *
+   * @param filterQueryTree
+   * @param segment Index segment
+   * @param underAnd Whether the filter is nested under an AND, which only evaluates its scan based predicates on the
+   *                 documents matching the other children
+   * @param filterBitmapCache Filter bitmap cache, or null if the leaf filters should not be cached
+   * @return Filter Operator created
+   */
+  private static BaseFilterOperator constructPhysicalOperator(FilterQueryTree filterQueryTree, IndexSegment segment,
+      boolean underAnd, @Nullable FilterBitmapCache filterBitmapCache) {
     if (filterQueryTree == null) {
       return new MatchEntireSegmentOperator(segment.getSegmentMetadata().getTotalRawDocs());
     }
@@ -78,7 +112,8 @@ public class FilterPlanNode implements PlanNode {
       List<BaseFilterOperator> childFilterOperators = new ArrayList<>(childFilters.size());
       if (filterType == FilterOperator.AND) {
         for (FilterQueryTree childFilter : childFilters) {
-          BaseFilterOperator childFilterOperator = constructPhysicalOperator(childFilter, segment);
+          BaseFilterOperator childFilterOperator =
+              constructPhysicalOperator(childFilter, segment, true, filterBitmapCache);
           if (childFilterOperator.isResultEmpty()) {
             return EmptyFilterOperator.getInstance();
           }
@@ -88,7 +123,8 @@ public class FilterPlanNode implements PlanNode {
         return new AndOperator(childFilterOperators);
       } else {
         for (FilterQueryTree childFilter : childFilters) {
-          BaseFilterOperator childFilterOperator = constructPhysicalOperator(childFilter, segment);
+          BaseFilterOperator childFilterOperator =
+              constructPhysicalOperator(childFilter, segment, underAnd, filterBitmapCache);
           if (!childFilterOperator.isResultEmpty()) {
             childFilterOperators.add(childFilterOperator);
           }
@@ -102,14 +138,41 @@ public class FilterPlanNode implements PlanNode {
         }
       }
     } else {
-      Predicate predicate = Predicate.newPredicate(filterQueryTree);
-      DataSource dataSource = segment.getDataSource(filterQueryTree.getColumn());
-      PredicateEvaluator predicateEvaluator = PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource);
       int startDocId = 0;
       // TODO: make it exclusive
       // NOTE: end is inclusive
       int endDocId = segment.getSegmentMetadata().getTotalRawDocs() - 1;
-      return FilterOperatorUtils.getLeafFilterOperator(predicateEvaluator, dataSource, startDocId, endDocId);
+
+      // Matching documents of predicates on immutable segments can be served from the filter bitmap cache
+      String predicateKey = null;
+      if (filterBitmapCache != null && segment instanceof ImmutableSegment) {
+        predicateKey = FilterBitmapCache.getPredicateKey(filterQueryTree);
+        BaseFilterOperator cachedFilterOperator =
+            filterBitmapCache.getFilterOperator(segment, predicateKey, startDocId, endDocId);
+        if (cachedFilterOperator != null) {
+          return cachedFilterOperator;
+        }
+      }
+
+      Predicate predicate = Predicate.newPredicate(filterQueryTree);
+      DataSource dataSource = segment.getDataSource(filterQueryTree.getColumn());
+      PredicateEvaluator predicateEvaluator = PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource);
+      BaseFilterOperator leafFilterOperator =
+          FilterOperatorUtils.getLeafFilterOperator(predicateEvaluator, dataSource, startDocId, endDocId);
+      boolean isScan = leafFilterOperator instanceof ScanBasedFilterOperator;
+      // Caching a scan under an AND would scan the whole segment instead of only the documents matching the other
+      // children of the AND
+      if (predicateKey != null && !(underAnd && isScan)) {
+        leafFilterOperator =
+            filterBitmapCache.admit(segment, predicateKey, leafFilterOperator, predicateEvaluator, dataSource,
+                startDocId, endDocId);
+      }
+      // Scan based filter reads the whole forward index, start loading its head before the operator gets executed (the
+      // request is capped, and chunk readers keep reading ahead while scanning)
+      if (isScan) {
+        dataSource.prefetch(startDocId, endDocId);
+      }
+      return leafFilterOperator;
     }
   }
 
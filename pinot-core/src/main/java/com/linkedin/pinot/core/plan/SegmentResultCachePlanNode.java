@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.query.SegmentResultCacheOperator;
+import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionUtils;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>SegmentResultCachePlanNode</code> class provides the execution plan for aggregation (and aggregation
+ * group-by) queries on a single immutable segment, where the results are served from the {@link SegmentResultCache}
+ * when possible. The underlying plan node only runs on cache misses.
+ */
+public class SegmentResultCachePlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCachePlanNode.class);
+
+  private final SegmentResultCache _segmentResultCache;
+  private final IndexSegment _indexSegment;
+  private final String _queryKey;
+  private final List<AggregationInfo> _aggregationInfos;
+  private final boolean _isGroupBy;
+  private final PlanNode _planNode;
+
+  public SegmentResultCachePlanNode(@Nonnull SegmentResultCache segmentResultCache, @Nonnull IndexSegment indexSegment,
+      @Nonnull BrokerRequest brokerRequest, @Nonnull String queryKey, @Nonnull PlanNode planNode) {
+    _segmentResultCache = segmentResultCache;
+    _indexSegment = indexSegment;
+    _queryKey = queryKey;
+    _aggregationInfos = brokerRequest.getAggregationsInfo();
+    _isGroupBy = brokerRequest.isSetGroupBy();
+    _planNode = planNode;
+  }
+
+  @Override
+  public Operator run() {
+    return new SegmentResultCacheOperator(_segmentResultCache, _indexSegment, _queryKey,
+        AggregationFunctionUtils.getAggregationFunctionContexts(_aggregationInfos, _indexSegment.getSegmentMetadata()),
+        _isGroupBy, _planNode);
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "Segment Level Inner-Segment Plan Node:");
+    LOGGER.debug(prefix + "Operator: SegmentResultCacheOperator");
+    LOGGER.debug(prefix + "Argument 0: IndexSegment - " + _indexSegment.getSegmentName());
+    LOGGER.debug(prefix + "Argument 1: QueryKey - " + _queryKey);
+    LOGGER.debug(prefix + "Argument 2: Plan on cache miss -");
+    _planNode.showTree(prefix + "    ");
+  }
+}
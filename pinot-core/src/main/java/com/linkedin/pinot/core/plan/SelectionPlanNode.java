@@ -19,10 +19,12 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.Selection;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
 import com.linkedin.pinot.core.operator.query.EmptySelectionOperator;
 import com.linkedin.pinot.core.operator.query.SelectionOnlyOperator;
 import com.linkedin.pinot.core.operator.query.SelectionOrderByOperator;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +39,8 @@ public class SelectionPlanNode implements PlanNode {
   private final Selection _selection;
   private final ProjectionPlanNode _projectionPlanNode;
 
-  public SelectionPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+  public SelectionPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      @Nullable FilterBitmapCache filterBitmapCache) {
     _indexSegment = indexSegment;
     _selection = brokerRequest.getSelections();
 
@@ -49,7 +52,8 @@ public class SelectionPlanNode implements PlanNode {
         maxDocPerNextCall = Math.min(_selection.getOffset() + _selection.getSize(), maxDocPerNextCall);
       }
 
-      DocIdSetPlanNode docIdSetPlanNode = new DocIdSetPlanNode(_indexSegment, brokerRequest, maxDocPerNextCall);
+      DocIdSetPlanNode docIdSetPlanNode =
+          new DocIdSetPlanNode(_indexSegment, brokerRequest, maxDocPerNextCall, filterBitmapCache);
       _projectionPlanNode = new ProjectionPlanNode(_indexSegment,
           SelectionOperatorUtils.extractSelectionRelatedColumns(_selection, indexSegment), docIdSetPlanNode);
     } else {
@@ -19,11 +19,14 @@ import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.transform.TransformExpressionTree;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
 import com.linkedin.pinot.core.operator.transform.TransformOperator;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionContext;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionFactory;
 import java.util.HashSet;
 import java.util.Set;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,10 +49,22 @@ public class TransformPlanNode implements PlanNode {
    * @param brokerRequest BrokerRequest to process
    */
   public TransformPlanNode(@Nonnull IndexSegment indexSegment, @Nonnull BrokerRequest brokerRequest) {
+    this(indexSegment, brokerRequest, null);
+  }
+
+  /**
+   * Constructor for the class
+   *
+   * @param indexSegment Segment to process
+   * @param brokerRequest BrokerRequest to process
+   * @param filterBitmapCache Filter bitmap cache for the filter of the query, or null for no caching
+   */
+  public TransformPlanNode(@Nonnull IndexSegment indexSegment, @Nonnull BrokerRequest brokerRequest,
+      @Nullable FilterBitmapCache filterBitmapCache) {
     _segmentName = indexSegment.getSegmentName();
     extractColumnsAndTransforms(brokerRequest);
-    _projectionPlanNode =
-        new ProjectionPlanNode(indexSegment, _projectionColumns, new DocIdSetPlanNode(indexSegment, brokerRequest));
+    _projectionPlanNode = new ProjectionPlanNode(indexSegment, _projectionColumns,
+        new DocIdSetPlanNode(indexSegment, brokerRequest, filterBitmapCache));
   }
 
   /**
@@ -62,7 +77,7 @@ public class TransformPlanNode implements PlanNode {
       for (AggregationInfo aggregationInfo : brokerRequest.getAggregationsInfo()) {
         if (!aggregationInfo.getAggregationType()
             .equalsIgnoreCase(AggregationFunctionFactory.AggregationFunctionType.COUNT.getName())) {
-          String[] columns = aggregationInfo.getAggregationParams().get("column").split(",");
+          String[] columns = AggregationFunctionContext.instantiate(aggregationInfo).getAggregationColumns();
           for (String column : columns) {
             TransformExpressionTree transformExpressionTree = TransformExpressionTree.compileToExpressionTree(column);
             transformExpressionTree.getColumns(_projectionColumns);
@@ -20,6 +20,8 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.data.manager.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegment;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
 import com.linkedin.pinot.core.plan.AggregationGroupByPlanNode;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
 import com.linkedin.pinot.core.plan.CombinePlanNode;
@@ -29,14 +31,17 @@ import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
 import com.linkedin.pinot.core.plan.MetadataBasedAggregationPlanNode;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.SegmentResultCachePlanNode;
 import com.linkedin.pinot.core.plan.SelectionPlanNode;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionFactory.AggregationFunctionType;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 
 
 /**
@@ -47,6 +52,8 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   public static final int DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY = 10_000;
 
   private final int _maxInitialResultHolderCapacity;
+  private final SegmentResultCache _segmentResultCache;
+  private final FilterBitmapCache _filterBitmapCache;
 
   // TODO: Fix the runtime trimming and add back the number of aggregation groups limit.
   // TODO: Need to revisit the runtime trimming solution. Current solution will remove group keys that should not be removed.
@@ -59,8 +66,21 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
    * Default constructor.
    */
   public InstancePlanMakerImplV2() {
+    this(null, null);
+  }
+
+  /**
+   * Constructor with the caches to serve the queries from.
+   *
+   * @param segmentResultCache Cache of the per-segment aggregation results, or null to always execute the queries
+   * @param filterBitmapCache Cache of the predicate matching documents, or null to always evaluate the predicates
+   */
+  public InstancePlanMakerImplV2(@Nullable SegmentResultCache segmentResultCache,
+      @Nullable FilterBitmapCache filterBitmapCache) {
     _maxInitialResultHolderCapacity = DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY;
 //    _numAggrGroupsLimit = DEFAULT_NUM_AGGR_GROUPS_LIMIT;
+    _segmentResultCache = segmentResultCache;
+    _filterBitmapCache = filterBitmapCache;
   }
 
   /**
@@ -72,8 +92,23 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
    * @param queryExecutorConfig query executor configuration.
    */
   public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig) {
+    this(queryExecutorConfig, null, null);
+  }
+
+  /**
+   * Constructor for usage when client requires to pass {@link QueryExecutorConfig} and the server level caches to this
+   * class.
+   *
+   * @param queryExecutorConfig query executor configuration.
+   * @param segmentResultCache segment result cache, or null if disabled.
+   * @param filterBitmapCache filter bitmap cache, or null if disabled.
+   */
+  public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig,
+      @Nullable SegmentResultCache segmentResultCache, @Nullable FilterBitmapCache filterBitmapCache) {
     _maxInitialResultHolderCapacity = queryExecutorConfig.getConfig()
         .getInt(MAX_INITIAL_RESULT_HOLDER_CAPACITY_KEY, DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY);
+    _segmentResultCache = segmentResultCache;
+    _filterBitmapCache = filterBitmapCache;
 
     // TODO: Read the limit on number of aggregation groups in query result from config.
     // _numAggrGroupsLimit = queryExecutorConfig.getConfig().getInt(NUM_AGGR_GROUPS_LIMIT, DEFAULT_NUM_AGGR_GROUPS_LIMIT);
@@ -86,19 +121,19 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
 
       if (brokerRequest.isSetGroupBy()) {
         return new AggregationGroupByPlanNode(indexSegment, brokerRequest,
-            _maxInitialResultHolderCapacity, _numAggrGroupsLimit);
+            _maxInitialResultHolderCapacity, _numAggrGroupsLimit, _filterBitmapCache);
       } else {
         if (isFitForMetadataBasedPlan(brokerRequest, indexSegment)) {
           return new MetadataBasedAggregationPlanNode(indexSegment, brokerRequest.getAggregationsInfo());
         } else if (isFitForDictionaryBasedPlan(brokerRequest, indexSegment)) {
           return new DictionaryBasedAggregationPlanNode(indexSegment, brokerRequest.getAggregationsInfo());
         } else {
-          return new AggregationPlanNode(indexSegment, brokerRequest);
+          return new AggregationPlanNode(indexSegment, brokerRequest, _filterBitmapCache);
         }
       }
     }
     if (brokerRequest.isSetSelections()) {
-      return new SelectionPlanNode(indexSegment, brokerRequest);
+      return new SelectionPlanNode(indexSegment, brokerRequest, _filterBitmapCache);
     }
     throw new UnsupportedOperationException("The query contains no aggregation or selection.");
   }
@@ -113,9 +148,17 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     }
     BrokerRequestPreProcessor.preProcess(indexSegments, brokerRequest);
 
+    // Results on immutable segments can be served from the segment result cache
+    String queryKey = _segmentResultCache != null ? SegmentResultCache.getQueryKey(brokerRequest) : null;
+
     List<PlanNode> planNodes = new ArrayList<>();
     for (IndexSegment indexSegment : indexSegments) {
-      planNodes.add(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      PlanNode planNode = makeInnerSegmentPlan(indexSegment, brokerRequest);
+      if (queryKey != null && indexSegment instanceof ImmutableSegment && (planNode instanceof AggregationPlanNode
+          || planNode instanceof AggregationGroupByPlanNode)) {
+        planNode = new SegmentResultCachePlanNode(_segmentResultCache, indexSegment, brokerRequest, queryKey, planNode);
+      }
+      planNodes.add(planNode);
     }
     CombinePlanNode combinePlanNode = new CombinePlanNode(planNodes, brokerRequest, executorService, timeOutMs);
 
@@ -18,6 +18,10 @@ package com.linkedin.pinot.core.query.aggregation;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountThetaSketchAggregationFunction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 /**
@@ -29,8 +33,17 @@ public class AggregationFunctionContext {
 
   public static AggregationFunctionContext instantiate(AggregationInfo aggregationInfo) {
     String[] aggrColumns = aggregationInfo.getAggregationParams().get("column").trim().split(",");
-    String functionName = aggregationInfo.getAggregationType();
-    AggregationFunction aggregationFunction = AggregationFunctionFactory.getAggregationFunction(functionName);
+    AggregationFunction aggregationFunction = AggregationFunctionFactory.getAggregationFunction(aggregationInfo);
+    if (aggregationFunction instanceof DistinctCountThetaSketchAggregationFunction) {
+      // Columns referenced in the filter clauses are additional inputs of the function
+      List<String> filterColumns =
+          ((DistinctCountThetaSketchAggregationFunction) aggregationFunction).getFilterColumns();
+      if (!filterColumns.isEmpty()) {
+        List<String> columns = new ArrayList<>(Arrays.asList(aggrColumns));
+        columns.addAll(filterColumns);
+        aggrColumns = columns.toArray(new String[columns.size()]);
+      }
+    }
     return new AggregationFunctionContext(aggrColumns, aggregationFunction);
   }
 
@@ -19,6 +19,7 @@ import com.linkedin.pinot.common.request.transform.TransformExpressionTree;
 import com.linkedin.pinot.core.operator.blocks.TransformBlock;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionUtils;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nonnull;
@@ -32,21 +33,19 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
   private final int _numFunctions;
   private final AggregationFunction[] _functions;
   private final AggregationResultHolder[] _resultHolders;
-  private final TransformExpressionTree[] _expressions;
+  private final TransformExpressionTree[][] _expressions;
 
   public DefaultAggregationExecutor(@Nonnull AggregationFunctionContext[] functionContexts) {
     _numFunctions = functionContexts.length;
     _functions = new AggregationFunction[_numFunctions];
     _resultHolders = new AggregationResultHolder[_numFunctions];
-    _expressions = new TransformExpressionTree[_numFunctions];
+    _expressions = new TransformExpressionTree[_numFunctions][];
     for (int i = 0; i < _numFunctions; i++) {
       AggregationFunction function = functionContexts[i].getAggregationFunction();
       _functions[i] = function;
       _resultHolders[i] = _functions[i].createAggregationResultHolder();
-      // TODO: currently only support single argument aggregation
       if (!function.getName().equals(AggregationFunctionFactory.AggregationFunctionType.COUNT.getName())) {
-        _expressions[i] =
-            TransformExpressionTree.compileToExpressionTree(functionContexts[i].getAggregationColumns()[0]);
+        _expressions[i] = AggregationFunctionUtils.compileExpressions(functionContexts[i].getAggregationColumns());
       }
     }
   }
@@ -61,7 +60,8 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
       if (function.getName().equals(AggregationFunctionFactory.AggregationFunctionType.COUNT.getName())) {
         function.aggregate(length, resultHolder);
       } else {
-        function.aggregate(length, resultHolder, transformBlock.getBlockValueSet(_expressions[i]));
+        function.aggregate(length, resultHolder,
+            AggregationFunctionUtils.getBlockValSets(transformBlock, _expressions[i]));
       }
     }
   }
@@ -15,7 +15,12 @@
  */
 package com.linkedin.pinot.core.query.aggregation.function;
 
+import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.core.query.exception.BadQueryRequestException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 
 
@@ -23,6 +28,8 @@ import javax.annotation.Nonnull;
  * Factory class to create instances of aggregation function of the given name.
  */
 public class AggregationFunctionFactory {
+  public static final String ARGUMENT_KEY_PREFIX = "arg";
+
   private AggregationFunctionFactory() {
   }
 
@@ -37,6 +44,7 @@ public class AggregationFunctionFactory {
     DISTINCTCOUNT("distinctCount"),
     DISTINCTCOUNTHLL("distinctCountHLL"),
     FASTHLL("fastHLL"),
+    DISTINCTCOUNTTHETASKETCH("distinctCountThetaSketch"),
     PERCENTILE10("percentile10"),
     PERCENTILE20("percentile20"),
     PERCENTILE30("percentile30"),
@@ -127,6 +135,23 @@ public class AggregationFunctionFactory {
     }
   }
 
+  /**
+   * Given the aggregation info, create and return a new instance of the corresponding aggregation function, configured
+   * with the additional arguments (<code>arg1</code>, <code>arg2</code>... in the aggregation params) if any.
+   */
+  @Nonnull
+  public static AggregationFunction getAggregationFunction(@Nonnull AggregationInfo aggregationInfo) {
+    String functionName = aggregationInfo.getAggregationType();
+    List<String> arguments = getArguments(aggregationInfo);
+    if (arguments.isEmpty()) {
+      return getAggregationFunction(functionName);
+    }
+    if (AggregationFunctionType.DISTINCTCOUNTTHETASKETCH.getName().equalsIgnoreCase(functionName)) {
+      return new DistinctCountThetaSketchAggregationFunction(arguments);
+    }
+    throw new BadQueryRequestException("Aggregation function: " + functionName + " does not take additional arguments");
+  }
+
   /**
    * Given the name of aggregation function, create and return a new instance of the corresponding aggregation function.
    */
@@ -157,6 +182,8 @@ public class AggregationFunctionFactory {
         return new DistinctCountHLLAggregationFunction();
       case FASTHLL:
         return new FastHLLAggregationFunction();
+      case DISTINCTCOUNTTHETASKETCH:
+        return new DistinctCountThetaSketchAggregationFunction();
       case PERCENTILE10:
         return new PercentileAggregationFunction(10);
       case PERCENTILE20:
@@ -295,4 +322,17 @@ public class AggregationFunctionFactory {
         throw new UnsupportedOperationException();
     }
   }
+
+  private static List<String> getArguments(@Nonnull AggregationInfo aggregationInfo) {
+    Map<String, String> aggregationParams = aggregationInfo.getAggregationParams();
+    if (aggregationParams == null) {
+      return Collections.emptyList();
+    }
+    List<String> arguments = new ArrayList<>();
+    String argument;
+    while ((argument = aggregationParams.get(ARGUMENT_KEY_PREFIX + (arguments.size() + 1))) != null) {
+      arguments.add(argument);
+    }
+    return arguments;
+  }
 }
@@ -17,7 +17,10 @@ package com.linkedin.pinot.core.query.aggregation.function;
 
 import com.google.common.math.DoubleMath;
 import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.transform.TransformExpressionTree;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.operator.blocks.TransformBlock;
 import com.linkedin.pinot.core.plan.AggregationFunctionInitializer;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionContext;
 import java.io.Serializable;
@@ -58,12 +61,38 @@ public class AggregationFunctionUtils {
     int numAggregationFunctions = aggregationInfos.size();
     AggregationFunction[] aggregationFunctions = new AggregationFunction[numAggregationFunctions];
     for (int i = 0; i < numAggregationFunctions; i++) {
-      aggregationFunctions[i] =
-          AggregationFunctionFactory.getAggregationFunction(aggregationInfos.get(i).getAggregationType());
+      aggregationFunctions[i] = AggregationFunctionFactory.getAggregationFunction(aggregationInfos.get(i));
     }
     return aggregationFunctions;
   }
 
+  /**
+   * Compiles the aggregation columns (the inputs of an aggregation function) into transform expressions.
+   */
+  @Nonnull
+  public static TransformExpressionTree[] compileExpressions(@Nonnull String[] aggregationColumns) {
+    int numColumns = aggregationColumns.length;
+    TransformExpressionTree[] expressions = new TransformExpressionTree[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      expressions[i] = TransformExpressionTree.compileToExpressionTree(aggregationColumns[i]);
+    }
+    return expressions;
+  }
+
+  /**
+   * Returns the block value sets of the given transform expressions from the transform block.
+   */
+  @Nonnull
+  public static BlockValSet[] getBlockValSets(@Nonnull TransformBlock transformBlock,
+      @Nonnull TransformExpressionTree[] expressions) {
+    int numExpressions = expressions.length;
+    BlockValSet[] blockValSets = new BlockValSet[numExpressions];
+    for (int i = 0; i < numExpressions; i++) {
+      blockValSets[i] = transformBlock.getBlockValueSet(expressions[i]);
+    }
+    return blockValSets;
+  }
+
   @Nonnull
   public static boolean[] getAggregationFunctionsSelectStatus(@Nonnull List<AggregationInfo> aggregationInfos) {
     int numAggregationFunctions = aggregationInfos.size();
@@ -63,6 +63,10 @@ public class AggregationFunctionVisitorBase {
     visitFunction(function);
   }
 
+  public void visit(DistinctCountThetaSketchAggregationFunction function) {
+    visitFunction(function);
+  }
+
   public void visit(FastHLLMVAggregationFunction function) {
     visitFunction(function);
   }
@@ -22,11 +22,33 @@ import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
 import com.linkedin.pinot.core.query.aggregation.ObjectAggregationResultHolder;
 import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
 import com.linkedin.pinot.core.query.aggregation.groupby.ObjectGroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import java.util.Set;
 import javax.annotation.Nonnull;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
 
 
-public class DistinctCountAggregationFunction implements AggregationFunction<IntOpenHashSet, Integer> {
+/**
+ * Exact distinct count aggregation function.
+ * <p>For dictionary encoded columns, the dictionary ids are accumulated in a {@link RoaringBitmap} while processing a
+ * segment, and only converted into values once per segment when extracting the result. Other values (no-dictionary
+ * columns and transformed values) are accumulated directly into a value set.
+ * <p>The intermediate result is a value set, which is merged at combine and broker level:
+ * <ul>
+ *   <li>INT and FLOAT: {@link IntOpenHashSet} of the int values and float int bits</li>
+ *   <li>LONG and DOUBLE: {@link LongOpenHashSet} of the long values and double long bits</li>
+ *   <li>STRING: {@link ObjectOpenHashSet} of the string values</li>
+ * </ul>
+ * <p>The value sets for INT and FLOAT are identical to the hash code sets used by the older versions, so they can be
+ * merged with them. Other value sets are converted into hash code sets when merging with a hash code set.
+ */
+@SuppressWarnings("unchecked")
+public class DistinctCountAggregationFunction implements AggregationFunction<Set, Integer> {
   private static final String NAME = AggregationFunctionFactory.AggregationFunctionType.DISTINCTCOUNT.getName();
 
   @Nonnull
@@ -61,46 +83,57 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
   @Override
   public void aggregate(int length, @Nonnull AggregationResultHolder aggregationResultHolder,
       @Nonnull BlockValSet... blockValSets) {
-    IntOpenHashSet valueSet = aggregationResultHolder.getResult();
-    if (valueSet == null) {
-      valueSet = new IntOpenHashSet();
-      aggregationResultHolder.setValue(valueSet);
+    BlockValSet blockValSet = blockValSets[0];
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[] dictIds = blockValSet.getDictionaryIdsSV();
+      RoaringBitmap dictIdBitmap = getDictIdBitmap(aggregationResultHolder, dictionary, valueType);
+      for (int i = 0; i < length; i++) {
+        dictIdBitmap.add(dictIds[i]);
+      }
+      return;
     }
 
-    FieldSpec.DataType valueType = blockValSets[0].getValueType();
+    Set valueSet = getValueSet(aggregationResultHolder, valueType);
     switch (valueType) {
       case INT:
-        int[] intValues = blockValSets[0].getIntValuesSV();
+        IntOpenHashSet intSet = (IntOpenHashSet) valueSet;
+        int[] intValues = blockValSet.getIntValuesSV();
         for (int i = 0; i < length; i++) {
-          valueSet.add(intValues[i]);
+          intSet.add(intValues[i]);
         }
         break;
 
       case LONG:
-        long[] longValues = blockValSets[0].getLongValuesSV();
+        LongOpenHashSet longSet = (LongOpenHashSet) valueSet;
+        long[] longValues = blockValSet.getLongValuesSV();
         for (int i = 0; i < length; i++) {
-          valueSet.add(Long.valueOf(longValues[i]).hashCode());
+          longSet.add(longValues[i]);
         }
         break;
 
       case FLOAT:
-        float[] floatValues = blockValSets[0].getFloatValuesSV();
+        IntOpenHashSet floatSet = (IntOpenHashSet) valueSet;
+        float[] floatValues = blockValSet.getFloatValuesSV();
         for (int i = 0; i < length; i++) {
-          valueSet.add(Float.valueOf(floatValues[i]).hashCode());
+          floatSet.add(Float.floatToIntBits(floatValues[i]));
         }
         break;
 
       case DOUBLE:
-        double[] doubleValues = blockValSets[0].getDoubleValuesSV();
+        LongOpenHashSet doubleSet = (LongOpenHashSet) valueSet;
+        double[] doubleValues = blockValSet.getDoubleValuesSV();
         for (int i = 0; i < length; i++) {
-          valueSet.add(Double.valueOf(doubleValues[i]).hashCode());
+          doubleSet.add(Double.doubleToLongBits(doubleValues[i]));
         }
         break;
 
       case STRING:
-        String[] stringValues = blockValSets[0].getStringValuesSV();
+        String[] stringValues = blockValSet.getStringValuesSV();
         for (int i = 0; i < length; i++) {
-          valueSet.add(stringValues[i].hashCode());
+          valueSet.add(stringValues[i]);
         }
         break;
 
@@ -112,46 +145,53 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
   @Override
   public void aggregateGroupBySV(int length, @Nonnull int[] groupKeyArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
+    BlockValSet blockValSet = blockValSets[0];
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[] dictIds = blockValSet.getDictionaryIdsSV();
+      for (int i = 0; i < length; i++) {
+        getDictIdBitmap(groupByResultHolder, groupKeyArray[i], dictionary, valueType).add(dictIds[i]);
+      }
+      return;
+    }
 
-    FieldSpec.DataType valueType = blockValSets[0].getValueType();
     switch (valueType) {
       case INT:
-        int[] intValues = blockValSets[0].getIntValuesSV();
+        int[] intValues = blockValSet.getIntValuesSV();
         for (int i = 0; i < length; i++) {
-          // Hashcode for int is the same as its value.
-          setValueForGroupKey(groupByResultHolder, groupKeyArray[i], intValues[i]);
+          ((IntOpenHashSet) getValueSet(groupByResultHolder, groupKeyArray[i], valueType)).add(intValues[i]);
         }
         break;
 
       case LONG:
-        long[] longValues = blockValSets[0].getLongValuesSV();
+        long[] longValues = blockValSet.getLongValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = Long.valueOf(longValues[i]).hashCode();
-          setValueForGroupKey(groupByResultHolder, groupKeyArray[i], hashCode);
+          ((LongOpenHashSet) getValueSet(groupByResultHolder, groupKeyArray[i], valueType)).add(longValues[i]);
         }
         break;
 
       case FLOAT:
-        float[] floatValues = blockValSets[0].getFloatValuesSV();
+        float[] floatValues = blockValSet.getFloatValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = Float.valueOf(floatValues[i]).hashCode();
-          setValueForGroupKey(groupByResultHolder, groupKeyArray[i], hashCode);
+          ((IntOpenHashSet) getValueSet(groupByResultHolder, groupKeyArray[i], valueType)).add(
+              Float.floatToIntBits(floatValues[i]));
         }
         break;
 
       case DOUBLE:
-        double[] doubleValues = blockValSets[0].getDoubleValuesSV();
+        double[] doubleValues = blockValSet.getDoubleValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = Double.valueOf(doubleValues[i]).hashCode();
-          setValueForGroupKey(groupByResultHolder, groupKeyArray[i], hashCode);
+          ((LongOpenHashSet) getValueSet(groupByResultHolder, groupKeyArray[i], valueType)).add(
+              Double.doubleToLongBits(doubleValues[i]));
         }
         break;
 
       case STRING:
-        String[] stringValues = blockValSets[0].getStringValuesSV();
+        String[] stringValues = blockValSet.getStringValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = stringValues[i].hashCode();
-          setValueForGroupKey(groupByResultHolder, groupKeyArray[i], hashCode);
+          getValueSet(groupByResultHolder, groupKeyArray[i], valueType).add(stringValues[i]);
         }
         break;
 
@@ -163,44 +203,65 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
   @Override
   public void aggregateGroupByMV(int length, @Nonnull int[][] groupKeysArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    FieldSpec.DataType valueType = blockValSets[0].getValueType();
+    BlockValSet blockValSet = blockValSets[0];
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[] dictIds = blockValSet.getDictionaryIdsSV();
+      for (int i = 0; i < length; i++) {
+        for (int groupKey : groupKeysArray[i]) {
+          getDictIdBitmap(groupByResultHolder, groupKey, dictionary, valueType).add(dictIds[i]);
+        }
+      }
+      return;
+    }
+
     switch (valueType) {
       case INT:
-        int[] intValues = blockValSets[0].getIntValuesSV();
+        int[] intValues = blockValSet.getIntValuesSV();
         for (int i = 0; i < length; i++) {
-          setValueForGroupKeys(groupByResultHolder, groupKeysArray[i], intValues[i]);
+          for (int groupKey : groupKeysArray[i]) {
+            ((IntOpenHashSet) getValueSet(groupByResultHolder, groupKey, valueType)).add(intValues[i]);
+          }
         }
         break;
 
       case LONG:
-        long[] longValues = blockValSets[0].getLongValuesSV();
+        long[] longValues = blockValSet.getLongValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = Long.valueOf(longValues[i]).hashCode();
-          setValueForGroupKeys(groupByResultHolder, groupKeysArray[i], hashCode);
+          for (int groupKey : groupKeysArray[i]) {
+            ((LongOpenHashSet) getValueSet(groupByResultHolder, groupKey, valueType)).add(longValues[i]);
+          }
         }
         break;
 
       case FLOAT:
-        float[] floatValues = blockValSets[0].getFloatValuesSV();
+        float[] floatValues = blockValSet.getFloatValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = Float.valueOf(floatValues[i]).hashCode();
-          setValueForGroupKeys(groupByResultHolder, groupKeysArray[i], hashCode);
+          int value = Float.floatToIntBits(floatValues[i]);
+          for (int groupKey : groupKeysArray[i]) {
+            ((IntOpenHashSet) getValueSet(groupByResultHolder, groupKey, valueType)).add(value);
+          }
         }
         break;
 
       case DOUBLE:
-        double[] doubleValues = blockValSets[0].getDoubleValuesSV();
+        double[] doubleValues = blockValSet.getDoubleValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = Double.valueOf(doubleValues[i]).hashCode();
-          setValueForGroupKeys(groupByResultHolder, groupKeysArray[i], hashCode);
+          long value = Double.doubleToLongBits(doubleValues[i]);
+          for (int groupKey : groupKeysArray[i]) {
+            ((LongOpenHashSet) getValueSet(groupByResultHolder, groupKey, valueType)).add(value);
+          }
         }
         break;
 
       case STRING:
-        String[] stringValues = blockValSets[0].getStringValuesSV();
+        String[] stringValues = blockValSet.getStringValuesSV();
         for (int i = 0; i < length; i++) {
-          int hashCode = stringValues[i].hashCode();
-          setValueForGroupKeys(groupByResultHolder, groupKeysArray[i], hashCode);
+          for (int groupKey : groupKeysArray[i]) {
+            getValueSet(groupByResultHolder, groupKey, valueType).add(stringValues[i]);
+          }
         }
         break;
 
@@ -211,32 +272,43 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
 
   @Nonnull
   @Override
-  public IntOpenHashSet extractAggregationResult(@Nonnull AggregationResultHolder aggregationResultHolder) {
-    IntOpenHashSet valueSet = aggregationResultHolder.getResult();
-    if (valueSet == null) {
-      return new IntOpenHashSet();
-    } else {
-      return valueSet;
-    }
+  public Set extractAggregationResult(@Nonnull AggregationResultHolder aggregationResultHolder) {
+    return convertToValueSet(aggregationResultHolder.getResult());
   }
 
   @Nonnull
   @Override
-  public IntOpenHashSet extractGroupByResult(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
-    IntOpenHashSet valueSet = groupByResultHolder.getResult(groupKey);
-    if (valueSet == null) {
-      return new IntOpenHashSet();
-    } else {
-      return valueSet;
-    }
+  public Set extractGroupByResult(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
+    return convertToValueSet(groupByResultHolder.getResult(groupKey));
   }
 
   @Nonnull
   @Override
-  public IntOpenHashSet merge(@Nonnull IntOpenHashSet intermediateResult1,
-      @Nonnull IntOpenHashSet intermediateResult2) {
-    intermediateResult1.addAll(intermediateResult2);
-    return intermediateResult1;
+  public Set merge(@Nonnull Set intermediateResult1, @Nonnull Set intermediateResult2) {
+    if (intermediateResult1.isEmpty()) {
+      return intermediateResult2;
+    }
+    if (intermediateResult2.isEmpty()) {
+      return intermediateResult1;
+    }
+
+    if (intermediateResult1 instanceof IntOpenHashSet && intermediateResult2 instanceof IntOpenHashSet) {
+      ((IntOpenHashSet) intermediateResult1).addAll((IntOpenHashSet) intermediateResult2);
+      return intermediateResult1;
+    }
+    if (intermediateResult1 instanceof LongOpenHashSet && intermediateResult2 instanceof LongOpenHashSet) {
+      ((LongOpenHashSet) intermediateResult1).addAll((LongOpenHashSet) intermediateResult2);
+      return intermediateResult1;
+    }
+    if (intermediateResult1 instanceof ObjectOpenHashSet && intermediateResult2 instanceof ObjectOpenHashSet) {
+      intermediateResult1.addAll(intermediateResult2);
+      return intermediateResult1;
+    }
+
+    // Value sets of different types (e.g. hash code set from older versions), merge their hash codes
+    IntOpenHashSet hashCodeSet = convertToHashCodeSet(intermediateResult1);
+    hashCodeSet.addAll(convertToHashCodeSet(intermediateResult2));
+    return hashCodeSet;
   }
 
   @Override
@@ -252,36 +324,205 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
 
   @Nonnull
   @Override
-  public Integer extractFinalResult(@Nonnull IntOpenHashSet intermediateResult) {
+  public Integer extractFinalResult(@Nonnull Set intermediateResult) {
     return intermediateResult.size();
   }
 
   /**
-   * Helper method to set value for a groupKey into the result holder.
+   * Helper method to create an empty value set for the given value type.
+   *
+   * @param valueType Value type
+   * @return Empty value set
+   */
+  protected static Set createValueSet(@Nonnull FieldSpec.DataType valueType) {
+    switch (valueType) {
+      case INT:
+      case FLOAT:
+        return new IntOpenHashSet();
+      case LONG:
+      case DOUBLE:
+        return new LongOpenHashSet();
+      case STRING:
+        return new ObjectOpenHashSet<String>();
+      default:
+        throw new IllegalArgumentException("Illegal data type for distinct count aggregation function: " + valueType);
+    }
+  }
+
+  /**
+   * Helper method to get or create the dictionary id bitmap from the result holder.
+   *
+   * @param aggregationResultHolder Result holder
+   * @param dictionary Dictionary of the column
+   * @param valueType Value type
+   * @return Dictionary id bitmap
+   */
+  protected static RoaringBitmap getDictIdBitmap(@Nonnull AggregationResultHolder aggregationResultHolder,
+      @Nonnull Dictionary dictionary, @Nonnull FieldSpec.DataType valueType) {
+    DictIdsWrapper dictIdsWrapper = aggregationResultHolder.getResult();
+    if (dictIdsWrapper == null) {
+      dictIdsWrapper = new DictIdsWrapper(dictionary, valueType);
+      aggregationResultHolder.setValue(dictIdsWrapper);
+    }
+    return dictIdsWrapper._dictIdBitmap;
+  }
+
+  /**
+   * Helper method to get or create the value set from the result holder.
+   *
+   * @param aggregationResultHolder Result holder
+   * @param valueType Value type
+   * @return Value set
+   */
+  protected static Set getValueSet(@Nonnull AggregationResultHolder aggregationResultHolder,
+      @Nonnull FieldSpec.DataType valueType) {
+    Set valueSet = aggregationResultHolder.getResult();
+    if (valueSet == null) {
+      valueSet = createValueSet(valueType);
+      aggregationResultHolder.setValue(valueSet);
+    }
+    return valueSet;
+  }
+
+  /**
+   * Helper method to get or create the dictionary id bitmap for a group key from the result holder.
+   *
+   * @param groupByResultHolder Result holder
+   * @param groupKey Group key
+   * @param dictionary Dictionary of the column
+   * @param valueType Value type
+   * @return Dictionary id bitmap
+   */
+  protected static RoaringBitmap getDictIdBitmap(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey,
+      @Nonnull Dictionary dictionary, @Nonnull FieldSpec.DataType valueType) {
+    DictIdsWrapper dictIdsWrapper = groupByResultHolder.getResult(groupKey);
+    if (dictIdsWrapper == null) {
+      dictIdsWrapper = new DictIdsWrapper(dictionary, valueType);
+      groupByResultHolder.setValueForKey(groupKey, dictIdsWrapper);
+    }
+    return dictIdsWrapper._dictIdBitmap;
+  }
+
+  /**
+   * Helper method to get or create the value set for a group key from the result holder.
    *
    * @param groupByResultHolder Result holder
-   * @param groupKey Group-key for which to set the value
-   * @param value Value for the group key
+   * @param groupKey Group key
+   * @param valueType Value type
+   * @return Value set
    */
-  private void setValueForGroupKey(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey, int value) {
-    IntOpenHashSet valueSet = groupByResultHolder.getResult(groupKey);
+  protected static Set getValueSet(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey,
+      @Nonnull FieldSpec.DataType valueType) {
+    Set valueSet = groupByResultHolder.getResult(groupKey);
     if (valueSet == null) {
-      valueSet = new IntOpenHashSet();
+      valueSet = createValueSet(valueType);
       groupByResultHolder.setValueForKey(groupKey, valueSet);
     }
-    valueSet.add(value);
+    return valueSet;
   }
 
   /**
-   * Helper method to set values for a given array of groupKeys, into the result holder.
+   * Helper method to convert the result stored in the result holder (dictionary id bitmap or value set) into a value
+   * set.
    *
-   * @param groupByResultHolder Result holder
-   * @param groupKeys Array of group keys for which to set the value
-   * @param value Value to be set
+   * @param result Result stored in the result holder
+   * @return Value set
+   */
+  private static Set convertToValueSet(Object result) {
+    if (result == null) {
+      return new IntOpenHashSet();
+    }
+    if (!(result instanceof DictIdsWrapper)) {
+      return (Set) result;
+    }
+
+    DictIdsWrapper dictIdsWrapper = (DictIdsWrapper) result;
+    Dictionary dictionary = dictIdsWrapper._dictionary;
+    RoaringBitmap dictIdBitmap = dictIdsWrapper._dictIdBitmap;
+    int numValues = dictIdBitmap.getCardinality();
+    IntIterator dictIdIterator = dictIdBitmap.getIntIterator();
+    FieldSpec.DataType valueType = dictIdsWrapper._valueType;
+    switch (valueType) {
+      case INT:
+        IntOpenHashSet intSet = new IntOpenHashSet(numValues);
+        while (dictIdIterator.hasNext()) {
+          intSet.add(dictionary.getIntValue(dictIdIterator.next()));
+        }
+        return intSet;
+
+      case LONG:
+        LongOpenHashSet longSet = new LongOpenHashSet(numValues);
+        while (dictIdIterator.hasNext()) {
+          longSet.add(dictionary.getLongValue(dictIdIterator.next()));
+        }
+        return longSet;
+
+      case FLOAT:
+        IntOpenHashSet floatSet = new IntOpenHashSet(numValues);
+        while (dictIdIterator.hasNext()) {
+          floatSet.add(Float.floatToIntBits(dictionary.getFloatValue(dictIdIterator.next())));
+        }
+        return floatSet;
+
+      case DOUBLE:
+        LongOpenHashSet doubleSet = new LongOpenHashSet(numValues);
+        while (dictIdIterator.hasNext()) {
+          doubleSet.add(Double.doubleToLongBits(dictionary.getDoubleValue(dictIdIterator.next())));
+        }
+        return doubleSet;
+
+      case STRING:
+        ObjectOpenHashSet<String> stringSet = new ObjectOpenHashSet<>(numValues);
+        while (dictIdIterator.hasNext()) {
+          stringSet.add(dictionary.getStringValue(dictIdIterator.next()));
+        }
+        return stringSet;
+
+      default:
+        throw new IllegalArgumentException("Illegal data type for distinct count aggregation function: " + valueType);
+    }
+  }
+
+  /**
+   * Helper method to convert a value set into a set of 32-bit hash codes of the values.
+   *
+   * @param valueSet Value set
+   * @return Hash code set
+   */
+  private static IntOpenHashSet convertToHashCodeSet(Set valueSet) {
+    if (valueSet instanceof IntOpenHashSet) {
+      return (IntOpenHashSet) valueSet;
+    }
+
+    IntOpenHashSet hashCodeSet = new IntOpenHashSet(valueSet.size());
+    if (valueSet instanceof LongOpenHashSet) {
+      // Same as the hash code of Long and Double (with long bits)
+      LongIterator iterator = ((LongOpenHashSet) valueSet).iterator();
+      while (iterator.hasNext()) {
+        long value = iterator.nextLong();
+        hashCodeSet.add((int) (value ^ (value >>> 32)));
+      }
+    } else {
+      for (Object value : valueSet) {
+        hashCodeSet.add(value.hashCode());
+      }
+    }
+    return hashCodeSet;
+  }
+
+  /**
+   * Helper class to store the dictionary ids accumulated for a segment, along with the dictionary to look up the
+   * values.
    */
-  private void setValueForGroupKeys(@Nonnull GroupByResultHolder groupByResultHolder, int[] groupKeys, int value) {
-    for (int groupKey : groupKeys) {
-      setValueForGroupKey(groupByResultHolder, groupKey, value);
+  private static final class DictIdsWrapper {
+    final Dictionary _dictionary;
+    final FieldSpec.DataType _valueType;
+    final RoaringBitmap _dictIdBitmap;
+
+    DictIdsWrapper(Dictionary dictionary, FieldSpec.DataType valueType) {
+      _dictionary = dictionary;
+      _valueType = valueType;
+      _dictIdBitmap = new RoaringBitmap();
     }
   }
 }
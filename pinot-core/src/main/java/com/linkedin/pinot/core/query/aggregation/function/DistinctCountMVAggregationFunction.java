@@ -19,10 +19,15 @@ import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
 import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.util.Set;
 import javax.annotation.Nonnull;
+import org.roaringbitmap.RoaringBitmap;
 
 
+@SuppressWarnings("unchecked")
 public class DistinctCountMVAggregationFunction extends DistinctCountAggregationFunction {
   private static final String NAME = AggregationFunctionFactory.AggregationFunctionType.DISTINCTCOUNTMV.getName();
 
@@ -41,55 +46,68 @@ public class DistinctCountMVAggregationFunction extends DistinctCountAggregation
   @Override
   public void aggregate(int length, @Nonnull AggregationResultHolder aggregationResultHolder,
       @Nonnull BlockValSet... blockValSets) {
-
-    IntOpenHashSet valueSet = aggregationResultHolder.getResult();
-    if (valueSet == null) {
-      valueSet = new IntOpenHashSet();
-      aggregationResultHolder.setValue(valueSet);
+    BlockValSet blockValSet = blockValSets[0];
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[][] dictIds = blockValSet.getDictionaryIdsMV();
+      RoaringBitmap dictIdBitmap = getDictIdBitmap(aggregationResultHolder, dictionary, valueType);
+      for (int i = 0; i < length; i++) {
+        for (int dictId : dictIds[i]) {
+          dictIdBitmap.add(dictId);
+        }
+      }
+      return;
     }
 
-    FieldSpec.DataType valueType = blockValSets[0].getValueType();
+    Set valueSet = getValueSet(aggregationResultHolder, valueType);
     switch (valueType) {
       case INT:
-        int[][] intValues = blockValSets[0].getIntValuesMV();
+        IntOpenHashSet intSet = (IntOpenHashSet) valueSet;
+        int[][] intValues = blockValSet.getIntValuesMV();
         for (int i = 0; i < length; i++) {
           for (int value : intValues[i]) {
-            valueSet.add(value);
+            intSet.add(value);
           }
         }
         break;
 
       case LONG:
-        long[][] longValues = blockValSets[0].getLongValuesMV();
+        LongOpenHashSet longSet = (LongOpenHashSet) valueSet;
+        long[][] longValues = blockValSet.getLongValuesMV();
         for (int i = 0; i < length; i++) {
           for (long value : longValues[i]) {
-            valueSet.add(Long.valueOf(value).hashCode());
+            longSet.add(value);
           }
         }
         break;
 
       case FLOAT:
-        float[][] floatValues = blockValSets[0].getFloatValuesMV();
+        IntOpenHashSet floatSet = (IntOpenHashSet) valueSet;
+        float[][] floatValues = blockValSet.getFloatValuesMV();
         for (int i = 0; i < length; i++) {
           for (float value : floatValues[i]) {
-            valueSet.add(Float.valueOf(value).hashCode());
+            floatSet.add(Float.floatToIntBits(value));
           }
         }
+        break;
 
       case DOUBLE:
-        double[][] doubleValues = blockValSets[0].getDoubleValuesMV();
+        LongOpenHashSet doubleSet = (LongOpenHashSet) valueSet;
+        double[][] doubleValues = blockValSet.getDoubleValuesMV();
         for (int i = 0; i < length; i++) {
           for (double value : doubleValues[i]) {
-            valueSet.add(Double.valueOf(value).hashCode());
+            doubleSet.add(Double.doubleToLongBits(value));
           }
         }
         break;
 
       case STRING:
-        String[][] stringValues = blockValSets[0].getStringValuesMV();
+        String[][] stringValues = blockValSet.getStringValuesMV();
         for (int i = 0; i < length; i++) {
           for (String value : stringValues[i]) {
-            valueSet.add(value.hashCode());
+            valueSet.add(value);
           }
         }
         break;
@@ -102,126 +120,95 @@ public class DistinctCountMVAggregationFunction extends DistinctCountAggregation
   @Override
   public void aggregateGroupBySV(int length, @Nonnull int[] groupKeyArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    FieldSpec.DataType valueType = blockValSets[0].getValueType();
-    switch (valueType) {
-      case INT:
-        int[][] intValues = blockValSets[0].getIntValuesMV();
-        for (int i = 0; i < length; i++) {
-          IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKeyArray[i]);
-          for (int value : intValues[i]) {
-            valueSet.add(value);
-          }
-        }
-        break;
-
-      case LONG:
-        long[][] longValues = blockValSets[0].getLongValuesMV();
-        for (int i = 0; i < length; i++) {
-          IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKeyArray[i]);
-          for (long value : longValues[i]) {
-            valueSet.add(Long.valueOf(value).hashCode());
-          }
-        }
-        break;
-
-      case FLOAT:
-        float[][] floatValues = blockValSets[0].getFloatValuesMV();
-        for (int i = 0; i < length; i++) {
-          IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKeyArray[i]);
-          for (float value : floatValues[i]) {
-            valueSet.add(Float.valueOf(value).hashCode());
-          }
-        }
-        break;
-
-      case DOUBLE:
-        double[][] doubleValues = blockValSets[0].getDoubleValuesMV();
-        for (int i = 0; i < length; i++) {
-          IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKeyArray[i]);
-          for (double value : doubleValues[i]) {
-            valueSet.add(Double.valueOf(value).hashCode());
-          }
-        }
-        break;
-
-      case STRING:
-        String[][] stringValues = blockValSets[0].getStringValuesMV();
-        for (int i = 0; i < length; i++) {
-          IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKeyArray[i]);
-          for (String value : stringValues[i]) {
-            valueSet.add(value.hashCode());
-          }
+    BlockValSet blockValSet = blockValSets[0];
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[][] dictIds = blockValSet.getDictionaryIdsMV();
+      for (int i = 0; i < length; i++) {
+        RoaringBitmap dictIdBitmap = getDictIdBitmap(groupByResultHolder, groupKeyArray[i], dictionary, valueType);
+        for (int dictId : dictIds[i]) {
+          dictIdBitmap.add(dictId);
         }
-        break;
+      }
+      return;
+    }
 
-      default:
-        throw new IllegalArgumentException("Illegal data type for distinct count aggregation function: " + valueType);
+    for (int i = 0; i < length; i++) {
+      addValues(getValueSet(groupByResultHolder, groupKeyArray[i], valueType), blockValSet, valueType, i);
     }
   }
 
   @Override
   public void aggregateGroupByMV(int length, @Nonnull int[][] groupKeysArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
+    BlockValSet blockValSet = blockValSets[0];
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[][] dictIds = blockValSet.getDictionaryIdsMV();
+      for (int i = 0; i < length; i++) {
+        for (int groupKey : groupKeysArray[i]) {
+          RoaringBitmap dictIdBitmap = getDictIdBitmap(groupByResultHolder, groupKey, dictionary, valueType);
+          for (int dictId : dictIds[i]) {
+            dictIdBitmap.add(dictId);
+          }
+        }
+      }
+      return;
+    }
+
+    for (int i = 0; i < length; i++) {
+      for (int groupKey : groupKeysArray[i]) {
+        addValues(getValueSet(groupByResultHolder, groupKey, valueType), blockValSet, valueType, i);
+      }
+    }
+  }
 
-    FieldSpec.DataType valueType = blockValSets[0].getValueType();
+  /**
+   * Helper method to add the values of a document into the value set.
+   *
+   * @param valueSet Value set
+   * @param blockValSet Block value set
+   * @param valueType Value type
+   * @param index Index of the document inside the block
+   */
+  private static void addValues(@Nonnull Set valueSet, @Nonnull BlockValSet blockValSet,
+      @Nonnull FieldSpec.DataType valueType, int index) {
     switch (valueType) {
       case INT:
-        int[][] intValues = blockValSets[0].getIntValuesMV();
-        for (int i = 0; i < length; i++) {
-          for (int groupKey : groupKeysArray[i]) {
-            IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKey);
-            for (int value : intValues[i]) {
-              valueSet.add(value);
-            }
-          }
+        IntOpenHashSet intSet = (IntOpenHashSet) valueSet;
+        for (int value : blockValSet.getIntValuesMV()[index]) {
+          intSet.add(value);
         }
         break;
 
       case LONG:
-        long[][] longValues = blockValSets[0].getLongValuesMV();
-        for (int i = 0; i < length; i++) {
-          for (int groupKey : groupKeysArray[i]) {
-            IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKey);
-            for (long value : longValues[i]) {
-              valueSet.add(Long.valueOf(value).hashCode());
-            }
-          }
+        LongOpenHashSet longSet = (LongOpenHashSet) valueSet;
+        for (long value : blockValSet.getLongValuesMV()[index]) {
+          longSet.add(value);
         }
         break;
 
       case FLOAT:
-        float[][] floatValues = blockValSets[0].getFloatValuesMV();
-        for (int i = 0; i < length; i++) {
-          for (int groupKey : groupKeysArray[i]) {
-            IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKey);
-            for (float value : floatValues[i]) {
-              valueSet.add(Float.valueOf(value).hashCode());
-            }
-          }
+        IntOpenHashSet floatSet = (IntOpenHashSet) valueSet;
+        for (float value : blockValSet.getFloatValuesMV()[index]) {
+          floatSet.add(Float.floatToIntBits(value));
         }
         break;
 
       case DOUBLE:
-        double[][] doubleValues = blockValSets[0].getDoubleValuesMV();
-        for (int i = 0; i < length; i++) {
-          for (int groupKey : groupKeysArray[i]) {
-            IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKey);
-            for (double value : doubleValues[i]) {
-              valueSet.add(Double.valueOf(value).hashCode());
-            }
-          }
+        LongOpenHashSet doubleSet = (LongOpenHashSet) valueSet;
+        for (double value : blockValSet.getDoubleValuesMV()[index]) {
+          doubleSet.add(Double.doubleToLongBits(value));
         }
         break;
 
       case STRING:
-        String[][] stringValues = blockValSets[0].getStringValuesMV();
-        for (int i = 0; i < length; i++) {
-          for (int groupKey : groupKeysArray[i]) {
-            IntOpenHashSet valueSet = getOrCreateHashSetForGroupKey(groupByResultHolder, groupKey);
-            for (String value : stringValues[i]) {
-              valueSet.add(value.hashCode());
-            }
-          }
+        for (String value : blockValSet.getStringValuesMV()[index]) {
+          valueSet.add(value);
         }
         break;
 
@@ -229,20 +216,4 @@ public class DistinctCountMVAggregationFunction extends DistinctCountAggregation
         throw new IllegalArgumentException("Illegal data type for distinct count aggregation function: " + valueType);
     }
   }
-
-  /**
-   * Returns the hash-set for the given group-key. Creates and returns one, if it does not exist.
-   *
-   * @param groupByResultHolder Result Holder
-   * @param groupKey Group key for which to get the hash set.
-   * @return Hash-set for the group key
-   */
-  private IntOpenHashSet getOrCreateHashSetForGroupKey(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
-    IntOpenHashSet valueSet = groupByResultHolder.getResult(groupKey);
-    if (valueSet == null) {
-      valueSet = new IntOpenHashSet();
-      groupByResultHolder.setValueForKey(groupKey, valueSet);
-    }
-    return valueSet;
-  }
 }
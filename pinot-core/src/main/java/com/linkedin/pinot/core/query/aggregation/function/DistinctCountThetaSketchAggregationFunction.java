@@ -0,0 +1,672 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.utils.DataSchema;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.query.aggregation.ObjectAggregationResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.customobject.ThetaSketch;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.groupby.ObjectGroupByResultHolder;
+import com.linkedin.pinot.core.query.exception.BadQueryRequestException;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Distinct count aggregation function based on {@link ThetaSketch}, with set operations across filtered subsets.
+ * <p>Arguments: the column, followed by optional filter clauses (same syntax as the WHERE clause) and a set expression
+ * on the filter clauses, e.g.
+ * <code>distinctCountThetaSketch(userId, 'country = ''US''', 'device = ''mobile''', 'SET_INTERSECT($1, $2)')</code>.
+ * <ul>
+ *   <li>Without filter clause, the result is the distinct count of all the values.</li>
+ *   <li>With filter clauses, one sketch is maintained for each filter clause on the values of the documents matching
+ *   it, and the set expression (SET_UNION, SET_INTERSECT and SET_DIFF of filter clauses $1, $2...) is evaluated on the
+ *   merged sketches when extracting the final result on the broker. The set expression can be omitted with a single
+ *   filter clause.</li>
+ * </ul>
+ * <p>The aggregation column can also be a BYTES column of serialized {@link ThetaSketch}es (pre-aggregated sketches),
+ * in which case the sketches are merged instead of hashing the values.
+ * <p>The filter clauses are only applied on top of the query filter, which should select the union of the documents
+ * required by the filter clauses to avoid scanning unnecessary documents. The columns in the filter clauses must be
+ * single-valued.
+ */
+public class DistinctCountThetaSketchAggregationFunction implements AggregationFunction<ThetaSketch[], Long> {
+  private static final String NAME =
+      AggregationFunctionFactory.AggregationFunctionType.DISTINCTCOUNTTHETASKETCH.getName();
+  private static final Pql2Compiler FILTER_COMPILER = new Pql2Compiler();
+  private static final Pattern SET_EXPRESSION_PATTERN =
+      Pattern.compile("^\\s*SET_(UNION|INTERSECT|DIFF)\\s*\\(.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private final List<FilterEvaluator> _filterEvaluators = new ArrayList<>();
+  private final List<String> _filterColumns = new ArrayList<>();
+  private final SetExpression _setExpression;
+  private final int _numSketches;
+
+  // Buffers reused across blocks
+  private long[] _hashes;
+  private boolean[] _matches;
+
+  // Pre-aggregated sketches of the current block, null when aggregating on raw values
+  private ThetaSketch[] _sketches;
+
+  public DistinctCountThetaSketchAggregationFunction() {
+    this(Collections.<String>emptyList());
+  }
+
+  /**
+   * @param arguments Filter clauses, optionally followed by the set expression
+   */
+  public DistinctCountThetaSketchAggregationFunction(@Nonnull List<String> arguments) {
+    int numFilters = arguments.size();
+    String setExpression = null;
+    if (numFilters > 0 && SET_EXPRESSION_PATTERN.matcher(arguments.get(numFilters - 1)).matches()) {
+      numFilters--;
+      setExpression = arguments.get(numFilters);
+    }
+    for (int i = 0; i < numFilters; i++) {
+      _filterEvaluators.add(compileFilter(arguments.get(i)));
+    }
+    _numSketches = Math.max(1, numFilters);
+
+    if (setExpression != null) {
+      if (numFilters == 0) {
+        throw new BadQueryRequestException("Set expression requires filter clauses: " + setExpression);
+      }
+      _setExpression = new SetExpressionParser(setExpression, numFilters).parse();
+    } else {
+      if (numFilters > 1) {
+        throw new BadQueryRequestException("Set expression is required for multiple filter clauses");
+      }
+      _setExpression = null;
+    }
+  }
+
+  /**
+   * Returns the columns referenced in the filter clauses, which are the additional input columns of the function
+   * after the aggregation column.
+   */
+  @Nonnull
+  public List<String> getFilterColumns() {
+    return _filterColumns;
+  }
+
+  @Nonnull
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Nonnull
+  @Override
+  public String getColumnName(@Nonnull String[] columns) {
+    return NAME + "_" + columns[0];
+  }
+
+  @Override
+  public void accept(@Nonnull AggregationFunctionVisitorBase visitor) {
+    visitor.visit(this);
+  }
+
+  @Nonnull
+  @Override
+  public AggregationResultHolder createAggregationResultHolder() {
+    return new ObjectAggregationResultHolder();
+  }
+
+  @Nonnull
+  @Override
+  public GroupByResultHolder createGroupByResultHolder(int initialCapacity, int maxCapacity, int trimSize) {
+    return new ObjectGroupByResultHolder(initialCapacity, maxCapacity, trimSize);
+  }
+
+  @Override
+  public void aggregate(int length, @Nonnull AggregationResultHolder aggregationResultHolder,
+      @Nonnull BlockValSet... blockValSets) {
+    ThetaSketch[] thetaSketches = aggregationResultHolder.getResult();
+    if (thetaSketches == null) {
+      thetaSketches = createThetaSketches();
+      aggregationResultHolder.setValue(thetaSketches);
+    }
+
+    prepareValues(length, blockValSets[0]);
+    if (_filterEvaluators.isEmpty()) {
+      ThetaSketch thetaSketch = thetaSketches[0];
+      for (int i = 0; i < length; i++) {
+        update(thetaSketch, i);
+      }
+    } else {
+      boolean[] matches = getMatchesBuffer();
+      for (int i = 0; i < _numSketches; i++) {
+        _filterEvaluators.get(i).evaluate(length, blockValSets, matches);
+        ThetaSketch thetaSketch = thetaSketches[i];
+        for (int j = 0; j < length; j++) {
+          if (matches[j]) {
+            update(thetaSketch, j);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void aggregateGroupBySV(int length, @Nonnull int[] groupKeyArray,
+      @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
+    prepareValues(length, blockValSets[0]);
+    if (_filterEvaluators.isEmpty()) {
+      for (int i = 0; i < length; i++) {
+        update(getThetaSketches(groupByResultHolder, groupKeyArray[i])[0], i);
+      }
+    } else {
+      boolean[] matches = getMatchesBuffer();
+      for (int i = 0; i < _numSketches; i++) {
+        _filterEvaluators.get(i).evaluate(length, blockValSets, matches);
+        for (int j = 0; j < length; j++) {
+          if (matches[j]) {
+            update(getThetaSketches(groupByResultHolder, groupKeyArray[j])[i], j);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void aggregateGroupByMV(int length, @Nonnull int[][] groupKeysArray,
+      @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
+    prepareValues(length, blockValSets[0]);
+    if (_filterEvaluators.isEmpty()) {
+      for (int i = 0; i < length; i++) {
+        for (int groupKey : groupKeysArray[i]) {
+          update(getThetaSketches(groupByResultHolder, groupKey)[0], i);
+        }
+      }
+    } else {
+      boolean[] matches = getMatchesBuffer();
+      for (int i = 0; i < _numSketches; i++) {
+        _filterEvaluators.get(i).evaluate(length, blockValSets, matches);
+        for (int j = 0; j < length; j++) {
+          if (matches[j]) {
+            for (int groupKey : groupKeysArray[j]) {
+              update(getThetaSketches(groupByResultHolder, groupKey)[i], j);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Nonnull
+  @Override
+  public ThetaSketch[] extractAggregationResult(@Nonnull AggregationResultHolder aggregationResultHolder) {
+    ThetaSketch[] thetaSketches = aggregationResultHolder.getResult();
+    if (thetaSketches == null) {
+      return createThetaSketches();
+    } else {
+      return thetaSketches;
+    }
+  }
+
+  @Nonnull
+  @Override
+  public ThetaSketch[] extractGroupByResult(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
+    ThetaSketch[] thetaSketches = groupByResultHolder.getResult(groupKey);
+    if (thetaSketches == null) {
+      return createThetaSketches();
+    } else {
+      return thetaSketches;
+    }
+  }
+
+  @Nonnull
+  @Override
+  public ThetaSketch[] merge(@Nonnull ThetaSketch[] intermediateResult1, @Nonnull ThetaSketch[] intermediateResult2) {
+    for (int i = 0; i < intermediateResult1.length; i++) {
+      intermediateResult1[i].merge(intermediateResult2[i]);
+    }
+    return intermediateResult1;
+  }
+
+  @Override
+  public boolean isIntermediateResultComparable() {
+    return false;
+  }
+
+  @Nonnull
+  @Override
+  public DataSchema.ColumnDataType getIntermediateResultColumnType() {
+    return DataSchema.ColumnDataType.OBJECT;
+  }
+
+  @Nonnull
+  @Override
+  public Long extractFinalResult(@Nonnull ThetaSketch[] intermediateResult) {
+    ThetaSketch thetaSketch;
+    if (_setExpression == null) {
+      thetaSketch = intermediateResult[0];
+    } else {
+      thetaSketch = _setExpression.evaluate(intermediateResult);
+    }
+    return Math.round(thetaSketch.getEstimate());
+  }
+
+  private ThetaSketch[] createThetaSketches() {
+    ThetaSketch[] thetaSketches = new ThetaSketch[_numSketches];
+    for (int i = 0; i < _numSketches; i++) {
+      thetaSketches[i] = new ThetaSketch();
+    }
+    return thetaSketches;
+  }
+
+  private ThetaSketch[] getThetaSketches(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
+    ThetaSketch[] thetaSketches = groupByResultHolder.getResult(groupKey);
+    if (thetaSketches == null) {
+      thetaSketches = createThetaSketches();
+      groupByResultHolder.setValueForKey(groupKey, thetaSketches);
+    }
+    return thetaSketches;
+  }
+
+  private boolean[] getMatchesBuffer() {
+    if (_matches == null) {
+      _matches = new boolean[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    }
+    return _matches;
+  }
+
+  /**
+   * Helper method to prepare the values in the block: de-serialize the sketches for BYTES column, compute the hashes of
+   * the values otherwise.
+   */
+  private void prepareValues(int length, @Nonnull BlockValSet blockValSet) {
+    if (blockValSet.getValueType() == FieldSpec.DataType.BYTES) {
+      byte[][] bytesValues = blockValSet.getBytesValuesSV();
+      ThetaSketch[] sketches = new ThetaSketch[length];
+      for (int i = 0; i < length; i++) {
+        sketches[i] = ThetaSketch.fromBytes(bytesValues[i]);
+      }
+      _sketches = sketches;
+    } else {
+      _sketches = null;
+      computeHashes(length, blockValSet);
+    }
+  }
+
+  /**
+   * Helper method to update the sketch with the value at the given index of the current block.
+   */
+  private void update(@Nonnull ThetaSketch thetaSketch, int index) {
+    if (_sketches != null) {
+      thetaSketch.merge(_sketches[index]);
+    } else {
+      thetaSketch.updateHash(_hashes[index]);
+    }
+  }
+
+  /**
+   * Helper method to compute the hashes of the values in the block, so that each value is only hashed once for all the
+   * filter clauses.
+   */
+  private void computeHashes(int length, @Nonnull BlockValSet blockValSet) {
+    if (_hashes == null) {
+      _hashes = new long[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    }
+    long[] hashes = _hashes;
+    FieldSpec.DataType valueType = blockValSet.getValueType();
+    switch (valueType) {
+      case INT:
+        int[] intValues = blockValSet.getIntValuesSV();
+        for (int i = 0; i < length; i++) {
+          hashes[i] = ThetaSketch.hash(intValues[i]);
+        }
+        break;
+
+      case LONG:
+        long[] longValues = blockValSet.getLongValuesSV();
+        for (int i = 0; i < length; i++) {
+          hashes[i] = ThetaSketch.hash(longValues[i]);
+        }
+        break;
+
+      case FLOAT:
+        float[] floatValues = blockValSet.getFloatValuesSV();
+        for (int i = 0; i < length; i++) {
+          hashes[i] = ThetaSketch.hash(floatValues[i]);
+        }
+        break;
+
+      case DOUBLE:
+        double[] doubleValues = blockValSet.getDoubleValuesSV();
+        for (int i = 0; i < length; i++) {
+          hashes[i] = ThetaSketch.hash(doubleValues[i]);
+        }
+        break;
+
+      case STRING:
+        String[] stringValues = blockValSet.getStringValuesSV();
+        for (int i = 0; i < length; i++) {
+          hashes[i] = ThetaSketch.hash(stringValues[i]);
+        }
+        break;
+
+      default:
+        throw new IllegalArgumentException(
+            "Illegal data type for distinct count theta sketch aggregation function: " + valueType);
+    }
+  }
+
+  /**
+   * Helper method to compile a filter clause into a filter evaluator.
+   */
+  private FilterEvaluator compileFilter(@Nonnull String filter) {
+    BrokerRequest brokerRequest;
+    try {
+      brokerRequest = FILTER_COMPILER.compileToBrokerRequest("SELECT COUNT(*) FROM dummy WHERE " + filter);
+    } catch (Exception e) {
+      throw new BadQueryRequestException("Invalid filter clause: " + filter, e);
+    }
+    return buildFilterEvaluator(RequestUtils.generateFilterQueryTree(brokerRequest));
+  }
+
+  private FilterEvaluator buildFilterEvaluator(@Nonnull FilterQueryTree filterQueryTree) {
+    FilterOperator filterOperator = filterQueryTree.getOperator();
+    if (filterOperator == FilterOperator.AND || filterOperator == FilterOperator.OR) {
+      List<FilterEvaluator> children = new ArrayList<>();
+      for (FilterQueryTree child : filterQueryTree.getChildren()) {
+        children.add(buildFilterEvaluator(child));
+      }
+      return new CompositeFilterEvaluator(filterOperator == FilterOperator.AND, children);
+    }
+
+    String column = filterQueryTree.getColumn();
+    int columnIndex = _filterColumns.indexOf(column);
+    if (columnIndex == -1) {
+      columnIndex = _filterColumns.size();
+      _filterColumns.add(column);
+    }
+    // Block value sets for the filter columns come after the aggregation column
+    return new PredicateFilterEvaluator(Predicate.newPredicate(filterQueryTree), columnIndex + 1);
+  }
+
+  /**
+   * Evaluates a filter clause on the documents of a block.
+   */
+  private static abstract class FilterEvaluator {
+    abstract void evaluate(int length, @Nonnull BlockValSet[] blockValSets, @Nonnull boolean[] matches);
+  }
+
+  private static class PredicateFilterEvaluator extends FilterEvaluator {
+    private final Predicate _predicate;
+    private final int _blockValSetIndex;
+    private Dictionary _dictionary;
+    private PredicateEvaluator _predicateEvaluator;
+
+    PredicateFilterEvaluator(@Nonnull Predicate predicate, int blockValSetIndex) {
+      _predicate = predicate;
+      _blockValSetIndex = blockValSetIndex;
+    }
+
+    @Override
+    void evaluate(int length, @Nonnull BlockValSet[] blockValSets, @Nonnull boolean[] matches) {
+      BlockValSet blockValSet = blockValSets[_blockValSetIndex];
+      FieldSpec.DataType valueType = blockValSet.getValueType();
+      Dictionary dictionary = blockValSet.getDictionary();
+      PredicateEvaluator predicateEvaluator = getPredicateEvaluator(dictionary, valueType);
+
+      if (dictionary != null) {
+        int[] dictIds = blockValSet.getDictionaryIdsSV();
+        for (int i = 0; i < length; i++) {
+          matches[i] = predicateEvaluator.applySV(dictIds[i]);
+        }
+        return;
+      }
+      switch (valueType) {
+        case INT:
+          int[] intValues = blockValSet.getIntValuesSV();
+          for (int i = 0; i < length; i++) {
+            matches[i] = predicateEvaluator.applySV(intValues[i]);
+          }
+          break;
+
+        case LONG:
+          long[] longValues = blockValSet.getLongValuesSV();
+          for (int i = 0; i < length; i++) {
+            matches[i] = predicateEvaluator.applySV(longValues[i]);
+          }
+          break;
+
+        case FLOAT:
+          float[] floatValues = blockValSet.getFloatValuesSV();
+          for (int i = 0; i < length; i++) {
+            matches[i] = predicateEvaluator.applySV(floatValues[i]);
+          }
+          break;
+
+        case DOUBLE:
+          double[] doubleValues = blockValSet.getDoubleValuesSV();
+          for (int i = 0; i < length; i++) {
+            matches[i] = predicateEvaluator.applySV(doubleValues[i]);
+          }
+          break;
+
+        case STRING:
+          String[] stringValues = blockValSet.getStringValuesSV();
+          for (int i = 0; i < length; i++) {
+            matches[i] = predicateEvaluator.applySV(stringValues[i]);
+          }
+          break;
+
+        default:
+          throw new IllegalArgumentException("Illegal data type for filter clause: " + valueType);
+      }
+    }
+
+    /**
+     * Returns the predicate evaluator for the dictionary of the current segment (dictionary ids are segment specific).
+     */
+    private PredicateEvaluator getPredicateEvaluator(@Nullable Dictionary dictionary,
+        @Nonnull FieldSpec.DataType valueType) {
+      if (_predicateEvaluator == null || dictionary != _dictionary) {
+        _dictionary = dictionary;
+        _predicateEvaluator = PredicateEvaluatorProvider.getPredicateEvaluator(_predicate, dictionary, valueType);
+      }
+      return _predicateEvaluator;
+    }
+  }
+
+  private static class CompositeFilterEvaluator extends FilterEvaluator {
+    private final boolean _isAnd;
+    private final List<FilterEvaluator> _children;
+    private final boolean[] _childMatches = new boolean[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+
+    CompositeFilterEvaluator(boolean isAnd, @Nonnull List<FilterEvaluator> children) {
+      _isAnd = isAnd;
+      _children = children;
+    }
+
+    @Override
+    void evaluate(int length, @Nonnull BlockValSet[] blockValSets, @Nonnull boolean[] matches) {
+      _children.get(0).evaluate(length, blockValSets, matches);
+      int numChildren = _children.size();
+      for (int i = 1; i < numChildren; i++) {
+        _children.get(i).evaluate(length, blockValSets, _childMatches);
+        for (int j = 0; j < length; j++) {
+          matches[j] = _isAnd ? matches[j] && _childMatches[j] : matches[j] || _childMatches[j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Set expression on the sketches of the filter clauses.
+   */
+  private static abstract class SetExpression {
+    @Nonnull
+    abstract ThetaSketch evaluate(@Nonnull ThetaSketch[] thetaSketches);
+  }
+
+  private static class FilterSetExpression extends SetExpression {
+    private final int _filterIndex;
+
+    FilterSetExpression(int filterIndex) {
+      _filterIndex = filterIndex;
+    }
+
+    @Nonnull
+    @Override
+    ThetaSketch evaluate(@Nonnull ThetaSketch[] thetaSketches) {
+      return thetaSketches[_filterIndex];
+    }
+  }
+
+  private static class SetOperationExpression extends SetExpression {
+    private final String _operation;
+    private final List<SetExpression> _operands;
+
+    SetOperationExpression(@Nonnull String operation, @Nonnull List<SetExpression> operands) {
+      _operation = operation;
+      _operands = operands;
+    }
+
+    @Nonnull
+    @Override
+    ThetaSketch evaluate(@Nonnull ThetaSketch[] thetaSketches) {
+      ThetaSketch result = _operands.get(0).evaluate(thetaSketches);
+      int numOperands = _operands.size();
+      for (int i = 1; i < numOperands; i++) {
+        ThetaSketch operand = _operands.get(i).evaluate(thetaSketches);
+        switch (_operation) {
+          case "SET_UNION":
+            result = ThetaSketch.union(result, operand);
+            break;
+          case "SET_INTERSECT":
+            result = ThetaSketch.intersect(result, operand);
+            break;
+          case "SET_DIFF":
+            result = ThetaSketch.diff(result, operand);
+            break;
+          default:
+            throw new IllegalStateException("Unsupported set operation: " + _operation);
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Recursive descent parser for set expressions, e.g. <code>SET_DIFF(SET_UNION($1, $2), $3)</code>.
+   */
+  private static class SetExpressionParser {
+    private final String _expression;
+    private final int _numFilters;
+    private int _position;
+
+    SetExpressionParser(@Nonnull String expression, int numFilters) {
+      _expression = expression;
+      _numFilters = numFilters;
+    }
+
+    SetExpression parse() {
+      SetExpression setExpression = parseExpression();
+      skipWhitespaces();
+      if (_position != _expression.length()) {
+        throw error();
+      }
+      return setExpression;
+    }
+
+    private SetExpression parseExpression() {
+      skipWhitespaces();
+      if (_position == _expression.length()) {
+        throw error();
+      }
+
+      if (_expression.charAt(_position) == '$') {
+        int start = ++_position;
+        while (_position < _expression.length() && Character.isDigit(_expression.charAt(_position))) {
+          _position++;
+        }
+        if (start == _position) {
+          throw error();
+        }
+        int filterId = Integer.parseInt(_expression.substring(start, _position));
+        if (filterId < 1 || filterId > _numFilters) {
+          throw new BadQueryRequestException(
+              "Invalid filter clause reference $" + filterId + " in set expression: " + _expression);
+        }
+        return new FilterSetExpression(filterId - 1);
+      }
+
+      int start = _position;
+      while (_position < _expression.length() && (Character.isLetter(_expression.charAt(_position))
+          || _expression.charAt(_position) == '_')) {
+        _position++;
+      }
+      String operation = _expression.substring(start, _position).toUpperCase();
+      if (!operation.equals("SET_UNION") && !operation.equals("SET_INTERSECT") && !operation.equals("SET_DIFF")) {
+        throw error();
+      }
+      expect('(');
+      List<SetExpression> operands = new ArrayList<>();
+      operands.add(parseExpression());
+      skipWhitespaces();
+      while (_position < _expression.length() && _expression.charAt(_position) == ',') {
+        _position++;
+        operands.add(parseExpression());
+        skipWhitespaces();
+      }
+      expect(')');
+      if (operands.size() < 2 || (operation.equals("SET_DIFF") && operands.size() != 2)) {
+        throw new BadQueryRequestException("Invalid number of operands for " + operation + " in set expression: "
+            + _expression);
+      }
+      return new SetOperationExpression(operation, operands);
+    }
+
+    private void expect(char c) {
+      skipWhitespaces();
+      if (_position == _expression.length() || _expression.charAt(_position) != c) {
+        throw error();
+      }
+      _position++;
+    }
+
+    private void skipWhitespaces() {
+      while (_position < _expression.length() && Character.isWhitespace(_expression.charAt(_position))) {
+        _position++;
+      }
+    }
+
+    private BadQueryRequestException error() {
+      return new BadQueryRequestException("Invalid set expression at position " + _position + ": " + _expression);
+    }
+  }
+}
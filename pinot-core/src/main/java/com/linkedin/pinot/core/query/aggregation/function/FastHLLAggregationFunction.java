@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.query.aggregation.function;
 
 import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
 import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.utils.DataSchema;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
@@ -28,6 +29,10 @@ import com.linkedin.pinot.startree.hll.HllConstants;
 import javax.annotation.Nonnull;
 
 
+/**
+ * Aggregation function which merges the hlls stored in the hll derived column.
+ * <p>The derived column can be either STRING (hll bytes converted to chars) or BYTES (raw serialized hll).
+ */
 public class FastHLLAggregationFunction implements AggregationFunction<HyperLogLog, Long> {
   private static final String NAME = AggregationFunctionFactory.AggregationFunctionType.FASTHLL.getName();
 
@@ -69,7 +74,7 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
   @Override
   public void aggregate(int length, @Nonnull AggregationResultHolder aggregationResultHolder,
       @Nonnull BlockValSet... blockValSets) {
-    String[] valueArray = blockValSets[0].getStringValuesSV();
+    HyperLogLog[] hyperLogLogs = getHyperLogLogs(length, blockValSets[0]);
     HyperLogLog hyperLogLog = aggregationResultHolder.getResult();
     if (hyperLogLog == null) {
       hyperLogLog = new HyperLogLog(_log2m);
@@ -77,7 +82,7 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
     }
     for (int i = 0; i < length; i++) {
       try {
-        hyperLogLog.addAll(HllUtil.convertStringToHll(valueArray[i]));
+        hyperLogLog.addAll(hyperLogLogs[i]);
       } catch (CardinalityMergeException e) {
         throw new RuntimeException("Caught exception while aggregating HyperLogLog.", e);
       }
@@ -87,7 +92,7 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
   @Override
   public void aggregateGroupBySV(int length, @Nonnull int[] groupKeyArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    String[] valueArray = blockValSets[0].getStringValuesSV();
+    HyperLogLog[] hyperLogLogs = getHyperLogLogs(length, blockValSets[0]);
     for (int i = 0; i < length; i++) {
       int groupKey = groupKeyArray[i];
       HyperLogLog hyperLogLog = groupByResultHolder.getResult(groupKey);
@@ -96,7 +101,7 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
         groupByResultHolder.setValueForKey(groupKey, hyperLogLog);
       }
       try {
-        hyperLogLog.addAll(HllUtil.convertStringToHll(valueArray[i]));
+        hyperLogLog.addAll(hyperLogLogs[i]);
       } catch (CardinalityMergeException e) {
         throw new RuntimeException("Caught exception while aggregating HyperLogLog.", e);
       }
@@ -106,9 +111,9 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
   @Override
   public void aggregateGroupByMV(int length, @Nonnull int[][] groupKeysArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    String[] valueArray = blockValSets[0].getStringValuesSV();
+    HyperLogLog[] hyperLogLogs = getHyperLogLogs(length, blockValSets[0]);
     for (int i = 0; i < length; i++) {
-      String value = valueArray[i];
+      HyperLogLog value = hyperLogLogs[i];
       for (int groupKey : groupKeysArray[i]) {
         HyperLogLog hyperLogLog = groupByResultHolder.getResult(groupKey);
         if (hyperLogLog == null) {
@@ -116,7 +121,7 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
           groupByResultHolder.setValueForKey(groupKey, hyperLogLog);
         }
         try {
-          hyperLogLog.addAll(HllUtil.convertStringToHll(value));
+          hyperLogLog.addAll(value);
         } catch (CardinalityMergeException e) {
           throw new RuntimeException("Caught exception while aggregating HyperLogLog.", e);
         }
@@ -124,6 +129,25 @@ public class FastHLLAggregationFunction implements AggregationFunction<HyperLogL
     }
   }
 
+  /**
+   * Helper method to de-serialize the hlls from the hll derived column.
+   */
+  private static HyperLogLog[] getHyperLogLogs(int length, @Nonnull BlockValSet blockValSet) {
+    HyperLogLog[] hyperLogLogs = new HyperLogLog[length];
+    if (blockValSet.getValueType() == FieldSpec.DataType.BYTES) {
+      byte[][] bytesValues = blockValSet.getBytesValuesSV();
+      for (int i = 0; i < length; i++) {
+        hyperLogLogs[i] = HllUtil.buildHllFromBytes(bytesValues[i]);
+      }
+    } else {
+      String[] stringValues = blockValSet.getStringValuesSV();
+      for (int i = 0; i < length; i++) {
+        hyperLogLogs[i] = HllUtil.convertStringToHll(stringValues[i]);
+      }
+    }
+    return hyperLogLogs;
+  }
+
   @Nonnull
   @Override
   public HyperLogLog extractAggregationResult(@Nonnull AggregationResultHolder aggregationResultHolder) {
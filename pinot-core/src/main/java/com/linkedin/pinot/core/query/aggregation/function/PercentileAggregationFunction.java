@@ -21,12 +21,23 @@ import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
 import com.linkedin.pinot.core.query.aggregation.ObjectAggregationResultHolder;
 import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
 import com.linkedin.pinot.core.query.aggregation.groupby.ObjectGroupByResultHolder;
-import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
-import java.util.Collections;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.doubles.Double2LongMap;
+import it.unimi.dsi.fastutil.doubles.Double2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.Arrays;
 import javax.annotation.Nonnull;
 
 
-public class PercentileAggregationFunction implements AggregationFunction<DoubleArrayList, Double> {
+/**
+ * Exact percentile aggregation function.
+ * <p>The intermediate result is a map from value to number of occurrences, so the size of the intermediate result is
+ * bounded by the number of distinct values instead of the number of documents scanned. For columns with dictionary, the
+ * occurrences are counted per dictionary id (in an int array for aggregation, in a map for group-by), and converted
+ * into the value to count map when extracting the intermediate result.
+ */
+public class PercentileAggregationFunction implements AggregationFunction<Double2LongOpenHashMap, Double> {
   private static final double DEFAULT_FINAL_RESULT = Double.NEGATIVE_INFINITY;
 
   private final String _name;
@@ -85,76 +96,95 @@ public class PercentileAggregationFunction implements AggregationFunction<Double
   @Override
   public void aggregate(int length, @Nonnull AggregationResultHolder aggregationResultHolder,
       @Nonnull BlockValSet... blockValSets) {
-    double[] valueArray = blockValSets[0].getDoubleValuesSV();
-    DoubleArrayList doubleArrayList = aggregationResultHolder.getResult();
-    if (doubleArrayList == null) {
-      doubleArrayList = new DoubleArrayList();
-      aggregationResultHolder.setValue(doubleArrayList);
+    BlockValSet blockValSet = blockValSets[0];
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[] dictIds = blockValSet.getDictionaryIdsSV();
+      int[] dictIdCounts = getDictIdCountArray(aggregationResultHolder, dictionary);
+      for (int i = 0; i < length; i++) {
+        dictIdCounts[dictIds[i]]++;
+      }
+      return;
     }
+
+    double[] valueArray = blockValSet.getDoubleValuesSV();
+    Double2LongOpenHashMap valueCounts = getValueCountMap(aggregationResultHolder);
     for (int i = 0; i < length; i++) {
-      doubleArrayList.add(valueArray[i]);
+      valueCounts.addTo(valueArray[i], 1L);
     }
   }
 
   @Override
   public void aggregateGroupBySV(int length, @Nonnull int[] groupKeyArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    double[] valueArray = blockValSets[0].getDoubleValuesSV();
-    for (int i = 0; i < length; i++) {
-      int groupKey = groupKeyArray[i];
-      DoubleArrayList doubleArrayList = groupByResultHolder.getResult(groupKey);
-      if (doubleArrayList == null) {
-        doubleArrayList = new DoubleArrayList();
-        groupByResultHolder.setValueForKey(groupKey, doubleArrayList);
+    BlockValSet blockValSet = blockValSets[0];
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[] dictIds = blockValSet.getDictionaryIdsSV();
+      for (int i = 0; i < length; i++) {
+        getDictIdCountMap(groupByResultHolder, groupKeyArray[i], dictionary).addTo(dictIds[i], 1);
       }
-      doubleArrayList.add(valueArray[i]);
+      return;
+    }
+
+    double[] valueArray = blockValSet.getDoubleValuesSV();
+    for (int i = 0; i < length; i++) {
+      getValueCountMap(groupByResultHolder, groupKeyArray[i]).addTo(valueArray[i], 1L);
     }
   }
 
   @Override
   public void aggregateGroupByMV(int length, @Nonnull int[][] groupKeysArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    double[] valueArray = blockValSets[0].getDoubleValuesSV();
+    BlockValSet blockValSet = blockValSets[0];
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[] dictIds = blockValSet.getDictionaryIdsSV();
+      for (int i = 0; i < length; i++) {
+        int dictId = dictIds[i];
+        for (int groupKey : groupKeysArray[i]) {
+          getDictIdCountMap(groupByResultHolder, groupKey, dictionary).addTo(dictId, 1);
+        }
+      }
+      return;
+    }
+
+    double[] valueArray = blockValSet.getDoubleValuesSV();
     for (int i = 0; i < length; i++) {
       double value = valueArray[i];
       for (int groupKey : groupKeysArray[i]) {
-        DoubleArrayList doubleArrayList = groupByResultHolder.getResult(groupKey);
-        if (doubleArrayList == null) {
-          doubleArrayList = new DoubleArrayList();
-          groupByResultHolder.setValueForKey(groupKey, doubleArrayList);
-        }
-        doubleArrayList.add(value);
+        getValueCountMap(groupByResultHolder, groupKey).addTo(value, 1L);
       }
     }
   }
 
   @Nonnull
   @Override
-  public DoubleArrayList extractAggregationResult(@Nonnull AggregationResultHolder aggregationResultHolder) {
-    DoubleArrayList doubleArrayList = aggregationResultHolder.getResult();
-    if (doubleArrayList == null) {
-      return new DoubleArrayList();
-    } else {
-      return doubleArrayList;
-    }
+  public Double2LongOpenHashMap extractAggregationResult(@Nonnull AggregationResultHolder aggregationResultHolder) {
+    return convertToValueCountMap(aggregationResultHolder.getResult());
   }
 
   @Nonnull
   @Override
-  public DoubleArrayList extractGroupByResult(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
-    DoubleArrayList doubleArrayList = groupByResultHolder.getResult(groupKey);
-    if (doubleArrayList == null) {
-      return new DoubleArrayList();
-    } else {
-      return doubleArrayList;
-    }
+  public Double2LongOpenHashMap extractGroupByResult(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey) {
+    return convertToValueCountMap(groupByResultHolder.getResult(groupKey));
   }
 
   @Nonnull
   @Override
-  public DoubleArrayList merge(@Nonnull DoubleArrayList intermediateResult1,
-      @Nonnull DoubleArrayList intermediateResult2) {
-    intermediateResult1.addAll(intermediateResult2);
+  public Double2LongOpenHashMap merge(@Nonnull Double2LongOpenHashMap intermediateResult1,
+      @Nonnull Double2LongOpenHashMap intermediateResult2) {
+    if (intermediateResult1.size() < intermediateResult2.size()) {
+      Double2LongOpenHashMap temp = intermediateResult1;
+      intermediateResult1 = intermediateResult2;
+      intermediateResult2 = temp;
+    }
+    for (Double2LongMap.Entry entry : intermediateResult2.double2LongEntrySet()) {
+      intermediateResult1.addTo(entry.getDoubleKey(), entry.getLongValue());
+    }
     return intermediateResult1;
   }
 
@@ -171,13 +201,158 @@ public class PercentileAggregationFunction implements AggregationFunction<Double
 
   @Nonnull
   @Override
-  public Double extractFinalResult(@Nonnull DoubleArrayList intermediateResult) {
-    int size = intermediateResult.size();
-    if (size == 0) {
+  public Double extractFinalResult(@Nonnull Double2LongOpenHashMap intermediateResult) {
+    int numValues = intermediateResult.size();
+    if (numValues == 0) {
       return DEFAULT_FINAL_RESULT;
+    }
+
+    double[] values = intermediateResult.keySet().toDoubleArray();
+    Arrays.sort(values);
+    long totalCount = 0;
+    for (double value : values) {
+      totalCount += intermediateResult.get(value);
+    }
+
+    // Same as the value at index (totalCount * percentile / 100) of the sorted values with duplicates
+    long index = totalCount * _percentile / 100;
+    long count = 0;
+    for (double value : values) {
+      count += intermediateResult.get(value);
+      if (count > index) {
+        return value;
+      }
+    }
+    return values[numValues - 1];
+  }
+
+  /**
+   * Helper method to get or create the dictionary id count array from the result holder.
+   * <p>The array is grown to the dictionary length on each call, as the dictionary of a consuming segment can grow.
+   *
+   * @param aggregationResultHolder Result holder
+   * @param dictionary Dictionary of the column
+   * @return Dictionary id count array
+   */
+  protected static int[] getDictIdCountArray(@Nonnull AggregationResultHolder aggregationResultHolder,
+      @Nonnull Dictionary dictionary) {
+    DictIdCountsWrapper dictIdCountsWrapper = aggregationResultHolder.getResult();
+    if (dictIdCountsWrapper == null) {
+      dictIdCountsWrapper = new DictIdCountsWrapper(dictionary, new int[dictionary.length()]);
+      aggregationResultHolder.setValue(dictIdCountsWrapper);
+    } else if (dictIdCountsWrapper._dictIdCountArray.length < dictionary.length()) {
+      dictIdCountsWrapper._dictIdCountArray = Arrays.copyOf(dictIdCountsWrapper._dictIdCountArray, dictionary.length());
+    }
+    return dictIdCountsWrapper._dictIdCountArray;
+  }
+
+  /**
+   * Helper method to get or create the dictionary id count map for a group key from the result holder.
+   *
+   * @param groupByResultHolder Result holder
+   * @param groupKey Group key
+   * @param dictionary Dictionary of the column
+   * @return Dictionary id count map
+   */
+  protected static Int2IntOpenHashMap getDictIdCountMap(@Nonnull GroupByResultHolder groupByResultHolder, int groupKey,
+      @Nonnull Dictionary dictionary) {
+    DictIdCountsWrapper dictIdCountsWrapper = groupByResultHolder.getResult(groupKey);
+    if (dictIdCountsWrapper == null) {
+      dictIdCountsWrapper = new DictIdCountsWrapper(dictionary, new Int2IntOpenHashMap());
+      groupByResultHolder.setValueForKey(groupKey, dictIdCountsWrapper);
+    }
+    return dictIdCountsWrapper._dictIdCountMap;
+  }
+
+  /**
+   * Helper method to get or create the value count map from the result holder.
+   *
+   * @param aggregationResultHolder Result holder
+   * @return Value count map
+   */
+  protected static Double2LongOpenHashMap getValueCountMap(@Nonnull AggregationResultHolder aggregationResultHolder) {
+    Double2LongOpenHashMap valueCounts = aggregationResultHolder.getResult();
+    if (valueCounts == null) {
+      valueCounts = new Double2LongOpenHashMap();
+      aggregationResultHolder.setValue(valueCounts);
+    }
+    return valueCounts;
+  }
+
+  /**
+   * Helper method to get or create the value count map for a group key from the result holder.
+   *
+   * @param groupByResultHolder Result holder
+   * @param groupKey Group key
+   * @return Value count map
+   */
+  protected static Double2LongOpenHashMap getValueCountMap(@Nonnull GroupByResultHolder groupByResultHolder,
+      int groupKey) {
+    Double2LongOpenHashMap valueCounts = groupByResultHolder.getResult(groupKey);
+    if (valueCounts == null) {
+      valueCounts = new Double2LongOpenHashMap();
+      groupByResultHolder.setValueForKey(groupKey, valueCounts);
+    }
+    return valueCounts;
+  }
+
+  /**
+   * Helper method to convert the result stored in the result holder (dictionary id counts or value count map) into a
+   * value count map.
+   *
+   * @param result Result stored in the result holder
+   * @return Value count map
+   */
+  private static Double2LongOpenHashMap convertToValueCountMap(Object result) {
+    if (result == null) {
+      return new Double2LongOpenHashMap();
+    }
+    if (!(result instanceof DictIdCountsWrapper)) {
+      return (Double2LongOpenHashMap) result;
+    }
+
+    DictIdCountsWrapper dictIdCountsWrapper = (DictIdCountsWrapper) result;
+    Dictionary dictionary = dictIdCountsWrapper._dictionary;
+    Double2LongOpenHashMap valueCounts;
+    if (dictIdCountsWrapper._dictIdCountArray != null) {
+      int[] dictIdCounts = dictIdCountsWrapper._dictIdCountArray;
+      int numDictIds = dictIdCounts.length;
+      valueCounts = new Double2LongOpenHashMap();
+      for (int dictId = 0; dictId < numDictIds; dictId++) {
+        int count = dictIdCounts[dictId];
+        if (count != 0) {
+          valueCounts.addTo(dictionary.getDoubleValue(dictId), count);
+        }
+      }
     } else {
-      Collections.sort(intermediateResult);
-      return intermediateResult.get((int) ((long) intermediateResult.size() * _percentile / 100));
+      Int2IntOpenHashMap dictIdCounts = dictIdCountsWrapper._dictIdCountMap;
+      valueCounts = new Double2LongOpenHashMap(dictIdCounts.size());
+      for (Int2IntMap.Entry entry : dictIdCounts.int2IntEntrySet()) {
+        valueCounts.addTo(dictionary.getDoubleValue(entry.getIntKey()), entry.getIntValue());
+      }
+    }
+    return valueCounts;
+  }
+
+  /**
+   * Helper class to store the occurrences of the dictionary ids accumulated for a segment, along with the dictionary to
+   * look up the values. Aggregation uses an array indexed by dictionary id, group-by uses a map per group.
+   */
+  private static final class DictIdCountsWrapper {
+    final Dictionary _dictionary;
+    int[] _dictIdCountArray;
+    final Int2IntOpenHashMap _dictIdCountMap;
+
+    DictIdCountsWrapper(Dictionary dictionary, int[] dictIdCountArray) {
+      _dictionary = dictionary;
+      _dictIdCountArray = dictIdCountArray;
+      _dictIdCountMap = null;
+    }
+
+    DictIdCountsWrapper(Dictionary dictionary, Int2IntOpenHashMap dictIdCountMap) {
+      _dictionary = dictionary;
+      _dictIdCountArray = null;
+      _dictIdCountMap = dictIdCountMap;
     }
   }
 }
@@ -18,7 +18,9 @@ package com.linkedin.pinot.core.query.aggregation.function;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
 import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
-import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.doubles.Double2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import javax.annotation.Nonnull;
 
 
@@ -61,15 +63,25 @@ public class PercentileMVAggregationFunction extends PercentileAggregationFuncti
   @Override
   public void aggregate(int length, @Nonnull AggregationResultHolder aggregationResultHolder,
       @Nonnull BlockValSet... blockValSets) {
-    double[][] valuesArray = blockValSets[0].getDoubleValuesMV();
-    DoubleArrayList doubleArrayList = aggregationResultHolder.getResult();
-    if (doubleArrayList == null) {
-      doubleArrayList = new DoubleArrayList();
-      aggregationResultHolder.setValue(doubleArrayList);
+    BlockValSet blockValSet = blockValSets[0];
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[][] dictIdsArray = blockValSet.getDictionaryIdsMV();
+      int[] dictIdCounts = getDictIdCountArray(aggregationResultHolder, dictionary);
+      for (int i = 0; i < length; i++) {
+        for (int dictId : dictIdsArray[i]) {
+          dictIdCounts[dictId]++;
+        }
+      }
+      return;
     }
+
+    double[][] valuesArray = blockValSet.getDoubleValuesMV();
+    Double2LongOpenHashMap valueCounts = getValueCountMap(aggregationResultHolder);
     for (int i = 0; i < length; i++) {
       for (double value : valuesArray[i]) {
-        doubleArrayList.add(value);
+        valueCounts.addTo(value, 1L);
       }
     }
   }
@@ -77,16 +89,25 @@ public class PercentileMVAggregationFunction extends PercentileAggregationFuncti
   @Override
   public void aggregateGroupBySV(int length, @Nonnull int[] groupKeyArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    double[][] valuesArray = blockValSets[0].getDoubleValuesMV();
-    for (int i = 0; i < length; i++) {
-      int groupKey = groupKeyArray[i];
-      DoubleArrayList doubleArrayList = groupByResultHolder.getResult(groupKey);
-      if (doubleArrayList == null) {
-        doubleArrayList = new DoubleArrayList();
-        groupByResultHolder.setValueForKey(groupKey, doubleArrayList);
+    BlockValSet blockValSet = blockValSets[0];
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[][] dictIdsArray = blockValSet.getDictionaryIdsMV();
+      for (int i = 0; i < length; i++) {
+        Int2IntOpenHashMap dictIdCounts = getDictIdCountMap(groupByResultHolder, groupKeyArray[i], dictionary);
+        for (int dictId : dictIdsArray[i]) {
+          dictIdCounts.addTo(dictId, 1);
+        }
       }
+      return;
+    }
+
+    double[][] valuesArray = blockValSet.getDoubleValuesMV();
+    for (int i = 0; i < length; i++) {
+      Double2LongOpenHashMap valueCounts = getValueCountMap(groupByResultHolder, groupKeyArray[i]);
       for (double value : valuesArray[i]) {
-        doubleArrayList.add(value);
+        valueCounts.addTo(value, 1L);
       }
     }
   }
@@ -94,17 +115,30 @@ public class PercentileMVAggregationFunction extends PercentileAggregationFuncti
   @Override
   public void aggregateGroupByMV(int length, @Nonnull int[][] groupKeysArray,
       @Nonnull GroupByResultHolder groupByResultHolder, @Nonnull BlockValSet... blockValSets) {
-    double[][] valuesArray = blockValSets[0].getDoubleValuesMV();
+    BlockValSet blockValSet = blockValSets[0];
+    Dictionary dictionary = blockValSet.getDictionary();
+
+    if (dictionary != null) {
+      int[][] dictIdsArray = blockValSet.getDictionaryIdsMV();
+      for (int i = 0; i < length; i++) {
+        int[] dictIds = dictIdsArray[i];
+        for (int groupKey : groupKeysArray[i]) {
+          Int2IntOpenHashMap dictIdCounts = getDictIdCountMap(groupByResultHolder, groupKey, dictionary);
+          for (int dictId : dictIds) {
+            dictIdCounts.addTo(dictId, 1);
+          }
+        }
+      }
+      return;
+    }
+
+    double[][] valuesArray = blockValSet.getDoubleValuesMV();
     for (int i = 0; i < length; i++) {
       double[] values = valuesArray[i];
       for (int groupKey : groupKeysArray[i]) {
-        DoubleArrayList doubleArrayList = groupByResultHolder.getResult(groupKey);
-        if (doubleArrayList == null) {
-          doubleArrayList = new DoubleArrayList();
-          groupByResultHolder.setValueForKey(groupKey, doubleArrayList);
-        }
+        Double2LongOpenHashMap valueCounts = getValueCountMap(groupByResultHolder, groupKey);
         for (double value : values) {
-          doubleArrayList.add(value);
+          valueCounts.addTo(value, 1L);
         }
       }
     }
@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.customobject;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+
+
+/**
+ * Theta sketch (K minimum values) for distinct count estimation with set operations.
+ * <p>The values are hashed into 63-bit non-negative hashes, and the sketch retains the hashes smaller than theta. Once
+ * more than 2 * nominal entries are retained, theta is lowered to keep the nominal entries smallest hashes. The
+ * distinct count is estimated as <code>numRetainedHashes / (theta / Long.MAX_VALUE)</code>, and is exact as long as
+ * theta has never been lowered.
+ * <p>Union, intersection and difference of sketches use the minimum theta of the sketches, and apply the set operation
+ * on the retained hashes smaller than it, so the result is a sketch of the same form.
+ */
+public class ThetaSketch {
+  public static final int DEFAULT_NOMINAL_ENTRIES = 4096;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(9001);
+
+  private final int _nominalEntries;
+  private long _theta;
+  private final LongOpenHashSet _hashes;
+
+  public ThetaSketch() {
+    this(DEFAULT_NOMINAL_ENTRIES);
+  }
+
+  public ThetaSketch(int nominalEntries) {
+    this(nominalEntries, Long.MAX_VALUE, new LongOpenHashSet());
+  }
+
+  private ThetaSketch(int nominalEntries, long theta, @Nonnull LongOpenHashSet hashes) {
+    _nominalEntries = nominalEntries;
+    _theta = theta;
+    _hashes = hashes;
+  }
+
+  public void update(int value) {
+    updateHash(hash(value));
+  }
+
+  public void update(long value) {
+    updateHash(hash(value));
+  }
+
+  public void update(float value) {
+    updateHash(hash(value));
+  }
+
+  public void update(double value) {
+    updateHash(hash(value));
+  }
+
+  public void update(@Nonnull String value) {
+    updateHash(hash(value));
+  }
+
+  /**
+   * Returns the 64-bit hash of a value, which can be used to update multiple sketches with the same value.
+   * <p>INT values share the hashes with the equal LONG values, and FLOAT values share the hashes with the equal DOUBLE
+   * values.
+   */
+  public static long hash(long value) {
+    return HASH_FUNCTION.hashLong(value).asLong();
+  }
+
+  public static long hash(double value) {
+    return HASH_FUNCTION.hashLong(Double.doubleToLongBits(value)).asLong();
+  }
+
+  public static long hash(@Nonnull String value) {
+    return HASH_FUNCTION.hashString(value, Charsets.UTF_8).asLong();
+  }
+
+  /**
+   * Updates the sketch with a 64-bit hash of a value.
+   */
+  public void updateHash(long hash) {
+    hash >>>= 1;
+    if (hash < _theta && _hashes.add(hash) && _hashes.size() > 2 * _nominalEntries) {
+      trim();
+    }
+  }
+
+  /**
+   * Merges (union) another sketch into this sketch.
+   */
+  public void merge(@Nonnull ThetaSketch thetaSketch) {
+    if (thetaSketch._theta < _theta) {
+      _theta = thetaSketch._theta;
+      removeHashesNotBelowTheta();
+    }
+    LongIterator iterator = thetaSketch._hashes.iterator();
+    while (iterator.hasNext()) {
+      long hash = iterator.nextLong();
+      if (hash < _theta) {
+        _hashes.add(hash);
+      }
+    }
+    if (_hashes.size() > _nominalEntries) {
+      trim();
+    }
+  }
+
+  public double getEstimate() {
+    if (_theta == Long.MAX_VALUE) {
+      return _hashes.size();
+    }
+    return _hashes.size() / getTheta();
+  }
+
+  /**
+   * Returns theta as a fraction of the hash space.
+   */
+  public double getTheta() {
+    return (double) _theta / Long.MAX_VALUE;
+  }
+
+  public int getNumRetainedEntries() {
+    return _hashes.size();
+  }
+
+  public boolean isEstimationMode() {
+    return _theta != Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns a new sketch for the union of the given sketches.
+   */
+  @Nonnull
+  public static ThetaSketch union(@Nonnull ThetaSketch thetaSketch1, @Nonnull ThetaSketch thetaSketch2) {
+    ThetaSketch result = new ThetaSketch(Math.max(thetaSketch1._nominalEntries, thetaSketch2._nominalEntries),
+        thetaSketch1._theta, new LongOpenHashSet(thetaSketch1._hashes));
+    result.merge(thetaSketch2);
+    return result;
+  }
+
+  /**
+   * Returns a new sketch for the intersection of the given sketches.
+   */
+  @Nonnull
+  public static ThetaSketch intersect(@Nonnull ThetaSketch thetaSketch1, @Nonnull ThetaSketch thetaSketch2) {
+    long theta = Math.min(thetaSketch1._theta, thetaSketch2._theta);
+    LongOpenHashSet hashes = new LongOpenHashSet();
+    LongIterator iterator = thetaSketch1._hashes.iterator();
+    while (iterator.hasNext()) {
+      long hash = iterator.nextLong();
+      if (hash < theta && thetaSketch2._hashes.contains(hash)) {
+        hashes.add(hash);
+      }
+    }
+    return new ThetaSketch(Math.max(thetaSketch1._nominalEntries, thetaSketch2._nominalEntries), theta, hashes);
+  }
+
+  /**
+   * Returns a new sketch for the difference of the given sketches (values in the first sketch but not the second one).
+   */
+  @Nonnull
+  public static ThetaSketch diff(@Nonnull ThetaSketch thetaSketch1, @Nonnull ThetaSketch thetaSketch2) {
+    long theta = Math.min(thetaSketch1._theta, thetaSketch2._theta);
+    LongOpenHashSet hashes = new LongOpenHashSet();
+    LongIterator iterator = thetaSketch1._hashes.iterator();
+    while (iterator.hasNext()) {
+      long hash = iterator.nextLong();
+      if (hash < theta && !thetaSketch2._hashes.contains(hash)) {
+        hashes.add(hash);
+      }
+    }
+    return new ThetaSketch(Math.max(thetaSketch1._nominalEntries, thetaSketch2._nominalEntries), theta, hashes);
+  }
+
+  @Nonnull
+  public byte[] toBytes() {
+    int numHashes = _hashes.size();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(
+        V1Constants.Numbers.INTEGER_SIZE + V1Constants.Numbers.LONG_SIZE + V1Constants.Numbers.INTEGER_SIZE
+            + numHashes * V1Constants.Numbers.LONG_SIZE);
+    byteBuffer.putInt(_nominalEntries);
+    byteBuffer.putLong(_theta);
+    byteBuffer.putInt(numHashes);
+    LongIterator iterator = _hashes.iterator();
+    while (iterator.hasNext()) {
+      byteBuffer.putLong(iterator.nextLong());
+    }
+    return byteBuffer.array();
+  }
+
+  @Nonnull
+  public static ThetaSketch fromBytes(byte[] bytes) {
+    return fromByteBuffer(ByteBuffer.wrap(bytes));
+  }
+
+  @Nonnull
+  public static ThetaSketch fromByteBuffer(ByteBuffer byteBuffer) {
+    int nominalEntries = byteBuffer.getInt();
+    long theta = byteBuffer.getLong();
+    int numHashes = byteBuffer.getInt();
+    LongOpenHashSet hashes = new LongOpenHashSet(numHashes);
+    for (int i = 0; i < numHashes; i++) {
+      hashes.add(byteBuffer.getLong());
+    }
+    return new ThetaSketch(nominalEntries, theta, hashes);
+  }
+
+  /**
+   * Helper method to lower theta to keep only the nominal entries smallest hashes.
+   */
+  private void trim() {
+    long[] hashes = _hashes.toLongArray();
+    Arrays.sort(hashes);
+    _theta = hashes[_nominalEntries];
+    _hashes.clear();
+    for (int i = 0; i < _nominalEntries; i++) {
+      _hashes.add(hashes[i]);
+    }
+  }
+
+  /**
+   * Helper method to remove the retained hashes not smaller than theta.
+   */
+  private void removeHashesNotBelowTheta() {
+    LongIterator iterator = _hashes.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.nextLong() >= _theta) {
+        iterator.remove();
+      }
+    }
+  }
+}
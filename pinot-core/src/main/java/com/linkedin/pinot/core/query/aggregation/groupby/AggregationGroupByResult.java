@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.query.aggregation.groupby;
 
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunction;
 import java.util.Iterator;
+import javax.annotation.Nullable;
 
 
 /**
@@ -28,12 +29,14 @@ public class AggregationGroupByResult {
   private final GroupKeyGenerator _groupKeyGenerator;
   private final AggregationFunction[] _aggregationFunctions;
   private final GroupByResultHolder[] _resultHolders;
+  private final double[] _trimThresholds;
 
   public AggregationGroupByResult(GroupKeyGenerator groupKeyGenerator, AggregationFunction[] aggregationFunctions,
-      GroupByResultHolder[] resultHolders) {
+      GroupByResultHolder[] resultHolders, @Nullable double[] trimThresholds) {
     _groupKeyGenerator = groupKeyGenerator;
     _aggregationFunctions = aggregationFunctions;
     _resultHolders = resultHolders;
+    _trimThresholds = trimThresholds;
   }
 
   /**
@@ -64,4 +67,15 @@ public class AggregationGroupByResult {
   public Object getResultForKey(GroupKeyGenerator.GroupKey groupKey, int index) {
     return _aggregationFunctions[index].extractGroupByResult(_resultHolders[index], groupKey._groupId);
   }
+
+  /**
+   * Returns the trim threshold for each aggregation function, which is not smaller than the result of any group trimmed
+   * on the segment, or null if the results of the trimmed groups cannot be bounded.
+   *
+   * @return Trim thresholds, or null if not bounded
+   */
+  @Nullable
+  public double[] getTrimThresholds() {
+    return _trimThresholds;
+  }
 }
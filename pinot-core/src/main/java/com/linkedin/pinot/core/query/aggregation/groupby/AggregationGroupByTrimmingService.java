@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -112,6 +113,102 @@ public class AggregationGroupByTrimmingService {
     return Arrays.asList(trimmedResultMaps);
   }
 
+  /**
+   * Trims the groups of an aggregation group-by result on a single segment, before the group keys are materialized.
+   * <p>Should only be called when all the aggregation functions are monotonic with non-negative results stored as
+   * double (e.g. COUNT, SUM on non-negative values), so that merging results from other segments can only increase the
+   * result of a group. If the number of groups is larger than the trim threshold, the top groups for each aggregation
+   * function are kept, and the other groups are purged from the group key generator.
+   *
+   * @param groupKeyGenerator Group key generator
+   * @param resultHolders Result holders for the aggregation functions
+   * @return Trim threshold for each aggregation function, which is not smaller than the result of any purged group (0 if
+   *         no group is purged)
+   */
+  @Nonnull
+  public double[] trimGroupKeys(@Nonnull GroupKeyGenerator groupKeyGenerator,
+      @Nonnull GroupByResultHolder[] resultHolders) {
+    int numAggregationFunctions = _aggregationFunctions.length;
+    double[] trimThresholds = new double[numAggregationFunctions];
+
+    // Group key generators do not reuse group ids, so the upper bound is not smaller than the number of groups
+    int groupIdUpperBound = groupKeyGenerator.getCurrentGroupKeyUpperBound();
+    if (groupIdUpperBound <= _trimThreshold) {
+      return trimThresholds;
+    }
+
+    boolean[] groupIdsToKeep = new boolean[groupIdUpperBound];
+    for (int i = 0; i < numAggregationFunctions; i++) {
+      GroupByResultHolder resultHolder = resultHolders[i];
+      TopResultsHeap heap = new TopResultsHeap(_trimSize);
+      for (int groupId = 0; groupId < groupIdUpperBound; groupId++) {
+        heap.offer(groupId, resultHolder.getDoubleResult(groupId));
+      }
+      heap.markGroupIds(groupIdsToKeep);
+      trimThresholds[i] = heap.getMinResult();
+    }
+
+    int numGroupIdsToPurge = 0;
+    for (boolean groupIdToKeep : groupIdsToKeep) {
+      if (!groupIdToKeep) {
+        numGroupIdsToPurge++;
+      }
+    }
+    int[] groupIdsToPurge = new int[numGroupIdsToPurge];
+    int index = 0;
+    for (int groupId = 0; groupId < groupIdUpperBound; groupId++) {
+      if (!groupIdsToKeep[groupId]) {
+        groupIdsToPurge[index++] = groupId;
+      }
+    }
+    groupKeyGenerator.purgeKeys(groupIdsToPurge);
+
+    return trimThresholds;
+  }
+
+  /**
+   * Given a map from group key to the intermediate results merged from multiple segments, remove the groups that cannot
+   * be among the top groups for any aggregation function.
+   * <p>Should only be called when all the segment results come from {@link #trimGroupKeys(GroupKeyGenerator,
+   * GroupByResultHolder[])}. The merged result of a group is a lower bound of its actual result, and the merged result
+   * plus the sum of the segment trim thresholds is an upper bound. A group whose upper bound is smaller than the lower
+   * bound of the top groups can be removed.
+   *
+   * @param intermediateResultsMap Map from group key to the intermediate results
+   * @param trimThresholdSums Sum of the segment trim thresholds for each aggregation function
+   */
+  public void pruneIntermediateResultsMap(@Nonnull Map<String, Object[]> intermediateResultsMap,
+      @Nonnull double[] trimThresholdSums) {
+    if (intermediateResultsMap.size() <= _trimSize) {
+      return;
+    }
+
+    int numAggregationFunctions = _aggregationFunctions.length;
+    double[] minTopResults = new double[numAggregationFunctions];
+    for (int i = 0; i < numAggregationFunctions; i++) {
+      TopResultsHeap heap = new TopResultsHeap(_trimSize);
+      for (Object[] intermediateResults : intermediateResultsMap.values()) {
+        heap.offer(0, ((Number) intermediateResults[i]).doubleValue());
+      }
+      minTopResults[i] = heap.getMinResult();
+    }
+
+    Iterator<Object[]> iterator = intermediateResultsMap.values().iterator();
+    while (iterator.hasNext()) {
+      Object[] intermediateResults = iterator.next();
+      boolean canBePruned = true;
+      for (int i = 0; i < numAggregationFunctions; i++) {
+        if (((Number) intermediateResults[i]).doubleValue() + trimThresholdSums[i] >= minTopResults[i]) {
+          canBePruned = false;
+          break;
+        }
+      }
+      if (canBePruned) {
+        iterator.remove();
+      }
+    }
+  }
+
   /**
    * Given an array of maps from group key to final result for each aggregation function, trim the results to topN size.
    */
@@ -346,4 +443,70 @@ public class AggregationGroupByTrimmingService {
       throw new UnsupportedOperationException();
     }
   }
+
+  /**
+   * Helper class of bounded min-heap on primitive double results to keep the group ids with the largest results.
+   */
+  private static class TopResultsHeap {
+    private final int _maxSize;
+    private final int[] _groupIds;
+    private final double[] _results;
+    private int _size = 0;
+
+    public TopResultsHeap(int maxSize) {
+      _maxSize = maxSize;
+      _groupIds = new int[maxSize];
+      _results = new double[maxSize];
+    }
+
+    public void offer(int groupId, double result) {
+      if (_size < _maxSize) {
+        // Sift up
+        int position = _size++;
+        while (position > 0) {
+          int parentPosition = (position - 1) >>> 1;
+          if (_results[parentPosition] <= result) {
+            break;
+          }
+          _groupIds[position] = _groupIds[parentPosition];
+          _results[position] = _results[parentPosition];
+          position = parentPosition;
+        }
+        _groupIds[position] = groupId;
+        _results[position] = result;
+      } else if (result > _results[0]) {
+        // Replace the min result and sift down
+        int position = 0;
+        int half = _size >>> 1;
+        while (position < half) {
+          int childPosition = 2 * position + 1;
+          int rightPosition = childPosition + 1;
+          if (rightPosition < _size && _results[rightPosition] < _results[childPosition]) {
+            childPosition = rightPosition;
+          }
+          if (result <= _results[childPosition]) {
+            break;
+          }
+          _groupIds[position] = _groupIds[childPosition];
+          _results[position] = _results[childPosition];
+          position = childPosition;
+        }
+        _groupIds[position] = groupId;
+        _results[position] = result;
+      }
+    }
+
+    public void markGroupIds(boolean[] groupIdsToKeep) {
+      for (int i = 0; i < _size; i++) {
+        groupIdsToKeep[_groupIds[i]] = true;
+      }
+    }
+
+    /**
+     * Returns the smallest result in the heap, or 0 if the heap is empty.
+     */
+    public double getMinResult() {
+      return _size > 0 ? _results[0] : 0.0;
+    }
+  }
 }
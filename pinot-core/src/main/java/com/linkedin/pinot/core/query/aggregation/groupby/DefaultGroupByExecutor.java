@@ -25,6 +25,8 @@ import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionContext;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionUtils;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import java.util.List;
 import javax.annotation.Nonnull;
 
@@ -55,13 +57,15 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
 
   private final int _numFunctions;
   private final AggregationFunction[] _functions;
-  private final TransformExpressionTree[] _aggregationExpressions;
+  private final TransformExpressionTree[][] _aggregationExpressions;
   private final GroupKeyGenerator _groupKeyGenerator;
   private final GroupByResultHolder[] _resultHolders;
   private final boolean _hasMVGroupByExpression;
   private final boolean _hasNoDictionaryGroupByExpression;
   private final int[] _svGroupKeys;
   private final int[][] _mvGroupKeys;
+  private final AggregationGroupByTrimmingService _trimmingService;
+  private boolean _resultsTrimmedByResultHolders = false;
 
   /**
    * Constructor for the class.
@@ -77,14 +81,13 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
     // Initialize aggregation functions and expressions
     _numFunctions = functionContexts.length;
     _functions = new AggregationFunction[_numFunctions];
-    _aggregationExpressions = new TransformExpressionTree[_numFunctions];
+    _aggregationExpressions = new TransformExpressionTree[_numFunctions][];
     for (int i = 0; i < _numFunctions; i++) {
       AggregationFunction function = functionContexts[i].getAggregationFunction();
       _functions[i] = function;
-      // TODO: currently only support single argument aggregation
       if (!function.getName().equals(AggregationFunctionFactory.AggregationFunctionType.COUNT.getName())) {
         _aggregationExpressions[i] =
-            TransformExpressionTree.compileToExpressionTree(functionContexts[i].getAggregationColumns()[0]);
+            AggregationFunctionUtils.compileExpressions(functionContexts[i].getAggregationColumns());
       }
     }
 
@@ -123,6 +126,15 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
       _resultHolders[i] = _functions[i].createGroupByResultHolder(initialCapacity, maxNumResults, numGroupsLimit);
     }
 
+    // Trim the groups on the segment for 'TOP N' only if the results of the trimmed groups can be bounded, i.e. all the
+    // aggregation functions are monotonic with non-negative results
+    boolean canTrimGroups = groupBy.getTopN() > 0;
+    for (int i = 0; i < _numFunctions && canTrimGroups; i++) {
+      canTrimGroups = isMonotonicNonNegative(_functions[i], _aggregationExpressions[i], transformOperator);
+    }
+    _trimmingService =
+        canTrimGroups ? new AggregationGroupByTrimmingService(_functions, (int) groupBy.getTopN()) : null;
+
     // Initialize map from document Id to group key
     if (_hasMVGroupByExpression) {
       _svGroupKeys = null;
@@ -156,26 +168,61 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
           function.aggregateGroupBySV(length, _svGroupKeys, resultHolder);
         }
       } else {
-        BlockValSet blockValueSet = transformBlock.getBlockValueSet(_aggregationExpressions[i]);
+        BlockValSet[] blockValueSets =
+            AggregationFunctionUtils.getBlockValSets(transformBlock, _aggregationExpressions[i]);
         if (_hasMVGroupByExpression) {
-          function.aggregateGroupByMV(length, _mvGroupKeys, resultHolder, blockValueSet);
+          function.aggregateGroupByMV(length, _mvGroupKeys, resultHolder, blockValueSets);
         } else {
-          function.aggregateGroupBySV(length, _svGroupKeys, resultHolder, blockValueSet);
+          function.aggregateGroupBySV(length, _svGroupKeys, resultHolder, blockValueSets);
         }
       }
 
       // Result holder limits the max number of group keys (default 100k), if the number of groups
       // exceeds beyond that limit, groups with lower values (as per sort order) are trimmed.
-      // Once result holder trims those groups, the group key generator needs to purge them.
+      // NOTE: the trimmed groups are not purged from the group key generator because the result holders of the other
+      // aggregation functions might still hold results for them.
       if (!_hasNoDictionaryGroupByExpression) {
-        int[] trimmedKeys = resultHolder.trimResults();
-        _groupKeyGenerator.purgeKeys(trimmedKeys);
+        if (resultHolder.trimResults().length > 0) {
+          _resultsTrimmedByResultHolders = true;
+        }
       }
     }
   }
 
   @Override
   public AggregationGroupByResult getResult() {
-    return new AggregationGroupByResult(_groupKeyGenerator, _functions, _resultHolders);
+    double[] trimThresholds = null;
+    if (_trimmingService != null) {
+      trimThresholds = _trimmingService.trimGroupKeys(_groupKeyGenerator, _resultHolders);
+      // Results dropped by the result holders while processing cannot be bounded
+      if (_resultsTrimmedByResultHolders) {
+        trimThresholds = null;
+      }
+    }
+    return new AggregationGroupByResult(_groupKeyGenerator, _functions, _resultHolders, trimThresholds);
+  }
+
+  /**
+   * Helper method to check whether an aggregation function is monotonic with non-negative results, i.e. COUNT, or SUM
+   * on a column with sorted dictionary and non-negative values.
+   */
+  private static boolean isMonotonicNonNegative(AggregationFunction function,
+      TransformExpressionTree[] aggregationExpressions, TransformOperator transformOperator) {
+    String functionName = function.getName();
+    if (functionName.equals(AggregationFunctionFactory.AggregationFunctionType.COUNT.getName())
+        || functionName.equals(AggregationFunctionFactory.AggregationFunctionType.COUNTMV.getName())) {
+      return true;
+    }
+    if (functionName.equals(AggregationFunctionFactory.AggregationFunctionType.SUM.getName())
+        || functionName.equals(AggregationFunctionFactory.AggregationFunctionType.SUMMV.getName())) {
+      TransformExpressionTree aggregationExpression = aggregationExpressions[0];
+      if (!aggregationExpression.isColumn() || !transformOperator.getResultMetadata(aggregationExpression)
+          .hasDictionary()) {
+        return false;
+      }
+      Dictionary dictionary = transformOperator.getDictionary(aggregationExpression);
+      return dictionary.isSorted() && (dictionary.length() == 0 || dictionary.getDoubleValue(0) >= 0);
+    }
+    return false;
   }
 }
@@ -73,23 +73,6 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
   private final int _globalGroupIdUpperBound;
   private final RawKeyHolder _rawKeyHolder;
 
-//  // The following data structures are used for trimming group keys.
-//  // TODO: the key will be contiguous so we should use array here.
-//  // Reverse mapping for trimming group keys
-//  private Int2LongOpenHashMap _idToGroupKey;
-//
-//  // Reverse mapping from KeyIds to groupKeys. purgeGroupKeys takes an array of keyIds to remove,
-//  // this map tracks keyIds to groupKeys, to serve the purging.
-//  private Int2ObjectOpenHashMap<IntArrayList> _idToArrayGroupKey;
-//
-//  // Enum to reflect if trimming of group keys is ON or OFF. Once ON, we need to start tracking
-//  // the keyIds that are removed.
-//  private enum TrimMode {
-//    OFF,
-//    ON
-//  }
-//  private TrimMode _trimMode;
-
   public DictionaryBasedGroupKeyGenerator(@Nonnull TransformOperator transformOperator,
       @Nonnull TransformExpressionTree[] groupByExpressions, int arrayBasedThreshold) {
     _groupByExpressions = groupByExpressions;
@@ -180,7 +163,14 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
   @Override
   public void purgeKeys(@Nonnull int[] keyIdsToPurge) {
-    // TODO: Make trimming work
+    if (keyIdsToPurge.length == 0) {
+      return;
+    }
+    boolean[] groupIdsToPurge = new boolean[_rawKeyHolder.getGroupIdUpperBound()];
+    for (int groupId : keyIdsToPurge) {
+      groupIdsToPurge[groupId] = true;
+    }
+    _rawKeyHolder.purge(groupIdsToPurge);
   }
 
   private interface RawKeyHolder extends Iterable<GroupKey> {
@@ -207,6 +197,13 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
      * @return Upper bound of group id inside the holder
      */
     int getGroupIdUpperBound();
+
+    /**
+     * Purge the flagged group ids from the holder. Purged group ids are not reused for new raw keys.
+     *
+     * @param groupIdsToPurge Flags of the group ids to purge, indexed by group id
+     */
+    void purge(@Nonnull boolean[] groupIdsToPurge);
   }
 
   private class ArrayBasedHolder implements RawKeyHolder {
@@ -241,6 +238,16 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
       return _globalGroupIdUpperBound;
     }
 
+    @Override
+    public void purge(@Nonnull boolean[] groupIdsToPurge) {
+      int length = groupIdsToPurge.length;
+      for (int groupId = 0; groupId < length; groupId++) {
+        if (groupIdsToPurge[groupId]) {
+          _flags[groupId] = false;
+        }
+      }
+    }
+
     @Nonnull
     @Override
     public Iterator<GroupKey> iterator() {
@@ -277,6 +284,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
   private class IntMapBasedHolder implements RawKeyHolder {
     private final Int2IntOpenHashMap _rawKeyToGroupIdMap = new Int2IntOpenHashMap();
+    private int _numGroups = 0;
 
     public IntMapBasedHolder() {
       _rawKeyToGroupIdMap.defaultReturnValue(INVALID_ID);
@@ -308,7 +316,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
     private int getGroupId(int rawKey) {
       int groupId = _rawKeyToGroupIdMap.get(rawKey);
       if (groupId == INVALID_ID) {
-        groupId = _rawKeyToGroupIdMap.size();
+        groupId = _numGroups++;
         _rawKeyToGroupIdMap.put(rawKey, groupId);
       }
       return groupId;
@@ -316,7 +324,17 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
     @Override
     public int getGroupIdUpperBound() {
-      return _rawKeyToGroupIdMap.size();
+      return _numGroups;
+    }
+
+    @Override
+    public void purge(@Nonnull boolean[] groupIdsToPurge) {
+      ObjectIterator<Int2IntMap.Entry> iterator = _rawKeyToGroupIdMap.int2IntEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        if (groupIdsToPurge[iterator.next().getIntValue()]) {
+          iterator.remove();
+        }
+      }
     }
 
     @Nonnull
@@ -451,6 +469,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
   private class LongMapBasedHolder implements RawKeyHolder {
     private final Long2IntOpenHashMap _rawKeyToGroupIdMap = new Long2IntOpenHashMap();
+    private int _numGroups = 0;
 
     public LongMapBasedHolder() {
       _rawKeyToGroupIdMap.defaultReturnValue(INVALID_ID);
@@ -483,7 +502,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
     private int getGroupId(long rawKey) {
       int groupId = _rawKeyToGroupIdMap.get(rawKey);
       if (groupId == INVALID_ID) {
-        groupId = _rawKeyToGroupIdMap.size();
+        groupId = _numGroups++;
         _rawKeyToGroupIdMap.put(rawKey, groupId);
       }
       return groupId;
@@ -491,7 +510,17 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
     @Override
     public int getGroupIdUpperBound() {
-      return _rawKeyToGroupIdMap.size();
+      return _numGroups;
+    }
+
+    @Override
+    public void purge(@Nonnull boolean[] groupIdsToPurge) {
+      ObjectIterator<Long2IntMap.Entry> iterator = _rawKeyToGroupIdMap.long2IntEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        if (groupIdsToPurge[iterator.next().getIntValue()]) {
+          iterator.remove();
+        }
+      }
     }
 
     @Nonnull
@@ -617,6 +646,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
   private class ArrayMapBasedHolder implements RawKeyHolder {
     private final Object2IntOpenHashMap<IntArray> _rawKeyToGroupIdMap = new Object2IntOpenHashMap<>();
+    private int _numGroups = 0;
 
     public ArrayMapBasedHolder() {
       _rawKeyToGroupIdMap.defaultReturnValue(INVALID_ID);
@@ -649,7 +679,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
     private int getGroupId(IntArray rawKey) {
       int groupId = _rawKeyToGroupIdMap.getInt(rawKey);
       if (groupId == INVALID_ID) {
-        groupId = _rawKeyToGroupIdMap.size();
+        groupId = _numGroups++;
         _rawKeyToGroupIdMap.put(rawKey, groupId);
       }
       return groupId;
@@ -657,7 +687,17 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
     @Override
     public int getGroupIdUpperBound() {
-      return _rawKeyToGroupIdMap.size();
+      return _numGroups;
+    }
+
+    @Override
+    public void purge(@Nonnull boolean[] groupIdsToPurge) {
+      ObjectIterator<Object2IntMap.Entry<IntArray>> iterator = _rawKeyToGroupIdMap.object2IntEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        if (groupIdsToPurge[iterator.next().getIntValue()]) {
+          iterator.remove();
+        }
+      }
     }
 
     @Nonnull
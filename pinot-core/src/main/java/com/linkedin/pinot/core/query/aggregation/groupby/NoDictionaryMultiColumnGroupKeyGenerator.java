@@ -38,7 +38,6 @@ import javax.annotation.Nonnull;
  *
  * TODO:
  * 1. Add support for multi-valued group-by columns.
- * 2. Add support for trimming group-by results.
  */
 public class NoDictionaryMultiColumnGroupKeyGenerator implements GroupKeyGenerator {
   private final TransformExpressionTree[] _groupByExpressions;
@@ -134,7 +133,7 @@ public class NoDictionaryMultiColumnGroupKeyGenerator implements GroupKeyGenerat
 
   @Override
   public int getCurrentGroupKeyUpperBound() {
-    return _groupKeyMap.size();
+    return _numGroupKeys;
   }
 
   @Override
@@ -144,8 +143,20 @@ public class NoDictionaryMultiColumnGroupKeyGenerator implements GroupKeyGenerat
 
   @Override
   public void purgeKeys(@Nonnull int[] keysToPurge) {
-    // TODO: Implement purging.
-    throw new UnsupportedOperationException("Purging keys not yet supported in GroupKeyGenerator without dictionary.");
+    if (keysToPurge.length == 0) {
+      return;
+    }
+    // Group ids are not reused after purging, so new group keys always get new group ids
+    boolean[] groupIdsToPurge = new boolean[_numGroupKeys];
+    for (int groupId : keysToPurge) {
+      groupIdsToPurge[groupId] = true;
+    }
+    Iterator<Map.Entry<FixedIntArray, Integer>> iterator = _groupKeyMap.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (groupIdsToPurge[iterator.next().getValue()]) {
+        iterator.remove();
+      }
+    }
   }
 
   /**
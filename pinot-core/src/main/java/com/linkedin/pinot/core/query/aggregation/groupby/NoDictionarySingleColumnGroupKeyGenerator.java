@@ -154,7 +154,7 @@ public class NoDictionarySingleColumnGroupKeyGenerator implements GroupKeyGenera
 
   @Override
   public int getCurrentGroupKeyUpperBound() {
-    return _groupKeyMap.size();
+    return _numGroupKeys;
   }
 
   @Override
@@ -162,10 +162,24 @@ public class NoDictionarySingleColumnGroupKeyGenerator implements GroupKeyGenera
     return new GroupKeyIterator(_groupKeyMap);
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public void purgeKeys(@Nonnull int[] keysToPurge) {
-    // TODO: Implement purging.
-    throw new UnsupportedOperationException("Purging keys not yet supported in GroupKeyGenerator without dictionary.");
+    if (keysToPurge.length == 0) {
+      return;
+    }
+    // Group ids are not reused after purging, so new group keys always get new group ids
+    boolean[] groupIdsToPurge = new boolean[_numGroupKeys];
+    for (int groupId : keysToPurge) {
+      groupIdsToPurge[groupId] = true;
+    }
+    Iterator<Map.Entry<Object, Integer>> iterator =
+        (Iterator<Map.Entry<Object, Integer>>) _groupKeyMap.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (groupIdsToPurge[iterator.next().getValue()]) {
+        iterator.remove();
+      }
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -32,6 +32,13 @@ public class QueryExecutorConfig {
   public static final String QUERY_PLANNER = "queryPlanner";
   // Prefix key of TimeOut
   public static final String TIME_OUT = "timeout";
+  // Whether to account the bytes allocated by each query, implied by a memory limit
+  public static final String TRACK_QUERY_MEMORY = "trackQueryMemory";
+  // Max bytes a query can allocate before being killed
+  public static final String MAX_ALLOCATED_BYTES_PER_QUERY = "maxAllocatedBytesPerQuery";
+  // Number of the running queries with most allocated bytes exported as gauges
+  public static final String NUM_TOP_MEMORY_CONSUMERS = "numTopMemoryConsumers";
+  public static final int DEFAULT_NUM_TOP_MEMORY_CONSUMERS = 5;
 
   private static final String[] REQUIRED_KEYS = {};
 
@@ -39,6 +46,9 @@ public class QueryExecutorConfig {
   private SegmentPrunerConfig _segmentPrunerConfig;
   private QueryPlannerConfig _queryPlannerConfig;
   private final long _timeOutMs;
+  private final long _maxAllocatedBytesPerQuery;
+  private final boolean _trackQueryMemory;
+  private final int _numTopMemoryConsumers;
 
   public QueryExecutorConfig(Configuration config) throws ConfigurationException {
     _queryExecutorConfig = config;
@@ -46,6 +56,9 @@ public class QueryExecutorConfig {
     _segmentPrunerConfig = new SegmentPrunerConfig(_queryExecutorConfig.subset(QUERY_PRUNER));
     _queryPlannerConfig = new QueryPlannerConfig(_queryExecutorConfig.subset(QUERY_PLANNER));
     _timeOutMs = _queryExecutorConfig.getLong(TIME_OUT, -1);
+    _maxAllocatedBytesPerQuery = _queryExecutorConfig.getLong(MAX_ALLOCATED_BYTES_PER_QUERY, -1);
+    _trackQueryMemory = _queryExecutorConfig.getBoolean(TRACK_QUERY_MEMORY, false) || _maxAllocatedBytesPerQuery > 0;
+    _numTopMemoryConsumers = _queryExecutorConfig.getInt(NUM_TOP_MEMORY_CONSUMERS, DEFAULT_NUM_TOP_MEMORY_CONSUMERS);
   }
 
   private void checkRequiredKeys() throws ConfigurationException {
@@ -71,4 +84,16 @@ public class QueryExecutorConfig {
   public long getTimeOut() {
     return _timeOutMs;
   }
+
+  public boolean isQueryMemoryTracked() {
+    return _trackQueryMemory;
+  }
+
+  public long getMaxAllocatedBytesPerQuery() {
+    return _maxAllocatedBytesPerQuery;
+  }
+
+  public int getNumTopMemoryConsumers() {
+    return _numTopMemoryConsumers;
+  }
 }
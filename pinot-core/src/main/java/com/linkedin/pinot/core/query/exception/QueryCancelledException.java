@@ -13,9 +13,13 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.linkedin.pinot.core.query.selection.comparator;
+package com.linkedin.pinot.core.query.exception;
 
-public interface IDocIdValComparator {
-
-  int compare(int docId1, int docId2);
+/**
+ * Thrown by the operators of a query which has been cancelled, e.g. because the broker no longer waits for it.
+ */
+public class QueryCancelledException extends RuntimeException {
+  public QueryCancelledException(String message) {
+    super(message);
+  }
 }
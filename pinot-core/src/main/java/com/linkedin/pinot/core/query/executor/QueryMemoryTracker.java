@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.executor;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.core.query.scheduler.resources.ThreadResourceUsage;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Tracks the bytes allocated by the queries running on the server.
+ *
+ * The threads processing a query sample their allocated bytes at block boundaries (see
+ * {@link com.linkedin.pinot.core.util.trace.CancellationContext}), and the query is cancelled once it exceeds the max
+ * allocated bytes per query. Allocated bytes include the garbage created while processing the query, so they are an
+ * upper bound of the heap retained by the query (e.g. group-by results, selection rows) rather than an exact measure.
+ *
+ * The allocated bytes of the running queries with most allocated bytes are exported as gauges, ordered by rank.
+ */
+@ThreadSafe
+public class QueryMemoryTracker {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryMemoryTracker.class);
+  private static final String TOP_CONSUMER_GAUGE_PREFIX = "memory.topQueryAllocatedBytes.";
+
+  private static final Comparator<Map.Entry<ServerQueryRequest, Long>> ALLOCATED_BYTES_DESC_COMPARATOR =
+      new Comparator<Map.Entry<ServerQueryRequest, Long>>() {
+        @Override
+        public int compare(Map.Entry<ServerQueryRequest, Long> o1, Map.Entry<ServerQueryRequest, Long> o2) {
+          return Long.compare(o2.getValue(), o1.getValue());
+        }
+      };
+
+  private final boolean _enabled;
+  private final long _maxAllocatedBytesPerQuery;
+  private final Set<ServerQueryRequest> _runningQueries =
+      Collections.newSetFromMap(new ConcurrentHashMap<ServerQueryRequest, Boolean>());
+
+  /**
+   * @param enabled whether to track the bytes allocated by the queries
+   * @param maxAllocatedBytesPerQuery max bytes a query can allocate before being cancelled, no limit if not positive
+   * @param numTopConsumers number of top memory consumer gauges to export
+   * @param serverMetrics server metrics to export the gauges to
+   */
+  public QueryMemoryTracker(boolean enabled, long maxAllocatedBytesPerQuery, int numTopConsumers,
+      @Nonnull ServerMetrics serverMetrics) {
+    if (enabled && !ThreadResourceUsage.isAllocatedBytesSupported()) {
+      LOGGER.warn("Thread allocated bytes measurement is not supported by the JVM, query memory is not tracked");
+      enabled = false;
+    }
+    _enabled = enabled;
+    _maxAllocatedBytesPerQuery = maxAllocatedBytesPerQuery;
+    if (_enabled) {
+      LOGGER.info("Tracking query memory with max allocated bytes per query: {}", maxAllocatedBytesPerQuery);
+      for (int i = 0; i < numTopConsumers; i++) {
+        final int rank = i;
+        serverMetrics.addCallbackGauge(TOP_CONSUMER_GAUGE_PREFIX + (rank + 1), new Callable<Long>() {
+          @Override
+          public Long call() {
+            List<Map.Entry<ServerQueryRequest, Long>> topConsumers = getTopConsumers(rank + 1);
+            return topConsumers.size() > rank ? topConsumers.get(rank).getValue() : 0L;
+          }
+        });
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return _enabled;
+  }
+
+  /**
+   * Start tracking the bytes allocated by the query, must be called before the query is processed.
+   */
+  public void register(@Nonnull ServerQueryRequest queryRequest) {
+    if (_enabled) {
+      queryRequest.enableMemoryTracking(_maxAllocatedBytesPerQuery);
+      _runningQueries.add(queryRequest);
+    }
+  }
+
+  /**
+   * Stop tracking the query once it is processed.
+   */
+  public void unregister(@Nonnull ServerQueryRequest queryRequest) {
+    _runningQueries.remove(queryRequest);
+  }
+
+  /**
+   * Get the running queries with most allocated bytes along with their allocated bytes, in descending order of
+   * allocated bytes.
+   */
+  @Nonnull
+  public List<Map.Entry<ServerQueryRequest, Long>> getTopConsumers(int numTopConsumers) {
+    // Snapshot the allocated bytes as they keep changing while the queries run
+    List<Map.Entry<ServerQueryRequest, Long>> runningQueries = new ArrayList<>(_runningQueries.size());
+    for (ServerQueryRequest queryRequest : _runningQueries) {
+      runningQueries.add(
+          new AbstractMap.SimpleImmutableEntry<>(queryRequest, queryRequest.getAllocatedBytes()));
+    }
+    Collections.sort(runningQueries, ALLOCATED_BYTES_DESC_COMPARATOR);
+    return runningQueries.subList(0, Math.min(numTopConsumers, runningQueries.size()));
+  }
+}
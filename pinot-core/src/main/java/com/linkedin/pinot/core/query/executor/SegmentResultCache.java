@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.executor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.datatable.DataTableFactory;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server level cache of the per-segment intermediate results of aggregation (and aggregation group-by) queries on
+ * immutable segments, so that queries repeatedly hitting the same segments (e.g. rolling-window dashboards) only do
+ * work on consuming segments and cache misses.
+ * <ul>
+ *   <li> Results are keyed by the identity of the segment and a canonical form of the filter, aggregations and
+ *        group-by of the query, so that equivalent queries (e.g. with re-ordered predicates or IN values) share the
+ *        cached results. A replaced segment is a new object, so its old results are never served. </li>
+ *   <li> Results are cached as serialized data tables and de-serialized on hits, so that merging the results across
+ *        segments never modifies the cached results. </li>
+ *   <li> The total size of the cached results is bounded by the configured memory budget, least recently used results
+ *        are evicted first. The cached results are also indexed per segment, so that removing the results of a
+ *        segment when it is closed (after being replaced or unloaded) only touches its own results. </li>
+ * </ul>
+ * The plan maker wraps the plans of cacheable queries around the cache, and the table data managers remove the
+ * results of the segments they close.
+ */
+@ThreadSafe
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+
+  public static final String MAX_SIZE_BYTES_CONFIG_KEY = "maxSizeBytes";
+  public static final long DEFAULT_MAX_SIZE_BYTES = 0L;
+
+  private final long _maxSizeBytes;
+  private final ServerMetrics _serverMetrics;
+  private final Cache<ResultKey, byte[]> _cache;
+  // Cached results of each segment, kept in sync with the cache through its removal listener
+  private final ConcurrentHashMap<IndexSegment, SegmentResults> _resultsBySegment = new ConcurrentHashMap<>();
+
+  public SegmentResultCache(long maxSizeBytes, @Nullable ServerMetrics serverMetrics) {
+    _maxSizeBytes = maxSizeBytes;
+    _serverMetrics = serverMetrics;
+    if (maxSizeBytes > 0) {
+      _cache = CacheBuilder.newBuilder().maximumWeight(maxSizeBytes).weigher(new Weigher<ResultKey, byte[]>() {
+        @Override
+        public int weigh(ResultKey key, byte[] value) {
+          return 2 * key._queryKey.length() + value.length;
+        }
+      }).removalListener(new RemovalListener<ResultKey, byte[]>() {
+        @Override
+        public void onRemoval(RemovalNotification<ResultKey, byte[]> notification) {
+          // Only unregister the removed results if they have not been cached again (e.g. replaced) in the meantime
+          ResultKey key = notification.getKey();
+          final byte[] removedResults = notification.getValue();
+          SegmentResults segmentResults = _resultsBySegment.get(key._indexSegment);
+          if (segmentResults != null) {
+            segmentResults._results.computeIfPresent(key._queryKey, new BiFunction<String, byte[], byte[]>() {
+              @Override
+              public byte[] apply(String queryKey, byte[] results) {
+                return results == removedResults ? null : results;
+              }
+            });
+          }
+        }
+      }).build();
+    } else {
+      _cache = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return _maxSizeBytes > 0;
+  }
+
+  /**
+   * Returns the canonical form of the filter, aggregations and group-by of the given query, or null if the results of
+   * the query should not be cached (selection queries and queries with trace enabled).
+   */
+  @Nullable
+  public static String getQueryKey(@Nonnull BrokerRequest brokerRequest) {
+    if (!brokerRequest.isSetAggregationsInfo() || brokerRequest.isEnableTrace()) {
+      return null;
+    }
+    StringBuilder stringBuilder = new StringBuilder("aggregations:");
+    // The order of the aggregations is kept as it determines the order of the results
+    for (AggregationInfo aggregationInfo : brokerRequest.getAggregationsInfo()) {
+      stringBuilder.append(aggregationInfo.getAggregationType().toLowerCase());
+      if (aggregationInfo.getAggregationParams() != null) {
+        stringBuilder.append(new TreeMap<>(aggregationInfo.getAggregationParams()));
+      }
+      stringBuilder.append(';');
+    }
+    GroupBy groupBy = brokerRequest.getGroupBy();
+    if (groupBy != null) {
+      // The number of groups returned (TOP) determines how the groups are trimmed on the segments
+      stringBuilder.append("groupBy:")
+          .append(groupBy.getColumns())
+          .append(groupBy.getExpressions())
+          .append("top:")
+          .append(groupBy.getTopN())
+          .append(';');
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    if (filterQueryTree != null) {
+      stringBuilder.append("filter:");
+      appendFilter(filterQueryTree, stringBuilder);
+    }
+    return stringBuilder.toString();
+  }
+
+  /**
+   * Appends the canonical form of the filter, where the children of AND/OR and the values of IN/NOT_IN are sorted.
+   */
+  private static void appendFilter(FilterQueryTree filterQueryTree, StringBuilder stringBuilder) {
+    FilterOperator operator = filterQueryTree.getOperator();
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      List<String> childKeys = new ArrayList<>(children.size());
+      for (FilterQueryTree child : children) {
+        StringBuilder childStringBuilder = new StringBuilder();
+        appendFilter(child, childStringBuilder);
+        childKeys.add(childStringBuilder.toString());
+      }
+      Collections.sort(childKeys);
+      stringBuilder.append(operator).append('(').append(StringUtils.join(childKeys, ',')).append(')');
+    } else {
+      stringBuilder.append(FilterBitmapCache.getPredicateKey(filterQueryTree));
+    }
+  }
+
+  /**
+   * Returns the cached intermediate results of the query on the given segment, or null if not cached.
+   *
+   * @param indexSegment Segment
+   * @param queryKey Query key returned by {@link #getQueryKey(BrokerRequest)}
+   * @return Cached results as a data table, or null if not cached
+   */
+  @Nullable
+  public DataTable get(@Nonnull IndexSegment indexSegment, @Nonnull String queryKey) {
+    if (!isEnabled()) {
+      return null;
+    }
+    byte[] bytes = _cache.getIfPresent(new ResultKey(indexSegment, queryKey));
+    if (bytes != null) {
+      try {
+        DataTable dataTable = DataTableFactory.getDataTable(bytes);
+        addMeteredValue(ServerMeter.SEGMENT_RESULT_CACHE_HITS);
+        return dataTable;
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while de-serializing cached results for segment: {}",
+            indexSegment.getSegmentName(), e);
+      }
+    }
+    addMeteredValue(ServerMeter.SEGMENT_RESULT_CACHE_MISSES);
+    return null;
+  }
+
+  /**
+   * Caches the intermediate results of the query on the given segment.
+   *
+   * @param indexSegment Segment
+   * @param queryKey Query key returned by {@link #getQueryKey(BrokerRequest)}
+   * @param dataTable Results as a data table
+   */
+  public void put(@Nonnull IndexSegment indexSegment, @Nonnull String queryKey, @Nonnull DataTable dataTable) {
+    if (!isEnabled()) {
+      return;
+    }
+    byte[] bytes;
+    try {
+      bytes = dataTable.toBytes();
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while serializing results for segment: {}", indexSegment.getSegmentName(), e);
+      return;
+    }
+    SegmentResults segmentResults = _resultsBySegment.get(indexSegment);
+    if (segmentResults == null) {
+      segmentResults = new SegmentResults();
+      SegmentResults existing = _resultsBySegment.putIfAbsent(indexSegment, segmentResults);
+      if (existing != null) {
+        segmentResults = existing;
+      }
+    }
+    // Registering and caching the results is atomic with respect to invalidating the segment, so that no results of
+    // an invalidated segment are left in the cache
+    synchronized (segmentResults) {
+      if (segmentResults._invalidated) {
+        return;
+      }
+      segmentResults._results.put(queryKey, bytes);
+      _cache.put(new ResultKey(indexSegment, queryKey), bytes);
+    }
+  }
+
+  /**
+   * Removes all the cached results of the given segment. Should be called when the segment is closed.
+   */
+  public void invalidate(@Nonnull IndexSegment indexSegment) {
+    if (!isEnabled()) {
+      return;
+    }
+    SegmentResults segmentResults = _resultsBySegment.remove(indexSegment);
+    if (segmentResults != null) {
+      synchronized (segmentResults) {
+        segmentResults._invalidated = true;
+      }
+      for (String queryKey : segmentResults._results.keySet()) {
+        _cache.invalidate(new ResultKey(indexSegment, queryKey));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached results.
+   */
+  public long size() {
+    if (!isEnabled()) {
+      return 0L;
+    }
+    return _cache.size();
+  }
+
+  private void addMeteredValue(ServerMeter meter) {
+    if (_serverMetrics != null) {
+      _serverMetrics.addMeteredGlobalValue(meter, 1L);
+    }
+  }
+
+  private static final class SegmentResults {
+    // Serialized results currently cached for the segment, keyed by query key
+    final ConcurrentHashMap<String, byte[]> _results = new ConcurrentHashMap<>();
+    // Set once the segment is invalidated, after which no results of the segment can be cached through this instance
+    boolean _invalidated;
+  }
+
+  private static final class ResultKey {
+    final IndexSegment _indexSegment;
+    final String _queryKey;
+
+    ResultKey(IndexSegment indexSegment, String queryKey) {
+      _indexSegment = indexSegment;
+      _queryKey = queryKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ResultKey)) {
+        return false;
+      }
+      ResultKey that = (ResultKey) o;
+      return _indexSegment == that._indexSegment && _queryKey.equals(that._queryKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_indexSegment) + _queryKey.hashCode();
+    }
+  }
+}
@@ -39,8 +39,10 @@ import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.query.exception.BadQueryRequestException;
+import com.linkedin.pinot.core.query.exception.QueryCancelledException;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerService;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerServiceImpl;
+import com.linkedin.pinot.core.util.trace.CancellationContext;
 import com.linkedin.pinot.core.util.trace.TraceContext;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -65,6 +67,7 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
   private long _defaultTimeOutMs = CommonConstants.Server.DEFAULT_QUERY_EXECUTOR_TIMEOUT_MS;
   private final Map<String, Long> _resourceTimeOutMsMap = new ConcurrentHashMap<>();
   private ServerMetrics _serverMetrics;
+  private QueryMemoryTracker _queryMemoryTracker;
 
   public ServerQueryExecutorV1Impl() {
   }
@@ -79,10 +82,14 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _defaultTimeOutMs = queryExecutorConfig.getTimeOut();
     }
     LOGGER.info("Default timeout for query executor : {}", _defaultTimeOutMs);
+    _queryMemoryTracker = new QueryMemoryTracker(queryExecutorConfig.isQueryMemoryTracked(),
+        queryExecutorConfig.getMaxAllocatedBytesPerQuery(), queryExecutorConfig.getNumTopMemoryConsumers(),
+        serverMetrics);
     LOGGER.info("Trying to build SegmentPrunerService");
     _segmentPrunerService = new SegmentPrunerServiceImpl(queryExecutorConfig.getPrunerConfig());
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2(queryExecutorConfig);
+    _planMaker = new InstancePlanMakerImplV2(queryExecutorConfig, _instanceDataManager.getSegmentResultCache(),
+        _instanceDataManager.getFilterBitmapCache());
     LOGGER.info("Trying to build QueryExecutorTimer");
   }
 
@@ -108,6 +115,8 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     if (enableTrace) {
       TraceContext.register(requestId);
     }
+    _queryMemoryTracker.register(queryRequest);
+    CancellationContext.register(queryRequest);
 
     DataTable dataTable = null;
     try {
@@ -146,6 +155,26 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
         // Update the total docs in the metadata based on un-pruned segments.
         dataTable.getMetadata().put(DataTable.TOTAL_DOCS_METADATA_KEY, Long.toString(totalRawDocs));
       }
+      // Operators only check for cancellation at block boundaries, so the query might finish after being cancelled
+      if (queryRequest.isCancelled()) {
+        throw new QueryCancelledException("Query with request id: " + requestId + " has been cancelled");
+      }
+    } catch (QueryCancelledException e) {
+      dataTable = new DataTableImplV2();
+      if (queryRequest.isMemoryLimitExceeded()) {
+        _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERIES_KILLED_MEMORY_LIMIT, 1);
+        String errorMessage =
+            "Query allocated " + queryRequest.getAllocatedBytes() + " bytes, exceeding the limit of "
+                + queryRequest.getMaxAllocatedBytes() + " bytes per query";
+        LOGGER.warn("Killed requestId: {} on table: {} from broker: {}: {}", requestId, tableName,
+            instanceRequest.getBrokerId(), errorMessage);
+        dataTable.addException(
+            QueryException.getException(QueryException.QUERY_MEMORY_LIMIT_EXCEEDED_ERROR, errorMessage));
+      } else {
+        _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERIES_CANCELLED, 1);
+        LOGGER.info("Cancelled processing requestId: {}", requestId);
+        dataTable.addException(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
+      }
     } catch (Exception e) {
       _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERY_EXECUTION_EXCEPTIONS, 1);
 
@@ -159,6 +188,8 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       dataTable = new DataTableImplV2();
       dataTable.addException(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
     } finally {
+      CancellationContext.unregister();
+      _queryMemoryTracker.unregister(queryRequest);
       for (SegmentDataManager segmentDataManager : queryableSegmentDataManagerList) {
         tableDataManager.releaseSegment(segmentDataManager);
       }
@@ -68,7 +68,7 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
     Iterator<SchedulerQueryContext> iter = pendingQueries.iterator();
     while (iter.hasNext()) {
       SchedulerQueryContext next = iter.next();
-      if (next.getArrivalTimeMs() < deadlineMillis) {
+      if (next.getArrivalTimeMs() < deadlineMillis || next.getQueryRequest().isCancelled()) {
         iter.remove();
       }
     }
@@ -130,4 +130,9 @@ public abstract class AbstractSchedulerGroup implements SchedulerGroup {
     decrementThreads();
     numRunning.decrementAndGet();
   }
+
+  @Override
+  public void addThreadUsage(long cpuTimeNs, long allocatedBytes) {
+    // Wall clock based accounting does not use the thread resource usage
+  }
 }
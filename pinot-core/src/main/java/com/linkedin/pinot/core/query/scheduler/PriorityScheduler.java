@@ -102,12 +102,27 @@ public abstract class PriorityScheduler extends QueryScheduler {
               continue;
             }
             ServerQueryRequest queryRequest = request.getQueryRequest();
+            if (queryRequest.isCancelled()) {
+              // Query cancelled while waiting in the queue, free the slot without running it
+              runningQueriesSemaphore.release();
+              continue;
+            }
             final QueryExecutorService executor = resourceManager.getExecutorService(queryRequest,
                 request.getSchedulerGroup());
             final ListenableFutureTask<byte[]> queryFutureTask = createQueryFutureTask(queryRequest, executor);
             queryFutureTask.addListener(new Runnable() {
               @Override
               public void run() {
+                String tableName = request.getQueryRequest().getTableName();
+                long cpuTimeNs = executor.getCpuTimeNs();
+                if (cpuTimeNs > 0) {
+                  serverMetrics.addMeteredTableValue(tableName, ServerMeter.QUERY_WORKER_CPU_TIME_NS, cpuTimeNs);
+                }
+                long allocatedBytes = executor.getAllocatedBytes();
+                if (allocatedBytes > 0) {
+                  serverMetrics.addMeteredTableValue(tableName, ServerMeter.QUERY_WORKER_ALLOCATED_BYTES,
+                      allocatedBytes);
+                }
                 executor.releaseWorkers();
                 request.getSchedulerGroup().endQuery();
                 runningQueriesSemaphore.release();
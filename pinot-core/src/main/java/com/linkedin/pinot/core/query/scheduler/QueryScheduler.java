@@ -21,6 +21,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.ServerGauge;
 import com.linkedin.pinot.common.metrics.ServerMeter;
@@ -117,13 +118,23 @@ public abstract class QueryScheduler {
    */
   protected ListenableFutureTask<byte[]> createQueryFutureTask(@Nonnull final ServerQueryRequest request,
       @Nonnull final QueryExecutorService e) {
-    return ListenableFutureTask.create(new Callable<byte[]>() {
+    final ListenableFutureTask<byte[]> queryFutureTask = ListenableFutureTask.create(new Callable<byte[]>() {
       @Override
       public byte[] call()
           throws Exception {
         return processQueryAndSerialize(request, e);
       }
     });
+    // Flag the query as cancelled so that the operators stop processing it if the task is cancelled while running
+    queryFutureTask.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (queryFutureTask.isCancelled()) {
+          request.cancel();
+        }
+      }
+    }, MoreExecutors.directExecutor());
+    return queryFutureTask;
   }
 
   /**
@@ -19,6 +19,7 @@ package com.linkedin.pinot.core.query.scheduler;
 import com.google.common.base.Preconditions;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.edf.EarliestDeadlineFirstScheduler;
 import com.linkedin.pinot.core.query.scheduler.fcfs.BoundedFCFSScheduler;
 import com.linkedin.pinot.core.query.scheduler.fcfs.FCFSQueryScheduler;
 import com.linkedin.pinot.core.query.scheduler.tokenbucket.TokenPriorityScheduler;
@@ -38,6 +39,7 @@ public class QuerySchedulerFactory {
   private static final String DEFAULT_QUERY_SCHEDULER_ALGORITHM = FCFS_ALGORITHM;
   public static final String TOKEN_BUCKET_ALGORITHM = "tokenbucket";
   public static final String BOUNDED_FCFS_ALGORITHM = "bounded_fcfs";
+  public static final String EDF_ALGORITHM = "edf";
   public static final String ALGORITHM_NAME_CONFIG_KEY = "name";
   private static Logger LOGGER = LoggerFactory.getLogger(QuerySchedulerFactory.class);
 
@@ -64,6 +66,9 @@ public class QuerySchedulerFactory {
       return TokenPriorityScheduler.create(schedulerConfig, queryExecutor, serverMetrics);
     } else if (schedulerConfig.equals(BOUNDED_FCFS_ALGORITHM)) {
       return BoundedFCFSScheduler.create(schedulerConfig, queryExecutor, serverMetrics);
+    } else if (schedulerName.equals(EDF_ALGORITHM)) {
+      LOGGER.info("Using Earliest Deadline First scheduler");
+      return EarliestDeadlineFirstScheduler.create(schedulerConfig, queryExecutor, serverMetrics);
     }
 
     // didn't find by name so try by classname
@@ -48,7 +48,8 @@ public interface SchedulerGroup extends SchedulerGroupAccountant {
   SchedulerQueryContext removeFirst();
 
   /**
-   * Remove all the pending queries with arrival time earlier than the deadline
+   * Remove all the pending queries with arrival time earlier than the deadline, and the pending queries that have been
+   * cancelled
    */
   void trimExpired(long deadlineMillis);
 
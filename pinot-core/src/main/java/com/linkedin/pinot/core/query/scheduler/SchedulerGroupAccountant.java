@@ -21,9 +21,11 @@ package com.linkedin.pinot.core.query.scheduler;
  * Sub-queues can selected using SchedulerGroupMapper.
  *
  * We mainly account for wall clock time of each thread for a query. This captures
- * CPU and IO cost for each query but also penalizes for GC activity. We do not account
- * for memory utilization yet. Nevertheless, wall clock time is a good approximation for
- * resource utilization in an online system.
+ * CPU and IO cost for each query but also penalizes for GC activity. Nevertheless, wall
+ * clock time is a good approximation for resource utilization in an online system.
+ * When enabled in the {@link com.linkedin.pinot.core.query.scheduler.resources.ResourceManager},
+ * the CPU time and allocated bytes of the query worker threads are reported as well through
+ * {@link #addThreadUsage(long, long)}.
  */
 public interface SchedulerGroupAccountant extends Comparable<SchedulerGroupAccountant> {
   /**
@@ -69,4 +71,12 @@ public interface SchedulerGroupAccountant extends Comparable<SchedulerGroupAccou
    * Mark end of query execution.
    */
   void endQuery();
+
+  /**
+   * Account for the resources used by a query worker thread of this group. Called once the
+   * worker is done with its task, and only if resource measurement is enabled.
+   * @param cpuTimeNs CPU time used by the thread in nanoseconds
+   * @param allocatedBytes bytes allocated by the thread, 0 if not measured
+   */
+  void addThreadUsage(long cpuTimeNs, long allocatedBytes);
 }
@@ -17,7 +17,10 @@
 package com.linkedin.pinot.core.query.scheduler;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.linkedin.pinot.common.query.ServerQueryRequest;
 import javax.annotation.Nonnull;
@@ -33,11 +36,20 @@ public class SchedulerQueryContext {
   private final SettableFuture<byte[]> resultFuture;
   private SchedulerGroup schedulerGroup;
 
-  public SchedulerQueryContext(@Nonnull ServerQueryRequest queryRequest) {
+  public SchedulerQueryContext(@Nonnull final ServerQueryRequest queryRequest) {
     Preconditions.checkNotNull(queryRequest);
 
     this.queryRequest = queryRequest;
     this.resultFuture = SettableFuture.create();
+    // Flag the query as cancelled when the caller (e.g. the broker) cancels the result future
+    resultFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (resultFuture.isCancelled()) {
+          queryRequest.cancel();
+        }
+      }
+    }, MoreExecutors.directExecutor());
   }
 
   public @Nonnull ServerQueryRequest getQueryRequest() {
@@ -48,8 +60,23 @@ public class SchedulerQueryContext {
     return resultFuture;
   }
 
+  /**
+   * Forward the result of the given future to the result future. Cancelling the result future does not cancel the given
+   * future, so that the query task still completes (quickly, as the query is flagged as cancelled) and releases its
+   * resources only once it stops running.
+   */
   public void setResultFuture(ListenableFuture<byte[]> f) {
-    resultFuture.setFuture(f);
+    Futures.addCallback(f, new FutureCallback<byte[]>() {
+      @Override
+      public void onSuccess(@Nullable byte[] result) {
+        resultFuture.set(result);
+      }
+
+      @Override
+      public void onFailure(@Nonnull Throwable t) {
+        resultFuture.setException(t);
+      }
+    });
   }
 
   public void setSchedulerGroupContext(SchedulerGroup schedulerGroup) {
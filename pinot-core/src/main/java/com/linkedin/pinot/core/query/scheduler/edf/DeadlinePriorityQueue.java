@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler.edf;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.CommonConstants;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.core.common.datatable.DataTableImplV2;
+import com.linkedin.pinot.core.query.scheduler.OutOfCapacityException;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroup;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroupFactory;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroupMapper;
+import com.linkedin.pinot.core.query.scheduler.SchedulerPriorityQueue;
+import com.linkedin.pinot.core.query.scheduler.SchedulerQueryContext;
+import com.linkedin.pinot.core.query.scheduler.resources.ResourceManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Priority queue that selects the pending query with the earliest deadline first.
+ *
+ * The deadline of a query is its arrival time on the server plus the time budget sent by the broker in the
+ * {@link InstanceRequest}, or the configured default timeout for brokers that do not send one. The budget is relative
+ * so that the deadlines do not depend on the clocks of the brokers and the servers being in sync.
+ *
+ * Queries that can not complete before their deadline are dropped instead of being scheduled, with an execution timeout
+ * error as response, since the broker would discard their results anyway. A query can not complete if its deadline
+ * passed while it was waiting in the queue, or if the estimated execution time of the queries of its table, from the
+ * recent query latencies, exceeds its remaining time. Since dropped queries record no latency, the estimate of a table
+ * expires when no query of the table completed for a while, so that the table gets probed again after an overload.
+ *
+ * Queries of tables that the {@link ResourceManager} can not schedule more work for are skipped until they can be.
+ */
+public class DeadlinePriorityQueue implements SchedulerPriorityQueue {
+  private static Logger LOGGER = LoggerFactory.getLogger(DeadlinePriorityQueue.class);
+
+  public static final String DEFAULT_QUERY_TIMEOUT_MS_KEY = "default_query_timeout_ms";
+  public static final String MAX_PENDING_QUERIES_KEY = "max_pending_queries";
+  public static final String LATENCY_ESTIMATE_PERCENTILE_KEY = "latency_estimate_percentile";
+  public static final String LATENCY_ESTIMATE_MIN_SAMPLES_KEY = "latency_estimate_min_samples";
+  public static final String LATENCY_ESTIMATE_MAX_AGE_MS_KEY = "latency_estimate_max_age_ms";
+  public static final String QUEUE_WAKEUP_MICROS = "queue_wakeup_micros";
+
+  private static final int DEFAULT_MAX_PENDING_QUERIES = 1000;
+  private static final double DEFAULT_LATENCY_ESTIMATE_PERCENTILE = 50.0;
+  private static final long DEFAULT_LATENCY_ESTIMATE_MIN_SAMPLES = 10;
+  private static final long DEFAULT_LATENCY_ESTIMATE_MAX_AGE_MS = 10_000L;
+  private static final int DEFAULT_WAKEUP_MICROS = 1000;
+
+  private final PriorityQueue<PendingQuery> pendingQueries = new PriorityQueue<>();
+  private final Map<String, SchedulerGroup> schedulerGroups = new HashMap<>();
+  private final Lock queueLock = new ReentrantLock();
+  private final Condition queryReaderCondition = queueLock.newCondition();
+  private final ResourceManager resourceManager;
+  private final SchedulerGroupFactory groupFactory;
+  private final SchedulerGroupMapper groupMapper;
+  private final Configuration config;
+  private final QueryLatencyEstimator latencyEstimator;
+  private final long defaultQueryTimeoutMs;
+  private final int maxPendingQueries;
+  private final int wakeUpTimeMicros;
+  // Breaks deadline ties in arrival order
+  private long sequence = 0;
+
+  public DeadlinePriorityQueue(@Nonnull Configuration config, @Nonnull ResourceManager resourceManager,
+      @Nonnull SchedulerGroupFactory groupFactory, @Nonnull SchedulerGroupMapper groupMapper) {
+    Preconditions.checkNotNull(config);
+    Preconditions.checkNotNull(resourceManager);
+    Preconditions.checkNotNull(groupFactory);
+    Preconditions.checkNotNull(groupMapper);
+
+    defaultQueryTimeoutMs = config.getLong(DEFAULT_QUERY_TIMEOUT_MS_KEY, CommonConstants.Broker.DEFAULT_BROKER_TIMEOUT_MS);
+    maxPendingQueries = config.getInt(MAX_PENDING_QUERIES_KEY, DEFAULT_MAX_PENDING_QUERIES);
+    wakeUpTimeMicros = config.getInt(QUEUE_WAKEUP_MICROS, DEFAULT_WAKEUP_MICROS);
+    double percentile = config.getDouble(LATENCY_ESTIMATE_PERCENTILE_KEY, DEFAULT_LATENCY_ESTIMATE_PERCENTILE);
+    long minSamples = config.getLong(LATENCY_ESTIMATE_MIN_SAMPLES_KEY, DEFAULT_LATENCY_ESTIMATE_MIN_SAMPLES);
+    long maxAgeMs = config.getLong(LATENCY_ESTIMATE_MAX_AGE_MS_KEY, DEFAULT_LATENCY_ESTIMATE_MAX_AGE_MS);
+    this.latencyEstimator = new QueryLatencyEstimator(percentile / 100, minSamples, maxAgeMs);
+    this.config = config;
+    this.resourceManager = resourceManager;
+    this.groupFactory = groupFactory;
+    this.groupMapper = groupMapper;
+  }
+
+  @Override
+  public void put(@Nonnull SchedulerQueryContext query) throws OutOfCapacityException {
+    Preconditions.checkNotNull(query);
+    queueLock.lock();
+    try {
+      if (pendingQueries.size() >= maxPendingQueries) {
+        throw new OutOfCapacityException(
+            String.format("Deadline queue is out of capacity. numPending: %d, maxPending: %d", pendingQueries.size(),
+                maxPendingQueries));
+      }
+      query.setSchedulerGroupContext(getOrCreateGroupContext(groupMapper.getSchedulerGroupName(query)));
+      pendingQueries.add(new PendingQuery(query, getDeadlineNs(query.getQueryRequest()), sequence++));
+      queryReaderCondition.signal();
+    } finally {
+      queueLock.unlock();
+    }
+  }
+
+  /**
+   * Blocking call to read the pending query with the earliest deadline that can still complete in time
+   */
+  @Override
+  public @Nullable SchedulerQueryContext take() {
+    queueLock.lock();
+    try {
+      SchedulerQueryContext query;
+      while ((query = takeNextInternal()) == null) {
+        try {
+          queryReaderCondition.await(wakeUpTimeMicros, TimeUnit.MICROSECONDS);
+        } catch (InterruptedException e) {
+          return null;
+        }
+      }
+      return query;
+    } finally {
+      queueLock.unlock();
+    }
+  }
+
+  @Nonnull
+  @Override
+  public List<SchedulerQueryContext> drain() {
+    List<SchedulerQueryContext> pending = new ArrayList<>();
+    queueLock.lock();
+    try {
+      PendingQuery pendingQuery;
+      while ((pendingQuery = pendingQueries.poll()) != null) {
+        pending.add(pendingQuery.query);
+      }
+    } finally {
+      queueLock.unlock();
+    }
+    return pending;
+  }
+
+  private SchedulerQueryContext takeNextInternal() {
+    List<PendingQuery> skipped = null;
+    SchedulerQueryContext selected = null;
+    long nowNs = System.nanoTime();
+    PendingQuery pendingQuery;
+    while ((pendingQuery = pendingQueries.poll()) != null) {
+      SchedulerQueryContext query = pendingQuery.query;
+      if (!canCompleteInTime(pendingQuery, nowNs)) {
+        dropQuery(query);
+        continue;
+      }
+      if (!resourceManager.canSchedule(query.getSchedulerGroup())) {
+        if (skipped == null) {
+          skipped = new ArrayList<>();
+        }
+        skipped.add(pendingQuery);
+        continue;
+      }
+      selected = query;
+      break;
+    }
+    if (skipped != null) {
+      pendingQueries.addAll(skipped);
+    }
+    if (selected != null) {
+      recordLatencyOnCompletion(selected, nowNs);
+    }
+    return selected;
+  }
+
+  private boolean canCompleteInTime(PendingQuery pendingQuery, long nowNs) {
+    long remainingNs = pendingQuery.deadlineNs - nowNs;
+    if (remainingNs <= 0) {
+      return false;
+    }
+    long estimatedLatencyMs = latencyEstimator.estimate(pendingQuery.query.getQueryRequest().getTableName());
+    return estimatedLatencyMs < 0 || TimeUnit.MILLISECONDS.toNanos(estimatedLatencyMs) <= remainingNs;
+  }
+
+  private void dropQuery(SchedulerQueryContext query) {
+    ServerQueryRequest queryRequest = query.getQueryRequest();
+    LOGGER.info("Dropping requestId: {} on table: {} from broker: {} that can not complete before its deadline",
+        queryRequest.getInstanceRequest().getRequestId(), queryRequest.getTableName(),
+        queryRequest.getInstanceRequest().getBrokerId());
+    queryRequest.getServerMetrics()
+        .addMeteredTableValue(queryRequest.getTableName(), ServerMeter.QUERIES_DROPPED_PAST_DEADLINE, 1);
+    DataTable dataTable = new DataTableImplV2();
+    dataTable.addException(QueryException.getException(QueryException.EXECUTION_TIMEOUT_ERROR,
+        "Query can not complete before its deadline"));
+    query.setResultFuture(Futures.immediateFuture(QueryScheduler.serializeDataTable(queryRequest, dataTable)));
+  }
+
+  private void recordLatencyOnCompletion(final SchedulerQueryContext query, final long startTimeNs) {
+    query.getResultFuture().addListener(new Runnable() {
+      @Override
+      public void run() {
+        // Latencies of cancelled queries are not representative
+        if (!query.getQueryRequest().isCancelled() && !query.getResultFuture().isCancelled()) {
+          latencyEstimator.record(query.getQueryRequest().getTableName(),
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNs));
+        }
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private long getDeadlineNs(ServerQueryRequest queryRequest) {
+    InstanceRequest instanceRequest = queryRequest.getInstanceRequest();
+    long timeoutMs = instanceRequest.isSetTimeoutMs() ? instanceRequest.getTimeoutMs() : defaultQueryTimeoutMs;
+    return queryRequest.getTimerContext().getQueryArrivalTimeNs() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+  }
+
+  private SchedulerGroup getOrCreateGroupContext(String groupName) {
+    SchedulerGroup groupContext = schedulerGroups.get(groupName);
+    if (groupContext == null) {
+      groupContext = groupFactory.create(config, groupName);
+      schedulerGroups.put(groupName, groupContext);
+    }
+    return groupContext;
+  }
+
+  @VisibleForTesting
+  QueryLatencyEstimator getLatencyEstimator() {
+    return latencyEstimator;
+  }
+
+  private static class PendingQuery implements Comparable<PendingQuery> {
+    private final SchedulerQueryContext query;
+    private final long deadlineNs;
+    private final long sequence;
+
+    PendingQuery(SchedulerQueryContext query, long deadlineNs, long sequence) {
+      this.query = query;
+      this.deadlineNs = deadlineNs;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(PendingQuery o) {
+      // Compare the difference as nano times may overflow
+      long diff = deadlineNs - o.deadlineNs;
+      if (diff != 0) {
+        return diff < 0 ? -1 : 1;
+      }
+      return Long.compare(sequence, o.sequence);
+    }
+  }
+}
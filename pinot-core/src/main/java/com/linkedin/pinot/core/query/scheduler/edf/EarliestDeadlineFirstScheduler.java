@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler.edf;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.PriorityScheduler;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroup;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroupFactory;
+import com.linkedin.pinot.core.query.scheduler.SchedulerPriorityQueue;
+import com.linkedin.pinot.core.query.scheduler.TableBasedGroupMapper;
+import com.linkedin.pinot.core.query.scheduler.fcfs.FCFSSchedulerGroup;
+import com.linkedin.pinot.core.query.scheduler.resources.PolicyBasedResourceManager;
+import com.linkedin.pinot.core.query.scheduler.resources.ResourceManager;
+import javax.annotation.Nonnull;
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * Earliest deadline first scheduler with bounded resource management per table {@link SchedulerGroup}.
+ * This class is a thin wrapper factory that configures {@link PriorityScheduler} with a {@link DeadlinePriorityQueue}.
+ * See {@link DeadlinePriorityQueue} for the scheduling policy.
+ */
+public class EarliestDeadlineFirstScheduler extends PriorityScheduler {
+
+  public static EarliestDeadlineFirstScheduler create(@Nonnull Configuration config,
+      @Nonnull QueryExecutor queryExecutor, @Nonnull ServerMetrics serverMetrics) {
+    final ResourceManager rm = new PolicyBasedResourceManager(config);
+    final SchedulerGroupFactory groupFactory = new SchedulerGroupFactory() {
+      @Override
+      public SchedulerGroup create(Configuration config, String groupName) {
+        // Only used for the resource accounting of the table, the queue orders the queries
+        return new FCFSSchedulerGroup(groupName);
+      }
+    };
+    DeadlinePriorityQueue queue = new DeadlinePriorityQueue(config, rm, groupFactory, new TableBasedGroupMapper());
+    return new EarliestDeadlineFirstScheduler(rm, queryExecutor, queue, serverMetrics);
+  }
+
+  private EarliestDeadlineFirstScheduler(@Nonnull ResourceManager resourceManager,
+      @Nonnull QueryExecutor queryExecutor, @Nonnull SchedulerPriorityQueue queue, @Nonnull ServerMetrics metrics) {
+    super(resourceManager, queryExecutor, queue, metrics);
+  }
+
+  @Override
+  public String name() {
+    return "EarliestDeadlineFirstScheduler";
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler.edf;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * Estimates the execution time of queries from the latencies of the recent queries on the same table.
+ *
+ * Latencies are kept in per table exponentially decaying histograms so that the estimates follow changes in the
+ * workload. The histograms are kept in a private registry and are not exported as metrics.
+ *
+ * Only executed queries record a latency, so a table whose queries all get dropped on a too high estimate would keep
+ * that estimate forever. The latencies of a table are therefore discarded once none was recorded for the max age: the
+ * next queries of the table get scheduled without estimate, and their latencies make the new estimate.
+ */
+@ThreadSafe
+public class QueryLatencyEstimator {
+  private final MetricsRegistry registry = new MetricsRegistry();
+  private final ConcurrentHashMap<String, TableLatencies> tableLatencies = new ConcurrentHashMap<>();
+  private final double quantile;
+  private final long minSamples;
+  private final long maxAgeMs;
+
+  /**
+   * @param quantile quantile of the recent latencies used as estimate, in [0, 1]
+   * @param minSamples number of latencies to record for a table before estimating its latency
+   * @param maxAgeMs time after the last recorded latency of a table when its latencies are discarded
+   */
+  public QueryLatencyEstimator(double quantile, long minSamples, long maxAgeMs) {
+    Preconditions.checkArgument(quantile >= 0.0 && quantile <= 1.0, "Invalid quantile: %s", quantile);
+    Preconditions.checkArgument(maxAgeMs > 0, "Invalid max age: %s", maxAgeMs);
+    this.quantile = quantile;
+    this.minSamples = minSamples;
+    this.maxAgeMs = maxAgeMs;
+  }
+
+  public void record(@Nonnull String tableName, long latencyMs) {
+    TableLatencies latencies = getTableLatencies(tableName);
+    latencies.histogram.update(latencyMs);
+    latencies.lastRecordTimeMs = System.currentTimeMillis();
+  }
+
+  /**
+   * Estimated execution time of the next query on the table
+   * @return estimated latency in milliseconds, or -1 if not enough queries were recorded recently for the table
+   */
+  public long estimate(@Nonnull String tableName) {
+    TableLatencies latencies = tableLatencies.get(tableName);
+    if (latencies == null) {
+      return -1;
+    }
+    Histogram histogram = latencies.histogram;
+    if (System.currentTimeMillis() - latencies.lastRecordTimeMs > maxAgeMs) {
+      // A latency racing with the clear may get lost, which only delays the next estimate
+      histogram.clear();
+      return -1;
+    }
+    if (histogram.count() < minSamples) {
+      return -1;
+    }
+    return (long) histogram.getSnapshot().getValue(quantile);
+  }
+
+  private TableLatencies getTableLatencies(String tableName) {
+    TableLatencies latencies = tableLatencies.get(tableName);
+    if (latencies == null) {
+      // The registry returns the existing histogram if another thread created it concurrently
+      Histogram histogram = registry.newHistogram(new MetricName(QueryLatencyEstimator.class, tableName), true);
+      latencies = new TableLatencies(histogram);
+      TableLatencies existing = tableLatencies.putIfAbsent(tableName, latencies);
+      if (existing != null) {
+        latencies = existing;
+      }
+    }
+    return latencies;
+  }
+
+  private static class TableLatencies {
+    private final Histogram histogram;
+    private volatile long lastRecordTimeMs;
+
+    TableLatencies(Histogram histogram) {
+      this.histogram = histogram;
+    }
+  }
+}
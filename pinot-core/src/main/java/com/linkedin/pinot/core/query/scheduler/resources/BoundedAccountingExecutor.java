@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 import com.linkedin.pinot.core.query.scheduler.SchedulerGroupAccountant;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,8 @@ import org.slf4j.LoggerFactory;
  * This class also supports a resource accounting interface to accurately track resources
  * utilization based on submission time and end time of a task. This does not require
  * any changes to client code which continue to use ExecutorService interface.
+ * Optionally, the CPU time and allocated bytes of each task are measured, reported to the
+ * accountant and summed up for the query.
  */
 public class BoundedAccountingExecutor extends QueryExecutorService {
   private static Logger LOGGER = LoggerFactory.getLogger(BoundedAccountingExecutor.class);
@@ -42,9 +45,18 @@ public class BoundedAccountingExecutor extends QueryExecutorService {
   private final int bounds;
   private Semaphore semaphore;
   private final SchedulerGroupAccountant accountant;
+  private final boolean measureCpuTime;
+  private final boolean measureAllocatedBytes;
+  private final AtomicLong cpuTimeNs = new AtomicLong(0);
+  private final AtomicLong allocatedBytes = new AtomicLong(0);
 
   public BoundedAccountingExecutor(@Nonnull Executor s, int bounds,
       @Nonnull SchedulerGroupAccountant accountant) {
+    this(s, bounds, accountant, false, false);
+  }
+
+  public BoundedAccountingExecutor(@Nonnull Executor s, int bounds, @Nonnull SchedulerGroupAccountant accountant,
+      boolean measureCpuTime, boolean measureAllocatedBytes) {
     Preconditions.checkNotNull(s);
     Preconditions.checkNotNull(accountant);
     Preconditions.checkArgument(bounds > 0);
@@ -52,6 +64,8 @@ public class BoundedAccountingExecutor extends QueryExecutorService {
     this.bounds = bounds;
     this.semaphore = new Semaphore(bounds);
     this.accountant = accountant;
+    this.measureCpuTime = measureCpuTime;
+    this.measureAllocatedBytes = measureAllocatedBytes;
   }
 
   @Override
@@ -64,6 +78,16 @@ public class BoundedAccountingExecutor extends QueryExecutorService {
     accountant.releasedReservedThreads(bounds);
   }
 
+  @Override
+  public long getCpuTimeNs() {
+    return cpuTimeNs.get();
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    return allocatedBytes.get();
+  }
+
   private QueryAccountingRunnable toAccountingRunnable(Runnable runnable) {
     acquirePermits(1);
     return new QueryAccountingRunnable(runnable, semaphore, accountant);
@@ -91,12 +115,24 @@ public class BoundedAccountingExecutor extends QueryExecutorService {
 
     @Override
     public void run() {
+      long startCpuTimeNs = measureCpuTime ? ThreadResourceUsage.getCurrentThreadCpuTimeNs() : 0L;
+      long startAllocatedBytes = measureAllocatedBytes ? ThreadResourceUsage.getCurrentThreadAllocatedBytes() : 0L;
       try {
         if (accountant != null) {
           accountant.incrementThreads();
         }
         runnable.run();
       } finally {
+        if (measureCpuTime || measureAllocatedBytes) {
+          long taskCpuTimeNs = measureCpuTime ? ThreadResourceUsage.getCurrentThreadCpuTimeNs() - startCpuTimeNs : 0L;
+          long taskAllocatedBytes =
+              measureAllocatedBytes ? ThreadResourceUsage.getCurrentThreadAllocatedBytes() - startAllocatedBytes : 0L;
+          cpuTimeNs.addAndGet(taskCpuTimeNs);
+          allocatedBytes.addAndGet(taskAllocatedBytes);
+          if (accountant != null) {
+            accountant.addThreadUsage(taskCpuTimeNs, taskAllocatedBytes);
+          }
+        }
         if (accountant != null) {
           accountant.decrementThreads();
         }
@@ -68,7 +68,8 @@ public class PolicyBasedResourceManager extends ResourceManager {
     accountant.addReservedThreads(spareThreads);
     // TODO: For 1 thread we should have the query run in the same queryRunner thread
     // by supplying an executor service that similar to Guava' directExecutor()
-    return new BoundedAccountingExecutor(queryWorkers, spareThreads, accountant);
+    return new BoundedAccountingExecutor(queryWorkers, spareThreads, accountant, measureThreadCpuTime,
+        measureThreadAllocatedBytes);
   }
 
   @Override
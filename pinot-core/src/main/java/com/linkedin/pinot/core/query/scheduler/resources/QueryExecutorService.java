@@ -47,6 +47,21 @@ public abstract class QueryExecutorService implements ExecutorService {
   public void releaseWorkers() {
 
   }
+
+  /**
+   * Total CPU time in nanoseconds used by the tasks of this service, 0 if not measured
+   */
+  public long getCpuTimeNs() {
+    return 0L;
+  }
+
+  /**
+   * Total bytes allocated by the tasks of this service, 0 if not measured
+   */
+  public long getAllocatedBytes() {
+    return 0L;
+  }
+
   @Override
   public <T> Future<T> submit(Runnable task, T result) {
     return submit(Executors.callable(task, result));
@@ -23,7 +23,10 @@ import com.linkedin.pinot.common.query.ServerQueryRequest;
 import com.linkedin.pinot.core.query.scheduler.SchedulerGroupAccountant;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +38,12 @@ import org.slf4j.LoggerFactory;
  *
  * This class supports soft and hard limits on the number of threads. A
  * scheduler group will not get more than the hard_limit number of threads.
+ *
+ * The query runners and workers run either on fixed size thread pools (default), or in the elastic thread mode on
+ * thread pools that create threads on demand and release them once idle. In the elastic thread mode, the worker pool
+ * can grow up to the max elastic worker threads, so that workers blocked (e.g. on page faults of memory mapped
+ * segments, or waiting for other workers to merge their results) do not hold back the other queries. The number of
+ * query worker threads is then only used for the thread accounting of the scheduler groups.
  */
 // TODO: This class supports hard and soft thread limits. Potentially, we can make
 // these limits dynamic - SchedulerGroups with low latency can have higher hard limit
@@ -44,14 +53,27 @@ public abstract class ResourceManager {
 
   public static final String QUERY_RUNNER_CONFIG_KEY = "query_runner_threads";
   public static final String QUERY_WORKER_CONFIG_KEY = "query_worker_threads";
+  // Measure the CPU time and allocated bytes of the query worker threads
+  public static final String MEASURE_THREAD_CPU_TIME_CONFIG_KEY = "measure_thread_cpu_time";
+  public static final String MEASURE_THREAD_ALLOCATED_BYTES_CONFIG_KEY = "measure_thread_allocated_bytes";
+  // Thread mode of the query runners and workers: fixed or elastic
+  public static final String THREAD_MODE_CONFIG_KEY = "query_thread_mode";
+  public static final String FIXED_THREAD_MODE = "fixed";
+  public static final String ELASTIC_THREAD_MODE = "elastic";
+  public static final String ELASTIC_MAX_WORKER_THREADS_CONFIG_KEY = "elastic_max_worker_threads";
+  public static final String ELASTIC_THREAD_KEEP_ALIVE_SECONDS_CONFIG_KEY = "elastic_thread_keep_alive_seconds";
   public static final int DEFAULT_QUERY_RUNNER_THREADS;
   public static final int DEFAULT_QUERY_WORKER_THREADS;
+  public static final int DEFAULT_ELASTIC_MAX_WORKER_THREADS;
+  public static final long DEFAULT_ELASTIC_THREAD_KEEP_ALIVE_SECONDS = 60L;
 
   static {
     int numCores = Runtime.getRuntime().availableProcessors();
     // arbitrary...but not completely arbitrary
     DEFAULT_QUERY_RUNNER_THREADS = numCores;
     DEFAULT_QUERY_WORKER_THREADS = 2 * numCores;
+    // idle threads are released in the elastic thread mode, so the limit only guards against runaway thread creation
+    DEFAULT_ELASTIC_MAX_WORKER_THREADS = 16 * numCores;
   }
 
   // set the main query runner priority higher than NORM but lower than MAX
@@ -66,6 +88,9 @@ public abstract class ResourceManager {
   protected final ListeningExecutorService queryWorkers;
   protected final int numQueryRunnerThreads;
   protected final int numQueryWorkerThreads;
+  protected final boolean measureThreadCpuTime;
+  protected final boolean measureThreadAllocatedBytes;
+  protected final boolean elasticThreadMode;
 
   /**
    * @param config configuration for initializing resource manager
@@ -76,21 +101,66 @@ public abstract class ResourceManager {
 
     LOGGER.info("Initializing with {} query runner threads and {} worker threads", numQueryRunnerThreads,
         numQueryWorkerThreads);
+
+    boolean measureThreadCpuTime = config.getBoolean(MEASURE_THREAD_CPU_TIME_CONFIG_KEY, false);
+    if (measureThreadCpuTime && !ThreadResourceUsage.isCpuTimeSupported()) {
+      LOGGER.warn("Thread CPU time measurement is not supported by the JVM, disabling it");
+      measureThreadCpuTime = false;
+    }
+    this.measureThreadCpuTime = measureThreadCpuTime;
+    boolean measureThreadAllocatedBytes = config.getBoolean(MEASURE_THREAD_ALLOCATED_BYTES_CONFIG_KEY, false);
+    if (measureThreadAllocatedBytes && !ThreadResourceUsage.isAllocatedBytesSupported()) {
+      LOGGER.warn("Thread allocated bytes measurement is not supported by the JVM, disabling it");
+      measureThreadAllocatedBytes = false;
+    }
+    this.measureThreadAllocatedBytes = measureThreadAllocatedBytes;
+    LOGGER.info("Thread CPU time measurement: {}, thread allocated bytes measurement: {}", measureThreadCpuTime,
+        measureThreadAllocatedBytes);
+    String threadMode = config.getString(THREAD_MODE_CONFIG_KEY, FIXED_THREAD_MODE);
+    elasticThreadMode = threadMode.equalsIgnoreCase(ELASTIC_THREAD_MODE);
+    if (!elasticThreadMode && !threadMode.equalsIgnoreCase(FIXED_THREAD_MODE)) {
+      LOGGER.warn("Unknown query thread mode: {}, using fixed thread mode", threadMode);
+    }
     // pqr -> pinot query runner (to give short names)
     ThreadFactory queryRunnerFactory = new ThreadFactoryBuilder().setDaemon(false)
         .setPriority(QUERY_RUNNER_THREAD_PRIORITY)
         .setNameFormat("pqr-%d")
         .build();
-    queryRunners = MoreExecutors.listeningDecorator(
-        Executors.newFixedThreadPool(numQueryRunnerThreads, queryRunnerFactory));
-
     // pqw -> pinot query workers
     ThreadFactory queryWorkersFactory = new ThreadFactoryBuilder().setDaemon(false)
         .setPriority(Thread.NORM_PRIORITY)
         .setNameFormat("pqw-%d")
         .build();
-    queryWorkers = MoreExecutors.listeningDecorator(
-        Executors.newFixedThreadPool(numQueryWorkerThreads, queryWorkersFactory));
+    if (elasticThreadMode) {
+      int maxWorkerThreads = config.getInt(ELASTIC_MAX_WORKER_THREADS_CONFIG_KEY, DEFAULT_ELASTIC_MAX_WORKER_THREADS);
+      long keepAliveSeconds =
+          config.getLong(ELASTIC_THREAD_KEEP_ALIVE_SECONDS_CONFIG_KEY, DEFAULT_ELASTIC_THREAD_KEEP_ALIVE_SECONDS);
+      LOGGER.info("Using elastic thread mode with max {} worker threads and {}s thread keep alive", maxWorkerThreads,
+          keepAliveSeconds);
+      // The number of running queries is bounded by the scheduler, so runners do not need to grow past their number
+      queryRunners = MoreExecutors.listeningDecorator(
+          newElasticThreadPool(numQueryRunnerThreads, keepAliveSeconds, queryRunnerFactory));
+      queryWorkers = MoreExecutors.listeningDecorator(
+          newElasticThreadPool(maxWorkerThreads, keepAliveSeconds, queryWorkersFactory));
+    } else {
+      queryRunners = MoreExecutors.listeningDecorator(
+          Executors.newFixedThreadPool(numQueryRunnerThreads, queryRunnerFactory));
+      queryWorkers = MoreExecutors.listeningDecorator(
+          Executors.newFixedThreadPool(numQueryWorkerThreads, queryWorkersFactory));
+    }
+  }
+
+  /**
+   * Thread pool that starts a new thread for each task until it reaches max threads, and releases the threads idle for
+   * longer than the keep alive time.
+   */
+  private static ExecutorService newElasticThreadPool(int maxThreads, long keepAliveSeconds,
+      ThreadFactory threadFactory) {
+    ThreadPoolExecutor threadPool =
+        new ThreadPoolExecutor(maxThreads, maxThreads, keepAliveSeconds, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+    threadPool.allowCoreThreadTimeOut(true);
+    return threadPool;
   }
 
   public void stop() {
@@ -116,6 +186,27 @@ public abstract class ResourceManager {
     return numQueryWorkerThreads;
   }
 
+  /**
+   * Returns true if the CPU time of the query worker threads is measured
+   */
+  final public boolean isThreadCpuTimeMeasured() {
+    return measureThreadCpuTime;
+  }
+
+  /**
+   * Returns true if the bytes allocated by the query worker threads are measured
+   */
+  final public boolean isThreadAllocatedBytesMeasured() {
+    return measureThreadAllocatedBytes;
+  }
+
+  /**
+   * Returns true if the query runners and workers run on elastic thread pools
+   */
+  final public boolean isElasticThreadMode() {
+    return elasticThreadMode;
+  }
+
   /**
    * Returns executor service for running queries.
    * @return
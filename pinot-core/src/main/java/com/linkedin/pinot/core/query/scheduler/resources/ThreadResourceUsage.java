@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler.resources;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Measures the resources used by the current thread using the {@link ThreadMXBean}: CPU time and, on JVMs that
+ * support it, the number of bytes allocated on the heap.
+ *
+ * Unlike wall clock time, CPU time does not count the time a thread spends blocked (e.g. on page faults of memory
+ * mapped segments, or waiting for other threads to finish).
+ */
+public final class ThreadResourceUsage {
+  private ThreadResourceUsage() {
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ThreadResourceUsage.class);
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final boolean IS_CPU_TIME_SUPPORTED;
+  private static final boolean IS_ALLOCATED_BYTES_SUPPORTED;
+
+  static {
+    boolean isCpuTimeSupported = false;
+    try {
+      if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+        if (!THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+          THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+        }
+        isCpuTimeSupported = true;
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while enabling thread CPU time measurement", e);
+    }
+    IS_CPU_TIME_SUPPORTED = isCpuTimeSupported;
+
+    boolean isAllocatedBytesSupported = false;
+    try {
+      if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        if (threadMXBean.isThreadAllocatedMemorySupported()) {
+          if (!threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+          }
+          isAllocatedBytesSupported = true;
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while enabling thread allocated memory measurement", e);
+    }
+    IS_ALLOCATED_BYTES_SUPPORTED = isAllocatedBytesSupported;
+  }
+
+  public static boolean isCpuTimeSupported() {
+    return IS_CPU_TIME_SUPPORTED;
+  }
+
+  public static boolean isAllocatedBytesSupported() {
+    return IS_ALLOCATED_BYTES_SUPPORTED;
+  }
+
+  /**
+   * Returns the CPU time used by the current thread in nanoseconds, or 0 if not supported.
+   */
+  public static long getCurrentThreadCpuTimeNs() {
+    return IS_CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+  }
+
+  /**
+   * Returns the number of bytes allocated by the current thread, or 0 if not supported.
+   */
+  public static long getCurrentThreadAllocatedBytes() {
+    return IS_ALLOCATED_BYTES_SUPPORTED ? ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(
+        Thread.currentThread().getId()) : 0L;
+  }
+}
@@ -26,6 +26,8 @@ import com.linkedin.pinot.core.query.scheduler.resources.PolicyBasedResourceMana
 import com.linkedin.pinot.core.query.scheduler.resources.ResourceManager;
 import javax.annotation.Nonnull;
 import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Schedules queries from a {@link SchedulerGroup} with highest number of tokens on priority.
@@ -33,13 +35,24 @@ import org.apache.commons.configuration.Configuration;
  * the right concrete classes. All the priority based scheduling logic is in {@link PriorityScheduler}
  */
 public class TokenPriorityScheduler extends PriorityScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TokenPriorityScheduler.class);
+
   public static final String TOKENS_PER_MS_KEY = "tokens_per_ms";
   public static final String TOKEN_LIFETIME_MS_KEY = "token_lifetime_ms";
+  // Charge tokens for the thread CPU time instead of the thread wall clock time. Requires thread CPU time measurement
+  // to be enabled in the resource manager
+  public static final String CHARGE_CPU_TIME_KEY = "charge_cpu_time";
   private static final int DEFAULT_TOKEN_LIFETIME_MS = 100;
 
   public static TokenPriorityScheduler create(@Nonnull Configuration config, @Nonnull QueryExecutor queryExecutor,
       @Nonnull ServerMetrics metrics) {
     final ResourceManager rm = new PolicyBasedResourceManager(config);
+    boolean chargeCpuTime = config.getBoolean(CHARGE_CPU_TIME_KEY, false);
+    if (chargeCpuTime && !rm.isThreadCpuTimeMeasured()) {
+      LOGGER.warn("Thread CPU time is not measured, charging tokens for thread wall clock time instead");
+      chargeCpuTime = false;
+    }
+    final boolean chargeThreadCpuTime = chargeCpuTime;
     final SchedulerGroupFactory groupFactory =  new SchedulerGroupFactory() {
       @Override
       public SchedulerGroup create(Configuration config, String groupName) {
@@ -49,7 +62,7 @@ public class TokenPriorityScheduler extends PriorityScheduler {
         int tokensPerMs = config.getInt(TOKENS_PER_MS_KEY, maxTokensPerMs);
         int tokenLifetimeMs = config.getInt(TOKEN_LIFETIME_MS_KEY, DEFAULT_TOKEN_LIFETIME_MS);
 
-        return new TokenSchedulerGroup(groupName, tokensPerMs, tokenLifetimeMs);
+        return new TokenSchedulerGroup(groupName, tokensPerMs, tokenLifetimeMs, chargeThreadCpuTime);
       }
     };
 
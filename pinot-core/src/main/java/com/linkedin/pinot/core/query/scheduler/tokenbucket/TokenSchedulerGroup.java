@@ -34,6 +34,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * by applying linear decay. Linear decay memorizes resource utilization in the previous
  * time quantum penalizing heavy users. This is important to give fair chance to low qps
  * workloads.
+ *
+ * Optionally, tokens represent a unit of thread CPU time instead. Tokens are then deducted
+ * from the group for the CPU time reported by its query worker threads, so that queries blocked
+ * on IO or waiting for other threads are not charged for the time they are not running.
  */
 public class TokenSchedulerGroup extends AbstractSchedulerGroup {
 
@@ -47,6 +51,11 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
   // those can be scheduled if there is no other work
   private final int numTokensPerMs;
 
+  // charge tokens for the CPU time of the threads instead of their wall clock time
+  private final boolean chargeCpuTime;
+  // CPU time reported but not yet deducted from the tokens because it is less than a token
+  private long pendingCpuTimeNs;
+
   // currently available tokens for this group
   private int availableTokens;
   // last time token values were updated for this group
@@ -64,11 +73,16 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
 
 
   TokenSchedulerGroup(String schedGroupName, int numTokensPerMs, int tokenLifetimeMs) {
+    this(schedGroupName, numTokensPerMs, tokenLifetimeMs, false);
+  }
+
+  TokenSchedulerGroup(String schedGroupName, int numTokensPerMs, int tokenLifetimeMs, boolean chargeCpuTime) {
     super(schedGroupName);
     Preconditions.checkArgument(numTokensPerMs > 0);
     Preconditions.checkArgument(tokenLifetimeMs > 0);
     this.numTokensPerMs = numTokensPerMs;
     this.tokenLifetimeMs = tokenLifetimeMs;
+    this.chargeCpuTime = chargeCpuTime;
     lastUpdateTimeMs = currentTimeMillis();
     availableTokens = numTokensPerMs * tokenLifetimeMs;
     lastTokenTimeMs = lastUpdateTimeMs;
@@ -102,6 +116,21 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
     super.endQuery();
   }
 
+  @Override
+  public void addThreadUsage(long cpuTimeNs, long allocatedBytes) {
+    if (!chargeCpuTime) {
+      return;
+    }
+    try (TokenLockManager lm = new TokenLockManager(tokenLock)) {
+      // allot the tokens for the elapsed time quanta before charging the CPU time
+      consumeTokens();
+      pendingCpuTimeNs += cpuTimeNs;
+      long cpuTimeMs = pendingCpuTimeNs / 1_000_000L;
+      availableTokens -= cpuTimeMs;
+      pendingCpuTimeNs -= cpuTimeMs * 1_000_000L;
+    }
+  }
+
   /**
    * Compares priority of this group with respect to another scheduler group.
    * Priority is compared on the basis of available tokens. SchedulerGroup with
@@ -153,7 +182,8 @@ public class TokenSchedulerGroup extends AbstractSchedulerGroup {
       if (diffMs <= 0) {
         return availableTokens;
       }
-      int threads = threadsInUse.get();
+      // with CPU time charging, threads are charged when they report their CPU time
+      int threads = chargeCpuTime ? 0 : threadsInUse.get();
       long nextTokenTime = lastTokenTimeMs + tokenLifetimeMs;
       if (nextTokenTime > currentTimeMs) {
         availableTokens -= diffMs * threads;
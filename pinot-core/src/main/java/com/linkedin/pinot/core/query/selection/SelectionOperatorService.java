@@ -22,13 +22,9 @@ import com.linkedin.pinot.common.response.broker.SelectionResults;
 import com.linkedin.pinot.common.utils.DataSchema;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.core.common.Block;
-import com.linkedin.pinot.core.common.BlockDocIdIterator;
-import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
-import com.linkedin.pinot.core.query.selection.comparator.CompositeDocIdValComparator;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -71,6 +67,8 @@ public class SelectionOperatorService {
   private final int _selectionOffset;
   private final int _maxNumRows;
   private final PriorityQueue<Serializable[]> _rows;
+  // Inner segment only
+  private final SelectionOrderByDocIdCollector _docIdCollector;
 
   private long _numDocsScanned = 0;
 
@@ -88,6 +86,7 @@ public class SelectionOperatorService {
     _selectionOffset = selection.getOffset();
     _maxNumRows = _selectionOffset + selection.getSize();
     _rows = new PriorityQueue<>(_maxNumRows, getStrictComparator());
+    _docIdCollector = new SelectionOrderByDocIdCollector(indexSegment, _sortSequence, _maxNumRows);
   }
 
   /**
@@ -104,6 +103,7 @@ public class SelectionOperatorService {
     _selectionOffset = selection.getOffset();
     _maxNumRows = _selectionOffset + selection.getSize();
     _rows = new PriorityQueue<>(_maxNumRows, getTypeCompatibleComparator());
+    _docIdCollector = null;
   }
 
   /**
@@ -265,27 +265,31 @@ public class SelectionOperatorService {
   }
 
   /**
-   * Iterate over {@link Block}s, extract values from them and merge the values to the selection results for selection
-   * queries with <code>ORDER BY</code>. (Inner segment)
+   * Collect the top documents of a block of document ids on the sort columns for selection queries with
+   * <code>ORDER BY</code>. The selection columns are not read until {@link #fetchRowsWithOrdering(Block[])}.
+   * (Inner segment)
    *
-   * @param blockDocIdIterator block document id iterator.
-   * @param blocks {@link Block} array.
+   * @param docIds document ids.
+   * @param length number of document ids.
    */
-  public void iterateOnBlocksWithOrdering(@Nonnull BlockDocIdIterator blockDocIdIterator, @Nonnull Block[] blocks) {
-    Comparator<Integer> rowDocIdComparator = new CompositeDocIdValComparator(_sortSequence, blocks);
-    PriorityQueue<Integer> rowDocIdPriorityQueue = new PriorityQueue<>(_maxNumRows, rowDocIdComparator);
-    int docId;
-    while ((docId = blockDocIdIterator.next()) != Constants.EOF) {
-      _numDocsScanned++;
-      SelectionOperatorUtils.addToPriorityQueue(docId, rowDocIdPriorityQueue, _maxNumRows);
-    }
+  public void collectDocIdsWithOrdering(@Nonnull int[] docIds, int length) {
+    _numDocsScanned += length;
+    _docIdCollector.collect(docIds, length);
+  }
 
+  /**
+   * Fetch the values of the collected top documents from {@link Block}s and merge them to the selection results for
+   * selection queries with <code>ORDER BY</code>. (Inner segment)
+   *
+   * @param blocks {@link Block} array.
+   */
+  public void fetchRowsWithOrdering(@Nonnull Block[] blocks) {
+    // Fetch rows in document id order for better locality
+    int[] docIds = _docIdCollector.getSortedDocIds();
     SelectionFetcher selectionFetcher = new SelectionFetcher(blocks, _dataSchema);
-    Collection<Serializable[]> rows = new ArrayList<>(rowDocIdPriorityQueue.size());
-    for (int rowDocId : rowDocIdPriorityQueue) {
-      rows.add(selectionFetcher.getRow(rowDocId));
+    for (int docId : docIds) {
+      SelectionOperatorUtils.addToPriorityQueue(selectionFetcher.getRow(docId), _rows, _maxNumRows);
     }
-    SelectionOperatorUtils.mergeWithOrdering(_rows, rows, _maxNumRows);
   }
 
   /**
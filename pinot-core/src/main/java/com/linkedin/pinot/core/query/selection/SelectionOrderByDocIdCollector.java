@@ -0,0 +1,424 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.selection;
+
+import com.linkedin.pinot.common.request.SelectionSort;
+import com.linkedin.pinot.core.common.DataFetcher;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+
+/**
+ * The <code>SelectionOrderByDocIdCollector</code> class collects the top K document ids of a segment for selection
+ * queries with <code>ORDER BY</code>, so that the selection columns only need to be fetched for the surviving K
+ * documents (late materialization).
+ * <p>Only the sort columns are read while scanning the documents. The sort values of the collected documents are kept
+ * in primitive arrays indexed by slot, and the slots are organized as a binary heap with the last ranked document on
+ * top. Dictionary-encoded columns with sorted dictionary are compared on dictionary ids, other columns are compared on
+ * values. Multi-valued and BYTES sort columns are not compared.
+ */
+public class SelectionOrderByDocIdCollector {
+  private final int _maxNumDocs;
+  private final SortColumn[] _sortColumns;
+
+  // Slot to document id
+  private final int[] _docIds;
+  // Binary heap of slots, with the slot of the last ranked document on top
+  private final int[] _heap;
+  private int _numDocs = 0;
+
+  /**
+   * Constructor for <code>SelectionOrderByDocIdCollector</code>.
+   *
+   * @param indexSegment index segment.
+   * @param sortSequence de-duplicated sort sequence.
+   * @param maxNumDocs maximum number of documents to collect.
+   */
+  public SelectionOrderByDocIdCollector(@Nonnull IndexSegment indexSegment, @Nonnull List<SelectionSort> sortSequence,
+      int maxNumDocs) {
+    _maxNumDocs = maxNumDocs;
+    _docIds = new int[_maxNumDocs];
+    _heap = new int[_maxNumDocs];
+
+    Map<String, DataSource> dataSourceMap = new HashMap<>();
+    List<SortColumn> sortColumns = new ArrayList<>();
+    for (SelectionSort selectionSort : sortSequence) {
+      String column = selectionSort.getColumn();
+      DataSource dataSource = indexSegment.getDataSource(column);
+      DataSourceMetadata dataSourceMetadata = dataSource.getDataSourceMetadata();
+      if (!dataSourceMetadata.isSingleValue()) {
+        continue;
+      }
+      dataSourceMap.put(column, dataSource);
+      Dictionary dictionary = dataSource.getDictionary();
+      boolean isAsc = selectionSort.isIsAsc();
+      if (dictionary != null && dictionary.isSorted()) {
+        sortColumns.add(new DictIdSortColumn(column, isAsc, _maxNumDocs));
+        continue;
+      }
+      switch (dataSourceMetadata.getDataType()) {
+        case INT:
+          sortColumns.add(new IntSortColumn(column, isAsc, _maxNumDocs));
+          break;
+        case LONG:
+          sortColumns.add(new LongSortColumn(column, isAsc, _maxNumDocs));
+          break;
+        case FLOAT:
+          sortColumns.add(new FloatSortColumn(column, isAsc, _maxNumDocs));
+          break;
+        case DOUBLE:
+          sortColumns.add(new DoubleSortColumn(column, isAsc, _maxNumDocs));
+          break;
+        case STRING:
+          sortColumns.add(new StringSortColumn(column, isAsc, _maxNumDocs));
+          break;
+        default:
+          break;
+      }
+    }
+    _sortColumns = sortColumns.toArray(new SortColumn[sortColumns.size()]);
+
+    DataFetcher dataFetcher = new DataFetcher(dataSourceMap);
+    for (SortColumn sortColumn : _sortColumns) {
+      sortColumn._dataFetcher = dataFetcher;
+    }
+  }
+
+  /**
+   * Collect a block of document ids.
+   *
+   * @param docIds document ids.
+   * @param length number of document ids.
+   */
+  public void collect(@Nonnull int[] docIds, int length) {
+    if (_maxNumDocs == 0) {
+      return;
+    }
+    for (SortColumn sortColumn : _sortColumns) {
+      sortColumn.fetch(docIds, length);
+    }
+    for (int i = 0; i < length; i++) {
+      if (_numDocs < _maxNumDocs) {
+        int slot = _numDocs++;
+        setSlot(slot, i, docIds[i]);
+        _heap[slot] = slot;
+        siftUp(slot);
+      } else if (compareWithSlot(i, _heap[0]) < 0) {
+        // The document ranks before the last ranked document, replace it
+        setSlot(_heap[0], i, docIds[i]);
+        siftDown(0);
+      }
+    }
+  }
+
+  /**
+   * Get the number of documents collected.
+   *
+   * @return number of documents collected.
+   */
+  public int getNumDocs() {
+    return _numDocs;
+  }
+
+  /**
+   * Get the collected document ids in ascending order.
+   *
+   * @return collected document ids.
+   */
+  @Nonnull
+  public int[] getSortedDocIds() {
+    int[] docIds = Arrays.copyOf(_docIds, _numDocs);
+    Arrays.sort(docIds);
+    return docIds;
+  }
+
+  private void setSlot(int slot, int index, int docId) {
+    _docIds[slot] = docId;
+    for (SortColumn sortColumn : _sortColumns) {
+      sortColumn.setSlot(slot, index);
+    }
+  }
+
+  /**
+   * Compare the document at the given index of the current block with the document in the given slot.
+   * <p>Negative value means the document in the block ranks before the document in the slot.
+   */
+  private int compareWithSlot(int index, int slot) {
+    for (SortColumn sortColumn : _sortColumns) {
+      int result = sortColumn.compareWithSlot(index, slot);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Compare the documents in the given slots.
+   * <p>Negative value means the document in the first slot ranks before the document in the second slot.
+   */
+  private int compareSlots(int slot1, int slot2) {
+    for (SortColumn sortColumn : _sortColumns) {
+      int result = sortColumn.compareSlots(slot1, slot2);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  private void siftUp(int position) {
+    int slot = _heap[position];
+    while (position > 0) {
+      int parentPosition = (position - 1) >>> 1;
+      int parentSlot = _heap[parentPosition];
+      if (compareSlots(slot, parentSlot) <= 0) {
+        break;
+      }
+      _heap[position] = parentSlot;
+      position = parentPosition;
+    }
+    _heap[position] = slot;
+  }
+
+  private void siftDown(int position) {
+    int slot = _heap[position];
+    int half = _numDocs >>> 1;
+    while (position < half) {
+      int childPosition = 2 * position + 1;
+      int childSlot = _heap[childPosition];
+      int rightPosition = childPosition + 1;
+      if (rightPosition < _numDocs && compareSlots(_heap[rightPosition], childSlot) > 0) {
+        childPosition = rightPosition;
+        childSlot = _heap[rightPosition];
+      }
+      if (compareSlots(slot, childSlot) >= 0) {
+        break;
+      }
+      _heap[position] = childSlot;
+      position = childPosition;
+    }
+    _heap[position] = slot;
+  }
+
+  /**
+   * Sort values of a column, both for the current block (indexed by position in the block) and for the collected
+   * documents (indexed by slot).
+   */
+  private static abstract class SortColumn {
+    final String _column;
+    final boolean _isAsc;
+    DataFetcher _dataFetcher;
+
+    SortColumn(String column, boolean isAsc) {
+      _column = column;
+      _isAsc = isAsc;
+    }
+
+    abstract void fetch(int[] docIds, int length);
+
+    abstract void setSlot(int slot, int index);
+
+    abstract int compareValues(int index, int slot);
+
+    abstract int compareSlotValues(int slot1, int slot2);
+
+    int compareWithSlot(int index, int slot) {
+      int result = compareValues(index, slot);
+      return _isAsc ? result : -result;
+    }
+
+    int compareSlots(int slot1, int slot2) {
+      int result = compareSlotValues(slot1, slot2);
+      return _isAsc ? result : -result;
+    }
+  }
+
+  private static class IntSortColumn extends SortColumn {
+    final int[] _blockValues = new int[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    final int[] _slotValues;
+
+    IntSortColumn(String column, boolean isAsc, int maxNumDocs) {
+      super(column, isAsc);
+      _slotValues = new int[maxNumDocs];
+    }
+
+    @Override
+    void fetch(int[] docIds, int length) {
+      _dataFetcher.fetchIntValues(_column, docIds, length, _blockValues);
+    }
+
+    @Override
+    void setSlot(int slot, int index) {
+      _slotValues[slot] = _blockValues[index];
+    }
+
+    @Override
+    int compareValues(int index, int slot) {
+      return Integer.compare(_blockValues[index], _slotValues[slot]);
+    }
+
+    @Override
+    int compareSlotValues(int slot1, int slot2) {
+      return Integer.compare(_slotValues[slot1], _slotValues[slot2]);
+    }
+  }
+
+  /**
+   * For dictionary-encoded column with sorted dictionary, the order of dictionary ids is the same as the order of
+   * values.
+   */
+  private static class DictIdSortColumn extends IntSortColumn {
+
+    DictIdSortColumn(String column, boolean isAsc, int maxNumDocs) {
+      super(column, isAsc, maxNumDocs);
+    }
+
+    @Override
+    void fetch(int[] docIds, int length) {
+      _dataFetcher.fetchDictIds(_column, docIds, length, _blockValues);
+    }
+  }
+
+  private static class LongSortColumn extends SortColumn {
+    final long[] _blockValues = new long[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    final long[] _slotValues;
+
+    LongSortColumn(String column, boolean isAsc, int maxNumDocs) {
+      super(column, isAsc);
+      _slotValues = new long[maxNumDocs];
+    }
+
+    @Override
+    void fetch(int[] docIds, int length) {
+      _dataFetcher.fetchLongValues(_column, docIds, length, _blockValues);
+    }
+
+    @Override
+    void setSlot(int slot, int index) {
+      _slotValues[slot] = _blockValues[index];
+    }
+
+    @Override
+    int compareValues(int index, int slot) {
+      return Long.compare(_blockValues[index], _slotValues[slot]);
+    }
+
+    @Override
+    int compareSlotValues(int slot1, int slot2) {
+      return Long.compare(_slotValues[slot1], _slotValues[slot2]);
+    }
+  }
+
+  private static class FloatSortColumn extends SortColumn {
+    final float[] _blockValues = new float[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    final float[] _slotValues;
+
+    FloatSortColumn(String column, boolean isAsc, int maxNumDocs) {
+      super(column, isAsc);
+      _slotValues = new float[maxNumDocs];
+    }
+
+    @Override
+    void fetch(int[] docIds, int length) {
+      _dataFetcher.fetchFloatValues(_column, docIds, length, _blockValues);
+    }
+
+    @Override
+    void setSlot(int slot, int index) {
+      _slotValues[slot] = _blockValues[index];
+    }
+
+    @Override
+    int compareValues(int index, int slot) {
+      return Float.compare(_blockValues[index], _slotValues[slot]);
+    }
+
+    @Override
+    int compareSlotValues(int slot1, int slot2) {
+      return Float.compare(_slotValues[slot1], _slotValues[slot2]);
+    }
+  }
+
+  private static class DoubleSortColumn extends SortColumn {
+    final double[] _blockValues = new double[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    final double[] _slotValues;
+
+    DoubleSortColumn(String column, boolean isAsc, int maxNumDocs) {
+      super(column, isAsc);
+      _slotValues = new double[maxNumDocs];
+    }
+
+    @Override
+    void fetch(int[] docIds, int length) {
+      _dataFetcher.fetchDoubleValues(_column, docIds, length, _blockValues);
+    }
+
+    @Override
+    void setSlot(int slot, int index) {
+      _slotValues[slot] = _blockValues[index];
+    }
+
+    @Override
+    int compareValues(int index, int slot) {
+      return Double.compare(_blockValues[index], _slotValues[slot]);
+    }
+
+    @Override
+    int compareSlotValues(int slot1, int slot2) {
+      return Double.compare(_slotValues[slot1], _slotValues[slot2]);
+    }
+  }
+
+  private static class StringSortColumn extends SortColumn {
+    final String[] _blockValues = new String[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+    final String[] _slotValues;
+
+    StringSortColumn(String column, boolean isAsc, int maxNumDocs) {
+      super(column, isAsc);
+      _slotValues = new String[maxNumDocs];
+    }
+
+    @Override
+    void fetch(int[] docIds, int length) {
+      _dataFetcher.fetchStringValues(_column, docIds, length, _blockValues);
+    }
+
+    @Override
+    void setSlot(int slot, int index) {
+      _slotValues[slot] = _blockValues[index];
+    }
+
+    @Override
+    int compareValues(int index, int slot) {
+      return _blockValues[index].compareTo(_slotValues[slot]);
+    }
+
+    @Override
+    int compareSlotValues(int slot1, int slot2) {
+      return _slotValues[slot1].compareTo(_slotValues[slot2]);
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.StarTreeIndexSpec;
+import com.linkedin.pinot.common.utils.primitive.ByteArray;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.extractors.FieldExtractorFactory;
 import com.linkedin.pinot.core.data.extractors.PlainFieldExtractor;
@@ -166,8 +167,8 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
               "Cannot add derived field: " + derivedFieldName + " since it already exists in schema.");
         } else {
           dataSchema.addField(
-              new MetricFieldSpec(derivedFieldName, FieldSpec.DataType.STRING, hllConfig.getHllFieldSize(),
-                  MetricFieldSpec.DerivedMetricType.HLL));
+              new MetricFieldSpec(derivedFieldName, hllConfig.getHllDeriveColumnDataType(),
+                  hllConfig.getHllFieldSize(), MetricFieldSpec.DerivedMetricType.HLL));
         }
       }
     }
@@ -177,11 +178,17 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     //add default hll value in each row
     if (createHllIndex) {
       HllConfig hllConfig = config.getHllConfig();
+      boolean storeAsBytes = hllConfig.getHllDeriveColumnDataType() == FieldSpec.DataType.BYTES;
       for (Entry<String, String> entry : hllConfig.getDerivedHllFieldToOriginMap().entrySet()) {
         String derivedFieldName = entry.getKey();
         String originFieldName = entry.getValue();
-        row.putField(derivedFieldName,
-            HllUtil.singleValueHllAsString(hllConfig.getHllLog2m(), row.getValue(originFieldName)));
+        if (storeAsBytes) {
+          row.putField(derivedFieldName,
+              new ByteArray(HllUtil.singleValueHllAsBytes(hllConfig.getHllLog2m(), row.getValue(originFieldName))));
+        } else {
+          row.putField(derivedFieldName,
+              HllUtil.singleValueHllAsString(hllConfig.getHllLog2m(), row.getValue(originFieldName)));
+        }
       }
     }
   }
@@ -18,6 +18,7 @@ package com.linkedin.pinot.core.segment.index.column;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.io.reader.DataFileReader;
 import com.linkedin.pinot.core.io.reader.SingleColumnSingleValueReader;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
 import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitMultiValueReader;
 import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitSingleValueReader;
 import com.linkedin.pinot.core.io.reader.impl.v1.FixedByteChunkSingleValueReader;
@@ -33,6 +34,7 @@ import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.IntDictionary;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.readers.LongDictionary;
+import com.linkedin.pinot.core.segment.index.readers.OnHeapDictionary;
 import com.linkedin.pinot.core.segment.index.readers.OnHeapDoubleDictionary;
 import com.linkedin.pinot.core.segment.index.readers.OnHeapFloatDictionary;
 import com.linkedin.pinot.core.segment.index.readers.OnHeapIntDictionary;
@@ -50,58 +52,70 @@ import org.slf4j.LoggerFactory;
 public final class ColumnIndexContainer {
   private static final Logger LOGGER = LoggerFactory.getLogger(ColumnIndexContainer.class);
 
+  private final ColumnMetadata _metadata;
+  private final PinotDataBuffer _forwardIndexBuffer;
+  private final PinotDataBuffer _dictionaryBuffer;
   private final DataFileReader _forwardIndex;
   private final InvertedIndexReader _invertedIndex;
   private final ImmutableDictionaryReader _dictionary;
+  private final DecompressedChunkCache _chunkCache;
 
   public ColumnIndexContainer(SegmentDirectory.Reader segmentReader, ColumnMetadata metadata,
       IndexLoadingConfig indexLoadingConfig) throws IOException {
     String columnName = metadata.getColumnName();
     boolean loadInvertedIndex = false;
     boolean loadOnHeapDictionary = false;
+    DecompressedChunkCache chunkCache = null;
     if (indexLoadingConfig != null) {
       loadInvertedIndex = indexLoadingConfig.getInvertedIndexColumns().contains(columnName);
       loadOnHeapDictionary = indexLoadingConfig.getOnHeapDictionaryColumns().contains(columnName);
+      chunkCache = indexLoadingConfig.getDecompressedChunkCache();
     }
-    PinotDataBuffer fwdIndexBuffer = segmentReader.getIndexFor(columnName, ColumnIndexType.FORWARD_INDEX);
+    _metadata = metadata;
+    _chunkCache = chunkCache;
+    _forwardIndexBuffer = segmentReader.getIndexFor(columnName, ColumnIndexType.FORWARD_INDEX);
+    _forwardIndexBuffer.setAccessPattern(getForwardIndexAccessPattern(metadata));
     if (metadata.hasDictionary()) {
       // Dictionary-based index
-      _dictionary = loadDictionary(segmentReader.getIndexFor(columnName, ColumnIndexType.DICTIONARY), metadata,
-          loadOnHeapDictionary);
-      if (metadata.isSingleValue()) {
-        // Single-value
-        if (metadata.isSorted()) {
-          // Sorted
-          SortedIndexReader sortedIndexReader = new SortedIndexReader(fwdIndexBuffer, metadata.getCardinality());
-          _forwardIndex = sortedIndexReader;
-          _invertedIndex = sortedIndexReader;
-          return;
-        } else {
-          // Unsorted
-          _forwardIndex =
-              new FixedBitSingleValueReader(fwdIndexBuffer, metadata.getTotalDocs(), metadata.getBitsPerElement());
-        }
-      } else {
-        // Multi-value
-        _forwardIndex =
-            new FixedBitMultiValueReader(fwdIndexBuffer, metadata.getTotalDocs(), metadata.getTotalNumberOfEntries(),
-                metadata.getBitsPerElement());
-      }
-      if (loadInvertedIndex) {
-        _invertedIndex =
-            new BitmapInvertedIndexReader(segmentReader.getIndexFor(columnName, ColumnIndexType.INVERTED_INDEX),
-                metadata.getCardinality());
+      _dictionaryBuffer = segmentReader.getIndexFor(columnName, ColumnIndexType.DICTIONARY);
+      _dictionaryBuffer.setAccessPattern(PinotDataBuffer.AccessPattern.RANDOM);
+      _dictionary = loadDictionary(_dictionaryBuffer, metadata, loadOnHeapDictionary);
+      _forwardIndex = loadForwardIndex(_forwardIndexBuffer, metadata, _chunkCache);
+      if (metadata.isSingleValue() && metadata.isSorted()) {
+        // Sorted index serves as both forward index and inverted index
+        _invertedIndex = (SortedIndexReader) _forwardIndex;
+      } else if (loadInvertedIndex) {
+        PinotDataBuffer invertedIndexBuffer = segmentReader.getIndexFor(columnName, ColumnIndexType.INVERTED_INDEX);
+        invertedIndexBuffer.setAccessPattern(PinotDataBuffer.AccessPattern.RANDOM);
+        _invertedIndex = new BitmapInvertedIndexReader(invertedIndexBuffer, metadata.getCardinality());
       } else {
         _invertedIndex = null;
       }
     } else {
       // Raw index
-      _forwardIndex = loadRawForwardIndex(fwdIndexBuffer, metadata.getDataType());
+      _dictionaryBuffer = null;
+      _forwardIndex = loadForwardIndex(_forwardIndexBuffer, metadata, _chunkCache);
       _invertedIndex = null;
       _dictionary = null;
     }
   }
 
+  private ColumnIndexContainer(ColumnMetadata metadata, PinotDataBuffer forwardIndexBuffer,
+      PinotDataBuffer dictionaryBuffer, ImmutableDictionaryReader dictionary, InvertedIndexReader invertedIndex,
+      DecompressedChunkCache chunkCache) throws IOException {
+    _metadata = metadata;
+    _forwardIndexBuffer = forwardIndexBuffer;
+    _dictionaryBuffer = dictionaryBuffer;
+    _dictionary = dictionary;
+    _chunkCache = chunkCache;
+    _forwardIndex = loadForwardIndex(forwardIndexBuffer, metadata, chunkCache);
+    if (_forwardIndex instanceof SortedIndexReader) {
+      _invertedIndex = (SortedIndexReader) _forwardIndex;
+    } else {
+      _invertedIndex = invertedIndex;
+    }
+  }
+
   public DataFileReader getForwardIndex() {
     return _forwardIndex;
   }
@@ -114,6 +128,79 @@ public final class ColumnIndexContainer {
     return _dictionary;
   }
 
+  /**
+   * Returns the number of bytes a heap copy of the forward index and dictionary of this column would take.
+   */
+  public long getHeapCopySizeBytes() {
+    long sizeBytes = _metadata.hasDictionary() ? _forwardIndexBuffer.size() : 0L;
+    if (_dictionaryBuffer != null && !(_dictionary instanceof OnHeapDictionary)) {
+      sizeBytes += _dictionaryBuffer.size();
+    }
+    return sizeBytes;
+  }
+
+  /**
+   * Returns whether {@link #copyToHeap()} would copy anything, i.e. false for raw columns whose forward index is
+   * shared with the copy.
+   */
+  public boolean hasHeapCopy() {
+    return getHeapCopySizeBytes() > 0;
+  }
+
+  /**
+   * Returns a new container with the forward index and dictionary copied to heap. The bitmap inverted index (if any)
+   * is shared with this container, and dictionaries which are already on heap are reused. Raw forward indexes are also
+   * shared, as chunk decompression requires direct buffers.
+   * <p>The returned container does not own any off-heap resource, so it does not need to be closed.
+   */
+  public ColumnIndexContainer copyToHeap() throws IOException {
+    PinotDataBuffer forwardIndexBuffer =
+        _metadata.hasDictionary() ? PinotDataBuffer.copyToHeap(_forwardIndexBuffer) : _forwardIndexBuffer;
+    PinotDataBuffer dictionaryBuffer = null;
+    ImmutableDictionaryReader dictionary = null;
+    if (_dictionaryBuffer != null) {
+      if (_dictionary instanceof OnHeapDictionary) {
+        dictionaryBuffer = _dictionaryBuffer;
+        dictionary = _dictionary;
+      } else {
+        dictionaryBuffer = PinotDataBuffer.copyToHeap(_dictionaryBuffer);
+        dictionary = loadDictionary(dictionaryBuffer, _metadata, false);
+      }
+    }
+    return new ColumnIndexContainer(_metadata, forwardIndexBuffer, dictionaryBuffer, dictionary, _invertedIndex,
+        _chunkCache);
+  }
+
+  /**
+   * Sorted forward indexes are only probed by dictionary id, all other forward indexes are mostly scanned in order.
+   */
+  private static PinotDataBuffer.AccessPattern getForwardIndexAccessPattern(ColumnMetadata metadata) {
+    if (metadata.hasDictionary() && metadata.isSingleValue() && metadata.isSorted()) {
+      return PinotDataBuffer.AccessPattern.RANDOM;
+    }
+    return PinotDataBuffer.AccessPattern.SEQUENTIAL;
+  }
+
+  private static DataFileReader loadForwardIndex(PinotDataBuffer forwardIndexBuffer, ColumnMetadata metadata,
+      DecompressedChunkCache chunkCache) throws IOException {
+    if (!metadata.hasDictionary()) {
+      return loadRawForwardIndex(forwardIndexBuffer, metadata.getDataType(), chunkCache);
+    }
+    if (metadata.isSingleValue()) {
+      // Single-value
+      if (metadata.isSorted()) {
+        return new SortedIndexReader(forwardIndexBuffer, metadata.getCardinality());
+      } else {
+        return new FixedBitSingleValueReader(forwardIndexBuffer, metadata.getTotalDocs(),
+            metadata.getBitsPerElement());
+      }
+    } else {
+      // Multi-value
+      return new FixedBitMultiValueReader(forwardIndexBuffer, metadata.getTotalDocs(),
+          metadata.getTotalNumberOfEntries(), metadata.getBitsPerElement());
+    }
+  }
+
   private static ImmutableDictionaryReader loadDictionary(PinotDataBuffer dictionaryBuffer, ColumnMetadata metadata,
       boolean loadOnHeap) throws IOException {
     FieldSpec.DataType dataType = metadata.getDataType();
@@ -157,17 +244,17 @@ public final class ColumnIndexContainer {
   }
 
   private static SingleColumnSingleValueReader loadRawForwardIndex(PinotDataBuffer forwardIndexBuffer,
-      FieldSpec.DataType dataType) throws IOException {
+      FieldSpec.DataType dataType, DecompressedChunkCache chunkCache) throws IOException {
 
     switch (dataType) {
       case INT:
       case LONG:
       case FLOAT:
       case DOUBLE:
-        return new FixedByteChunkSingleValueReader(forwardIndexBuffer);
+        return new FixedByteChunkSingleValueReader(forwardIndexBuffer, chunkCache);
       case STRING:
       case BYTES:
-        return new VarByteChunkSingleValueReader(forwardIndexBuffer);
+        return new VarByteChunkSingleValueReader(forwardIndexBuffer, chunkCache);
       default:
         throw new IllegalStateException("Illegal data type for raw forward index: " + dataType);
     }
@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.column;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.linkedin.pinot.common.metrics.ServerGauge;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server level cache which promotes the forward index and dictionary of frequently queried columns from their
+ * original (usually memory-mapped) buffers to heap, so that hot columns no longer suffer from page faults once their
+ * pages are evicted from the OS page cache.
+ * <ul>
+ *   <li>Every lookup of a column counts as one access. Lookups never block: the lookup that brings a column to the
+ *   promotion threshold schedules the copy on a background thread, and following lookups are served from the copy
+ *   once it is published. A promotion that is dropped or fails resets the access count, so the column is promoted
+ *   again once it reaches the threshold again.</li>
+ *   <li>The total size of the promoted columns across all segments is bounded by the configured memory budget. Least
+ *   recently used columns are evicted to make room for new ones, and have to reach the threshold again before being
+ *   promoted again.</li>
+ *   <li>Evicted copies are simply dropped and reclaimed by GC, so queries still holding them are not affected.</li>
+ *   <li>Invalidating a column waits for its in-flight promotion (if any), and a promotion never publishes a copy of an
+ *   invalidated column, so the original buffers can be released as soon as {@link #invalidate} returns.</li>
+ * </ul>
+ * The segments of a server share one instance, handed to each segment when it is loaded, so that they compete for the
+ * same memory budget.
+ */
+@ThreadSafe
+public class HotColumnCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HotColumnCache.class);
+
+  public static final String MAX_SIZE_BYTES_CONFIG_KEY = "maxSizeBytes";
+  public static final String PROMOTION_THRESHOLD_CONFIG_KEY = "promotionThreshold";
+  public static final long DEFAULT_MAX_SIZE_BYTES = 0L;
+  public static final int DEFAULT_PROMOTION_THRESHOLD = 100;
+
+  // Promotions are best effort, so requests are dropped when the promotion thread falls behind
+  private static final int MAX_PENDING_PROMOTIONS = 1024;
+
+  private final long _maxSizeBytes;
+  private final int _promotionThreshold;
+  private final ServerMetrics _serverMetrics;
+  private final Executor _promotionExecutor;
+
+  private final ConcurrentHashMap<ColumnIndexContainer, ColumnState> _columnStates = new ConcurrentHashMap<>();
+  // Logical clock used to find the least recently used promoted column
+  private final AtomicLong _clock = new AtomicLong();
+  private final AtomicLong _sizeBytes = new AtomicLong();
+
+  public HotColumnCache(long maxSizeBytes, int promotionThreshold, @Nullable ServerMetrics serverMetrics) {
+    this(maxSizeBytes, promotionThreshold, serverMetrics, maxSizeBytes > 0 ? createPromotionExecutor() : null);
+  }
+
+  /**
+   * Constructor with the executor to run the promotions on.
+   * <p>Promotions of different columns evict each other, so the executor should run at most one promotion at a time.
+   */
+  public HotColumnCache(long maxSizeBytes, int promotionThreshold, @Nullable ServerMetrics serverMetrics,
+      @Nullable Executor promotionExecutor) {
+    _maxSizeBytes = maxSizeBytes;
+    _promotionThreshold = promotionThreshold;
+    _serverMetrics = serverMetrics;
+    _promotionExecutor = promotionExecutor;
+  }
+
+  private static Executor createPromotionExecutor() {
+    return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_PENDING_PROMOTIONS),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hot-column-promoter-%d").build());
+  }
+
+  public boolean isEnabled() {
+    return _maxSizeBytes > 0;
+  }
+
+  /**
+   * Returns the promoted copy of the given column if it exists, or the column itself otherwise.
+   */
+  @Nonnull
+  public ColumnIndexContainer get(@Nonnull final ColumnIndexContainer indexContainer) {
+    if (!isEnabled()) {
+      return indexContainer;
+    }
+    // Nothing to promote for raw columns, as their forward indexes are shared with the promoted copy (hot raw columns
+    // are served by the decompressed chunk cache instead)
+    if (!indexContainer.hasHeapCopy()) {
+      return indexContainer;
+    }
+
+    ColumnState columnState = _columnStates.get(indexContainer);
+    if (columnState == null) {
+      columnState = new ColumnState();
+      ColumnState existing = _columnStates.putIfAbsent(indexContainer, columnState);
+      if (existing != null) {
+        columnState = existing;
+      }
+    }
+
+    ColumnIndexContainer promoted = columnState._promoted.get();
+    if (promoted != null) {
+      columnState._lastAccessTime = _clock.incrementAndGet();
+      addMeteredValue(ServerMeter.HOT_COLUMN_CACHE_HITS, 1L);
+      return promoted;
+    }
+    addMeteredValue(ServerMeter.HOT_COLUMN_CACHE_MISSES, 1L);
+
+    if (columnState._accessCount.incrementAndGet() >= _promotionThreshold
+        && columnState._promotionScheduled.compareAndSet(false, true)) {
+      final ColumnState stateToPromote = columnState;
+      try {
+        _promotionExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            if (!promote(indexContainer, stateToPromote)) {
+              stateToPromote.resetPromotion();
+            }
+            stateToPromote._promotionScheduled.set(false);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        columnState.resetPromotion();
+        columnState._promotionScheduled.set(false);
+      }
+      // Serve the copy right away if the executor already finished the promotion
+      promoted = columnState._promoted.get();
+      if (promoted != null) {
+        return promoted;
+      }
+    }
+    return indexContainer;
+  }
+
+  /**
+   * Removes all the state kept for the given column. Should be called when the segment of the column is destroyed,
+   * before releasing its buffers.
+   * <p>Blocks until the in-flight promotion of the column (if any) finishes.
+   */
+  public void invalidate(@Nonnull ColumnIndexContainer indexContainer) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    ColumnState columnState = _columnStates.remove(indexContainer);
+    if (columnState != null) {
+      synchronized (columnState) {
+        columnState._invalidated = true;
+      }
+      release(indexContainer, columnState);
+    }
+  }
+
+  /**
+   * Returns the total size in bytes of the promoted columns.
+   */
+  public long getSizeBytes() {
+    return _sizeBytes.get();
+  }
+
+  /**
+   * Copies the given column to heap and publishes the copy. Always runs on the promotion executor.
+   * <p>The copy is made while holding the lock of the column state, so that {@link #invalidate} cannot return (and the
+   * segment cannot release the buffers being copied) in the middle of it.
+   *
+   * @return Whether the column is promoted (or was already promoted, or is invalidated)
+   */
+  private boolean promote(ColumnIndexContainer indexContainer, ColumnState columnState) {
+    long columnSizeBytes = indexContainer.getHeapCopySizeBytes();
+    if (columnSizeBytes > _maxSizeBytes || columnSizeBytes >= Integer.MAX_VALUE) {
+      LOGGER.debug("Skipping promotion of column with size: {} bytes", columnSizeBytes);
+      return false;
+    }
+
+    synchronized (columnState) {
+      if (columnState._invalidated || columnState._promoted.get() != null) {
+        return true;
+      }
+
+      // Make room before allocating the copy, so that the budget is never exceeded
+      evict(_maxSizeBytes - columnSizeBytes);
+      ColumnIndexContainer promoted;
+      try {
+        promoted = indexContainer.copyToHeap();
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while promoting column to heap, skipping", e);
+        return false;
+      }
+      _sizeBytes.addAndGet(columnSizeBytes);
+      columnState._lastAccessTime = _clock.incrementAndGet();
+      columnState._promoted.set(promoted);
+    }
+    updateSizeGauge();
+    addMeteredValue(ServerMeter.HOT_COLUMN_CACHE_PROMOTIONS, 1L);
+    return true;
+  }
+
+  /**
+   * Evicts least recently used columns until the total size is no larger than the given target size.
+   * <p>Only called from the promotion executor, so no other column can be promoted concurrently.
+   */
+  private void evict(long targetSizeBytes) {
+    while (_sizeBytes.get() > targetSizeBytes) {
+      ColumnIndexContainer lruContainer = null;
+      ColumnState lruState = null;
+      for (Map.Entry<ColumnIndexContainer, ColumnState> entry : _columnStates.entrySet()) {
+        ColumnState columnState = entry.getValue();
+        if (columnState._promoted.get() != null && (lruState == null
+            || columnState._lastAccessTime < lruState._lastAccessTime)) {
+          lruContainer = entry.getKey();
+          lruState = columnState;
+        }
+      }
+      if (lruState == null) {
+        // Remaining promoted columns are being invalidated concurrently
+        return;
+      }
+      if (release(lruContainer, lruState)) {
+        lruState.resetPromotion();
+        addMeteredValue(ServerMeter.HOT_COLUMN_CACHE_EVICTIONS, 1L);
+      }
+    }
+  }
+
+  /**
+   * Drops the promoted copy of the given column if it exists, and returns whether the copy was dropped by this call.
+   */
+  private boolean release(ColumnIndexContainer indexContainer, ColumnState columnState) {
+    if (columnState._promoted.getAndSet(null) != null) {
+      _sizeBytes.addAndGet(-indexContainer.getHeapCopySizeBytes());
+      updateSizeGauge();
+      return true;
+    }
+    return false;
+  }
+
+  private void addMeteredValue(ServerMeter meter, long unitCount) {
+    if (_serverMetrics != null) {
+      _serverMetrics.addMeteredGlobalValue(meter, unitCount);
+    }
+  }
+
+  private void updateSizeGauge() {
+    if (_serverMetrics != null) {
+      _serverMetrics.setValueOfGlobalGauge(ServerGauge.HOT_COLUMN_CACHE_SIZE_BYTES, _sizeBytes.get());
+    }
+  }
+
+  /**
+   * Cache state of one column. The promoted copy and the access count are lock free, the lock only serializes the
+   * promotion with the invalidation of the column.
+   */
+  private static class ColumnState {
+    final AtomicInteger _accessCount = new AtomicInteger();
+    // Set while a promotion is scheduled or running, so that at most one is in flight
+    final AtomicBoolean _promotionScheduled = new AtomicBoolean();
+    final AtomicReference<ColumnIndexContainer> _promoted = new AtomicReference<>();
+    volatile long _lastAccessTime;
+    // Guarded by 'this'
+    boolean _invalidated;
+
+    /**
+     * Makes the column reach the threshold again before the next promotion, after it is evicted or its promotion is
+     * dropped.
+     */
+    void resetPromotion() {
+      _accessCount.set(0);
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.io.reader.BaseSingleColumnSingleValueReader;
 import com.linkedin.pinot.core.io.reader.DataFileReader;
 import com.linkedin.pinot.core.io.reader.ReaderContext;
 import com.linkedin.pinot.core.io.reader.SingleColumnMultiValueReader;
@@ -145,6 +146,13 @@ public final class ColumnDataSource extends DataSource {
     return _dictionary;
   }
 
+  @Override
+  public void prefetch(int startDocId, int endDocId) {
+    if (_forwardIndex instanceof BaseSingleColumnSingleValueReader) {
+      ((BaseSingleColumnSingleValueReader) _forwardIndex).prefetch(startDocId, endDocId);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   protected Block getNextBlock() {
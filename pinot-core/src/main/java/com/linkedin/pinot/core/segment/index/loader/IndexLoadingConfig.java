@@ -21,6 +21,8 @@ import com.linkedin.pinot.common.config.TableConfig;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.core.data.manager.config.InstanceDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
+import com.linkedin.pinot.core.segment.index.column.HotColumnCache;
 import com.linkedin.pinot.core.segment.index.loader.columnminmaxvalue.ColumnMinMaxValueGeneratorMode;
 import java.util.Collections;
 import java.util.HashMap;
@@ -52,6 +54,8 @@ public class IndexLoadingConfig {
   private boolean _enableSplitCommit;
   private boolean _isRealtimeOffheapAllocation;
   private boolean _isDirectRealtimeOffheapAllocation;
+  private HotColumnCache _hotColumnCache;
+  private DecompressedChunkCache _decompressedChunkCache;
 
   public IndexLoadingConfig(@Nonnull InstanceDataManagerConfig instanceDataManagerConfig,
       @Nonnull TableConfig tableConfig) {
@@ -226,4 +230,29 @@ public class IndexLoadingConfig {
   public int getRealtimeAvgMultiValueCount() {
     return _realtimeAvgMultiValueCount;
   }
+
+  /**
+   * Returns the cache the loaded segment promotes its hot columns to, or null if hot columns are not promoted.
+   */
+  @Nullable
+  public HotColumnCache getHotColumnCache() {
+    return _hotColumnCache;
+  }
+
+  public void setHotColumnCache(@Nullable HotColumnCache hotColumnCache) {
+    _hotColumnCache = hotColumnCache;
+  }
+
+  /**
+   * Returns the cache the raw forward indexes of the loaded segment share their decompressed chunks through, or null
+   * if decompressed chunks are not cached.
+   */
+  @Nullable
+  public DecompressedChunkCache getDecompressedChunkCache() {
+    return _decompressedChunkCache;
+  }
+
+  public void setDecompressedChunkCache(@Nullable DecompressedChunkCache decompressedChunkCache) {
+    _decompressedChunkCache = decompressedChunkCache;
+  }
 }
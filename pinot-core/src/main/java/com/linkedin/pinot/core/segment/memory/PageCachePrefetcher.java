@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.memory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Asynchronously brings ranges of segment files into the OS page cache, so that the following accesses through the
+ * memory-mapped buffers do not block on synchronous page faults.
+ *
+ * Java does not expose madvise(), so the pages are loaded by reading the file range through a file channel kept open
+ * alongside the mapping (see {@link Target}). Reading through the file (instead of touching the mapped buffer) keeps
+ * prefetching safe even if the buffer is unmapped while the request is still queued: the read simply fails.
+ *
+ * Prefetching is best effort and bounded: each request is capped at {@link #MAX_REQUEST_BYTES}, and requests are
+ * dropped while more than {@link #MAX_PENDING_BYTES} are waiting to be read.
+ */
+public class PageCachePrefetcher {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PageCachePrefetcher.class);
+
+  public static final long MAX_REQUEST_BYTES = 8 * 1024 * 1024;
+  public static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+  private static final int NUM_THREADS = 2;
+  private static final int MAX_PENDING_REQUESTS = 1024;
+  private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadPoolExecutor EXECUTOR =
+      new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(MAX_PENDING_REQUESTS),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("page-cache-prefetcher-%d").build(),
+          new ThreadPoolExecutor.DiscardPolicy());
+  private static final ThreadLocal<ByteBuffer> READ_BUFFER = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    }
+  };
+  private static final AtomicLong PENDING_BYTES = new AtomicLong();
+
+  private PageCachePrefetcher() {
+  }
+
+  /**
+   * Schedules the range [position, position + length) of the file of the given target to be loaded into the page
+   * cache. Ranges longer than {@link #MAX_REQUEST_BYTES} are truncated.
+   */
+  public static void prefetch(final Target target, final long position, long length) {
+    if (length <= 0) {
+      return;
+    }
+    final long requestLength = Math.min(length, MAX_REQUEST_BYTES);
+    if (PENDING_BYTES.addAndGet(requestLength) > MAX_PENDING_BYTES) {
+      PENDING_BYTES.addAndGet(-requestLength);
+      return;
+    }
+    try {
+      EXECUTOR.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            load(target, position, requestLength);
+          } catch (IOException e) {
+            LOGGER.debug("Caught exception while prefetching file: {}, position: {}, length: {}", target._file,
+                position, requestLength, e);
+          } finally {
+            PENDING_BYTES.addAndGet(-requestLength);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      PENDING_BYTES.addAndGet(-requestLength);
+      throw e;
+    }
+  }
+
+  private static void load(Target target, long position, long length) throws IOException {
+    FileChannel fileChannel = target.getChannel();
+    if (fileChannel == null) {
+      return;
+    }
+    ByteBuffer readBuffer = READ_BUFFER.get();
+    long end = Math.min(position + length, fileChannel.size());
+    long current = position;
+    while (current < end) {
+      readBuffer.clear();
+      readBuffer.limit((int) Math.min(READ_BUFFER_SIZE, end - current));
+      int numBytesRead = fileChannel.read(readBuffer, current);
+      if (numBytesRead <= 0) {
+        break;
+      }
+      current += numBytesRead;
+    }
+    target._numBytesPrefetched.addAndGet(Math.max(current - position, 0L));
+  }
+
+  /**
+   * File backing a memory mapped buffer, shared by the buffer and all its views and duplicates.
+   * <p>Reuses the file of the mapping if it is still open, otherwise opens the file on the first prefetch and keeps
+   * it open until {@link #close()} is called by the owner of the mapping.
+   */
+  public static final class Target {
+    private final File _file;
+    private final RandomAccessFile _mappedFile;
+    private final AtomicLong _numBytesPrefetched = new AtomicLong();
+    // Guarded by 'this'
+    private RandomAccessFile _ownedFile;
+    private boolean _closed;
+
+    public Target(File file, @Nullable RandomAccessFile mappedFile) {
+      _file = file;
+      _mappedFile = mappedFile;
+    }
+
+    /**
+     * Returns the number of bytes read for this target so far.
+     */
+    public long getNumBytesPrefetched() {
+      return _numBytesPrefetched.get();
+    }
+
+    @Nullable
+    private synchronized FileChannel getChannel() throws IOException {
+      if (_closed) {
+        return null;
+      }
+      if (_mappedFile != null) {
+        return _mappedFile.getChannel();
+      }
+      if (_ownedFile == null) {
+        _ownedFile = new RandomAccessFile(_file, "r");
+      }
+      return _ownedFile.getChannel();
+    }
+
+    /**
+     * Stops prefetching and closes the file if it was opened for prefetching. Should be called when the mapping is
+     * released.
+     */
+    public synchronized void close() {
+      _closed = true;
+      if (_ownedFile != null) {
+        try {
+          _ownedFile.close();
+        } catch (IOException e) {
+          LOGGER.warn("Caught exception while closing file: {}", _file, e);
+        }
+        _ownedFile = null;
+      }
+    }
+  }
+}
@@ -33,6 +33,9 @@ public class PinotByteBuffer extends PinotDataBuffer {
 
   private ByteBuffer buffer;
   private RandomAccessFile raf = null;
+  // Backing file and position of the buffer in the file, only set for memory mapped buffers
+  private PageCachePrefetcher.Target prefetchTarget = null;
+  private long filePosition = 0L;
 
   /**
    * Fully load the file in to the in-memory buffer
@@ -99,6 +102,9 @@ public class PinotByteBuffer extends PinotDataBuffer {
     ByteBuffer bb = MmapUtils.mmapFile(raf, openMode, start, length, file, context);
     PinotByteBuffer pbb = new PinotByteBuffer(bb, true /*owner*/);
     pbb.raf = raf;
+    // Prefetch through the file of the mapping, which stays open until the buffer is closed
+    pbb.prefetchTarget = new PageCachePrefetcher.Target(file, raf);
+    pbb.filePosition = start;
     return pbb;
   }
 
@@ -125,6 +131,22 @@ public class PinotByteBuffer extends PinotDataBuffer {
     return new PinotByteBuffer(bb, true/*owner*/);
   }
 
+  static PinotDataBuffer heapCopyOf(PinotDataBuffer buffer) {
+    long size = buffer.size();
+    Preconditions.checkArgument(size < Integer.MAX_VALUE,
+        "Copying buffers larger than 2GB to heap is not supported, size: " + size);
+
+    byte[] bytes = new byte[(int) size];
+    buffer.copyTo(0, bytes, 0, (int) size);
+    ByteBuffer bb = ByteBuffer.wrap(bytes);
+    if (buffer instanceof PinotByteBuffer) {
+      bb.order(((PinotByteBuffer) buffer).buffer.order());
+    } else if (buffer instanceof PinotUnsafeBuffer) {
+      bb.order(((PinotUnsafeBuffer) buffer).getOrder());
+    }
+    return new PinotByteBuffer(bb, false/*owner*/);
+  }
+
   // package-private
   PinotByteBuffer(ByteBuffer buffer, boolean ownership) {
     this.buffer = buffer;
@@ -282,7 +304,9 @@ public class PinotByteBuffer extends PinotDataBuffer {
     ByteBuffer bb = this.buffer.duplicate();
     bb.position((int)start);
     bb.limit((int)end);
-    return new PinotByteBuffer(bb.slice(), false);
+    PinotByteBuffer view = new PinotByteBuffer(bb.slice(), false);
+    view.inheritFrom(this, start);
+    return view;
   }
 
   @Override
@@ -364,15 +388,42 @@ public class PinotByteBuffer extends PinotDataBuffer {
   @Override
   public PinotDataBuffer duplicate() {
     PinotByteBuffer dup = new PinotByteBuffer(this.buffer.duplicate(), false);
+    dup.inheritFrom(this, 0L);
     return dup;
   }
 
+  @Override
+  public void prefetch(long start, long end) {
+    if (prefetchTarget == null) {
+      return;
+    }
+    start = Math.max(start, 0L);
+    end = Math.min(end, size());
+    if (end > start) {
+      PageCachePrefetcher.prefetch(prefetchTarget, filePosition + start, end - start);
+    }
+  }
+
+  @Override
+  long getNumBytesPrefetched() {
+    return prefetchTarget != null ? prefetchTarget.getNumBytesPrefetched() : 0L;
+  }
+
+  private void inheritFrom(PinotByteBuffer parent, long offset) {
+    accessPattern = parent.accessPattern;
+    prefetchTarget = parent.prefetchTarget;
+    filePosition = parent.filePosition + offset;
+  }
+
   @Override
   public void close() {
     if (!owner || buffer == null) {
       return;
     }
     MmapUtils.unloadByteBuffer(buffer);
+    if (prefetchTarget != null) {
+      prefetchTarget.close();
+    }
     if (raf != null) {
       try {
         raf.close();
@@ -45,8 +45,30 @@ import com.linkedin.pinot.common.segment.ReadMode;
  */
 public abstract class PinotDataBuffer implements AutoCloseable {
 
-  private static boolean USE_LBUFFER = false;
+  /**
+   * Expected access pattern of the buffer, used to decide how much data to prefetch.
+   * <ul>
+   *   <li>SEQUENTIAL: buffer is mostly scanned in order (e.g. forward indexes), readers read ahead of the scan in
+   *   bounded windows.</li>
+   *   <li>RANDOM: buffer is mostly probed at random positions (e.g. dictionaries, inverted indexes), prefetching only
+   *   loads the requested range and readers never prefetch speculatively.</li>
+   * </ul>
+   */
+  public enum AccessPattern {
+    NORMAL,
+    SEQUENTIAL,
+    RANDOM
+  }
+
+  /**
+   * Buffers of at least 2GB are always backed by {@link PinotUnsafeBuffer}. Setting this system property to true backs
+   * all the buffers with {@link PinotUnsafeBuffer}.
+   */
+  public static final String USE_UNSAFE_BUFFER_PROPERTY = "pinot.dataBuffer.useUnsafeBuffer";
+  private static final boolean USE_UNSAFE_BUFFER = Boolean.getBoolean(USE_UNSAFE_BUFFER_PROPERTY);
+
   protected boolean owner;
+  protected AccessPattern accessPattern = AccessPattern.NORMAL;
   /**
    * Fully load the file in to the in-memory buffer
    * @param file file containing index data
@@ -88,8 +110,8 @@ public abstract class PinotDataBuffer implements AutoCloseable {
   private static PinotDataBuffer mapFromFile(File file, long startPosition, long length, FileChannel.MapMode openMode,
       String context)
       throws IOException {
-    if (USE_LBUFFER) {
-      return PinotLByteBuffer.mapFromFile(file, startPosition, length, openMode, context);
+    if (useUnsafeBuffer(length)) {
+      return PinotUnsafeBuffer.mapFromFile(file, startPosition, length, openMode, context);
     } else {
       return PinotByteBuffer.mapFromFile(file, startPosition, length, openMode, context);
     }
@@ -97,8 +119,8 @@ public abstract class PinotDataBuffer implements AutoCloseable {
 
   private static PinotDataBuffer loadFromFile(File file, long startPosition, long length, String context)
       throws IOException {
-    if (USE_LBUFFER) {
-      return PinotLByteBuffer.loadFromFile(file, startPosition, length, context);
+    if (useUnsafeBuffer(length)) {
+      return PinotUnsafeBuffer.loadFromFile(file, startPosition, length, context);
     } else {
       return PinotByteBuffer.loadFromFile(file, startPosition, length, context);
     }
@@ -110,8 +132,8 @@ public abstract class PinotDataBuffer implements AutoCloseable {
   }
 
   public static PinotDataBuffer allocateDirect(long size, String description) {
-    if (USE_LBUFFER) {
-      return PinotLByteBuffer.allocateDirect(size);
+    if (useUnsafeBuffer(size)) {
+      return PinotUnsafeBuffer.allocateDirect(size);
     } else {
       if (description == null || description.length() == 0) {
         description = " no description";
@@ -120,6 +142,21 @@ public abstract class PinotDataBuffer implements AutoCloseable {
     }
   }
 
+  // Visible for testing
+  static boolean useUnsafeBuffer(long size) {
+    return USE_UNSAFE_BUFFER || size >= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Copies the content of the given buffer into a newly allocated heap buffer.
+   * The returned buffer does not own any off-heap memory, it is reclaimed by GC once no longer referenced.
+   * @param buffer buffer to copy, must be smaller than 2GB
+   * @return heap buffer containing a copy of the data
+   */
+  public static PinotDataBuffer copyToHeap(PinotDataBuffer buffer) {
+    return PinotByteBuffer.heapCopyOf(buffer);
+  }
+
   /**
    * Duplicate the buffer without transfering ownership.
    * The new buffer will share the underlying data buffer (no data copy) and it's bounds.
@@ -263,5 +300,34 @@ public abstract class PinotDataBuffer implements AutoCloseable {
 
   protected abstract long start();
 
+  public AccessPattern getAccessPattern() {
+    return accessPattern;
+  }
+
+  /**
+   * Sets the expected access pattern of this buffer. Views and duplicates created afterwards inherit the pattern.
+   * @param accessPattern expected access pattern
+   */
+  public void setAccessPattern(AccessPattern accessPattern) {
+    this.accessPattern = accessPattern;
+  }
+
+  /**
+   * Optional operation. Asynchronously loads the range [start, end) of this buffer so that following accesses do not
+   * block on page faults. Does nothing for buffers that are not memory mapped. Long ranges are truncated to
+   * {@link PageCachePrefetcher#MAX_REQUEST_BYTES}.
+   * @param start start position (inclusive)
+   * @param end end position (exclusive)
+   */
+  public void prefetch(long start, long end) {
+  }
+
+  /**
+   * Returns the number of bytes prefetched for the mapping of this buffer (shared with its views and duplicates).
+   */
+  long getNumBytesPrefetched() {
+    return 0L;
+  }
+
   public abstract void order(ByteOrder byteOrder);
 }
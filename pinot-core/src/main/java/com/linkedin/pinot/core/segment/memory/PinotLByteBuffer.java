@@ -47,7 +47,10 @@ import xerial.larray.mmap.MMapMode;
  * in order to bake the class first. Use this as an interface only. It's
  * implementation *will* change.
  *
+ * @deprecated Replaced by {@link PinotUnsafeBuffer} in the {@link PinotDataBuffer} factory methods. Kept for
+ * benchmarking.
  */
+@Deprecated
 public class PinotLByteBuffer extends PinotDataBuffer {
   private static Logger LOGGER = LoggerFactory.getLogger(PinotLByteBuffer.class);
 
@@ -0,0 +1,488 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.memory;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.segment.ReadMode;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xerial.larray.buffer.LBuffer;
+import xerial.larray.buffer.LBufferAPI;
+import xerial.larray.buffer.UnsafeUtil;
+import xerial.larray.mmap.MMapBuffer;
+import xerial.larray.mmap.MMapMode;
+
+import static xerial.larray.buffer.UnsafeUtil.unsafe;
+
+
+/**
+ * Off-heap (memory mapped or direct) buffer addressed with a single 64-bit base address.
+ *
+ * Unlike {@link PinotByteBuffer}, the buffer is not limited to 2GB, and unlike {@link PinotLByteBuffer}, accesses do
+ * not go through an extra buffer object and start position: every access is one Unsafe read or write at
+ * (base address + index). Views and duplicates only shift the base address.
+ *
+ * The default byte order is big-endian to stay compatible with the data written through {@link PinotByteBuffer}.
+ *
+ * Accesses are unchecked unless the system property <code>pinot.dataBuffer.checkBounds</code> is set to true, in which
+ * case every access is checked against the size of the buffer (for debugging).
+ */
+public class PinotUnsafeBuffer extends PinotDataBuffer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PinotUnsafeBuffer.class);
+
+  public static final String CHECK_BOUNDS_PROPERTY = "pinot.dataBuffer.checkBounds";
+  private static final boolean CHECK_BOUNDS = Boolean.getBoolean(CHECK_BOUNDS_PROPERTY);
+  // The Unsafe instance is only referenced through the static field of UnsafeUtil (as in PinotLByteBuffer), so that the
+  // internal Unsafe class is never named here and javac does not warn about it
+  private static final long BYTE_ARRAY_OFFSET = unsafe.arrayBaseOffset(byte[].class);
+  private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+  // Underlying memory, only released by the owner
+  private LBufferAPI buffer;
+  private final long address;
+  private final long size;
+  private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+  private boolean swapBytes = !NATIVE_BIG_ENDIAN;
+  // Backing file and position of the buffer in the file, only set for memory mapped buffers
+  private File file = null;
+  private PageCachePrefetcher.Target prefetchTarget = null;
+  private long filePosition = 0L;
+
+  /**
+   * Loads a portion of file in memory. This will load data from [startPosition, startPosition + length).
+   * @param file file to load
+   * @param startPosition (inclusive) start startPosition to the load the data from in the file
+   * @param length size of the data from
+   * @param readMode mmap vs heap
+   * @param openMode read vs read/write
+   * @param context context for buffer allocation. Use mainly for resource tracking
+   * @return in-memory buffer containing data
+   * @throws IOException
+   */
+  public static PinotUnsafeBuffer fromFile(File file, long startPosition, long length, ReadMode readMode,
+      FileChannel.MapMode openMode, String context)
+      throws IOException {
+    Preconditions.checkNotNull(file, "Index file can not be null");
+    if (readMode == ReadMode.heap) {
+      return loadFromFile(file, startPosition, length, context);
+    } else if (readMode == ReadMode.mmap) {
+      return mapFromFile(file, startPosition, length, openMode, context);
+    } else {
+      throw new RuntimeException("Unknown readmode: " + readMode.name());
+    }
+  }
+
+  static PinotUnsafeBuffer mapFromFile(File file, long start, long length, FileChannel.MapMode openMode,
+      String context)
+      throws IOException {
+    Preconditions.checkNotNull(file);
+    Preconditions.checkArgument(start >= 0);
+    Preconditions.checkArgument(length >= 0);
+    Preconditions.checkNotNull(context);
+
+    if (openMode == FileChannel.MapMode.READ_ONLY) {
+      if (!file.exists()) {
+        throw new IllegalArgumentException("File: " + file + " must exist to open in read-only mode");
+      }
+      if (length > (file.length() - start)) {
+        throw new IllegalArgumentException(
+            String.format("Mapping limits exceed file size, start: %d, length: %d, file size: %d", start, length,
+                file.length()));
+      }
+    }
+
+    MMapMode mmapMode = (openMode == FileChannel.MapMode.READ_ONLY) ? MMapMode.READ_ONLY : MMapMode.READ_WRITE;
+    MMapBuffer mmapBuffer = new MMapBuffer(file, start, length, mmapMode);
+    PinotUnsafeBuffer pinotUnsafeBuffer = new PinotUnsafeBuffer(mmapBuffer, true, mmapBuffer.address(), length);
+    pinotUnsafeBuffer.file = file;
+    // The mapping does not keep the file open, so the file gets opened on the first prefetch
+    pinotUnsafeBuffer.prefetchTarget = new PageCachePrefetcher.Target(file, null);
+    pinotUnsafeBuffer.filePosition = start;
+    return pinotUnsafeBuffer;
+  }
+
+  static PinotUnsafeBuffer loadFromFile(File file, long startPosition, long length, String context)
+      throws IOException {
+    Preconditions.checkNotNull(file);
+    Preconditions.checkArgument(startPosition >= 0);
+    Preconditions.checkNotNull(context);
+    Preconditions.checkState(file.exists(), "File: {} does not exist", file);
+    Preconditions.checkState(file.isFile(), "File: {} is not a regular file", file);
+
+    PinotUnsafeBuffer buffer = allocateDirect(length);
+    buffer.readFrom(file, startPosition, length);
+    return buffer;
+  }
+
+  public static PinotUnsafeBuffer allocateDirect(long size) {
+    Preconditions.checkArgument(size >= 0, "bad value for size " + size);
+    LBuffer lBuffer = new LBuffer(size);
+    return new PinotUnsafeBuffer(lBuffer, true, lBuffer.address(), size);
+  }
+
+  private PinotUnsafeBuffer(LBufferAPI buffer, boolean owner, long address, long size) {
+    this.buffer = buffer;
+    this.owner = owner;
+    this.address = address;
+    this.size = size;
+  }
+
+  private static void checkIndex(long index, int numBytes, long size) {
+    if (index < 0 || index + numBytes > size) {
+      throw new IndexOutOfBoundsException(
+          String.format("Index: %d, number of bytes: %d, buffer size: %d", index, numBytes, size));
+    }
+  }
+
+  @Override
+  public byte getByte(long index) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 1, size);
+    }
+    return unsafe.getByte(address + index);
+  }
+
+  @Override
+  public byte getByte(int index) {
+    return getByte((long) index);
+  }
+
+  @Override
+  public void putByte(long index, byte val) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 1, size);
+    }
+    unsafe.putByte(address + index, val);
+  }
+
+  @Override
+  public void putByte(int index, byte value) {
+    putByte((long) index, value);
+  }
+
+  @Override
+  public char getChar(long index) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 2, size);
+    }
+    char value = unsafe.getChar(address + index);
+    return swapBytes ? Character.reverseBytes(value) : value;
+  }
+
+  @Override
+  public char getChar(int index) {
+    return getChar((long) index);
+  }
+
+  @Override
+  public void putChar(long index, char c) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 2, size);
+    }
+    unsafe.putChar(address + index, swapBytes ? Character.reverseBytes(c) : c);
+  }
+
+  @Override
+  public void putChar(int index, char value) {
+    putChar((long) index, value);
+  }
+
+  @Override
+  public short getShort(long index) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 2, size);
+    }
+    short value = unsafe.getShort(address + index);
+    return swapBytes ? Short.reverseBytes(value) : value;
+  }
+
+  @Override
+  public short getShort(int index) {
+    return getShort((long) index);
+  }
+
+  @Override
+  public void putShort(long index, short value) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 2, size);
+    }
+    unsafe.putShort(address + index, swapBytes ? Short.reverseBytes(value) : value);
+  }
+
+  @Override
+  public void putShort(int index, short value) {
+    putShort((long) index, value);
+  }
+
+  @Override
+  public int getInt(long index) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 4, size);
+    }
+    int value = unsafe.getInt(address + index);
+    return swapBytes ? Integer.reverseBytes(value) : value;
+  }
+
+  @Override
+  public int getInt(int index) {
+    return getInt((long) index);
+  }
+
+  @Override
+  public void putInt(long index, int value) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 4, size);
+    }
+    unsafe.putInt(address + index, swapBytes ? Integer.reverseBytes(value) : value);
+  }
+
+  @Override
+  public void putInt(int index, int value) {
+    putInt((long) index, value);
+  }
+
+  @Override
+  public long getLong(long index) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 8, size);
+    }
+    long value = unsafe.getLong(address + index);
+    return swapBytes ? Long.reverseBytes(value) : value;
+  }
+
+  @Override
+  public long getLong(int index) {
+    return getLong((long) index);
+  }
+
+  @Override
+  public void putLong(long index, long l1) {
+    if (CHECK_BOUNDS) {
+      checkIndex(index, 8, size);
+    }
+    unsafe.putLong(address + index, swapBytes ? Long.reverseBytes(l1) : l1);
+  }
+
+  @Override
+  public void putLong(int index, long value) {
+    putLong((long) index, value);
+  }
+
+  @Override
+  public float getFloat(long index) {
+    return Float.intBitsToFloat(getInt(index));
+  }
+
+  @Override
+  public float getFloat(int index) {
+    return Float.intBitsToFloat(getInt((long) index));
+  }
+
+  @Override
+  public void putFloat(long index, float v) {
+    putInt(index, Float.floatToRawIntBits(v));
+  }
+
+  @Override
+  public void putFloat(int index, float value) {
+    putInt((long) index, Float.floatToRawIntBits(value));
+  }
+
+  @Override
+  public double getDouble(long l) {
+    return Double.longBitsToDouble(getLong(l));
+  }
+
+  @Override
+  public double getDouble(int index) {
+    return Double.longBitsToDouble(getLong((long) index));
+  }
+
+  @Override
+  public void putDouble(long index, double value) {
+    putLong(index, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public void putDouble(int index, double value) {
+    putLong((long) index, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public PinotDataBuffer view(long start, long end) {
+    Preconditions.checkArgument(start >= 0 && start <= size,
+        "View start position is not valid, start: %s, end: %s, buffer size: %s", start, end, size);
+    Preconditions.checkArgument(end >= start && end <= size,
+        "View end position is not valid, start: %s, end: %s, buffer size: %s", start, end, size);
+
+    PinotUnsafeBuffer view = new PinotUnsafeBuffer(buffer, false, address + start, end - start);
+    view.inheritFrom(this, start);
+    return view;
+  }
+
+  @Override
+  public PinotDataBuffer duplicate() {
+    PinotUnsafeBuffer duplicate = new PinotUnsafeBuffer(buffer, false, address, size);
+    duplicate.inheritFrom(this, 0L);
+    return duplicate;
+  }
+
+  private void inheritFrom(PinotUnsafeBuffer parent, long offset) {
+    order(parent.byteOrder);
+    accessPattern = parent.accessPattern;
+    file = parent.file;
+    prefetchTarget = parent.prefetchTarget;
+    filePosition = parent.filePosition + offset;
+  }
+
+  @Override
+  public void copyTo(long srcOffset, byte[] destArray, int destOffset, int size) {
+    if (CHECK_BOUNDS) {
+      checkIndex(srcOffset, size, this.size);
+      checkIndex(destOffset, size, destArray.length);
+    }
+    unsafe.copyMemory(null, address + srcOffset, destArray, BYTE_ARRAY_OFFSET + destOffset, size);
+  }
+
+  @Override
+  public int readFrom(byte[] src, long destOffset) {
+    return readFrom(src, 0, destOffset, src.length);
+  }
+
+  @Override
+  public int readFrom(byte[] src, int srcOffset, long destOffset, int length) {
+    if (CHECK_BOUNDS) {
+      checkIndex(srcOffset, length, src.length);
+      checkIndex(destOffset, length, size);
+    }
+    unsafe.copyMemory(src, BYTE_ARRAY_OFFSET + srcOffset, null, address + destOffset, length);
+    return length;
+  }
+
+  @Override
+  public int readFrom(ByteBuffer sourceBuffer, int srcOffset, long destOffset, int length) {
+    ByteBuffer srcDup = sourceBuffer.duplicate();
+    srcDup.position(srcOffset);
+    srcDup.limit(srcOffset + length);
+    toDirectByteBuffer(destOffset, length).put(srcDup);
+    return length;
+  }
+
+  @Override
+  public void readFrom(File dataFile)
+      throws IOException {
+    readFrom(dataFile, 0, dataFile.length());
+  }
+
+  @Override
+  protected void readFrom(File file, long startPosition, long length)
+      throws IOException {
+    Preconditions.checkArgument(length <= size, "Cannot read %s bytes from file: %s into buffer of size: %s", length,
+        file, size);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel fileChannel = raf.getChannel();
+      long bufferPosition = 0;
+      while (bufferPosition < length) {
+        int readSize = (int) Math.min(Integer.MAX_VALUE, length - bufferPosition);
+        ByteBuffer dest = toDirectByteBuffer(bufferPosition, readSize);
+        while (dest.hasRemaining()) {
+          int numBytesRead = fileChannel.read(dest, startPosition + bufferPosition + dest.position());
+          if (numBytesRead < 0) {
+            throw new IOException(
+                "Reached end of file: " + file + " before reading " + length + " bytes from " + startPosition);
+          }
+        }
+        bufferPosition += readSize;
+      }
+    }
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public long address() {
+    return address;
+  }
+
+  @Override
+  public ByteBuffer toDirectByteBuffer(long bufferOffset, int size) {
+    if (CHECK_BOUNDS) {
+      checkIndex(bufferOffset, size, this.size);
+    }
+    return UnsafeUtil.newDirectByteBuffer(address + bufferOffset, size);
+  }
+
+  @Override
+  protected long start() {
+    return 0L;
+  }
+
+  @Override
+  public void order(ByteOrder byteOrder) {
+    this.byteOrder = byteOrder;
+    swapBytes = (byteOrder == ByteOrder.BIG_ENDIAN) != NATIVE_BIG_ENDIAN;
+  }
+
+  ByteOrder getOrder() {
+    return byteOrder;
+  }
+
+  @Override
+  public void prefetch(long start, long end) {
+    if (prefetchTarget == null) {
+      return;
+    }
+    start = Math.max(start, 0L);
+    end = Math.min(end, size);
+    if (end > start) {
+      PageCachePrefetcher.prefetch(prefetchTarget, filePosition + start, end - start);
+    }
+  }
+
+  @Override
+  long getNumBytesPrefetched() {
+    return prefetchTarget != null ? prefetchTarget.getNumBytesPrefetched() : 0L;
+  }
+
+  @Override
+  public void close() {
+    if (!owner || buffer == null) {
+      return;
+    }
+    if (prefetchTarget != null) {
+      prefetchTarget.close();
+    }
+    try {
+      if (buffer instanceof MMapBuffer) {
+        ((MMapBuffer) buffer).close();
+      } else {
+        buffer.release();
+      }
+    } catch (IOException e) {
+      LOGGER.error("Failed to release buffer of file: {}. Continuing with errors", file, e);
+    }
+    buffer = null;
+  }
+}
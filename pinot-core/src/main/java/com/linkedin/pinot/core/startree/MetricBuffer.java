@@ -17,8 +17,14 @@ package com.linkedin.pinot.core.startree;
 
 import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
 import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.clearspring.analytics.stream.quantile.TDigest;
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
+import com.linkedin.pinot.common.utils.primitive.ByteArray;
+import com.linkedin.pinot.core.query.aggregation.function.customobject.ThetaSketch;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.startree.hll.HllUtil;
 import com.linkedin.pinot.startree.hll.HllSizeUtils;
 import java.io.IOException;
@@ -29,11 +35,13 @@ import java.util.List;
 /**
  * fromBytes and toBytes methods are used only in {@link OffHeapStarTreeBuilder}, as read and write to temp files.
  * Thus no serialization of hll type to string is necessary at these steps.
+ * <p>Sketch metrics (TDigest, theta sketch) have variable serialized size, so they are stored as the serialized size
+ * followed by the serialized bytes, padded to the field size of the metric.
  */
 public class MetricBuffer {
 
   /**
-   * stored as number or hyperLogLog, but serialized out as number or string
+   * stored as number or sketch (hyperLogLog, TDigest, theta sketch), but serialized out as number, string or bytes
    */
   private final Object[] values;
   private final List<MetricFieldSpec> metricFieldSpecs;
@@ -51,6 +59,12 @@ public class MetricBuffer {
         // deep copy of hll field
         this.values[i] = HllUtil.clone((HyperLogLog)copyValue,
             HllSizeUtils.getLog2mFromHllFieldSize(copy.metricFieldSpecs.get(i).getFieldSize()));
+      } else if (copyValue instanceof TDigest) {
+        // deep copy of TDigest field
+        this.values[i] = TDigest.fromBytes(ByteBuffer.wrap(serializeTDigest((TDigest) copyValue)));
+      } else if (copyValue instanceof ThetaSketch) {
+        // deep copy of theta sketch field
+        this.values[i] = ThetaSketch.fromBytes(((ThetaSketch) copyValue).toBytes());
       } else if (copyValue instanceof Number) {
         // number field is immutable
         this.values[i] = copyValue;
@@ -61,16 +75,81 @@ public class MetricBuffer {
     this.metricFieldSpecs = copy.metricFieldSpecs;
   }
 
+  /**
+   * Returns the number of bytes used by the given metric in the temp files.
+   */
+  public static int getMetricSize(MetricFieldSpec metric) {
+    DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+    if (derivedMetricType == DerivedMetricType.TDIGEST || derivedMetricType == DerivedMetricType.THETA_SKETCH) {
+      Preconditions.checkState(metric.getFieldSize() > 0,
+          "Field size must be set for sketch metric: " + metric.getName());
+      return V1Constants.Numbers.INTEGER_SIZE + metric.getFieldSize();
+    }
+    if (derivedMetricType == null && metric.getDataType() == FieldSpec.DataType.BYTES) {
+      throw new IllegalStateException(
+          "BYTES metric: " + metric.getName() + " must have derived metric type to be aggregated in star tree");
+    }
+    return metric.getFieldSize();
+  }
+
+  /**
+   * Converts the value of a metric from the input row to the value stored in the metric buffer.
+   * <p>Sketch metrics are converted from the serialized format (string for STRING hll, {@link ByteArray} otherwise) to
+   * sketch.
+   */
+  public static Object convertFromRowValue(MetricFieldSpec metric, Object value) {
+    DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+    if (derivedMetricType == null) {
+      // No conversion for standard data types
+      return value;
+    }
+    switch (derivedMetricType) {
+      case HLL:
+        if (metric.getDataType() == FieldSpec.DataType.STRING) {
+          return HllUtil.convertStringToHll((String) value);
+        } else {
+          return HllUtil.buildHllFromBytes(getBytes(value));
+        }
+      case TDIGEST:
+        return TDigest.fromBytes(ByteBuffer.wrap(getBytes(value)));
+      case THETA_SKETCH:
+        return ThetaSketch.fromBytes(getBytes(value));
+      default:
+        throw new IllegalArgumentException("Unsupported derived metric type " + derivedMetricType);
+    }
+  }
+
+  private static byte[] getBytes(Object value) {
+    if (value instanceof ByteArray) {
+      return ((ByteArray) value).getBytes();
+    } else {
+      return (byte[]) value;
+    }
+  }
+
   public static MetricBuffer fromBytes(byte[] bytes, List<MetricFieldSpec> metricFieldSpecs) {
     ByteBuffer buffer = ByteBuffer.wrap(bytes);
     Object[] values = new Object[metricFieldSpecs.size()];
 
     for (int i = 0; i < metricFieldSpecs.size(); i++) {
       MetricFieldSpec metric = metricFieldSpecs.get(i);
-      if (metric.getDerivedMetricType() == DerivedMetricType.HLL) {
+      DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+      if (derivedMetricType == DerivedMetricType.HLL) {
         byte[] hllBytes = new byte[metric.getFieldSize()]; // TODO: buffer reuse
         buffer.get(hllBytes);
         values[i] = HllUtil.buildHllFromBytes(hllBytes);
+      } else if (derivedMetricType == DerivedMetricType.TDIGEST
+          || derivedMetricType == DerivedMetricType.THETA_SKETCH) {
+        int start = buffer.position();
+        int length = buffer.getInt();
+        ByteBuffer sketchBuffer = buffer.slice();
+        sketchBuffer.limit(length);
+        if (derivedMetricType == DerivedMetricType.TDIGEST) {
+          values[i] = TDigest.fromBytes(sketchBuffer);
+        } else {
+          values[i] = ThetaSketch.fromByteBuffer(sketchBuffer);
+        }
+        buffer.position(start + getMetricSize(metric));
       } else {
         switch (metric.getDataType()) {
           case INT:
@@ -99,8 +178,21 @@ public class MetricBuffer {
 
     for (int i = 0; i < metricFieldSpecs.size(); i++) {
       MetricFieldSpec metric = metricFieldSpecs.get(i);
-      if (metric.getDerivedMetricType() == DerivedMetricType.HLL) {
+      DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+      if (derivedMetricType == DerivedMetricType.HLL) {
         buffer.put(((HyperLogLog)values[i]).getBytes());
+      } else if (derivedMetricType == DerivedMetricType.TDIGEST
+          || derivedMetricType == DerivedMetricType.THETA_SKETCH) {
+        byte[] sketchBytes = serializeSketch(derivedMetricType, values[i]);
+        if (sketchBytes.length > metric.getFieldSize()) {
+          throw new IllegalStateException(
+              "Serialized size: " + sketchBytes.length + " of sketch metric: " + metric.getName()
+                  + " exceeds field size: " + metric.getFieldSize());
+        }
+        int start = buffer.position();
+        buffer.putInt(sketchBytes.length);
+        buffer.put(sketchBytes);
+        buffer.position(start + getMetricSize(metric));
       } else {
         switch (metric.getDataType()) {
           case INT:
@@ -126,12 +218,17 @@ public class MetricBuffer {
   public void aggregate(MetricBuffer metrics) {
     for (int i = 0; i < metricFieldSpecs.size(); i++) {
       MetricFieldSpec metric = metricFieldSpecs.get(i);
-      if (metric.getDerivedMetricType() == DerivedMetricType.HLL) {
+      DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+      if (derivedMetricType == DerivedMetricType.HLL) {
         try {
           ((HyperLogLog) values[i]).addAll((HyperLogLog) metrics.values[i]);
         } catch (CardinalityMergeException e) {
           throw new RuntimeException(e);
         }
+      } else if (derivedMetricType == DerivedMetricType.TDIGEST) {
+        ((TDigest) values[i]).add((TDigest) metrics.values[i]);
+      } else if (derivedMetricType == DerivedMetricType.THETA_SKETCH) {
+        ((ThetaSketch) values[i]).merge((ThetaSketch) metrics.values[i]);
       } else {
         switch (metric.getDataType()) {
           case INT:
@@ -159,15 +256,42 @@ public class MetricBuffer {
    * @return
    */
   public Object getValueConformToDataType(int index) {
-    if (metricFieldSpecs.get(index).getDerivedMetricType() == DerivedMetricType.HLL) {
-      return HllUtil.convertHllToString((HyperLogLog) values[index]);
+    MetricFieldSpec metric = metricFieldSpecs.get(index);
+    DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+    if (derivedMetricType == DerivedMetricType.HLL) {
+      if (metric.getDataType() == FieldSpec.DataType.STRING) {
+        return HllUtil.convertHllToString((HyperLogLog) values[index]);
+      } else {
+        try {
+          return new ByteArray(((HyperLogLog) values[index]).getBytes());
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    } else if (derivedMetricType == DerivedMetricType.TDIGEST
+        || derivedMetricType == DerivedMetricType.THETA_SKETCH) {
+      return new ByteArray(serializeSketch(derivedMetricType, values[index]));
     } else {
       return values[index];
     }
   }
 
+  private static byte[] serializeSketch(DerivedMetricType derivedMetricType, Object sketch) {
+    if (derivedMetricType == DerivedMetricType.TDIGEST) {
+      return serializeTDigest((TDigest) sketch);
+    } else {
+      return ((ThetaSketch) sketch).toBytes();
+    }
+  }
+
+  private static byte[] serializeTDigest(TDigest tDigest) {
+    ByteBuffer byteBuffer = ByteBuffer.allocate(tDigest.byteSize());
+    tDigest.asBytes(byteBuffer);
+    return byteBuffer.array();
+  }
+
   @Override
   public String toString() {
     return Arrays.toString(values);
   }
-}
\ No newline at end of file
+}
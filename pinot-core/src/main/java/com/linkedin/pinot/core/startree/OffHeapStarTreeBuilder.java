@@ -25,7 +25,6 @@ import com.linkedin.pinot.common.utils.Pairs.IntPair;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
-import com.linkedin.pinot.core.startree.hll.HllUtil;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
@@ -220,7 +219,7 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
     for (MetricFieldSpec metricFieldSpec : _schema.getMetricFieldSpecs()) {
       _numMetrics++;
       _metricNames.add(metricFieldSpec.getName());
-      _metricSize += metricFieldSpec.getFieldSize();
+      _metricSize += MetricBuffer.getMetricSize(metricFieldSpec);
     }
 
     LOGGER.info("Dimension Names: {}", _dimensionNames);
@@ -264,14 +263,8 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
     List<MetricFieldSpec> metricFieldSpecs = _schema.getMetricFieldSpecs();
     for (int i = 0; i < _numMetrics; i++) {
       String metricName = _metricNames.get(i);
-      Object metricValue = row.getValue(metricName);
-      if (metricFieldSpecs.get(i).getDerivedMetricType() == MetricFieldSpec.DerivedMetricType.HLL) {
-        // Convert HLL field from string format to HyperLogLog
-        metricValues[i] = HllUtil.convertStringToHll((String) metricValue);
-      } else {
-        // No conversion for standard data types
-        metricValues[i] = metricValue;
-      }
+      // Convert derived fields (e.g. HLL, TDigest) from serialized format to sketch
+      metricValues[i] = MetricBuffer.convertFromRowValue(metricFieldSpecs.get(i), row.getValue(metricName));
     }
     MetricBuffer metrics = new MetricBuffer(metricValues, metricFieldSpecs);
 
@@ -89,6 +89,23 @@ public class HllUtil {
     return convertHllToString(hll);
   }
 
+  /**
+   * Generate a hll from a single value, and serialize it to bytes.
+   * It is used for default derived field value stored as BYTES.
+   * @param log2m
+   * @param value
+   * @return
+   */
+  public static byte[] singleValueHllAsBytes(int log2m, Object value) {
+    HyperLogLog hll = new HyperLogLog(log2m);
+    hll.offer(value);
+    try {
+      return hll.getBytes();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public static HyperLogLog buildHllFromBytes(byte[] bytes) {
     try {
       return HyperLogLog.Builder.build(bytes);
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.util.trace;
+
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.core.query.exception.QueryCancelledException;
+import com.linkedin.pinot.core.query.scheduler.resources.ThreadResourceUsage;
+import javax.annotation.Nullable;
+
+
+/**
+ * Keeps track of the query processed by the current thread, so that the operators can stop processing a cancelled
+ * query.
+ * <p>
+ * The query runner thread should register the query by calling {@link #register(ServerQueryRequest)}, and un-register
+ * it by calling {@link #unregister()} once done. The {@link TraceRunnable} and {@link TraceCallable} jobs created while
+ * processing the query are registered to the same query in the threads executing them.
+ * <p>
+ * Operators call {@link #checkCancelled()} at block boundaries, which throws a {@link QueryCancelledException} once the
+ * query has been cancelled.
+ * <p>
+ * For queries with memory tracking enabled, the bytes allocated by each thread since it last accounted for the query are
+ * also added to the query when registering/un-registering the thread and at block boundaries. This cancels the query
+ * once it exceeds its memory limit.
+ */
+public final class CancellationContext {
+  private CancellationContext() {
+  }
+
+  private static final ThreadLocal<ServerQueryRequest> QUERY_REQUEST_THREAD_LOCAL = new ThreadLocal<>();
+  // Allocated bytes of the thread when it last accounted for its query
+  private static final ThreadLocal<long[]> ALLOCATED_BYTES_SAMPLE_THREAD_LOCAL = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
+  /**
+   * Register the query processed by the current thread.
+   */
+  public static void register(ServerQueryRequest queryRequest) {
+    QUERY_REQUEST_THREAD_LOCAL.set(queryRequest);
+    resetAllocatedBytesSample(queryRequest);
+  }
+
+  /**
+   * Un-register the query processed by the current thread.
+   */
+  public static void unregister() {
+    accountAllocatedBytes(QUERY_REQUEST_THREAD_LOCAL.get());
+    QUERY_REQUEST_THREAD_LOCAL.remove();
+  }
+
+  /**
+   * Cancel the query processed by the current thread, e.g. once it timed out, so that the jobs still processing it in
+   * other threads stop as well.
+   */
+  public static void cancel() {
+    ServerQueryRequest queryRequest = QUERY_REQUEST_THREAD_LOCAL.get();
+    if (queryRequest != null) {
+      queryRequest.cancel();
+    }
+  }
+
+  /**
+   * Throw a {@link QueryCancelledException} if the query processed by the current thread has been cancelled, or
+   * exceeds its memory limit.
+   */
+  public static void checkCancelled() {
+    ServerQueryRequest queryRequest = QUERY_REQUEST_THREAD_LOCAL.get();
+    if (queryRequest == null) {
+      return;
+    }
+    accountAllocatedBytes(queryRequest);
+    if (queryRequest.isCancelled()) {
+      long requestId = queryRequest.getInstanceRequest().getRequestId();
+      if (queryRequest.isMemoryLimitExceeded()) {
+        throw new QueryCancelledException(
+            "Query with request id: " + requestId + " allocated " + queryRequest.getAllocatedBytes()
+                + " bytes, exceeding the limit of " + queryRequest.getMaxAllocatedBytes() + " bytes");
+      }
+      throw new QueryCancelledException("Query with request id: " + requestId + " has been cancelled");
+    }
+  }
+
+  /**
+   * Get the query processed by the current thread.
+   */
+  @Nullable
+  static ServerQueryRequest getQueryRequest() {
+    return QUERY_REQUEST_THREAD_LOCAL.get();
+  }
+
+  /**
+   * Register the query processed by the current thread, returns the query previously registered to restore once done.
+   */
+  @Nullable
+  static ServerQueryRequest registerThreadToQuery(@Nullable ServerQueryRequest queryRequest) {
+    ServerQueryRequest previousQueryRequest = QUERY_REQUEST_THREAD_LOCAL.get();
+    accountAllocatedBytes(previousQueryRequest);
+    QUERY_REQUEST_THREAD_LOCAL.set(queryRequest);
+    resetAllocatedBytesSample(queryRequest);
+    return previousQueryRequest;
+  }
+
+  /**
+   * Add the bytes allocated by the current thread since the last sample to the query.
+   */
+  private static void accountAllocatedBytes(@Nullable ServerQueryRequest queryRequest) {
+    if (queryRequest != null && queryRequest.isMemoryTracked()) {
+      long[] sample = ALLOCATED_BYTES_SAMPLE_THREAD_LOCAL.get();
+      long allocatedBytes = ThreadResourceUsage.getCurrentThreadAllocatedBytes();
+      queryRequest.addAllocatedBytes(allocatedBytes - sample[0]);
+      sample[0] = allocatedBytes;
+    }
+  }
+
+  private static void resetAllocatedBytesSample(@Nullable ServerQueryRequest queryRequest) {
+    if (queryRequest != null && queryRequest.isMemoryTracked()) {
+      ALLOCATED_BYTES_SAMPLE_THREAD_LOCAL.get()[0] = ThreadResourceUsage.getCurrentThreadAllocatedBytes();
+    }
+  }
+}
@@ -15,20 +15,24 @@
  */
 package com.linkedin.pinot.core.util.trace;
 
+import com.linkedin.pinot.common.query.ServerQueryRequest;
 import java.util.concurrent.Callable;
 
 
 /**
- * Wrapper class for {@link Callable} to automatically register/un-register itself to/from a request.
+ * Wrapper class for {@link Callable} to automatically register/un-register itself to/from a request, for
+ * both tracing and cancellation.
  */
 public abstract class TraceCallable<V> implements Callable<V> {
   private final TraceContext.TraceEntry _parentTraceEntry;
+  private final ServerQueryRequest _queryRequest;
 
   /**
    * If trace is not enabled, parent trace entry will be null.
    */
   public TraceCallable() {
     _parentTraceEntry = TraceContext.getTraceEntry();
+    _queryRequest = CancellationContext.getQueryRequest();
   }
 
   @Override
@@ -36,9 +40,11 @@ public abstract class TraceCallable<V> implements Callable<V> {
     if (_parentTraceEntry != null) {
       TraceContext.registerThreadToRequest(_parentTraceEntry);
     }
+    ServerQueryRequest previousQueryRequest = CancellationContext.registerThreadToQuery(_queryRequest);
     try {
       return callJob();
     } finally {
+      CancellationContext.registerThreadToQuery(previousQueryRequest);
       if (_parentTraceEntry != null) {
         TraceContext.unregisterThreadFromRequest();
       }
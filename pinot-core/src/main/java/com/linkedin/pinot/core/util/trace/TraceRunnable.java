@@ -15,17 +15,23 @@
  */
 package com.linkedin.pinot.core.util.trace;
 
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+
+
 /**
- * Wrapper class for {@link Runnable} to automatically register/un-register itself to/from a request.
+ * Wrapper class for {@link Runnable} to automatically register/un-register itself to/from a request, for
+ * both tracing and cancellation.
  */
 public abstract class TraceRunnable implements Runnable {
   private final TraceContext.TraceEntry _parentTraceEntry;
+  private final ServerQueryRequest _queryRequest;
 
   /**
    * If trace is not enabled, parent trace entry will be null.
    */
   public TraceRunnable() {
     _parentTraceEntry = TraceContext.getTraceEntry();
+    _queryRequest = CancellationContext.getQueryRequest();
   }
 
   @Override
@@ -33,9 +39,11 @@ public abstract class TraceRunnable implements Runnable {
     if (_parentTraceEntry != null) {
       TraceContext.registerThreadToRequest(_parentTraceEntry);
     }
+    ServerQueryRequest previousQueryRequest = CancellationContext.registerThreadToQuery(_queryRequest);
     try {
       runJob();
     } finally {
+      CancellationContext.registerThreadToQuery(previousQueryRequest);
       if (_parentTraceEntry != null) {
         TraceContext.unregisterThreadFromRequest();
       }
@@ -19,8 +19,12 @@ import com.clearspring.analytics.stream.quantile.TDigest;
 import com.linkedin.pinot.core.query.aggregation.function.PercentileTDigestAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.customobject.AvgPair;
 import com.linkedin.pinot.core.query.aggregation.function.customobject.MinMaxRangePair;
+import com.linkedin.pinot.core.query.aggregation.function.customobject.ThetaSketch;
+import it.unimi.dsi.fastutil.doubles.Double2LongOpenHashMap;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
@@ -168,6 +172,48 @@ public class ObjectCustomSerDeTest {
     }
   }
 
+  /**
+   * Test for ser/de of {@link LongOpenHashSet}.
+   */
+  @Test
+  public void testLongOpenHashSet()
+      throws IOException {
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      int size = RANDOM.nextInt(100);
+      LongOpenHashSet expected = new LongOpenHashSet(size);
+      for (int j = 0; j < size; j++) {
+        expected.add(RANDOM.nextLong());
+      }
+
+      byte[] bytes = ObjectCustomSerDe.serialize(expected);
+      LongOpenHashSet actual = ObjectCustomSerDe.deserialize(bytes, ObjectType.LongOpenHashSet);
+
+      // Use Object comparison instead of Collection comparison because order might change.
+      Assert.assertEquals((Object) actual, expected, ERROR_MESSAGE);
+    }
+  }
+
+  /**
+   * Test for ser/de of {@link ObjectOpenHashSet} of {@link String}.
+   */
+  @Test
+  public void testStringObjectOpenHashSet()
+      throws IOException {
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      int size = RANDOM.nextInt(100);
+      ObjectOpenHashSet<String> expected = new ObjectOpenHashSet<>(size);
+      for (int j = 0; j < size; j++) {
+        expected.add(RandomStringUtils.random(RANDOM.nextInt(20), true, true));
+      }
+
+      byte[] bytes = ObjectCustomSerDe.serialize(expected);
+      ObjectOpenHashSet<String> actual = ObjectCustomSerDe.deserialize(bytes, ObjectType.ObjectOpenHashSet);
+
+      // Use Object comparison instead of Collection comparison because order might change.
+      Assert.assertEquals((Object) actual, expected, ERROR_MESSAGE);
+    }
+  }
+
   @Test
   public void testTDigest()
       throws IOException {
@@ -190,4 +236,60 @@ public class ObjectCustomSerDeTest {
       }
     }
   }
+
+  /**
+   * Test for ser/de of {@link Double2LongOpenHashMap}.
+   */
+  @Test
+  public void testDouble2LongOpenHashMap()
+      throws IOException {
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      int size = RANDOM.nextInt(100);
+      Double2LongOpenHashMap expected = new Double2LongOpenHashMap(size);
+      for (int j = 0; j < size; j++) {
+        expected.put(RANDOM.nextDouble(), RANDOM.nextLong());
+      }
+
+      byte[] bytes = ObjectCustomSerDe.serialize(expected);
+      Double2LongOpenHashMap actual = ObjectCustomSerDe.deserialize(bytes, ObjectType.Double2LongOpenHashMap);
+
+      Assert.assertEquals(actual, expected, ERROR_MESSAGE);
+    }
+  }
+
+  /**
+   * Test for ser/de of {@link ThetaSketch} and array of {@link ThetaSketch}.
+   */
+  @Test
+  public void testThetaSketch()
+      throws IOException {
+    for (int i = 0; i < NUM_ITERATIONS; i++) {
+      int length = RANDOM.nextInt(5) + 1;
+      ThetaSketch[] expected = new ThetaSketch[length];
+      for (int j = 0; j < length; j++) {
+        expected[j] = new ThetaSketch(1024);
+        int size = RANDOM.nextInt(5000);
+        for (int k = 0; k < size; k++) {
+          expected[j].update(RANDOM.nextLong());
+        }
+      }
+
+      ThetaSketch actual = ObjectCustomSerDe.deserialize(ObjectCustomSerDe.serialize(expected[0]),
+          ObjectCustomSerDe.getObjectType(expected[0]));
+      assertThetaSketchEquals(actual, expected[0]);
+
+      ThetaSketch[] actualArray =
+          ObjectCustomSerDe.deserialize(ObjectCustomSerDe.serialize(expected), ObjectType.ThetaSketchArray);
+      Assert.assertEquals(actualArray.length, length, ERROR_MESSAGE);
+      for (int j = 0; j < length; j++) {
+        assertThetaSketchEquals(actualArray[j], expected[j]);
+      }
+    }
+  }
+
+  private static void assertThetaSketchEquals(ThetaSketch actual, ThetaSketch expected) {
+    Assert.assertEquals(actual.getTheta(), expected.getTheta(), ERROR_MESSAGE);
+    Assert.assertEquals(actual.getNumRetainedEntries(), expected.getNumRetainedEntries(), ERROR_MESSAGE);
+    Assert.assertEquals(actual.getEstimate(), expected.getEstimate(), ERROR_MESSAGE);
+  }
 }
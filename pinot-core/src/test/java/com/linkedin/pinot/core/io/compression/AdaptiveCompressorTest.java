@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.io.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class AdaptiveCompressorTest {
+  private static final int CHUNK_SIZE = 100_000;
+  private static final Random RANDOM = new Random();
+
+  @Test
+  public void testIncompressibleChunk()
+      throws Exception {
+    byte[] bytes = new byte[CHUNK_SIZE];
+    RANDOM.nextBytes(bytes);
+    testRoundTrip(bytes, ChunkCompressorFactory.CompressionType.PASS_THROUGH);
+  }
+
+  @Test
+  public void testCompressibleChunk()
+      throws Exception {
+    byte[] bytes = new byte[CHUNK_SIZE];
+    for (int i = 0; i < CHUNK_SIZE; i++) {
+      bytes[i] = (byte) ('a' + (i % 7));
+    }
+    testRoundTrip(bytes, null);
+  }
+
+  @Test
+  public void testEmptyChunk()
+      throws Exception {
+    testRoundTrip(new byte[0], ChunkCompressorFactory.CompressionType.PASS_THROUGH);
+  }
+
+  /**
+   * Compresses the given bytes with {@link AdaptiveCompressor} and checks the chosen compression type (if not null)
+   * and that the bytes are restored by {@link AdaptiveDecompressor}.
+   */
+  private void testRoundTrip(byte[] bytes, ChunkCompressorFactory.CompressionType expectedCompressionType)
+      throws Exception {
+    ByteBuffer uncompressed = ByteBuffer.allocateDirect(bytes.length);
+    uncompressed.put(bytes);
+    uncompressed.flip();
+
+    AdaptiveCompressor compressor = new AdaptiveCompressor();
+    ChunkCompressorFactory.CompressionType compressionType = compressor.chooseCompressionType(uncompressed);
+    if (expectedCompressionType != null) {
+      Assert.assertEquals(compressionType, expectedCompressionType);
+    } else {
+      Assert.assertFalse(compressionType == ChunkCompressorFactory.CompressionType.PASS_THROUGH);
+    }
+
+    ByteBuffer compressed = ByteBuffer.allocateDirect(bytes.length * 2 + 1);
+    int compressedSize = compressor.compress(uncompressed, compressed);
+    Assert.assertEquals(compressed.remaining(), compressedSize);
+    Assert.assertEquals(compressed.get(0), (byte) compressionType.getValue());
+    if (compressionType != ChunkCompressorFactory.CompressionType.PASS_THROUGH) {
+      Assert.assertTrue(compressedSize < bytes.length);
+    }
+
+    ByteBuffer decompressed = ByteBuffer.allocateDirect(bytes.length);
+    int decompressedSize = new AdaptiveDecompressor().decompress(compressed, decompressed);
+    Assert.assertEquals(decompressedSize, bytes.length);
+    Assert.assertEquals(decompressed.remaining(), bytes.length);
+    byte[] actual = new byte[bytes.length];
+    decompressed.get(actual);
+    Assert.assertEquals(actual, bytes);
+  }
+}
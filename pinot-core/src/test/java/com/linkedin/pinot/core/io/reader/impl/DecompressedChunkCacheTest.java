@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.io.reader.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class DecompressedChunkCacheTest {
+  private static final int CHUNK_SIZE = 100;
+  private static final int NUM_CHUNKS = 10;
+
+  @Test
+  public void testInvalidate() {
+    DecompressedChunkCache chunkCache = new DecompressedChunkCache(1_000_000L, null);
+    Object reader1 = new Object();
+    Object reader2 = new Object();
+    for (int chunkId = 0; chunkId < NUM_CHUNKS; chunkId++) {
+      chunkCache.put(reader1, chunkId, createChunk(chunkId));
+      chunkCache.put(reader2, chunkId, createChunk(chunkId + 1));
+    }
+    // Replacing a chunk keeps it cached
+    chunkCache.put(reader1, 0, createChunk(0));
+    Assert.assertEquals(chunkCache.getSizeBytes(), 2L * NUM_CHUNKS * CHUNK_SIZE);
+
+    ByteBuffer outDecompressed = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    Assert.assertTrue(chunkCache.get(reader1, 3, outDecompressed));
+    Assert.assertEquals(outDecompressed.get(0), (byte) 3);
+    outDecompressed.clear();
+    Assert.assertTrue(chunkCache.get(reader2, 3, outDecompressed));
+    Assert.assertEquals(outDecompressed.get(0), (byte) 4);
+
+    // Invalidating a reader only removes its own chunks
+    chunkCache.invalidate(reader1);
+    Assert.assertEquals(chunkCache.getSizeBytes(), (long) NUM_CHUNKS * CHUNK_SIZE);
+    outDecompressed.clear();
+    Assert.assertFalse(chunkCache.get(reader1, 0, outDecompressed));
+    Assert.assertTrue(chunkCache.get(reader2, 0, outDecompressed));
+
+    chunkCache.invalidate(reader2);
+    Assert.assertEquals(chunkCache.getSizeBytes(), 0L);
+  }
+
+  @Test
+  public void testEviction() {
+    // Budget only fits part of the chunks, evicted chunks should not be invalidated again
+    long maxSizeBytes = 20L * CHUNK_SIZE;
+    DecompressedChunkCache chunkCache = new DecompressedChunkCache(maxSizeBytes, null);
+    Object reader = new Object();
+    for (int chunkId = 0; chunkId < 10 * NUM_CHUNKS; chunkId++) {
+      chunkCache.put(reader, chunkId, createChunk(chunkId));
+    }
+    Assert.assertTrue(chunkCache.getSizeBytes() <= maxSizeBytes);
+    chunkCache.invalidate(reader);
+    Assert.assertEquals(chunkCache.getSizeBytes(), 0L);
+
+    // Reader can be cached again after being invalidated
+    chunkCache.put(reader, 0, createChunk(0));
+    Assert.assertEquals(chunkCache.getSizeBytes(), (long) CHUNK_SIZE);
+  }
+
+  @Test
+  public void testConcurrentPutAndInvalidate() throws Exception {
+    final DecompressedChunkCache chunkCache = new DecompressedChunkCache(1_000_000L, null);
+    final int numReaders = 4;
+    final Object[] readers = new Object[numReaders];
+    for (int i = 0; i < numReaders; i++) {
+      readers[i] = new Object();
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executorService = Executors.newFixedThreadPool(numReaders);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < numReaders; i++) {
+      final Object reader = readers[i];
+      futures.add(executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; !done.get(); j++) {
+            chunkCache.put(reader, j % NUM_CHUNKS, createChunk(j));
+          }
+        }
+      }));
+    }
+    // Invalidate the readers while their chunks are being cached
+    long endTimeMs = System.currentTimeMillis() + 500L;
+    while (System.currentTimeMillis() < endTimeMs) {
+      for (Object reader : readers) {
+        chunkCache.invalidate(reader);
+      }
+    }
+    done.set(true);
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executorService.shutdown();
+
+    // No chunk cached concurrently with an invalidation can be left behind
+    for (Object reader : readers) {
+      chunkCache.invalidate(reader);
+    }
+    Assert.assertEquals(chunkCache.getSizeBytes(), 0L);
+  }
+
+  private static ByteBuffer createChunk(int value) {
+    ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    while (chunk.hasRemaining()) {
+      chunk.put((byte) value);
+    }
+    chunk.flip();
+    return chunk;
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.DataSchema;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+
+public class CombineOperatorTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final DataSchema DATA_SCHEMA =
+      new DataSchema(new String[]{"column"}, new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT});
+  private static final Comparator<Serializable[]> ROW_COMPARATOR = new Comparator<Serializable[]>() {
+    @Override
+    public int compare(Serializable[] o1, Serializable[] o2) {
+      return Integer.compare((Integer) o2[0], (Integer) o1[0]);
+    }
+  };
+  private static final int NUM_OPERATORS = 100;
+  private static final int NUM_ROWS_PER_OPERATOR = 10;
+
+  private final ExecutorService _executorService = Executors.newCachedThreadPool();
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdown();
+  }
+
+  @Test
+  public void testSelectionOnlyEarlyTermination() {
+    AtomicInteger numOperatorsExecuted = new AtomicInteger();
+    IntermediateResultsBlock resultsBlock =
+        combine("SELECT column FROM testTable LIMIT 15", numOperatorsExecuted);
+
+    // Remaining operators are skipped once enough rows are selected
+    Assert.assertEquals(resultsBlock.getSelectionResult().size(), 15);
+    Assert.assertTrue(numOperatorsExecuted.get() < NUM_OPERATORS);
+  }
+
+  @Test
+  public void testSelectionOrderBy() {
+    AtomicInteger numOperatorsExecuted = new AtomicInteger();
+    IntermediateResultsBlock resultsBlock =
+        combine("SELECT column FROM testTable ORDER BY column LIMIT 15", numOperatorsExecuted);
+
+    // All operators are needed to order the rows
+    Assert.assertEquals(resultsBlock.getSelectionResult().size(), 15);
+    Assert.assertEquals(numOperatorsExecuted.get(), NUM_OPERATORS);
+  }
+
+  private IntermediateResultsBlock combine(String query, final AtomicInteger numOperatorsExecuted) {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+    final boolean isOrderBy = brokerRequest.getSelections().isSetSelectionSortSequence();
+    List<Operator> operators = new ArrayList<>(NUM_OPERATORS);
+    for (int i = 0; i < NUM_OPERATORS; i++) {
+      operators.add(new BaseOperator<IntermediateResultsBlock>() {
+        @Override
+        protected IntermediateResultsBlock getNextBlock() {
+          numOperatorsExecuted.incrementAndGet();
+          List<Serializable[]> rows = new ArrayList<>(NUM_ROWS_PER_OPERATOR);
+          for (int j = 0; j < NUM_ROWS_PER_OPERATOR; j++) {
+            rows.add(new Serializable[]{j});
+          }
+          if (isOrderBy) {
+            PriorityQueue<Serializable[]> sortedRows = new PriorityQueue<>(NUM_ROWS_PER_OPERATOR, ROW_COMPARATOR);
+            sortedRows.addAll(rows);
+            return new IntermediateResultsBlock(DATA_SCHEMA, sortedRows);
+          }
+          return new IntermediateResultsBlock(DATA_SCHEMA, rows);
+        }
+
+        @Override
+        public String getOperatorName() {
+          return "TestOperator";
+        }
+
+        @Override
+        public ExecutionStatistics getExecutionStatistics() {
+          return new ExecutionStatistics(NUM_ROWS_PER_OPERATOR, 0L, 0L, NUM_ROWS_PER_OPERATOR);
+        }
+      });
+    }
+    return new CombineOperator(operators, _executorService, 10_000L, brokerRequest).nextBlock();
+  }
+}
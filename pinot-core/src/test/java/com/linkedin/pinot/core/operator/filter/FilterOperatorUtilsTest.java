@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter;
+
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+
+
+public class FilterOperatorUtilsTest {
+
+  @Test
+  public void testSmallInListUsesInvertedIndex() {
+    // Even on a tiny segment where scanning is cheap, a small IN list keeps using the inverted index
+    DataSource dataSource = createDataSource(1000);
+    PredicateEvaluator predicateEvaluator = createInPredicateEvaluator(2);
+    Assert.assertTrue(FilterOperatorUtils.getLeafFilterOperator(predicateEvaluator, dataSource, 0,
+        999) instanceof BitmapBasedFilterOperator);
+  }
+
+  @Test
+  public void testLargeInList() {
+    PredicateEvaluator predicateEvaluator = createInPredicateEvaluator(5000);
+
+    // Merging 5000 bitmaps is more expensive than scanning 100K documents
+    DataSource dataSource = createDataSource(10_000);
+    Assert.assertTrue(FilterOperatorUtils.getLeafFilterOperator(predicateEvaluator, dataSource, 0,
+        99_999) instanceof ScanBasedFilterOperator);
+
+    // But cheaper than scanning 100M documents
+    Assert.assertTrue(FilterOperatorUtils.getLeafFilterOperator(predicateEvaluator, dataSource, 0,
+        99_999_999) instanceof BitmapBasedFilterOperator);
+  }
+
+  private static DataSource createDataSource(int cardinality) {
+    DataSourceMetadata dataSourceMetadata = mock(DataSourceMetadata.class);
+    when(dataSourceMetadata.hasInvertedIndex()).thenReturn(true);
+    when(dataSourceMetadata.isSorted()).thenReturn(false);
+    when(dataSourceMetadata.isSingleValue()).thenReturn(true);
+    Dictionary dictionary = mock(Dictionary.class);
+    when(dictionary.length()).thenReturn(cardinality);
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getDataSourceMetadata()).thenReturn(dataSourceMetadata);
+    when(dataSource.getDictionary()).thenReturn(dictionary);
+    return dataSource;
+  }
+
+  private static PredicateEvaluator createInPredicateEvaluator(int numValues) {
+    int[] matchingDictIds = new int[numValues];
+    for (int i = 0; i < numValues; i++) {
+      matchingDictIds[i] = i;
+    }
+    PredicateEvaluator predicateEvaluator = mock(PredicateEvaluator.class);
+    when(predicateEvaluator.getPredicateType()).thenReturn(Predicate.Type.IN);
+    when(predicateEvaluator.isExclusive()).thenReturn(false);
+    when(predicateEvaluator.getMatchingDictIds()).thenReturn(matchingDictIds);
+    return predicateEvaluator;
+  }
+}
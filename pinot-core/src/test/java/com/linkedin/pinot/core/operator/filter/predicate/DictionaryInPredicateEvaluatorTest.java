@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter.predicate;
+
+import com.linkedin.pinot.core.common.predicate.InPredicate;
+import com.linkedin.pinot.core.common.predicate.NotInPredicate;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit test for dictionary based IN and NOT_IN predicate evaluators.
+ */
+public class DictionaryInPredicateEvaluatorTest {
+  private static final String COLUMN_NAME = "column";
+  private static final int NUM_PREDICATE_VALUES = 1000;
+  private static final int NUM_MULTI_VALUES = 10;
+  private final Random _random = new Random();
+
+  @Test
+  public void testSmallDictionary() {
+    // Dictionary ids are checked against bitsets
+    testPredicateEvaluators(10_000, NUM_PREDICATE_VALUES, true);
+  }
+
+  @Test
+  public void testLargeInList() {
+    // Few thousand values on a dictionary with a million values are still checked against bitsets
+    testPredicateEvaluators(1_000_000, 5_000, true);
+  }
+
+  @Test
+  public void testLargeDictionary() {
+    // Dictionary is too large for bitsets, dictionary ids are checked against hash sets
+    testPredicateEvaluators(100_000_000, NUM_PREDICATE_VALUES, false);
+  }
+
+  private void testPredicateEvaluators(int cardinality, int numPredicateValues, boolean expectBitSet) {
+    Dictionary dictionary = createDictionary(cardinality);
+    List<String> stringValues = new ArrayList<>(numPredicateValues);
+    IntSet dictIdSet = new IntOpenHashSet();
+    for (int i = 0; i < numPredicateValues; i++) {
+      int dictId = _random.nextInt(cardinality);
+      stringValues.add(Integer.toString(dictId));
+      dictIdSet.add(dictId);
+    }
+    // Values not in the dictionary are ignored
+    stringValues.add("-1");
+    Assert.assertEquals(BaseDictionaryBasedPredicateEvaluator.toDictIdBitSet(dictIdSet, cardinality) != null,
+        expectBitSet);
+
+    PredicateEvaluator inPredicateEvaluator = InPredicateEvaluatorFactory.newDictionaryBasedEvaluator(
+        new InPredicate(COLUMN_NAME, stringValues), dictionary);
+    PredicateEvaluator notInPredicateEvaluator = NotInPredicateEvaluatorFactory.newDictionaryBasedEvaluator(
+        new NotInPredicate(COLUMN_NAME, stringValues), dictionary);
+    Assert.assertFalse(inPredicateEvaluator.isAlwaysFalse());
+    Assert.assertFalse(notInPredicateEvaluator.isAlwaysFalse());
+
+    for (int dictId : dictIdSet) {
+      Assert.assertTrue(inPredicateEvaluator.applySV(dictId));
+      Assert.assertFalse(notInPredicateEvaluator.applySV(dictId));
+    }
+    for (int i = 0; i < 1000; i++) {
+      int dictId = _random.nextInt(cardinality);
+      Assert.assertEquals(inPredicateEvaluator.applySV(dictId), dictIdSet.contains(dictId));
+      Assert.assertEquals(notInPredicateEvaluator.applySV(dictId), !dictIdSet.contains(dictId));
+    }
+
+    int[] multiValues = new int[NUM_MULTI_VALUES];
+    for (int i = 0; i < NUM_MULTI_VALUES; i++) {
+      multiValues[i] = _random.nextInt(cardinality);
+    }
+    multiValues[_random.nextInt(NUM_MULTI_VALUES)] = dictIdSet.iterator().nextInt();
+    Assert.assertTrue(inPredicateEvaluator.applyMV(multiValues, NUM_MULTI_VALUES));
+    Assert.assertFalse(notInPredicateEvaluator.applyMV(multiValues, NUM_MULTI_VALUES));
+
+    int[] matchingDictIds = inPredicateEvaluator.getMatchingDictIds();
+    Assert.assertEquals(matchingDictIds.length, dictIdSet.size());
+    for (int dictId : matchingDictIds) {
+      Assert.assertTrue(dictIdSet.contains(dictId));
+    }
+    int[] nonMatchingDictIds = notInPredicateEvaluator.getNonMatchingDictIds();
+    Assert.assertEquals(nonMatchingDictIds.length, dictIdSet.size());
+    for (int dictId : nonMatchingDictIds) {
+      Assert.assertTrue(dictIdSet.contains(dictId));
+    }
+  }
+
+  @Test
+  public void testNotInMatchingDictIds() {
+    Dictionary dictionary = createDictionary(10);
+    List<String> stringValues = new ArrayList<>();
+    stringValues.add("2");
+    stringValues.add("5");
+    PredicateEvaluator notInPredicateEvaluator = NotInPredicateEvaluatorFactory.newDictionaryBasedEvaluator(
+        new NotInPredicate(COLUMN_NAME, stringValues), dictionary);
+    Assert.assertEquals(notInPredicateEvaluator.getMatchingDictIds(), new int[]{0, 1, 3, 4, 6, 7, 8, 9});
+  }
+
+  /**
+   * Creates a dictionary where each value is the string representation of its dictionary id.
+   */
+  private static Dictionary createDictionary(final int cardinality) {
+    Dictionary dictionary = mock(Dictionary.class);
+    when(dictionary.length()).thenReturn(cardinality);
+    when(dictionary.indexOf(any())).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        int value = Integer.parseInt((String) invocation.getArguments()[0]);
+        return (value >= 0 && value < cardinality) ? value : -1;
+      }
+    });
+    return dictionary;
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import java.util.Set;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit test for {@link DistinctCountAggregationFunction} class.
+ */
+public class DistinctCountAggregationFunctionTest {
+  // "Aa" and "BB" have the same hash code
+  private static final String[] STRING_VALUES = new String[]{"Aa", "BB", "Aa", "foo", "BB", "bar"};
+  private static final int NUM_DISTINCT_STRING_VALUES = 4;
+  // 0L and (1L << 32 | 1L) have the same hash code
+  private static final long[] LONG_VALUES = new long[]{0L, 1L << 32 | 1L, 0L, 1L << 33};
+
+  private final DistinctCountAggregationFunction _function = new DistinctCountAggregationFunction();
+
+  @Test
+  public void testDictionaryEncodedValues() {
+    final String[] dictionaryValues = new String[]{"Aa", "BB", "bar", "foo"};
+    Dictionary dictionary = mock(Dictionary.class);
+    when(dictionary.getStringValue(anyInt())).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return dictionaryValues[(Integer) invocation.getArguments()[0]];
+      }
+    });
+    BlockValSet blockValSet = mock(BlockValSet.class);
+    when(blockValSet.getValueType()).thenReturn(FieldSpec.DataType.STRING);
+    when(blockValSet.getDictionary()).thenReturn(dictionary);
+    when(blockValSet.getDictionaryIdsSV()).thenReturn(new int[]{0, 1, 0, 3, 1, 2});
+
+    AggregationResultHolder resultHolder = _function.createAggregationResultHolder();
+    _function.aggregate(6, resultHolder, blockValSet);
+    _function.aggregate(3, resultHolder, blockValSet);
+    Set result = _function.extractAggregationResult(resultHolder);
+    Assert.assertTrue(result instanceof ObjectOpenHashSet);
+    Assert.assertEquals(_function.extractFinalResult(result).intValue(), NUM_DISTINCT_STRING_VALUES);
+    // Values are only looked up once per distinct dictionary id
+    verify(dictionary, times(NUM_DISTINCT_STRING_VALUES)).getStringValue(anyInt());
+    verify(blockValSet, never()).getStringValuesSV();
+
+    GroupByResultHolder groupByResultHolder = _function.createGroupByResultHolder(2, 2, 2);
+    _function.aggregateGroupBySV(6, new int[]{0, 0, 1, 1, 1, 1}, groupByResultHolder, blockValSet);
+    Assert.assertEquals(_function.extractGroupByResult(groupByResultHolder, 0).size(), 2);
+    Assert.assertEquals(_function.extractGroupByResult(groupByResultHolder, 1).size(), 4);
+  }
+
+  @Test
+  public void testRawValues() {
+    BlockValSet stringBlockValSet = mock(BlockValSet.class);
+    when(stringBlockValSet.getValueType()).thenReturn(FieldSpec.DataType.STRING);
+    when(stringBlockValSet.getStringValuesSV()).thenReturn(STRING_VALUES);
+    AggregationResultHolder resultHolder = _function.createAggregationResultHolder();
+    _function.aggregate(STRING_VALUES.length, resultHolder, stringBlockValSet);
+    Assert.assertEquals(_function.extractAggregationResult(resultHolder).size(), NUM_DISTINCT_STRING_VALUES);
+
+    BlockValSet longBlockValSet = mock(BlockValSet.class);
+    when(longBlockValSet.getValueType()).thenReturn(FieldSpec.DataType.LONG);
+    when(longBlockValSet.getLongValuesSV()).thenReturn(LONG_VALUES);
+    resultHolder = _function.createAggregationResultHolder();
+    _function.aggregate(LONG_VALUES.length, resultHolder, longBlockValSet);
+    Set result = _function.extractAggregationResult(resultHolder);
+    Assert.assertTrue(result instanceof LongOpenHashSet);
+    Assert.assertEquals(result.size(), 3);
+  }
+
+  @Test
+  public void testMerge() {
+    LongOpenHashSet longSet1 = new LongOpenHashSet(new long[]{1L, 2L});
+    LongOpenHashSet longSet2 = new LongOpenHashSet(new long[]{2L, 3L, 1L << 32 | 1L});
+    Set merged = _function.merge(longSet1, longSet2);
+    Assert.assertTrue(merged instanceof LongOpenHashSet);
+    Assert.assertEquals(merged.size(), 4);
+
+    // Empty results do not change the value set type
+    Assert.assertSame(_function.merge(new IntOpenHashSet(), merged), merged);
+    Assert.assertSame(_function.merge(merged, new IntOpenHashSet()), merged);
+
+    // Merging with hash code sets from older versions falls back to hash codes
+    IntOpenHashSet hashCodeSet = new IntOpenHashSet(new int[]{Long.valueOf(3L).hashCode(), 5});
+    merged = _function.merge(hashCodeSet, merged);
+    Assert.assertTrue(merged instanceof IntOpenHashSet);
+    // Hash codes: {1, 2, 3, 0} and {3, 5}
+    Assert.assertEquals(merged.size(), 5);
+
+    ObjectOpenHashSet<String> stringSet = new ObjectOpenHashSet<>(new String[]{"Aa", "BB"});
+    Assert.assertEquals(_function.merge(stringSet, new ObjectOpenHashSet<>(new String[]{"foo"})).size(), 3);
+    // Hash codes: {"Aa" and "BB", "foo"} and {"foo"}
+    Assert.assertEquals(_function.merge(stringSet, new IntOpenHashSet(new int[]{"foo".hashCode()})).size(), 2);
+  }
+}
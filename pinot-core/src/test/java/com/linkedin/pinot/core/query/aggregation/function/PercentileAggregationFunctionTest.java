@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.doubles.Double2LongOpenHashMap;
+import java.util.Arrays;
+import java.util.Random;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit test for {@link PercentileAggregationFunction} class.
+ */
+public class PercentileAggregationFunctionTest {
+  private static final long RANDOM_SEED = System.currentTimeMillis();
+  private static final Random RANDOM = new Random(RANDOM_SEED);
+  private static final String ERROR_MESSAGE = "Random seed: " + RANDOM_SEED;
+
+  private static final int NUM_DOCS = 1000;
+  private static final int CARDINALITY = 100;
+  private static final int[] PERCENTILES = new int[]{50, 90, 95, 99};
+
+  @Test
+  public void testDictionaryEncodedValues() {
+    final double[] dictionaryValues = new double[CARDINALITY];
+    for (int i = 0; i < CARDINALITY; i++) {
+      dictionaryValues[i] = i * 1.5;
+    }
+    Dictionary dictionary = mock(Dictionary.class);
+    when(dictionary.length()).thenReturn(CARDINALITY);
+    when(dictionary.getDoubleValue(anyInt())).thenAnswer(new Answer<Double>() {
+      @Override
+      public Double answer(InvocationOnMock invocation) {
+        return dictionaryValues[(Integer) invocation.getArguments()[0]];
+      }
+    });
+    int[] dictIds = new int[NUM_DOCS];
+    double[] values = new double[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      dictIds[i] = RANDOM.nextInt(CARDINALITY);
+      values[i] = dictionaryValues[dictIds[i]];
+    }
+    BlockValSet blockValSet = mock(BlockValSet.class);
+    when(blockValSet.getDictionary()).thenReturn(dictionary);
+    when(blockValSet.getDictionaryIdsSV()).thenReturn(dictIds);
+
+    for (int percentile : PERCENTILES) {
+      PercentileAggregationFunction function = new PercentileAggregationFunction(percentile);
+      AggregationResultHolder resultHolder = function.createAggregationResultHolder();
+      function.aggregate(NUM_DOCS, resultHolder, blockValSet);
+      Double2LongOpenHashMap result = function.extractAggregationResult(resultHolder);
+      Assert.assertTrue(result.size() <= CARDINALITY, ERROR_MESSAGE);
+      Assert.assertEquals(function.extractFinalResult(result), getExpectedPercentile(values, NUM_DOCS, percentile),
+          ERROR_MESSAGE);
+
+      // Group 0 gets the first half of the documents, group 1 gets the second half
+      GroupByResultHolder groupByResultHolder = function.createGroupByResultHolder(2, 2, 2);
+      int[] groupKeys = new int[NUM_DOCS];
+      Arrays.fill(groupKeys, NUM_DOCS / 2, NUM_DOCS, 1);
+      function.aggregateGroupBySV(NUM_DOCS, groupKeys, groupByResultHolder, blockValSet);
+      Assert.assertEquals(function.extractFinalResult(function.extractGroupByResult(groupByResultHolder, 0)),
+          getExpectedPercentile(values, NUM_DOCS / 2, percentile), ERROR_MESSAGE);
+      double[] secondHalfValues = Arrays.copyOfRange(values, NUM_DOCS / 2, NUM_DOCS);
+      Assert.assertEquals(function.extractFinalResult(function.extractGroupByResult(groupByResultHolder, 1)),
+          getExpectedPercentile(secondHalfValues, NUM_DOCS / 2, percentile), ERROR_MESSAGE);
+    }
+    verify(blockValSet, never()).getDoubleValuesSV();
+  }
+
+  @Test
+  public void testRawValuesAndMerge() {
+    double[] values1 = new double[NUM_DOCS];
+    double[] values2 = new double[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      values1[i] = RANDOM.nextInt(CARDINALITY);
+      values2[i] = RANDOM.nextDouble();
+    }
+    BlockValSet blockValSet1 = mock(BlockValSet.class);
+    when(blockValSet1.getDoubleValuesSV()).thenReturn(values1);
+    BlockValSet blockValSet2 = mock(BlockValSet.class);
+    when(blockValSet2.getDoubleValuesSV()).thenReturn(values2);
+    double[] allValues = Arrays.copyOf(values1, 2 * NUM_DOCS);
+    System.arraycopy(values2, 0, allValues, NUM_DOCS, NUM_DOCS);
+
+    for (int percentile : PERCENTILES) {
+      PercentileAggregationFunction function = new PercentileAggregationFunction(percentile);
+      AggregationResultHolder resultHolder1 = function.createAggregationResultHolder();
+      function.aggregate(NUM_DOCS, resultHolder1, blockValSet1);
+      Double2LongOpenHashMap result1 = function.extractAggregationResult(resultHolder1);
+      Assert.assertTrue(result1.size() <= CARDINALITY, ERROR_MESSAGE);
+      Assert.assertEquals(function.extractFinalResult(result1), getExpectedPercentile(values1, NUM_DOCS, percentile),
+          ERROR_MESSAGE);
+
+      AggregationResultHolder resultHolder2 = function.createAggregationResultHolder();
+      function.aggregate(NUM_DOCS, resultHolder2, blockValSet2);
+      Double2LongOpenHashMap merged = function.merge(result1, function.extractAggregationResult(resultHolder2));
+      Assert.assertEquals(function.extractFinalResult(merged),
+          getExpectedPercentile(allValues, 2 * NUM_DOCS, percentile), ERROR_MESSAGE);
+    }
+
+    // Empty result
+    PercentileAggregationFunction function = new PercentileAggregationFunction(50);
+    Assert.assertEquals(function.extractFinalResult(
+        function.extractAggregationResult(function.createAggregationResultHolder())), Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * Computes the percentile the same way as buffering and sorting all the values.
+   */
+  private static double getExpectedPercentile(double[] values, int length, int percentile) {
+    double[] sortedValues = Arrays.copyOf(values, length);
+    Arrays.sort(sortedValues);
+    return sortedValues[(int) ((long) length * percentile / 100)];
+  }
+}
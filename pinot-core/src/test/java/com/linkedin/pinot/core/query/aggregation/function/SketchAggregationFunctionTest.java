@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.query.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.customobject.ThetaSketch;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.startree.hll.HllConstants;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Unit test for aggregation functions on pre-aggregated sketches stored in BYTES columns.
+ */
+public class SketchAggregationFunctionTest {
+  private static final long RANDOM_SEED = System.currentTimeMillis();
+  private static final Random RANDOM = new Random(RANDOM_SEED);
+  private static final String ERROR_MESSAGE = "Random seed: " + RANDOM_SEED;
+
+  private static final int NUM_DOCS = 1000;
+  private static final int NUM_VALUES_PER_DOC = 10;
+  private static final int CARDINALITY = 2000;
+
+  @Test
+  public void testFastHllOnBytes() throws Exception {
+    String[] stringValues = new String[NUM_DOCS];
+    byte[][] bytesValues = new byte[NUM_DOCS][];
+    HyperLogLog expected = new HyperLogLog(HllConstants.DEFAULT_LOG2M);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      HyperLogLog hyperLogLog = new HyperLogLog(HllConstants.DEFAULT_LOG2M);
+      for (int j = 0; j < NUM_VALUES_PER_DOC; j++) {
+        int value = RANDOM.nextInt(CARDINALITY);
+        hyperLogLog.offer(value);
+        expected.offer(value);
+      }
+      stringValues[i] = HllUtil.convertHllToString(hyperLogLog);
+      bytesValues[i] = hyperLogLog.getBytes();
+    }
+    BlockValSet stringBlockValSet = mock(BlockValSet.class);
+    when(stringBlockValSet.getValueType()).thenReturn(FieldSpec.DataType.STRING);
+    when(stringBlockValSet.getStringValuesSV()).thenReturn(stringValues);
+    BlockValSet bytesBlockValSet = mock(BlockValSet.class);
+    when(bytesBlockValSet.getValueType()).thenReturn(FieldSpec.DataType.BYTES);
+    when(bytesBlockValSet.getBytesValuesSV()).thenReturn(bytesValues);
+
+    FastHLLAggregationFunction function = new FastHLLAggregationFunction();
+    AggregationResultHolder stringResultHolder = function.createAggregationResultHolder();
+    function.aggregate(NUM_DOCS, stringResultHolder, stringBlockValSet);
+    AggregationResultHolder bytesResultHolder = function.createAggregationResultHolder();
+    function.aggregate(NUM_DOCS, bytesResultHolder, bytesBlockValSet);
+    long result = function.extractFinalResult(function.extractAggregationResult(bytesResultHolder));
+    Assert.assertEquals(result, expected.cardinality(), ERROR_MESSAGE);
+    Assert.assertEquals(result, (long) function.extractFinalResult(function.extractAggregationResult(stringResultHolder)),
+        ERROR_MESSAGE);
+
+    // Group 0 gets the even documents, group 1 gets the odd documents
+    int[] groupKeys = new int[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      groupKeys[i] = i % 2;
+    }
+    GroupByResultHolder groupByResultHolder = function.createGroupByResultHolder(2, 2, 2);
+    function.aggregateGroupBySV(NUM_DOCS, groupKeys, groupByResultHolder, bytesBlockValSet);
+    HyperLogLog merged =
+        function.merge(function.extractGroupByResult(groupByResultHolder, 0),
+            function.extractGroupByResult(groupByResultHolder, 1));
+    Assert.assertEquals((long) function.extractFinalResult(merged), result, ERROR_MESSAGE);
+    verify(bytesBlockValSet, never()).getStringValuesSV();
+  }
+
+  @Test
+  public void testThetaSketchOnBytes() {
+    long[] values = new long[NUM_DOCS * NUM_VALUES_PER_DOC];
+    byte[][] bytesValues = new byte[NUM_DOCS][];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      ThetaSketch thetaSketch = new ThetaSketch();
+      for (int j = 0; j < NUM_VALUES_PER_DOC; j++) {
+        long value = RANDOM.nextInt(CARDINALITY);
+        thetaSketch.update(value);
+        values[i * NUM_VALUES_PER_DOC + j] = value;
+      }
+      bytesValues[i] = thetaSketch.toBytes();
+    }
+    BlockValSet rawBlockValSet = mock(BlockValSet.class);
+    when(rawBlockValSet.getValueType()).thenReturn(FieldSpec.DataType.LONG);
+    when(rawBlockValSet.getLongValuesSV()).thenReturn(values);
+    BlockValSet bytesBlockValSet = mock(BlockValSet.class);
+    when(bytesBlockValSet.getValueType()).thenReturn(FieldSpec.DataType.BYTES);
+    when(bytesBlockValSet.getBytesValuesSV()).thenReturn(bytesValues);
+
+    DistinctCountThetaSketchAggregationFunction function = new DistinctCountThetaSketchAggregationFunction();
+    AggregationResultHolder rawResultHolder = function.createAggregationResultHolder();
+    function.aggregate(values.length, rawResultHolder, rawBlockValSet);
+    AggregationResultHolder bytesResultHolder = function.createAggregationResultHolder();
+    function.aggregate(NUM_DOCS, bytesResultHolder, bytesBlockValSet);
+    Assert.assertEquals(function.extractFinalResult(function.extractAggregationResult(bytesResultHolder)),
+        function.extractFinalResult(function.extractAggregationResult(rawResultHolder)), ERROR_MESSAGE);
+
+    int[] groupKeys = new int[NUM_DOCS];
+    GroupByResultHolder groupByResultHolder = function.createGroupByResultHolder(1, 1, 1);
+    function.aggregateGroupBySV(NUM_DOCS, groupKeys, groupByResultHolder, bytesBlockValSet);
+    Assert.assertEquals(function.extractFinalResult(function.extractGroupByResult(groupByResultHolder, 0)),
+        function.extractFinalResult(function.extractAggregationResult(rawResultHolder)), ERROR_MESSAGE);
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.customobject;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+/**
+ * Unit test for {@link ThetaSketch} class.
+ */
+public class ThetaSketchTest {
+  private static final double ERROR_RATIO = 0.05;
+
+  @Test
+  public void testExactMode() {
+    ThetaSketch thetaSketch = new ThetaSketch();
+    for (int i = 0; i < 3000; i++) {
+      thetaSketch.update(i % 1000);
+      thetaSketch.update(Integer.toString(i % 500));
+    }
+    Assert.assertFalse(thetaSketch.isEstimationMode());
+    Assert.assertEquals(thetaSketch.getEstimate(), 1500.0);
+
+    // INT and LONG values share the hashes, so do FLOAT and DOUBLE values
+    thetaSketch.update(1L);
+    thetaSketch.update(1.5f);
+    thetaSketch.update(1.5);
+    Assert.assertEquals(thetaSketch.getEstimate(), 1501.0);
+  }
+
+  @Test
+  public void testEstimationMode() {
+    ThetaSketch thetaSketch = new ThetaSketch();
+    for (int i = 0; i < 100000; i++) {
+      thetaSketch.update(i);
+    }
+    Assert.assertTrue(thetaSketch.isEstimationMode());
+    Assert.assertTrue(thetaSketch.getNumRetainedEntries() <= 2 * ThetaSketch.DEFAULT_NOMINAL_ENTRIES);
+    assertEstimate(thetaSketch, 100000);
+  }
+
+  @Test
+  public void testMerge() {
+    ThetaSketch thetaSketch1 = new ThetaSketch();
+    ThetaSketch thetaSketch2 = new ThetaSketch();
+    for (int i = 0; i < 100000; i++) {
+      thetaSketch1.update(i);
+      thetaSketch2.update(i + 50000);
+    }
+    thetaSketch1.merge(thetaSketch2);
+    assertEstimate(thetaSketch1, 150000);
+    Assert.assertTrue(thetaSketch1.getNumRetainedEntries() <= ThetaSketch.DEFAULT_NOMINAL_ENTRIES);
+
+    // Merging sketches in exact mode is exact
+    ThetaSketch thetaSketch3 = new ThetaSketch();
+    ThetaSketch thetaSketch4 = new ThetaSketch();
+    for (int i = 0; i < 1000; i++) {
+      thetaSketch3.update(i);
+      thetaSketch4.update(i + 500);
+    }
+    thetaSketch3.merge(thetaSketch4);
+    Assert.assertEquals(thetaSketch3.getEstimate(), 1500.0);
+  }
+
+  @Test
+  public void testSetOperations() {
+    ThetaSketch thetaSketch1 = new ThetaSketch();
+    ThetaSketch thetaSketch2 = new ThetaSketch();
+    for (int i = 0; i < 60000; i++) {
+      thetaSketch1.update(i);
+      thetaSketch2.update(i + 40000);
+    }
+    assertEstimate(ThetaSketch.union(thetaSketch1, thetaSketch2), 100000);
+    assertEstimate(ThetaSketch.intersect(thetaSketch1, thetaSketch2), 20000);
+    assertEstimate(ThetaSketch.diff(thetaSketch1, thetaSketch2), 40000);
+
+    // Set operations should not modify the input sketches
+    assertEstimate(thetaSketch1, 60000);
+    assertEstimate(thetaSketch2, 60000);
+
+    // Set operations on sketches in exact mode are exact
+    ThetaSketch thetaSketch3 = new ThetaSketch();
+    ThetaSketch thetaSketch4 = new ThetaSketch();
+    for (int i = 0; i < 1000; i++) {
+      thetaSketch3.update(i);
+      thetaSketch4.update(i + 600);
+    }
+    Assert.assertEquals(ThetaSketch.union(thetaSketch3, thetaSketch4).getEstimate(), 1600.0);
+    Assert.assertEquals(ThetaSketch.intersect(thetaSketch3, thetaSketch4).getEstimate(), 400.0);
+    Assert.assertEquals(ThetaSketch.diff(thetaSketch3, thetaSketch4).getEstimate(), 600.0);
+  }
+
+  @Test
+  public void testSerDe() {
+    ThetaSketch expected = new ThetaSketch(1024);
+    for (int i = 0; i < 10000; i++) {
+      expected.update(Integer.toString(i));
+    }
+    ThetaSketch actual = ThetaSketch.fromBytes(expected.toBytes());
+    Assert.assertEquals(actual.getTheta(), expected.getTheta());
+    Assert.assertEquals(actual.getNumRetainedEntries(), expected.getNumRetainedEntries());
+    Assert.assertEquals(actual.getEstimate(), expected.getEstimate());
+
+    // Deserialized sketch should keep the nominal entries
+    actual.merge(expected);
+    Assert.assertTrue(actual.getNumRetainedEntries() <= 1024);
+  }
+
+  private static void assertEstimate(ThetaSketch thetaSketch, int expected) {
+    Assert.assertEquals(thetaSketch.getEstimate(), expected, expected * ERROR_RATIO);
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.executor;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.core.query.scheduler.resources.ThreadResourceUsage;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.List;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static com.linkedin.pinot.core.query.scheduler.TestHelper.createServerQueryRequest;
+
+
+public class QueryMemoryTrackerTest {
+  private static final long MAX_ALLOCATED_BYTES_PER_QUERY = 1000L;
+
+  @BeforeClass
+  public void setUp() {
+    if (!ThreadResourceUsage.isAllocatedBytesSupported()) {
+      throw new SkipException("Thread allocated bytes measurement is not supported");
+    }
+  }
+
+  @Test
+  public void testTopConsumers() {
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    ServerMetrics serverMetrics = new ServerMetrics(metricsRegistry);
+    QueryMemoryTracker tracker = new QueryMemoryTracker(true, MAX_ALLOCATED_BYTES_PER_QUERY, 2, serverMetrics);
+    Assert.assertTrue(tracker.isEnabled());
+    Assert.assertEquals(getGaugeValue(metricsRegistry, "memory.topQueryAllocatedBytes.1"), 0L);
+
+    ServerQueryRequest small = createServerQueryRequest("table", serverMetrics);
+    ServerQueryRequest medium = createServerQueryRequest("table", serverMetrics);
+    ServerQueryRequest large = createServerQueryRequest("table", serverMetrics);
+    tracker.register(small);
+    tracker.register(medium);
+    tracker.register(large);
+    Assert.assertTrue(large.isMemoryTracked());
+    small.addAllocatedBytes(10L);
+    medium.addAllocatedBytes(200L);
+    large.addAllocatedBytes(300L);
+
+    List<Map.Entry<ServerQueryRequest, Long>> topConsumers = tracker.getTopConsumers(2);
+    Assert.assertEquals(topConsumers.size(), 2);
+    Assert.assertSame(topConsumers.get(0).getKey(), large);
+    Assert.assertEquals((long) topConsumers.get(0).getValue(), 300L);
+    Assert.assertSame(topConsumers.get(1).getKey(), medium);
+    Assert.assertEquals(getGaugeValue(metricsRegistry, "memory.topQueryAllocatedBytes.1"), 300L);
+    Assert.assertEquals(getGaugeValue(metricsRegistry, "memory.topQueryAllocatedBytes.2"), 200L);
+
+    tracker.unregister(large);
+    Assert.assertEquals(getGaugeValue(metricsRegistry, "memory.topQueryAllocatedBytes.1"), 200L);
+    Assert.assertEquals(getGaugeValue(metricsRegistry, "memory.topQueryAllocatedBytes.2"), 10L);
+    tracker.unregister(medium);
+    tracker.unregister(small);
+    Assert.assertTrue(tracker.getTopConsumers(2).isEmpty());
+  }
+
+  @Test
+  public void testMemoryLimit() {
+    ServerMetrics serverMetrics = new ServerMetrics(new MetricsRegistry());
+    QueryMemoryTracker tracker = new QueryMemoryTracker(true, MAX_ALLOCATED_BYTES_PER_QUERY, 0, serverMetrics);
+    ServerQueryRequest queryRequest = createServerQueryRequest("table", serverMetrics);
+    tracker.register(queryRequest);
+    Assert.assertEquals(queryRequest.getMaxAllocatedBytes(), MAX_ALLOCATED_BYTES_PER_QUERY);
+    queryRequest.addAllocatedBytes(MAX_ALLOCATED_BYTES_PER_QUERY);
+    Assert.assertFalse(queryRequest.isCancelled());
+    queryRequest.addAllocatedBytes(1L);
+    Assert.assertTrue(queryRequest.isCancelled());
+    Assert.assertTrue(queryRequest.isMemoryLimitExceeded());
+    tracker.unregister(queryRequest);
+
+    // Tracking without limit
+    tracker = new QueryMemoryTracker(true, -1L, 0, serverMetrics);
+    queryRequest = createServerQueryRequest("table", serverMetrics);
+    tracker.register(queryRequest);
+    queryRequest.addAllocatedBytes(Long.MAX_VALUE / 2);
+    Assert.assertFalse(queryRequest.isCancelled());
+    tracker.unregister(queryRequest);
+  }
+
+  @Test
+  public void testDisabled() {
+    ServerMetrics serverMetrics = new ServerMetrics(new MetricsRegistry());
+    QueryMemoryTracker tracker = new QueryMemoryTracker(false, MAX_ALLOCATED_BYTES_PER_QUERY, 2, serverMetrics);
+    Assert.assertFalse(tracker.isEnabled());
+    ServerQueryRequest queryRequest = createServerQueryRequest("table", serverMetrics);
+    tracker.register(queryRequest);
+    Assert.assertFalse(queryRequest.isMemoryTracked());
+    Assert.assertTrue(tracker.getTopConsumers(2).isEmpty());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static long getGaugeValue(MetricsRegistry metricsRegistry, String gaugeName) {
+    for (Map.Entry<MetricName, Metric> entry : metricsRegistry.allMetrics().entrySet()) {
+      if (entry.getKey().getName().endsWith(gaugeName)) {
+        return ((Gauge<Long>) entry.getValue()).value();
+      }
+    }
+    throw new IllegalStateException("Failed to find gauge: " + gaugeName);
+  }
+}
@@ -145,6 +145,39 @@ public class PrioritySchedulerTest {
     scheduler.stop();
   }
 
+  @Test
+  public void testCancelRunningQuery()
+      throws Exception {
+    useBarrier = true;
+    startupBarrier = new CyclicBarrier(2);
+    validationBarrier = new CyclicBarrier(2);
+
+    TestPriorityScheduler scheduler = TestPriorityScheduler.create();
+    int totalPermits = scheduler.getRunningQueriesSemaphore().availablePermits();
+    scheduler.start();
+    ServerQueryRequest queryRequest = createServerQueryRequest("1", metrics);
+    ListenableFuture<byte[]> result = scheduler.submit(queryRequest);
+    startupBarrier.await();
+    TestSchedulerGroup group = TestPriorityScheduler.groupFactory.groupMap.get("1");
+    assertTrue(result.cancel(false));
+    assertTrue(queryRequest.isCancelled());
+    // Resources are held until the query stops running
+    assertEquals(group.numRunning(), 1);
+    validationBarrier.await();
+    numQueries.await();
+    long endTime = System.currentTimeMillis() + 5000L;
+    while ((group.numRunning() != 0 || group.getThreadsInUse() != 0
+        || scheduler.getRunningQueriesSemaphore().availablePermits() != totalPermits - 1)
+        && System.currentTimeMillis() < endTime) {
+      Uninterruptibles.sleepUninterruptibly(10L, TimeUnit.MILLISECONDS);
+    }
+    assertEquals(group.numRunning(), 0);
+    assertEquals(group.getThreadsInUse(), 0);
+    // -1 because we expect that 1 permit is blocked by the scheduler main thread
+    assertEquals(scheduler.getRunningQueriesSemaphore().availablePermits(), totalPermits - 1);
+    scheduler.stop();
+  }
+
   @Test
   public void testMultiThreaded() throws InterruptedException {
     // add queries from multiple threads and verify that all those are executed
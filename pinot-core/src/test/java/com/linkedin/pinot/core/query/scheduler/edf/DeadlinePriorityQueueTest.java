@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler.edf;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.core.common.datatable.DataTableFactory;
+import com.linkedin.pinot.core.query.scheduler.OutOfCapacityException;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroup;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroupAccountant;
+import com.linkedin.pinot.core.query.scheduler.SchedulerGroupFactory;
+import com.linkedin.pinot.core.query.scheduler.SchedulerQueryContext;
+import com.linkedin.pinot.core.query.scheduler.TableBasedGroupMapper;
+import com.linkedin.pinot.core.query.scheduler.fcfs.FCFSSchedulerGroup;
+import com.linkedin.pinot.core.query.scheduler.resources.ResourceManager;
+import com.linkedin.pinot.core.query.scheduler.resources.UnboundedResourceManager;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.testng.annotations.Test;
+
+import static com.linkedin.pinot.core.query.scheduler.TestHelper.*;
+import static org.testng.Assert.*;
+
+
+public class DeadlinePriorityQueueTest {
+  final ServerMetrics metrics = new ServerMetrics(new MetricsRegistry());
+  final SchedulerGroupFactory groupFactory = new SchedulerGroupFactory() {
+    @Override
+    public SchedulerGroup create(Configuration config, String groupName) {
+      return new FCFSSchedulerGroup(groupName);
+    }
+  };
+
+  @Test
+  public void testTakeInDeadlineOrder() throws OutOfCapacityException {
+    DeadlinePriorityQueue queue = createQueue(new PropertiesConfiguration());
+    SchedulerQueryContext late = createQuery("1", 5000L, 0L);
+    SchedulerQueryContext early = createQuery("2", 1000L, 0L);
+    SchedulerQueryContext middle = createQuery("1", 3000L, 0L);
+    queue.put(late);
+    queue.put(early);
+    queue.put(middle);
+
+    assertSame(queue.take(), early);
+    assertSame(queue.take(), middle);
+    assertSame(queue.take(), late);
+    assertEquals(queue.drain().size(), 0);
+  }
+
+  @Test
+  public void testDefaultTimeout() throws OutOfCapacityException {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DeadlinePriorityQueue.DEFAULT_QUERY_TIMEOUT_MS_KEY, 2000L);
+    DeadlinePriorityQueue queue = createQueue(conf);
+    SchedulerQueryContext withTimeout = createQuery("1", 3000L, 0L);
+    SchedulerQueryContext withoutTimeout = createQueryRequest("1", metrics);
+    withoutTimeout.getQueryRequest().getTimerContext().setQueryArrivalTimeNs(System.nanoTime());
+    queue.put(withTimeout);
+    queue.put(withoutTimeout);
+
+    assertSame(queue.take(), withoutTimeout);
+    assertSame(queue.take(), withTimeout);
+  }
+
+  @Test
+  public void testDropQueryPastDeadline() throws Exception {
+    DeadlinePriorityQueue queue = createQueue(new PropertiesConfiguration());
+    // Arrived 2 seconds ago with a 1 second budget
+    SchedulerQueryContext expired = createQuery("1", 1000L, 2000L);
+    SchedulerQueryContext valid = createQuery("1", 10000L, 0L);
+    queue.put(expired);
+    queue.put(valid);
+
+    assertSame(queue.take(), valid);
+    assertTimeoutResponse(expired);
+    assertEquals(queue.drain().size(), 0);
+  }
+
+  @Test
+  public void testDropQueryWithEstimatedLatencyOverRemainingTime() throws Exception {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DeadlinePriorityQueue.LATENCY_ESTIMATE_MIN_SAMPLES_KEY, 5);
+    DeadlinePriorityQueue queue = createQueue(conf);
+    for (int i = 0; i < 5; i++) {
+      queue.getLatencyEstimator().record("slow", 5000L);
+      queue.getLatencyEstimator().record("fast", 10L);
+    }
+    SchedulerQueryContext slow = createQuery("slow", 1000L, 0L);
+    SchedulerQueryContext fast = createQuery("fast", 1000L, 0L);
+    queue.put(slow);
+    queue.put(fast);
+
+    assertSame(queue.take(), fast);
+    assertTimeoutResponse(slow);
+  }
+
+  @Test
+  public void testRecoverAfterLatencyEstimateExpires() throws Exception {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DeadlinePriorityQueue.LATENCY_ESTIMATE_MIN_SAMPLES_KEY, 5);
+    conf.setProperty(DeadlinePriorityQueue.LATENCY_ESTIMATE_MAX_AGE_MS_KEY, 100L);
+    DeadlinePriorityQueue queue = createQueue(conf);
+    for (int i = 0; i < 5; i++) {
+      queue.getLatencyEstimator().record("1", 5000L);
+    }
+
+    // Dropped queries record no latency, so the estimate would never come down on its own
+    SchedulerQueryContext dropped = createQuery("1", 1000L, 0L);
+    SchedulerQueryContext valid = createQuery("2", 10000L, 0L);
+    queue.put(dropped);
+    queue.put(valid);
+    assertSame(queue.take(), valid);
+    assertTimeoutResponse(dropped);
+
+    // Once the estimate expired, queries of the table are scheduled again and make the new estimate
+    Thread.sleep(200L);
+    for (int i = 0; i < 5; i++) {
+      queue.put(createQuery("1", 1000L, 0L));
+      SchedulerQueryContext query = queue.take();
+      assertNotNull(query);
+      assertFalse(query.getResultFuture().isDone());
+      query.getResultFuture().set(new byte[0]);
+    }
+    long estimatedLatencyMs = queue.getLatencyEstimator().estimate("1");
+    assertTrue(estimatedLatencyMs >= 0 && estimatedLatencyMs < 1000L, "Estimated latency: " + estimatedLatencyMs);
+  }
+
+  @Test
+  public void testNoLatencyEstimateBeforeMinSamples() throws OutOfCapacityException {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DeadlinePriorityQueue.LATENCY_ESTIMATE_MIN_SAMPLES_KEY, 5);
+    DeadlinePriorityQueue queue = createQueue(conf);
+    for (int i = 0; i < 4; i++) {
+      queue.getLatencyEstimator().record("slow", 5000L);
+    }
+    assertEquals(queue.getLatencyEstimator().estimate("slow"), -1L);
+    SchedulerQueryContext slow = createQuery("slow", 1000L, 0L);
+    queue.put(slow);
+    assertSame(queue.take(), slow);
+  }
+
+  @Test
+  public void testRecordLatencyOnCompletion() throws OutOfCapacityException {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DeadlinePriorityQueue.LATENCY_ESTIMATE_MIN_SAMPLES_KEY, 2);
+    DeadlinePriorityQueue queue = createQueue(conf);
+    for (int i = 0; i < 2; i++) {
+      queue.put(createQuery("1", 10000L, 0L));
+      SchedulerQueryContext query = queue.take();
+      assertEquals(queue.getLatencyEstimator().estimate("1"), -1L);
+      query.getResultFuture().set(new byte[0]);
+    }
+    assertTrue(queue.getLatencyEstimator().estimate("1") >= 0);
+
+    // Cancelled queries are not recorded
+    queue.put(createQuery("2", 10000L, 0L));
+    queue.put(createQuery("2", 10000L, 0L));
+    for (int i = 0; i < 2; i++) {
+      queue.take().getResultFuture().cancel(false);
+    }
+    assertEquals(queue.getLatencyEstimator().estimate("2"), -1L);
+  }
+
+  @Test
+  public void testSkipGroupsThatCanNotSchedule() throws OutOfCapacityException {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    ResourceManager rm = new UnboundedResourceManager(conf) {
+      @Override
+      public boolean canSchedule(SchedulerGroupAccountant accountant) {
+        return !((SchedulerGroup) accountant).name().equals("1");
+      }
+    };
+    DeadlinePriorityQueue queue = new DeadlinePriorityQueue(conf, rm, groupFactory, new TableBasedGroupMapper());
+    SchedulerQueryContext blocked = createQuery("1", 1000L, 0L);
+    SchedulerQueryContext runnable = createQuery("2", 5000L, 0L);
+    queue.put(blocked);
+    queue.put(runnable);
+
+    assertSame(queue.take(), runnable);
+    // The skipped query is still pending
+    assertEquals(queue.drain().size(), 1);
+  }
+
+  @Test
+  public void testPutOutOfCapacity() throws OutOfCapacityException {
+    PropertiesConfiguration conf = new PropertiesConfiguration();
+    conf.setProperty(DeadlinePriorityQueue.MAX_PENDING_QUERIES_KEY, 2);
+    DeadlinePriorityQueue queue = createQueue(conf);
+    queue.put(createQuery("1", 1000L, 0L));
+    queue.put(createQuery("2", 1000L, 0L));
+    try {
+      queue.put(createQuery("1", 1000L, 0L));
+      fail("Expected OutOfCapacityException");
+    } catch (OutOfCapacityException e) {
+      // Expected
+    }
+    queue.take();
+    queue.put(createQuery("1", 1000L, 0L));
+  }
+
+  private DeadlinePriorityQueue createQueue(Configuration conf) {
+    return new DeadlinePriorityQueue(conf, new UnboundedResourceManager(conf), groupFactory,
+        new TableBasedGroupMapper());
+  }
+
+  private SchedulerQueryContext createQuery(String table, long timeoutMs, long ageMs) {
+    ServerQueryRequest queryRequest = createServerQueryRequest(table, metrics);
+    queryRequest.getInstanceRequest().setTimeoutMs(timeoutMs);
+    queryRequest.getTimerContext().setQueryArrivalTimeNs(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ageMs));
+    return new SchedulerQueryContext(queryRequest);
+  }
+
+  private void assertTimeoutResponse(SchedulerQueryContext query) throws Exception {
+    assertTrue(query.getResultFuture().isDone());
+    DataTable dataTable = DataTableFactory.getDataTable(query.getResultFuture().get());
+    assertTrue(dataTable.getMetadata().containsKey(
+        DataTable.EXCEPTION_METADATA_KEY + QueryException.EXECUTION_TIMEOUT_ERROR.getErrorCode()));
+  }
+}
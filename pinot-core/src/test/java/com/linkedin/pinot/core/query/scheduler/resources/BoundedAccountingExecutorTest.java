@@ -19,7 +19,9 @@ import com.linkedin.pinot.core.query.scheduler.SchedulerGroupAccountant;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.testng.annotations.Test;
 
@@ -90,5 +92,53 @@ public class BoundedAccountingExecutorTest {
     verify(accountant, times(pendingJobs)).incrementThreads();
     syncer.validationBarrier.await();
   }
+
+  @Test
+  public void testMeasureThreadUsage()
+      throws Exception {
+    SchedulerGroupAccountant accountant = mock(SchedulerGroupAccountant.class);
+    ExecutorService es = Executors.newFixedThreadPool(2);
+    BoundedAccountingExecutor bes = new BoundedAccountingExecutor(es, 2, accountant,
+        ThreadResourceUsage.isCpuTimeSupported(), ThreadResourceUsage.isAllocatedBytesSupported());
+    final int numJobs = 4;
+    Future[] futures = new Future[numJobs];
+    for (int i = 0; i < numJobs; i++) {
+      futures[i] = bes.submit(new Runnable() {
+        @Override
+        public void run() {
+          // burn some CPU and allocate some memory
+          long sum = 0;
+          for (int j = 0; j < 1_000_000; j++) {
+            sum += Long.toString(j).length();
+          }
+          assertTrue(sum > 0);
+        }
+      });
+    }
+    for (Future future : futures) {
+      future.get();
+    }
+    // usage is reported right after the task completes its future
+    verify(accountant, timeout(5000L).times(numJobs)).addThreadUsage(anyLong(), anyLong());
+    if (ThreadResourceUsage.isCpuTimeSupported()) {
+      assertTrue(bes.getCpuTimeNs() > 0);
+    }
+    if (ThreadResourceUsage.isAllocatedBytesSupported()) {
+      assertTrue(bes.getAllocatedBytes() > 0);
+    }
+
+    // nothing is measured by default
+    reset(accountant);
+    bes = new BoundedAccountingExecutor(es, 2, accountant);
+    bes.submit(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }).get();
+    verify(accountant, never()).addThreadUsage(anyLong(), anyLong());
+    assertEquals(bes.getCpuTimeNs(), 0L);
+    assertEquals(bes.getAllocatedBytes(), 0L);
+    es.shutdown();
+  }
 }
 
@@ -17,6 +17,8 @@ package com.linkedin.pinot.core.query.scheduler.resources;
 
 import com.linkedin.pinot.common.query.ServerQueryRequest;
 import com.linkedin.pinot.core.query.scheduler.SchedulerGroupAccountant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.testng.annotations.Test;
@@ -39,9 +41,47 @@ public class ResourceManagerTest {
     assertTrue(rm.canSchedule(accountant));
   }
 
+  @Test
+  public void testElasticThreadMode() throws Exception {
+    Configuration config = getConfig(2, 2);
+    config.setProperty(ResourceManager.THREAD_MODE_CONFIG_KEY, ResourceManager.ELASTIC_THREAD_MODE);
+    config.setProperty(ResourceManager.ELASTIC_MAX_WORKER_THREADS_CONFIG_KEY, 8);
+    ResourceManager rm = getResourceManager(config, 1, 3);
+    assertTrue(rm.isElasticThreadMode());
+    assertEquals(rm.getNumQueryWorkerThreads(), 2);
+
+    // blocked workers do not hold back the others: all of them run concurrently
+    final int numTasks = 6;
+    final CountDownLatch started = new CountDownLatch(numTasks);
+    final CountDownLatch finished = new CountDownLatch(numTasks);
+    for (int i = 0; i < numTasks; i++) {
+      rm.getQueryWorkers().submit(new Runnable() {
+        @Override
+        public void run() {
+          started.countDown();
+          try {
+            if (started.await(10, TimeUnit.SECONDS)) {
+              finished.countDown();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    rm.stop();
+
+    assertFalse(getResourceManager(2, 2, 1, 3).isElasticThreadMode());
+  }
+
   private ResourceManager getResourceManager(int runners, int workers, final int softLimit, final int hardLimit) {
+    return getResourceManager(getConfig(runners, workers), softLimit, hardLimit);
+  }
+
+  private ResourceManager getResourceManager(Configuration config, final int softLimit, final int hardLimit) {
 
-    return new ResourceManager(getConfig(runners, workers)) {
+    return new ResourceManager(config) {
 
       @Override
       public QueryExecutorService getExecutorService(ServerQueryRequest query, SchedulerGroupAccountant accountant) {
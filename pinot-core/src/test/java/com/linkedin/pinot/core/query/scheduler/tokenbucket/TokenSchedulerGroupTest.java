@@ -27,7 +27,11 @@ public class TokenSchedulerGroupTest {
     static final int numTokensPerMs = 100;
     static final int tokenLifetimeMs = 100;
     TestTokenSchedulerGroup() {
-      super("testGroup", numTokensPerMs, tokenLifetimeMs);
+      this(false);
+    }
+
+    TestTokenSchedulerGroup(boolean chargeCpuTime) {
+      super("testGroup", numTokensPerMs, tokenLifetimeMs, chargeCpuTime);
     }
 
     @Override
@@ -119,6 +123,33 @@ public class TokenSchedulerGroupTest {
     assertEquals(group.getThreadsInUse(), 0);
   }
 
+  @Test
+  public void testChargeCpuTime() {
+    timeMillis = 100;
+    TestTokenSchedulerGroup group = new TestTokenSchedulerGroup(true);
+    int availableTokens = group.getAvailableTokens();
+    assertEquals(availableTokens, TestTokenSchedulerGroup.numTokensPerMs * TestTokenSchedulerGroup.tokenLifetimeMs);
+
+    // threads in use are not charged for wall clock time
+    incrementThreads(group, 5);
+    timeMillis += 20;
+    assertEquals(group.getAvailableTokens(), availableTokens);
+
+    // reported CPU time is charged, sub-millisecond remainders are accumulated
+    group.addThreadUsage(15_500_000L, 1024L);
+    assertEquals(group.getAvailableTokens(), availableTokens - 15);
+    group.addThreadUsage(500_000L, 1024L);
+    assertEquals(group.getAvailableTokens(), availableTokens - 16);
+    decrementThreads(group, 5);
+    assertEquals(group.getAvailableTokens(), availableTokens - 16);
+
+    // wall clock time based group ignores the reported CPU time
+    TestTokenSchedulerGroup wallClockGroup = new TestTokenSchedulerGroup();
+    availableTokens = wallClockGroup.getAvailableTokens();
+    wallClockGroup.addThreadUsage(15_000_000L, 1024L);
+    assertEquals(wallClockGroup.getAvailableTokens(), availableTokens);
+  }
+
   private void incrementThreads(TokenSchedulerGroup group, int nThreads) {
     for (int i = 0; i < nThreads; i++) {
       group.incrementThreads();
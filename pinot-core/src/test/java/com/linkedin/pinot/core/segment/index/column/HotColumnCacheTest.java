@@ -0,0 +1,325 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.column;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.io.reader.SingleColumnMultiValueReader;
+import com.linkedin.pinot.core.io.reader.SingleColumnSingleValueReader;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.store.SegmentDirectory;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class HotColumnCacheTest {
+  private static final File INDEX_DIR = new File(HotColumnCacheTest.class.getName());
+  private static final String AVRO_DATA = "data/test_data-sv.avro";
+  private static final int PROMOTION_THRESHOLD = 2;
+  private static final String DICT_COLUMN = "column1";
+  private static final String RAW_COLUMN = "count";
+
+  private SegmentMetadataImpl _segmentMetadata;
+  private SegmentDirectory _segmentDirectory;
+  private SegmentDirectory.Reader _segmentReader;
+  private final Map<String, ColumnIndexContainer> _indexContainerMap = new HashMap<>();
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    URL resourceUrl = getClass().getClassLoader().getResource(AVRO_DATA);
+    Assert.assertNotNull(resourceUrl);
+    File avroFile = new File(resourceUrl.getFile());
+
+    SegmentGeneratorConfig segmentGeneratorConfig =
+        SegmentTestUtils.getSegmentGeneratorConfigWithoutTimeColumn(avroFile, INDEX_DIR, "testTable");
+    segmentGeneratorConfig.setRawIndexCreationColumns(Collections.singletonList(RAW_COLUMN));
+    SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(segmentGeneratorConfig);
+    driver.build();
+
+    File indexDir = new File(INDEX_DIR, driver.getSegmentName());
+    _segmentMetadata = new SegmentMetadataImpl(indexDir);
+    _segmentDirectory = SegmentDirectory.createFromLocalFS(indexDir, _segmentMetadata, ReadMode.mmap);
+    _segmentReader = _segmentDirectory.createReader();
+    for (Map.Entry<String, ColumnMetadata> entry : _segmentMetadata.getColumnMetadataMap().entrySet()) {
+      _indexContainerMap.put(entry.getKey(), new ColumnIndexContainer(_segmentReader, entry.getValue(), null));
+    }
+  }
+
+  @Test
+  public void testDisabled() {
+    HotColumnCache hotColumnCache = new HotColumnCache(0L, 1, null);
+    Assert.assertFalse(hotColumnCache.isEnabled());
+    for (ColumnIndexContainer indexContainer : _indexContainerMap.values()) {
+      for (int i = 0; i < 5; i++) {
+        Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+      }
+    }
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+  }
+
+  @Test
+  public void testPromotion() throws Exception {
+    HotColumnCache hotColumnCache =
+        new HotColumnCache(Long.MAX_VALUE, PROMOTION_THRESHOLD, null, MoreExecutors.directExecutor());
+    long expectedSizeBytes = 0L;
+    for (Map.Entry<String, ColumnIndexContainer> entry : _indexContainerMap.entrySet()) {
+      ColumnIndexContainer indexContainer = entry.getValue();
+      if (entry.getKey().equals(RAW_COLUMN)) {
+        continue;
+      }
+
+      // Not promoted before reaching the threshold
+      Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+
+      ColumnIndexContainer promoted = hotColumnCache.get(indexContainer);
+      Assert.assertNotSame(promoted, indexContainer);
+      Assert.assertSame(hotColumnCache.get(indexContainer), promoted);
+      expectedSizeBytes += indexContainer.getHeapCopySizeBytes();
+      Assert.assertEquals(hotColumnCache.getSizeBytes(), expectedSizeBytes);
+
+      // Promoted copy should contain the same values
+      ColumnMetadata columnMetadata = _segmentMetadata.getColumnMetadataFor(entry.getKey());
+      Assert.assertEquals(promoted.getDictionary().length(), indexContainer.getDictionary().length());
+      for (int dictId = 0; dictId < columnMetadata.getCardinality(); dictId++) {
+        Assert.assertEquals(promoted.getDictionary().get(dictId), indexContainer.getDictionary().get(dictId));
+      }
+      int numDocs = columnMetadata.getTotalDocs();
+      if (columnMetadata.isSingleValue()) {
+        SingleColumnSingleValueReader expectedReader =
+            (SingleColumnSingleValueReader) indexContainer.getForwardIndex();
+        SingleColumnSingleValueReader actualReader = (SingleColumnSingleValueReader) promoted.getForwardIndex();
+        for (int docId = 0; docId < numDocs; docId++) {
+          Assert.assertEquals(actualReader.getInt(docId), expectedReader.getInt(docId));
+        }
+      } else {
+        SingleColumnMultiValueReader expectedReader =
+            (SingleColumnMultiValueReader) indexContainer.getForwardIndex();
+        SingleColumnMultiValueReader actualReader = (SingleColumnMultiValueReader) promoted.getForwardIndex();
+        int[] expectedValues = new int[columnMetadata.getMaxNumberOfMultiValues()];
+        int[] actualValues = new int[columnMetadata.getMaxNumberOfMultiValues()];
+        for (int docId = 0; docId < numDocs; docId++) {
+          int numValues = expectedReader.getIntArray(docId, expectedValues);
+          Assert.assertEquals(actualReader.getIntArray(docId, actualValues), numValues);
+          for (int i = 0; i < numValues; i++) {
+            Assert.assertEquals(actualValues[i], expectedValues[i]);
+          }
+        }
+      }
+    }
+
+    for (ColumnIndexContainer indexContainer : _indexContainerMap.values()) {
+      hotColumnCache.invalidate(indexContainer);
+    }
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+  }
+
+  @Test
+  public void testRawColumnNotPromoted() {
+    ColumnIndexContainer indexContainer = _indexContainerMap.get(RAW_COLUMN);
+    Assert.assertFalse(indexContainer.hasHeapCopy());
+    HotColumnCache hotColumnCache =
+        new HotColumnCache(Long.MAX_VALUE, PROMOTION_THRESHOLD, null, MoreExecutors.directExecutor());
+    for (int i = 0; i < 5; i++) {
+      Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+    }
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+    hotColumnCache.invalidate(indexContainer);
+  }
+
+  @Test
+  public void testEviction() {
+    List<ColumnIndexContainer> indexContainers = new ArrayList<>(_indexContainerMap.values());
+    Collections.sort(indexContainers, new Comparator<ColumnIndexContainer>() {
+      @Override
+      public int compare(ColumnIndexContainer o1, ColumnIndexContainer o2) {
+        return Long.compare(o2.getHeapCopySizeBytes(), o1.getHeapCopySizeBytes());
+      }
+    });
+    ColumnIndexContainer largest = indexContainers.get(0);
+    ColumnIndexContainer secondLargest = indexContainers.get(1);
+
+    // Budget only fits the largest column, so promoting it evicts the other one
+    HotColumnCache hotColumnCache =
+        new HotColumnCache(largest.getHeapCopySizeBytes(), PROMOTION_THRESHOLD, null,
+            MoreExecutors.directExecutor());
+    hotColumnCache.get(secondLargest);
+    Assert.assertNotSame(hotColumnCache.get(secondLargest), secondLargest);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), secondLargest.getHeapCopySizeBytes());
+    hotColumnCache.get(largest);
+    Assert.assertNotSame(hotColumnCache.get(largest), largest);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), largest.getHeapCopySizeBytes());
+
+    // Evicted column is served from its original buffers until it reaches the threshold again
+    Assert.assertSame(hotColumnCache.get(secondLargest), secondLargest);
+    Assert.assertNotSame(hotColumnCache.get(largest), largest);
+
+    hotColumnCache.invalidate(largest);
+    hotColumnCache.invalidate(secondLargest);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+  }
+
+  @Test
+  public void testAsyncPromotion() {
+    ColumnIndexContainer indexContainer = _indexContainerMap.get(DICT_COLUMN);
+    DeferredExecutor executor = new DeferredExecutor();
+    HotColumnCache hotColumnCache = new HotColumnCache(Long.MAX_VALUE, PROMOTION_THRESHOLD, null, executor);
+
+    // Lookup reaching the threshold only schedules the promotion
+    for (int i = 0; i < PROMOTION_THRESHOLD; i++) {
+      Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+    }
+    Assert.assertNotNull(executor._pending);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+
+    executor.runPending();
+    Assert.assertNotSame(hotColumnCache.get(indexContainer), indexContainer);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), indexContainer.getHeapCopySizeBytes());
+
+    hotColumnCache.invalidate(indexContainer);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+  }
+
+  @Test
+  public void testInvalidateBeforePromotion() {
+    ColumnIndexContainer indexContainer = _indexContainerMap.get(DICT_COLUMN);
+    DeferredExecutor executor = new DeferredExecutor();
+    HotColumnCache hotColumnCache = new HotColumnCache(Long.MAX_VALUE, PROMOTION_THRESHOLD, null, executor);
+    for (int i = 0; i < PROMOTION_THRESHOLD; i++) {
+      hotColumnCache.get(indexContainer);
+    }
+
+    // Promotion scheduled before the segment is destroyed should not publish a copy afterwards
+    hotColumnCache.invalidate(indexContainer);
+    executor.runPending();
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+    Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+    hotColumnCache.invalidate(indexContainer);
+  }
+
+  @Test
+  public void testDroppedPromotionRetried() {
+    ColumnIndexContainer indexContainer = _indexContainerMap.get(DICT_COLUMN);
+    RejectingExecutor executor = new RejectingExecutor();
+    HotColumnCache hotColumnCache = new HotColumnCache(Long.MAX_VALUE, PROMOTION_THRESHOLD, null, executor);
+
+    // Dropped promotion resets the access count
+    executor._reject = true;
+    for (int i = 0; i < PROMOTION_THRESHOLD; i++) {
+      Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+    }
+    Assert.assertEquals(executor._numExecuted, 1);
+
+    // Column is promoted once it reaches the threshold again
+    executor._reject = false;
+    Assert.assertSame(hotColumnCache.get(indexContainer), indexContainer);
+    Assert.assertNotSame(hotColumnCache.get(indexContainer), indexContainer);
+    Assert.assertEquals(executor._numExecuted, 2);
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), indexContainer.getHeapCopySizeBytes());
+
+    hotColumnCache.invalidate(indexContainer);
+  }
+
+  @Test
+  public void testFailedPromotionRetried() {
+    ColumnIndexContainer indexContainer = _indexContainerMap.get(DICT_COLUMN);
+    DeferredExecutor executor = new DeferredExecutor();
+    // Column does not fit in the budget
+    HotColumnCache hotColumnCache =
+        new HotColumnCache(indexContainer.getHeapCopySizeBytes() - 1, PROMOTION_THRESHOLD, null, executor);
+
+    // Only one promotion is in flight at a time
+    for (int i = 0; i < 2 * PROMOTION_THRESHOLD; i++) {
+      hotColumnCache.get(indexContainer);
+    }
+    Runnable pending = executor._pending;
+    Assert.assertNotNull(pending);
+    executor.runPending();
+    Assert.assertEquals(hotColumnCache.getSizeBytes(), 0L);
+
+    // Failed promotion is scheduled again once the column reaches the threshold again
+    for (int i = 0; i < PROMOTION_THRESHOLD - 1; i++) {
+      hotColumnCache.get(indexContainer);
+    }
+    Assert.assertNull(executor._pending);
+    hotColumnCache.get(indexContainer);
+    Assert.assertNotNull(executor._pending);
+    Assert.assertNotSame(executor._pending, pending);
+
+    hotColumnCache.invalidate(indexContainer);
+  }
+
+  /**
+   * Executor running the tasks in the calling thread, or rejecting them.
+   */
+  private static class RejectingExecutor implements Executor {
+    boolean _reject;
+    int _numExecuted;
+
+    @Override
+    public void execute(Runnable command) {
+      _numExecuted++;
+      if (_reject) {
+        throw new RejectedExecutionException();
+      }
+      command.run();
+    }
+  }
+
+  /**
+   * Executor holding the last submitted task until {@link #runPending()} is called.
+   */
+  private static class DeferredExecutor implements Executor {
+    Runnable _pending;
+
+    @Override
+    public void execute(Runnable command) {
+      _pending = command;
+    }
+
+    void runPending() {
+      _pending.run();
+      _pending = null;
+    }
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    _segmentReader.close();
+    _segmentDirectory.close();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+}
@@ -15,7 +15,9 @@
  */
 package com.linkedin.pinot.core.segment.memory;
 
+import com.google.common.base.Function;
 import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.util.TestUtils;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
@@ -243,4 +245,53 @@ public class PinotDataBufferTest {
     PinotDataBuffer view = buffer.view(0, 0);
     Assert.assertEquals(0, view.size());
   }
+
+  @Test
+  public void testPrefetch()
+      throws Exception {
+    File file = new File(this.getClass().getName() + ".prefetch");
+    int size = 1024 * 1024;
+    PinotDataBuffer buffer = null;
+    PinotDataBuffer heapBuffer = null;
+    try {
+      buffer = PinotDataBuffer.fromFile(file, 0, size, ReadMode.mmap, FileChannel.MapMode.READ_WRITE, "testing");
+      Assert.assertEquals(buffer.getAccessPattern(), PinotDataBuffer.AccessPattern.NORMAL);
+      buffer.setAccessPattern(PinotDataBuffer.AccessPattern.SEQUENTIAL);
+
+      // Views and duplicates inherit the access pattern
+      final PinotDataBuffer view = buffer.view(size / 2, size);
+      Assert.assertEquals(view.getAccessPattern(), PinotDataBuffer.AccessPattern.SEQUENTIAL);
+      Assert.assertEquals(view.duplicate().getAccessPattern(), PinotDataBuffer.AccessPattern.SEQUENTIAL);
+
+      // Prefetching heap buffers is a no-op
+      heapBuffer = PinotDataBuffer.fromFile(file, ReadMode.heap, FileChannel.MapMode.READ_ONLY, "testing");
+      heapBuffer.prefetch(0, size);
+      Assert.assertEquals(heapBuffer.getNumBytesPrefetched(), 0L);
+
+      // Prefetched bytes are tracked per mapping, shared by the buffer and its views
+      view.prefetch(size / 4, size);
+      TestUtils.waitForCondition(new Function<Void, Boolean>() {
+        @Override
+        public Boolean apply(Void input) {
+          return view.getNumBytesPrefetched() > 0L;
+        }
+      }, 10L, 10_000L, "Failed to prefetch the mapped buffer");
+      // Requested range is truncated at the end of the view
+      Assert.assertEquals(view.getNumBytesPrefetched(), size / 4);
+      Assert.assertEquals(buffer.getNumBytesPrefetched(), size / 4);
+
+      // Prefetching a closed buffer is a no-op
+      buffer.close();
+      view.prefetch(0, size);
+      Assert.assertEquals(view.getNumBytesPrefetched(), size / 4);
+    } finally {
+      if (buffer != null) {
+        buffer.close();
+      }
+      if (heapBuffer != null) {
+        heapBuffer.close();
+      }
+      org.apache.commons.io.FileUtils.deleteQuietly(file);
+    }
+  }
 }
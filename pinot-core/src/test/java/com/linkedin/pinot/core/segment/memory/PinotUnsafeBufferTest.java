@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.memory;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class PinotUnsafeBufferTest {
+  private static final File TEMP_FILE = new File(FileUtils.getTempDirectory(), PinotUnsafeBufferTest.class.getName());
+  private static final int NUM_VALUES = 10_000;
+
+  @Test(enabled = false)
+  public void testLoadGet() {
+    PinotUnsafeBuffer buffer = PinotUnsafeBuffer.allocateDirect(3L * PinotDataBufferTest.ONE_GB);
+    PinotDataBufferTest.loadVerifyAllTypes(buffer);
+    buffer.close();
+  }
+
+  @Test
+  public void testReadWrite() {
+    PinotUnsafeBuffer buffer = PinotUnsafeBuffer.allocateDirect(NUM_VALUES * 8L);
+    try {
+      for (int i = 0; i < NUM_VALUES; i++) {
+        buffer.putLong(i * 8L, i * 31L);
+      }
+      for (int i = 0; i < NUM_VALUES; i++) {
+        Assert.assertEquals(buffer.getLong(i * 8), i * 31L);
+      }
+
+      for (int i = 0; i < NUM_VALUES * 2; i++) {
+        buffer.putFloat(i * 4, i + 0.5f);
+      }
+      for (int i = 0; i < NUM_VALUES * 2; i++) {
+        Assert.assertEquals(buffer.getFloat(i * 4L), i + 0.5f);
+      }
+
+      // Unaligned accesses
+      buffer.putInt(3L, 0x12345678);
+      Assert.assertEquals(buffer.getInt(3), 0x12345678);
+      buffer.putDouble(13, 1.25);
+      Assert.assertEquals(buffer.getDouble(13L), 1.25);
+      buffer.putChar(1L, 'x');
+      Assert.assertEquals(buffer.getChar(1), 'x');
+      buffer.putShort(7, (short) -2);
+      Assert.assertEquals(buffer.getShort(7L), (short) -2);
+    } finally {
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void testByteOrder() {
+    PinotUnsafeBuffer buffer = PinotUnsafeBuffer.allocateDirect(8);
+    try {
+      // Big-endian by default, same as PinotByteBuffer
+      buffer.putInt(0, 0x01020304);
+      Assert.assertEquals(buffer.getByte(0), 1);
+      Assert.assertEquals(buffer.getByte(3), 4);
+      Assert.assertEquals(buffer.toDirectByteBuffer(0, 4).getInt(0), 0x01020304);
+
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      Assert.assertEquals(buffer.getInt(0), 0x04030201);
+
+      // Views and duplicates inherit the byte order
+      Assert.assertEquals(buffer.duplicate().getInt(0), 0x04030201);
+      Assert.assertEquals(buffer.view(0, 4).getInt(0), 0x04030201);
+    } finally {
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void testViewAndCopy() {
+    PinotUnsafeBuffer buffer = PinotUnsafeBuffer.allocateDirect(1024);
+    try {
+      byte[] bytes = new byte[1024];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = (byte) i;
+      }
+      Assert.assertEquals(buffer.readFrom(bytes, 0L), bytes.length);
+
+      PinotDataBuffer view = buffer.view(100, 200);
+      Assert.assertEquals(view.size(), 100L);
+      Assert.assertEquals(view.getByte(0), (byte) 100);
+      byte[] copy = new byte[50];
+      view.copyTo(10, copy, 0, 50);
+      for (int i = 0; i < copy.length; i++) {
+        Assert.assertEquals(copy[i], (byte) (110 + i));
+      }
+
+      // Closing the view does not release the memory
+      view.close();
+      Assert.assertEquals(buffer.getByte(1000), (byte) 1000);
+
+      ByteBuffer source = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5});
+      buffer.readFrom(source, 1, 10, 3);
+      Assert.assertEquals(buffer.getByte(10), 2);
+      Assert.assertEquals(buffer.getByte(12), 4);
+      Assert.assertEquals(buffer.getByte(13), (byte) 13);
+
+      PinotDataBuffer heapCopy = PinotDataBuffer.copyToHeap(buffer);
+      Assert.assertEquals(heapCopy.getInt(16), buffer.getInt(16));
+    } finally {
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void testReadFromFile()
+      throws Exception {
+    byte[] bytes = new byte[16];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    FileUtils.writeByteArrayToFile(TEMP_FILE, bytes);
+    PinotUnsafeBuffer buffer = PinotUnsafeBuffer.allocateDirect(bytes.length);
+    PinotUnsafeBuffer smallBuffer = PinotUnsafeBuffer.allocateDirect(bytes.length - 1);
+    try {
+      buffer.readFrom(TEMP_FILE);
+      Assert.assertEquals(buffer.getByte(15), 15);
+
+      // File larger than the buffer
+      try {
+        smallBuffer.readFrom(TEMP_FILE);
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    } finally {
+      buffer.close();
+      smallBuffer.close();
+      FileUtils.deleteQuietly(TEMP_FILE);
+    }
+  }
+
+  @Test
+  public void testLargeOffsets() {
+    // Buffers of at least 2GB are backed by the unsafe buffer
+    if (!Boolean.getBoolean(PinotDataBuffer.USE_UNSAFE_BUFFER_PROPERTY)) {
+      Assert.assertFalse(PinotDataBuffer.useUnsafeBuffer(Integer.MAX_VALUE - 1L));
+    }
+    Assert.assertTrue(PinotDataBuffer.useUnsafeBuffer(Integer.MAX_VALUE + 1L));
+
+    // Direct memory is allocated lazily by the OS, so only the pages touched below are actually backed by memory
+    long offset = Integer.MAX_VALUE + 5L;
+    PinotUnsafeBuffer largeBuffer = PinotUnsafeBuffer.allocateDirect(offset + 1024);
+    try {
+      PinotDataBuffer buffer = largeBuffer.view(offset, offset + 1024);
+      largeBuffer.putInt(offset, 0x12345678);
+      Assert.assertEquals(buffer.getInt(0), 0x12345678);
+      largeBuffer.putLong(offset + 8, Long.MIN_VALUE + 7);
+      Assert.assertEquals(buffer.getLong(8), Long.MIN_VALUE + 7);
+      largeBuffer.putDouble(offset + 16, 1.25);
+      Assert.assertEquals(buffer.getDouble(16), 1.25);
+      largeBuffer.putFloat(offset + 24, 0.5f);
+      Assert.assertEquals(buffer.getFloat(24), 0.5f);
+      largeBuffer.putShort(offset + 28, (short) -2);
+      Assert.assertEquals(buffer.getShort(28), (short) -2);
+      largeBuffer.putChar(offset + 30, 'x');
+      Assert.assertEquals(buffer.getChar(30), 'x');
+      largeBuffer.putByte(offset + 32, (byte) 3);
+      Assert.assertEquals(largeBuffer.getByte(offset + 32), 3);
+
+      byte[] bytes = {1, 2, 3, 4};
+      Assert.assertEquals(largeBuffer.readFrom(bytes, offset + 100), bytes.length);
+      byte[] copy = new byte[4];
+      buffer.copyTo(100, copy, 0, 4);
+      Assert.assertEquals(copy, bytes);
+      largeBuffer.copyTo(offset + 100, copy, 0, 4);
+      Assert.assertEquals(copy, bytes);
+      Assert.assertEquals(largeBuffer.toDirectByteBuffer(offset, 4).getInt(0), 0x12345678);
+
+      // Views past 2GB
+      PinotDataBuffer view = largeBuffer.view(offset + 100, offset + 200);
+      Assert.assertEquals(view.size(), 100L);
+      Assert.assertEquals(view.getByte(3), 4);
+      Assert.assertEquals(largeBuffer.view(offset - 4, offset + 4).getInt(4), 0x12345678);
+    } finally {
+      largeBuffer.close();
+    }
+  }
+
+  /**
+   * Maps a sparse file larger than 2GB, disabled by default as it requires sparse file support and enough temp space.
+   */
+  @Test(enabled = false)
+  public void testMapLargeFile()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_FILE);
+    try {
+      // Mapping through the factory with a large length picks the unsafe buffer
+      PinotDataBuffer largeBuffer =
+          PinotDataBuffer.fromFile(TEMP_FILE, 0, Integer.MAX_VALUE + 1L, ReadMode.mmap, FileChannel.MapMode.READ_WRITE,
+              "testing");
+      try {
+        Assert.assertTrue(largeBuffer instanceof PinotUnsafeBuffer);
+        largeBuffer.putInt(40L, 70);
+        Assert.assertEquals(largeBuffer.getInt(40L), 70);
+        largeBuffer.putInt(Integer.MAX_VALUE - 3L, 12345);
+        Assert.assertEquals(largeBuffer.getInt(Integer.MAX_VALUE - 3L), 12345);
+      } finally {
+        largeBuffer.close();
+      }
+    } finally {
+      FileUtils.deleteQuietly(TEMP_FILE);
+    }
+  }
+
+  @Test
+  public void testCompatibleWithByteBuffer()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_FILE);
+    try {
+      PinotDataBuffer writeBuffer =
+          PinotByteBuffer.mapFromFile(TEMP_FILE, 0, NUM_VALUES * 4L, FileChannel.MapMode.READ_WRITE, "testing");
+      for (int i = 0; i < NUM_VALUES; i++) {
+        writeBuffer.putInt(i * 4, i * 7);
+      }
+      writeBuffer.close();
+
+      PinotDataBuffer mmapBuffer =
+          PinotUnsafeBuffer.mapFromFile(TEMP_FILE, 0, NUM_VALUES * 4L, FileChannel.MapMode.READ_ONLY, "testing");
+      PinotDataBuffer heapBuffer = PinotUnsafeBuffer.loadFromFile(TEMP_FILE, 0, NUM_VALUES * 4L, "testing");
+      try {
+        for (int i = 0; i < NUM_VALUES; i++) {
+          Assert.assertEquals(mmapBuffer.getInt(i * 4L), i * 7);
+          Assert.assertEquals(heapBuffer.getInt(i * 4L), i * 7);
+        }
+        PinotDataBuffer view = mmapBuffer.view(400, 800);
+        Assert.assertEquals(view.getInt(0), 100 * 7);
+      } finally {
+        mmapBuffer.close();
+        heapBuffer.close();
+      }
+    } finally {
+      FileUtils.deleteQuietly(TEMP_FILE);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import com.clearspring.analytics.stream.quantile.TDigest;
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.common.utils.primitive.ByteArray;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.query.aggregation.function.PercentileTDigestAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.customobject.ThetaSketch;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Test for {@link OffHeapStarTreeBuilder} with pre-aggregated sketch (TDigest, theta sketch) metrics stored as BYTES.
+ */
+public class OffHeapStarTreeBuilderWithSketchFieldTest {
+  private static final File TEMP_DIR =
+      new File(FileUtils.getTempDirectory(), "OffHeapStarTreeBuilderWithSketchFieldTest");
+  private static final long RANDOM_SEED = System.currentTimeMillis();
+  private static final Random RANDOM = new Random(RANDOM_SEED);
+  private static final String ERROR_MESSAGE = "Random seed: " + RANDOM_SEED;
+
+  private static final int NUM_ROWS = 1000;
+  private static final int CARDINALITY = 200;
+  private static final String TDIGEST_METRIC = "latency_tdigest";
+  private static final String THETA_SKETCH_METRIC = "userId_theta";
+  private static final int TDIGEST_FIELD_SIZE = 8192;
+  private static final int THETA_SKETCH_FIELD_SIZE = 4096;
+
+  @Test
+  public void testSketchMetrics() throws Exception {
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec("d1", DataType.STRING, true));
+    schema.addField(new DimensionFieldSpec("d2", DataType.STRING, true));
+    schema.addField(new TimeFieldSpec("daysSinceEpoch", DataType.INT, TimeUnit.DAYS));
+    schema.addField(new MetricFieldSpec("m1", DataType.INT));
+    schema.addField(new MetricFieldSpec(TDIGEST_METRIC, DataType.BYTES, TDIGEST_FIELD_SIZE, DerivedMetricType.TDIGEST));
+    schema.addField(
+        new MetricFieldSpec(THETA_SKETCH_METRIC, DataType.BYTES, THETA_SKETCH_FIELD_SIZE, DerivedMetricType.THETA_SKETCH));
+
+    StarTreeBuilderConfig builderConfig = new StarTreeBuilderConfig();
+    builderConfig.setOutDir(TEMP_DIR);
+    builderConfig.setSchema(schema);
+    builderConfig.setDimensionsSplitOrder(Arrays.asList("d1", "d2"));
+    builderConfig.setMaxNumLeafRecords(10);
+
+    double[] latencies = new double[NUM_ROWS];
+    Set<Integer> userIds = new HashSet<>();
+    try (OffHeapStarTreeBuilder builder = new OffHeapStarTreeBuilder()) {
+      builder.init(builderConfig);
+      HashMap<String, Object> map = new HashMap<>();
+      for (int row = 0; row < NUM_ROWS; row++) {
+        map.put("d1", "d1-v" + row % 3);
+        map.put("d2", "d2-v" + row % 7);
+        map.put("daysSinceEpoch", 1);
+        map.put("m1", 1);
+
+        latencies[row] = RANDOM.nextDouble() * 1000;
+        TDigest tDigest = new TDigest(PercentileTDigestAggregationFunction.DEFAULT_TDIGEST_COMPRESSION);
+        tDigest.add(latencies[row]);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(tDigest.byteSize());
+        tDigest.asBytes(byteBuffer);
+        map.put(TDIGEST_METRIC, new ByteArray(byteBuffer.array()));
+
+        int userId = RANDOM.nextInt(CARDINALITY);
+        userIds.add(userId);
+        ThetaSketch thetaSketch = new ThetaSketch();
+        thetaSketch.update(userId);
+        map.put(THETA_SKETCH_METRIC, new ByteArray(thetaSketch.toBytes()));
+
+        GenericRow genericRow = new GenericRow();
+        genericRow.init(map);
+        builder.append(genericRow);
+      }
+      builder.build();
+
+      // The last aggregated document is the star node for all dimensions, which aggregates all the raw documents
+      int totalDocs = builder.getTotalRawDocumentCount() + builder.getTotalAggregateDocumentCount();
+      Assert.assertTrue(builder.getTotalAggregateDocumentCount() > 0);
+      Iterator<GenericRow> iterator = builder.iterator(builder.getTotalRawDocumentCount(), totalDocs);
+      GenericRow lastRow = null;
+      while (iterator.hasNext()) {
+        lastRow = iterator.next();
+      }
+      Assert.assertNotNull(lastRow);
+      Assert.assertEquals(lastRow.getValue("m1"), NUM_ROWS);
+
+      TDigest tDigest = TDigest.fromBytes(ByteBuffer.wrap(((ByteArray) lastRow.getValue(TDIGEST_METRIC)).getBytes()));
+      Assert.assertEquals(tDigest.size(), NUM_ROWS);
+      Arrays.sort(latencies);
+      Assert.assertEquals(tDigest.quantile(0.5), latencies[NUM_ROWS / 2], 50.0, ERROR_MESSAGE);
+
+      ThetaSketch thetaSketch = ThetaSketch.fromBytes(((ByteArray) lastRow.getValue(THETA_SKETCH_METRIC)).getBytes());
+      Assert.assertEquals(Math.round(thetaSketch.getEstimate()), userIds.size(), ERROR_MESSAGE);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testBytesMetricWithoutDerivedType() throws Exception {
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec("d1", DataType.STRING, true));
+    schema.addField(new MetricFieldSpec("bytesMetric", DataType.BYTES));
+
+    StarTreeBuilderConfig builderConfig = new StarTreeBuilderConfig();
+    builderConfig.setOutDir(TEMP_DIR);
+    builderConfig.setSchema(schema);
+    try (OffHeapStarTreeBuilder builder = new OffHeapStarTreeBuilder()) {
+      builder.init(builderConfig);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.util.trace;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.core.query.exception.QueryCancelledException;
+import com.linkedin.pinot.core.query.scheduler.resources.ThreadResourceUsage;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import static com.linkedin.pinot.core.query.scheduler.TestHelper.createServerQueryRequest;
+
+
+public class CancellationContextTest {
+  private static final ServerMetrics SERVER_METRICS = new ServerMetrics(new MetricsRegistry());
+
+  @Test
+  public void testCancellation()
+      throws Exception {
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    ServerQueryRequest queryRequest = createServerQueryRequest("table", SERVER_METRICS);
+    CancellationContext.register(queryRequest);
+    try {
+      // Jobs created while processing the query are registered to the same query
+      TraceCallable<Boolean> checkCancelledJob = new TraceCallable<Boolean>() {
+        @Override
+        public Boolean callJob() {
+          try {
+            CancellationContext.checkCancelled();
+            return false;
+          } catch (QueryCancelledException e) {
+            return true;
+          }
+        }
+      };
+      Assert.assertFalse(executorService.submit(checkCancelledJob).get());
+
+      // Cancelling from a job cancels the query for all the threads
+      executorService.submit(new TraceRunnable() {
+        @Override
+        public void runJob() {
+          CancellationContext.cancel();
+        }
+      }).get();
+      Assert.assertTrue(queryRequest.isCancelled());
+      Assert.assertTrue(executorService.submit(checkCancelledJob).get());
+      try {
+        CancellationContext.checkCancelled();
+        Assert.fail();
+      } catch (QueryCancelledException e) {
+        // Expected
+      }
+    } finally {
+      CancellationContext.unregister();
+    }
+
+    // The executor threads and the current thread are no longer registered to the query
+    Assert.assertNull(executorService.submit(new TraceCallable<ServerQueryRequest>() {
+      @Override
+      public ServerQueryRequest callJob() {
+        return CancellationContext.getQueryRequest();
+      }
+    }).get());
+    CancellationContext.checkCancelled();
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testMemoryLimit()
+      throws Exception {
+    if (!ThreadResourceUsage.isAllocatedBytesSupported()) {
+      throw new SkipException("Thread allocated bytes measurement is not supported");
+    }
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    final int allocationSize = 1024 * 1024;
+    ServerQueryRequest queryRequest = createServerQueryRequest("table", SERVER_METRICS);
+    queryRequest.enableMemoryTracking(4 * allocationSize);
+    CancellationContext.register(queryRequest);
+    try {
+      // Bytes allocated by the jobs processing the query are accounted once they finish
+      byte[] bytes = executorService.submit(new TraceCallable<byte[]>() {
+        @Override
+        public byte[] callJob() {
+          return new byte[allocationSize];
+        }
+      }).get();
+      Assert.assertEquals(bytes.length, allocationSize);
+      Assert.assertTrue(queryRequest.getAllocatedBytes() >= allocationSize);
+      CancellationContext.checkCancelled();
+      Assert.assertFalse(queryRequest.isCancelled());
+
+      // Exceeding the limit cancels the query at the next block boundary
+      bytes = new byte[4 * allocationSize];
+      Assert.assertEquals(bytes.length, 4 * allocationSize);
+      try {
+        CancellationContext.checkCancelled();
+        Assert.fail();
+      } catch (QueryCancelledException e) {
+        // Expected
+      }
+      Assert.assertTrue(queryRequest.isCancelled());
+      Assert.assertTrue(queryRequest.isMemoryLimitExceeded());
+      Assert.assertTrue(queryRequest.getAllocatedBytes() > queryRequest.getMaxAllocatedBytes());
+    } finally {
+      CancellationContext.unregister();
+    }
+
+    // Queries without memory tracking are not accounted
+    ServerQueryRequest untrackedQueryRequest = createServerQueryRequest("table", SERVER_METRICS);
+    CancellationContext.register(untrackedQueryRequest);
+    try {
+      Assert.assertEquals(new byte[allocationSize].length, allocationSize);
+      CancellationContext.checkCancelled();
+      Assert.assertEquals(untrackedQueryRequest.getAllocatedBytes(), 0L);
+    } finally {
+      CancellationContext.unregister();
+    }
+    executorService.shutdown();
+  }
+}
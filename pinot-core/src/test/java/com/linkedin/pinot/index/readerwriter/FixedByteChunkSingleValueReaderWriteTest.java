@@ -75,6 +75,39 @@ public class FixedByteChunkSingleValueReaderWriteTest {
     testBytes(compressionType);
   }
 
+  @Test
+  public void testWithLZ4()
+      throws Exception {
+    ChunkCompressorFactory.CompressionType compressionType = ChunkCompressorFactory.CompressionType.LZ4;
+    testInt(compressionType);
+    testLong(compressionType);
+    testFloat(compressionType);
+    testDouble(compressionType);
+    testBytes(compressionType);
+  }
+
+  @Test
+  public void testWithZstandard()
+      throws Exception {
+    ChunkCompressorFactory.CompressionType compressionType = ChunkCompressorFactory.CompressionType.ZSTANDARD;
+    testInt(compressionType);
+    testLong(compressionType);
+    testFloat(compressionType);
+    testDouble(compressionType);
+    testBytes(compressionType);
+  }
+
+  @Test
+  public void testWithAdaptiveCompression()
+      throws Exception {
+    ChunkCompressorFactory.CompressionType compressionType = ChunkCompressorFactory.CompressionType.ADAPTIVE;
+    testInt(compressionType);
+    testLong(compressionType);
+    testFloat(compressionType);
+    testDouble(compressionType);
+    testBytes(compressionType);
+  }
+
   public void testInt(ChunkCompressorFactory.CompressionType compressionType)
       throws Exception {
     int[] expected = new int[NUM_VALUES];
@@ -18,6 +18,7 @@ package com.linkedin.pinot.index.readerwriter;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.core.io.compression.ChunkCompressorFactory;
 import com.linkedin.pinot.core.io.reader.impl.ChunkReaderContext;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
 import com.linkedin.pinot.core.io.reader.impl.v1.VarByteChunkSingleValueReader;
 import com.linkedin.pinot.core.io.writer.impl.v1.VarByteChunkSingleValueWriter;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
@@ -53,6 +54,30 @@ public class VarByteChunkSingleValueReaderWriteTest {
   public void testWithoutCompression() throws Exception {
     test(ChunkCompressorFactory.CompressionType.PASS_THROUGH);
   }
+
+  @Test
+  public void testWithLZ4() throws Exception {
+    test(ChunkCompressorFactory.CompressionType.LZ4);
+  }
+
+  @Test
+  public void testWithZstandard() throws Exception {
+    test(ChunkCompressorFactory.CompressionType.ZSTANDARD);
+  }
+
+  @Test
+  public void testWithAdaptiveCompression() throws Exception {
+    test(ChunkCompressorFactory.CompressionType.ADAPTIVE);
+  }
+
+  @Test
+  public void testWithDecompressedChunkCache() throws Exception {
+    DecompressedChunkCache chunkCache = new DecompressedChunkCache(10_000_000L, null);
+    test(ChunkCompressorFactory.CompressionType.SNAPPY, chunkCache);
+    // Chunks are invalidated when the reader is closed
+    Assert.assertEquals(chunkCache.getSizeBytes(), 0L);
+  }
+
   /**
    * This test writes {@link #NUM_ENTRIES} using {@link VarByteChunkSingleValueWriter}. It then reads
    * the strings & bytes using {@link VarByteChunkSingleValueReader}, and asserts that what was written is the same as
@@ -65,6 +90,11 @@ public class VarByteChunkSingleValueReaderWriteTest {
    */
   public void test(ChunkCompressorFactory.CompressionType compressionType)
       throws Exception {
+    test(compressionType, null);
+  }
+
+  private void test(ChunkCompressorFactory.CompressionType compressionType, DecompressedChunkCache chunkCache)
+      throws Exception {
     String[] expected = new String[NUM_ENTRIES];
     Random random = new Random();
 
@@ -91,7 +121,7 @@ public class VarByteChunkSingleValueReaderWriteTest {
     PinotDataBuffer pinotDataBuffer =
         PinotDataBuffer.fromFile(outFile, ReadMode.mmap, FileChannel.MapMode.READ_ONLY, getClass().getName());
 
-    VarByteChunkSingleValueReader reader = new VarByteChunkSingleValueReader(pinotDataBuffer);
+    VarByteChunkSingleValueReader reader = new VarByteChunkSingleValueReader(pinotDataBuffer, chunkCache);
     ChunkReaderContext context = reader.createContext();
 
     for (int i = 0; i < NUM_ENTRIES; i += 2) {
@@ -100,6 +130,12 @@ public class VarByteChunkSingleValueReaderWriteTest {
       Assert.assertEquals(actual.getBytes(UTF_8), expected[i].getBytes(UTF_8));
       Assert.assertEquals(reader.getBytes(i + 1), expected[i].getBytes(UTF_8));
     }
+
+    // Read again in reverse order with a new context, to go through the decompressed chunk cache (if enabled)
+    context = reader.createContext();
+    for (int i = (NUM_ENTRIES - 1) / 2 * 2; i >= 0; i -= 2) {
+      Assert.assertEquals(reader.getString(i, context), expected[i]);
+    }
     reader.close();
     FileUtils.deleteQuietly(outFile);
   }
@@ -48,6 +48,14 @@ public abstract class BaseQueriesTest {
 
   protected abstract List<SegmentDataManager> getSegmentDataManagers();
 
+  /**
+   * Returns the plan maker to run the queries with.
+   * <p>Override this to run the queries with server level caches.
+   */
+  protected PlanMaker getPlanMaker() {
+    return PLAN_MAKER;
+  }
+
   /**
    * Run query on single index segment.
    * <p>Use this to test a single operator.
@@ -57,7 +65,7 @@ public abstract class BaseQueriesTest {
    */
   @SuppressWarnings("unchecked")
   protected <T extends Operator> T getOperatorForQuery(String query) {
-    return (T) PLAN_MAKER.makeInnerSegmentPlan(getIndexSegment(), COMPILER.compileToBrokerRequest(query)).run();
+    return (T) getPlanMaker().makeInnerSegmentPlan(getIndexSegment(), COMPILER.compileToBrokerRequest(query)).run();
   }
 
   /**
@@ -80,10 +88,22 @@ public abstract class BaseQueriesTest {
    * @return broker response.
    */
   protected BrokerResponseNative getBrokerResponseForQuery(String query) {
+    return getBrokerResponseForQuery(query, getPlanMaker());
+  }
+
+  /**
+   * Run query on multiple index segments with the given plan maker.
+   * <p>Use this to compare the results of different plan makers.
+   *
+   * @param query PQL query.
+   * @param planMaker Plan maker.
+   * @return broker response.
+   */
+  protected BrokerResponseNative getBrokerResponseForQuery(String query, PlanMaker planMaker) {
     BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
 
     // Server side.
-    Plan plan = PLAN_MAKER.makeInterSegmentPlan(getSegmentDataManagers(), brokerRequest, EXECUTOR_SERVICE, 10_000);
+    Plan plan = planMaker.makeInterSegmentPlan(getSegmentDataManagers(), brokerRequest, EXECUTOR_SERVICE, 10_000);
     DataTable instanceResponse = plan.execute();
 
     // Broker side.
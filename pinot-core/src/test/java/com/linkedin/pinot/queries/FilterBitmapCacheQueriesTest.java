@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.queries;
+
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that queries with predicates served from the {@link FilterBitmapCache} return the same results as the queries
+ * evaluating the predicates on the segments.
+ */
+public class FilterBitmapCacheQueriesTest extends BaseSingleValueQueriesTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final String QUERY = "SELECT COUNT(*), SUM(column1), MAX(column3) FROM testTable";
+  private static final String OR_FILTER = " WHERE column1 > 100000000 OR column3 BETWEEN 20000000 AND 1000000000";
+
+  private FilterBitmapCache _filterBitmapCache;
+  private PlanMaker _planMaker;
+
+  @BeforeMethod
+  public void setUpCache() {
+    _filterBitmapCache =
+        new FilterBitmapCache(64 * 1024 * 1024L, FilterBitmapCache.DEFAULT_MIN_ADMISSION_COST, null);
+    _planMaker = new InstancePlanMakerImplV2(null, _filterBitmapCache);
+  }
+
+  @Override
+  protected PlanMaker getPlanMaker() {
+    return _planMaker;
+  }
+
+  @Test
+  public void testCachedPredicates() {
+    String query = QUERY + OR_FILTER;
+    BrokerResponseNative uncachedResponse = getBrokerResponseForQuery(query, new InstancePlanMakerImplV2());
+    Assert.assertTrue(uncachedResponse.getNumEntriesScannedInFilter() > 0L);
+
+    // Predicates seen once on the segment are not cached
+    FilterBitmapCache filterBitmapCache = _filterBitmapCache;
+    getOperatorForQuery(query).nextBlock();
+    Assert.assertEquals(filterBitmapCache.size(), 0L);
+
+    // First execution populates the cache with the scan based predicates seen again, second execution is served from
+    // the cache
+    BrokerResponseNative firstResponse = getBrokerResponseForQuery(query);
+    long numCachedBitmaps = filterBitmapCache.size();
+    Assert.assertTrue(numCachedBitmaps > 0L);
+    BrokerResponseNative secondResponse = getBrokerResponseForQuery(query);
+    Assert.assertEquals(filterBitmapCache.size(), numCachedBitmaps);
+    Assert.assertTrue(secondResponse.getNumEntriesScannedInFilter() < uncachedResponse.getNumEntriesScannedInFilter());
+
+    for (BrokerResponseNative response : new BrokerResponseNative[]{firstResponse, secondResponse}) {
+      Assert.assertEquals(response.getNumDocsScanned(), uncachedResponse.getNumDocsScanned());
+      Assert.assertEquals(response.getTotalDocs(), uncachedResponse.getTotalDocs());
+      List<AggregationResult> aggregationResults = response.getAggregationResults();
+      List<AggregationResult> expectedAggregationResults = uncachedResponse.getAggregationResults();
+      Assert.assertEquals(aggregationResults.size(), expectedAggregationResults.size());
+      for (int i = 0; i < aggregationResults.size(); i++) {
+        Assert.assertEquals(aggregationResults.get(i).getValue(), expectedAggregationResults.get(i).getValue());
+      }
+    }
+
+    // Segment is closed
+    filterBitmapCache.invalidate(getIndexSegment());
+    Assert.assertEquals(filterBitmapCache.size(), 0L);
+  }
+
+  @Test
+  public void testScansUnderAndNotCached() {
+    // Scan based predicates under an AND only scan the documents matching the other predicates, they are not cached
+    // as caching them would scan the whole segment
+    for (int i = 0; i < 3; i++) {
+      getBrokerResponseForQueryWithFilter(QUERY);
+    }
+    Assert.assertEquals(_filterBitmapCache.size(), 0L);
+  }
+
+  @Test
+  public void testPredicateKey() {
+    Assert.assertEquals(getPredicateKey("SELECT COUNT(*) FROM testTable WHERE column11 IN ('t', 'P', 'o')"),
+        getPredicateKey("SELECT COUNT(*) FROM testTable WHERE column11 IN ('o', 'P', 't')"));
+    Assert.assertFalse(getPredicateKey("SELECT COUNT(*) FROM testTable WHERE column11 IN ('t', 'P')")
+        .equals(getPredicateKey("SELECT COUNT(*) FROM testTable WHERE column11 NOT IN ('t', 'P')")));
+    Assert.assertFalse(getPredicateKey("SELECT COUNT(*) FROM testTable WHERE column6 = 1")
+        .equals(getPredicateKey("SELECT COUNT(*) FROM testTable WHERE column7 = 1")));
+  }
+
+  private static String getPredicateKey(String query) {
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(COMPILER.compileToBrokerRequest(query));
+    return FilterBitmapCache.getPredicateKey(filterQueryTree);
+  }
+}
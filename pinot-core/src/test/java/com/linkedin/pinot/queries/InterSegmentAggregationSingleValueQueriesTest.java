@@ -16,6 +16,7 @@
 package com.linkedin.pinot.queries;
 
 import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 
@@ -175,6 +176,41 @@ public class InterSegmentAggregationSingleValueQueriesTest extends BaseSingleVal
         new String[]{"1272", "3289"});
   }
 
+  @Test
+  public void testDistinctCountThetaSketch() {
+    // Distinct counts below the nominal entries of the sketch are exact
+    String query = "SELECT DISTINCTCOUNTTHETASKETCH(column9) FROM testTable";
+    Assert.assertEquals(getResult(query), getResult("SELECT DISTINCTCOUNT(column9) FROM testTable"));
+    query = "SELECT DISTINCTCOUNTTHETASKETCH(column9, 'column6 < 500000000') FROM testTable";
+    Assert.assertEquals(getResult(query),
+        getResult("SELECT DISTINCTCOUNT(column9) FROM testTable WHERE column6 < 500000000"));
+
+    // Set operations across filter clauses
+    String filter1 = "'column6 < 500000000'";
+    String filter2 = "'column11 = ''P'' AND column5 = ''gFuH'''";
+    int count1 = getResult("SELECT DISTINCTCOUNT(column9) FROM testTable WHERE column6 < 500000000");
+    int count2 = getResult("SELECT DISTINCTCOUNT(column9) FROM testTable WHERE column11 = 'P' AND column5 = 'gFuH'");
+    int unionCount = getResult("SELECT DISTINCTCOUNT(column9) FROM testTable "
+        + "WHERE column6 < 500000000 OR (column11 = 'P' AND column5 = 'gFuH')");
+    String sketchQuery =
+        "SELECT DISTINCTCOUNTTHETASKETCH(column9, " + filter1 + ", " + filter2 + ", '%s') FROM testTable";
+    Assert.assertEquals(getResult(String.format(sketchQuery, "SET_UNION($1, $2)")), unionCount);
+    int intersectCount = getResult(String.format(sketchQuery, "SET_INTERSECT($1, $2)"));
+    Assert.assertTrue(intersectCount > 0 && intersectCount < count1);
+    Assert.assertEquals(intersectCount, count1 + count2 - unionCount);
+    Assert.assertEquals(getResult(String.format(sketchQuery, "SET_DIFF($1, $2)")), count1 - intersectCount);
+    Assert.assertEquals(getResult(String.format(sketchQuery, "SET_DIFF(SET_UNION($1, $2), $2)")),
+        count1 - intersectCount);
+
+    // Group-by results are exact for small groups
+    BrokerResponseNative brokerResponse = getBrokerResponseForQuery(
+        "SELECT DISTINCTCOUNTTHETASKETCH(column1, " + filter1 + ") FROM testTable" + GROUP_BY);
+    BrokerResponseNative expectedBrokerResponse =
+        getBrokerResponseForQuery("SELECT DISTINCTCOUNT(column1) FROM testTable WHERE column6 < 500000000" + GROUP_BY);
+    Assert.assertEquals(brokerResponse.getAggregationResults().get(0).getGroupByResult().get(0).getValue(),
+        expectedBrokerResponse.getAggregationResults().get(0).getGroupByResult().get(0).getValue());
+  }
+
   @Test
   public void testDistinctCountHLL() {
     String query = "SELECT DISTINCTCOUNTHLL(column1), DISTINCTCOUNTHLL(column3) FROM testTable";
@@ -363,4 +399,10 @@ public class InterSegmentAggregationSingleValueQueriesTest extends BaseSingleVal
     QueriesTestUtils.testInterSegmentAggregationResult(brokerResponse, 24516L, 336536L, 73548L, 120000L,
         new String[]{"2146232405", "999309554"});
   }
+
+  private int getResult(String query) {
+    BrokerResponseNative brokerResponse = getBrokerResponseForQuery(query);
+    Assert.assertTrue(brokerResponse.getProcessingExceptions().isEmpty());
+    return Integer.parseInt((String) brokerResponse.getAggregationResults().get(0).getValue());
+  }
 }
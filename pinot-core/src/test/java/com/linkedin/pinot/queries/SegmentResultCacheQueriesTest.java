@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.queries;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.GroupByResult;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.SegmentResultCachePlanNode;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that aggregation and group-by queries served from the {@link SegmentResultCache} return the same results as
+ * the queries executed on the segments.
+ */
+public class SegmentResultCacheQueriesTest extends BaseSingleValueQueriesTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final PlanMaker UNCACHED_PLAN_MAKER = new InstancePlanMakerImplV2();
+  private static final long CACHE_SIZE_BYTES = 64 * 1024 * 1024L;
+  private static final String AGGREGATION_QUERY =
+      "SELECT COUNT(*), SUM(column1), MAX(column3), AVG(column6), DISTINCTCOUNT(column9), PERCENTILE90(column17) "
+          + "FROM testTable";
+  private static final String GROUP_BY = " GROUP BY column9, column11 TOP 50";
+
+  private SegmentResultCache _segmentResultCache;
+  private PlanMaker _planMaker;
+
+  @BeforeMethod
+  public void setUpCache() {
+    _segmentResultCache = new SegmentResultCache(CACHE_SIZE_BYTES, null);
+    _planMaker = new InstancePlanMakerImplV2(_segmentResultCache, null);
+  }
+
+  @Override
+  protected PlanMaker getPlanMaker() {
+    return _planMaker;
+  }
+
+  @Test
+  public void testAggregation() {
+    testCachedQuery(AGGREGATION_QUERY);
+    testCachedQuery(AGGREGATION_QUERY + getFilter());
+  }
+
+  @Test
+  public void testAggregationGroupBy() {
+    testCachedQuery(AGGREGATION_QUERY + GROUP_BY);
+    testCachedQuery(AGGREGATION_QUERY + getFilter() + GROUP_BY);
+  }
+
+  @Test
+  public void testQueryKey() {
+    String key = getQueryKey("SELECT SUM(column1) FROM testTable WHERE column5 = 'a' AND column11 IN ('t', 'P')");
+    Assert.assertNotNull(key);
+    Assert.assertEquals(
+        getQueryKey("SELECT SUM(column1) FROM testTable WHERE column11 IN ('P', 't') AND column5 = 'a'"), key);
+    Assert.assertFalse(
+        getQueryKey("SELECT SUM(column1) FROM testTable WHERE column11 IN ('P', 't') AND column5 = 'b'").equals(key));
+    Assert.assertFalse(
+        getQueryKey("SELECT MAX(column1) FROM testTable WHERE column11 IN ('P', 't') AND column5 = 'a'").equals(key));
+
+    // TOP determines how the groups are trimmed on the segments
+    Assert.assertFalse(getQueryKey("SELECT SUM(column1) FROM testTable GROUP BY column9 TOP 10").equals(
+        getQueryKey("SELECT SUM(column1) FROM testTable GROUP BY column9 TOP 100")));
+
+    // Selection queries and queries with trace enabled are not cached
+    Assert.assertNull(getQueryKey("SELECT * FROM testTable"));
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(AGGREGATION_QUERY);
+    brokerRequest.setEnableTrace(true);
+    Assert.assertNull(SegmentResultCache.getQueryKey(brokerRequest));
+  }
+
+  @Test
+  public void testTrimmedAggregationGroupBy() {
+    // column3 has 21910 unique values, so the groups are trimmed on the segments to the top 5000 for TOP 10
+    String query = "SELECT COUNT(*) FROM testTable GROUP BY column3 TOP 10";
+    testCachedQuery(query);
+
+    // The cached results keep the trim thresholds, so that the combine operator still prunes the groups on cache hits
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+    PlanNode planNode = UNCACHED_PLAN_MAKER.makeInnerSegmentPlan(getIndexSegment(), brokerRequest);
+    double[] trimThresholds =
+        ((IntermediateResultsBlock) planNode.run().nextBlock()).getAggregationGroupByResult().getTrimThresholds();
+    Assert.assertNotNull(trimThresholds);
+    SegmentResultCache segmentResultCache = new SegmentResultCache(CACHE_SIZE_BYTES, null);
+    PlanNode cachePlanNode = new SegmentResultCachePlanNode(segmentResultCache, getIndexSegment(), brokerRequest,
+        SegmentResultCache.getQueryKey(brokerRequest), planNode);
+    // First run populates the cache (and returns the results materialized for the cache), second run is served from
+    // the cache
+    IntermediateResultsBlock firstResultsBlock = (IntermediateResultsBlock) cachePlanNode.run().nextBlock();
+    long cacheSize = segmentResultCache.size();
+    IntermediateResultsBlock cachedResultsBlock = (IntermediateResultsBlock) cachePlanNode.run().nextBlock();
+    Assert.assertEquals(segmentResultCache.size(), cacheSize);
+    for (IntermediateResultsBlock resultsBlock : new IntermediateResultsBlock[]{firstResultsBlock, cachedResultsBlock}) {
+      Assert.assertNull(resultsBlock.getAggregationGroupByResult());
+      Assert.assertEquals(resultsBlock.getCombinedAggregationGroupByResult().get(0).size(), 5000);
+      Assert.assertEquals(resultsBlock.getCombinedAggregationGroupByTrimThresholds(), trimThresholds);
+    }
+    Assert.assertEquals(cachedResultsBlock.getCombinedAggregationGroupByResult(),
+        firstResultsBlock.getCombinedAggregationGroupByResult());
+
+    // Invalidating the segment removes all its cached results
+    segmentResultCache.invalidate(getIndexSegment());
+    Assert.assertEquals(segmentResultCache.size(), 0L);
+
+    // Larger TOP does not get the groups trimmed for TOP 10
+    testCachedQuery("SELECT COUNT(*) FROM testTable GROUP BY column3 TOP 2000");
+  }
+
+  private void testCachedQuery(String query) {
+    SegmentResultCache segmentResultCache = _segmentResultCache;
+    long sizeBefore = segmentResultCache.size();
+
+    // First execution populates the cache, second execution is served from the cache
+    BrokerResponseNative firstResponse = getBrokerResponseForQuery(query);
+    long sizeAfterFirstExecution = segmentResultCache.size();
+    Assert.assertTrue(sizeAfterFirstExecution > sizeBefore);
+    BrokerResponseNative secondResponse = getBrokerResponseForQuery(query);
+    Assert.assertEquals(segmentResultCache.size(), sizeAfterFirstExecution);
+
+    BrokerResponseNative uncachedResponse = getBrokerResponseForQuery(query, UNCACHED_PLAN_MAKER);
+
+    for (BrokerResponseNative response : new BrokerResponseNative[]{firstResponse, secondResponse}) {
+      Assert.assertEquals(response.getNumDocsScanned(), uncachedResponse.getNumDocsScanned());
+      Assert.assertEquals(response.getNumEntriesScannedInFilter(), uncachedResponse.getNumEntriesScannedInFilter());
+      Assert.assertEquals(response.getNumEntriesScannedPostFilter(),
+          uncachedResponse.getNumEntriesScannedPostFilter());
+      Assert.assertEquals(response.getTotalDocs(), uncachedResponse.getTotalDocs());
+      List<AggregationResult> aggregationResults = response.getAggregationResults();
+      List<AggregationResult> expectedAggregationResults = uncachedResponse.getAggregationResults();
+      Assert.assertEquals(aggregationResults.size(), expectedAggregationResults.size());
+      for (int i = 0; i < aggregationResults.size(); i++) {
+        AggregationResult aggregationResult = aggregationResults.get(i);
+        AggregationResult expectedAggregationResult = expectedAggregationResults.get(i);
+        Assert.assertEquals(aggregationResult.getValue(), expectedAggregationResult.getValue());
+        Assert.assertEquals(getGroupByValues(aggregationResult), getGroupByValues(expectedAggregationResult));
+      }
+    }
+  }
+
+  /**
+   * Returns the ordered values of the group-by result. Groups with equal values may be trimmed in any order, so only
+   * the values are compared.
+   */
+  private static List<Serializable> getGroupByValues(AggregationResult aggregationResult) {
+    List<Serializable> values = new ArrayList<>();
+    List<GroupByResult> groupByResults = aggregationResult.getGroupByResult();
+    if (groupByResults != null) {
+      for (GroupByResult groupByResult : groupByResults) {
+        values.add(groupByResult.getValue());
+      }
+    }
+    return values;
+  }
+
+  private static String getQueryKey(String query) {
+    return SegmentResultCache.getQueryKey(COMPILER.compileToBrokerRequest(query));
+  }
+}
@@ -16,17 +16,23 @@
 package com.linkedin.pinot.query.aggregation.groupby;
 
 import com.linkedin.pinot.common.response.broker.GroupByResult;
+import com.linkedin.pinot.core.operator.blocks.TransformBlock;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.AggregationFunctionFactory;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByTrimmingService;
+import com.linkedin.pinot.core.query.aggregation.groupby.DoubleGroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import javax.annotation.Nonnull;
 import org.apache.commons.lang.RandomStringUtils;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
@@ -39,6 +45,7 @@ public class AggregationGroupByTrimmingServiceTest {
   private static final String ERROR_MESSAGE = "Random seed: " + RANDOM_SEED;
 
   private static final AggregationFunction SUM = AggregationFunctionFactory.getAggregationFunction("SUM");
+  private static final AggregationFunction COUNT = AggregationFunctionFactory.getAggregationFunction("COUNT");
   private static final AggregationFunction DISTINCTCOUNT =
       AggregationFunctionFactory.getAggregationFunction("DISTINCTCOUNT");
   private static final AggregationFunction[] AGGREGATION_FUNCTIONS = {SUM, DISTINCTCOUNT};
@@ -125,6 +132,64 @@ public class AggregationGroupByTrimmingServiceTest {
     }
   }
 
+  @Test
+  public void testSegmentTrimming() {
+    AggregationFunction[] aggregationFunctions = {SUM, COUNT};
+    AggregationGroupByTrimmingService trimmingService =
+        new AggregationGroupByTrimmingService(aggregationFunctions, GROUP_BY_TOP_N);
+
+    // SUM results are in ascending order of group id, COUNT results are in descending order of group id
+    GroupByResultHolder sumResultHolder = new DoubleGroupByResultHolder(NUM_GROUPS, NUM_GROUPS, NUM_GROUPS, 0.0);
+    GroupByResultHolder countResultHolder = new DoubleGroupByResultHolder(NUM_GROUPS, NUM_GROUPS, NUM_GROUPS, 0.0);
+    for (int i = 0; i < NUM_GROUPS; i++) {
+      sumResultHolder.setValueForKey(i, (double) i);
+      countResultHolder.setValueForKey(i, (double) (NUM_GROUPS - 1 - i));
+    }
+    PurgeRecordingGroupKeyGenerator groupKeyGenerator = new PurgeRecordingGroupKeyGenerator(NUM_GROUPS);
+    double[] trimThresholds = trimmingService.trimGroupKeys(groupKeyGenerator,
+        new GroupByResultHolder[]{sumResultHolder, countResultHolder});
+
+    // Top groups for SUM and COUNT should be kept, and the results of the purged groups should be bounded
+    int trimSize = NUM_GROUPS - groupKeyGenerator._purgedKeys.length;
+    Assert.assertEquals(trimSize % 2, 0);
+    int trimSizePerFunction = trimSize / 2;
+    Assert.assertTrue(trimSizePerFunction >= GROUP_BY_TOP_N);
+    for (int i = 0; i < groupKeyGenerator._purgedKeys.length; i++) {
+      Assert.assertEquals(groupKeyGenerator._purgedKeys[i], trimSizePerFunction + i);
+    }
+    double expectedTrimThreshold = NUM_GROUPS - trimSizePerFunction;
+    Assert.assertEquals(trimThresholds, new double[]{expectedTrimThreshold, expectedTrimThreshold});
+
+    // Should not trim when the number of groups is small
+    groupKeyGenerator = new PurgeRecordingGroupKeyGenerator(trimSizePerFunction * 2);
+    trimThresholds = trimmingService.trimGroupKeys(groupKeyGenerator,
+        new GroupByResultHolder[]{sumResultHolder, countResultHolder});
+    Assert.assertNull(groupKeyGenerator._purgedKeys);
+    Assert.assertEquals(trimThresholds, new double[]{0.0, 0.0});
+  }
+
+  @Test
+  public void testPruning() {
+    AggregationFunction[] aggregationFunctions = {SUM, COUNT};
+    AggregationGroupByTrimmingService trimmingService =
+        new AggregationGroupByTrimmingService(aggregationFunctions, GROUP_BY_TOP_N);
+
+    Map<String, Object[]> intermediateResultsMap = new HashMap<>(NUM_GROUPS);
+    for (int i = 0; i < NUM_GROUPS; i++) {
+      intermediateResultsMap.put(Integer.toString(i), new Object[]{(double) i, (long) i});
+    }
+    int thresholdSum = 100;
+    trimmingService.pruneIntermediateResultsMap(intermediateResultsMap, new double[]{thresholdSum, thresholdSum});
+
+    // Groups with upper bound smaller than the lower bound of the top groups should be pruned
+    int numGroupsRemaining = intermediateResultsMap.size();
+    int trimSize = numGroupsRemaining - thresholdSum;
+    Assert.assertTrue(trimSize >= GROUP_BY_TOP_N);
+    for (int i = 0; i < NUM_GROUPS; i++) {
+      Assert.assertEquals(intermediateResultsMap.containsKey(Integer.toString(i)), i >= NUM_GROUPS - numGroupsRemaining);
+    }
+  }
+
   private static String buildGroupString(List<String> group) {
     StringBuilder groupStringBuilder = new StringBuilder();
     for (int i = 0; i < NUM_GROUP_KEYS; i++) {
@@ -135,4 +200,46 @@ public class AggregationGroupByTrimmingServiceTest {
     }
     return groupStringBuilder.toString();
   }
+
+  /**
+   * Group key generator which only records the purged keys.
+   */
+  private static class PurgeRecordingGroupKeyGenerator implements GroupKeyGenerator {
+    private final int _numGroups;
+    private int[] _purgedKeys;
+
+    public PurgeRecordingGroupKeyGenerator(int numGroups) {
+      _numGroups = numGroups;
+    }
+
+    @Override
+    public int getGlobalGroupKeyUpperBound() {
+      return _numGroups;
+    }
+
+    @Override
+    public void generateKeysForBlock(@Nonnull TransformBlock transformBlock, @Nonnull int[] groupKeys) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void generateKeysForBlock(@Nonnull TransformBlock transformBlock, @Nonnull int[][] groupKeys) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getCurrentGroupKeyUpperBound() {
+      return _numGroups;
+    }
+
+    @Override
+    public Iterator<GroupKey> getUniqueGroupKeys() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void purgeKeys(@Nonnull int[] keysToPurge) {
+      _purgedKeys = keysToPurge;
+    }
+  }
 }
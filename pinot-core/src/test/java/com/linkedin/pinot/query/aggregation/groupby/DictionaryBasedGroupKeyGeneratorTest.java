@@ -190,6 +190,30 @@ public class DictionaryBasedGroupKeyGeneratorTest {
     testGetUniqueGroupKeys(dictionaryBasedGroupKeyGenerator.getUniqueGroupKeys(), 2);
   }
 
+  @Test
+  public void testPurgeKeys() {
+    // Array based, int map based, long map based and array map based.
+    String[][] groupByColumnsArray = {{"s1"}, {"s1", "s2", "s3"}, {"s1", "s2", "s3", "s4"}, SV_COLUMNS};
+    for (String[] groupByColumns : groupByColumnsArray) {
+      DictionaryBasedGroupKeyGenerator dictionaryBasedGroupKeyGenerator =
+          new DictionaryBasedGroupKeyGenerator(_transformOperator, getExpressions(groupByColumns),
+              ARRAY_BASED_THRESHOLD);
+      dictionaryBasedGroupKeyGenerator.generateKeysForBlock(_transformBlock, SV_GROUP_KEY_BUFFER);
+      int groupIdUpperBound = dictionaryBasedGroupKeyGenerator.getCurrentGroupKeyUpperBound();
+
+      // Purge the group of the even number index values.
+      dictionaryBasedGroupKeyGenerator.purgeKeys(new int[]{SV_GROUP_KEY_BUFFER[0]});
+      Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = dictionaryBasedGroupKeyGenerator.getUniqueGroupKeys();
+      Assert.assertTrue(groupKeyIterator.hasNext(), _errorMessage);
+      Assert.assertEquals(groupKeyIterator.next()._groupId, SV_GROUP_KEY_BUFFER[1], _errorMessage);
+      Assert.assertFalse(groupKeyIterator.hasNext(), _errorMessage);
+
+      // Group ids should not be reused after purging.
+      Assert.assertEquals(dictionaryBasedGroupKeyGenerator.getCurrentGroupKeyUpperBound(), groupIdUpperBound,
+          _errorMessage);
+    }
+  }
+
   /**
    * Helper method to compare the values inside the single value group key buffer.
    *
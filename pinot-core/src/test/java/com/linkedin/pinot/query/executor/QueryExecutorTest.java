@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.query.executor;
 
+import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.common.query.ServerQueryRequest;
@@ -29,7 +30,9 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegment;
 import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegmentLoader;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.query.executor.ServerQueryExecutorV1Impl;
+import com.linkedin.pinot.core.query.scheduler.resources.ThreadResourceUsage;
 import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 import com.linkedin.pinot.pql.parsers.Pql2Compiler;
@@ -45,6 +48,7 @@ import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.io.FileUtils;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -65,6 +69,8 @@ public class QueryExecutorTest {
   private final List<String> _segmentNames = new ArrayList<>(NUM_SEGMENTS_TO_GENERATE);
 
   private ServerMetrics _serverMetrics;
+  private InstanceDataManager _instanceDataManager;
+  private PropertiesConfiguration _queryExecutorConfig;
   private QueryExecutor _queryExecutor;
 
   @BeforeClass
@@ -100,17 +106,17 @@ public class QueryExecutorTest {
     for (ImmutableSegment indexSegment : _indexSegments) {
       tableDataManager.addSegment(indexSegment);
     }
-    InstanceDataManager instanceDataManager = mock(InstanceDataManager.class);
-    when(instanceDataManager.getTableDataManager(TABLE_NAME)).thenReturn(tableDataManager);
+    _instanceDataManager = mock(InstanceDataManager.class);
+    when(_instanceDataManager.getTableDataManager(TABLE_NAME)).thenReturn(tableDataManager);
 
     // Set up the query executor
     resourceUrl = getClass().getClassLoader().getResource(QUERY_EXECUTOR_CONFIG_PATH);
     Assert.assertNotNull(resourceUrl);
-    PropertiesConfiguration queryExecutorConfig = new PropertiesConfiguration();
-    queryExecutorConfig.setDelimiterParsingDisabled(false);
-    queryExecutorConfig.load(new File(resourceUrl.getFile()));
+    _queryExecutorConfig = new PropertiesConfiguration();
+    _queryExecutorConfig.setDelimiterParsingDisabled(false);
+    _queryExecutorConfig.load(new File(resourceUrl.getFile()));
     _queryExecutor = new ServerQueryExecutorV1Impl();
-    _queryExecutor.init(queryExecutorConfig, instanceDataManager, _serverMetrics);
+    _queryExecutor.init(_queryExecutorConfig, _instanceDataManager, _serverMetrics);
   }
 
   @Test
@@ -153,6 +159,27 @@ public class QueryExecutorTest {
     Assert.assertEquals(instanceResponse.getDouble(0, 0), 0.0);
   }
 
+  @Test
+  public void testMemoryLimit()
+      throws Exception {
+    if (!ThreadResourceUsage.isAllocatedBytesSupported()) {
+      throw new SkipException("Thread allocated bytes measurement is not supported");
+    }
+    PropertiesConfiguration queryExecutorConfig = (PropertiesConfiguration) _queryExecutorConfig.clone();
+    queryExecutorConfig.setProperty(QueryExecutorConfig.MAX_ALLOCATED_BYTES_PER_QUERY, 1L);
+    QueryExecutor queryExecutor = new ServerQueryExecutorV1Impl();
+    queryExecutor.init(queryExecutorConfig, _instanceDataManager, _serverMetrics);
+
+    String query = "SELECT SUM(met) FROM " + TABLE_NAME;
+    InstanceRequest instanceRequest = new InstanceRequest(0L, COMPILER.compileToBrokerRequest(query));
+    instanceRequest.setSearchSegments(_segmentNames);
+    ServerQueryRequest queryRequest = new ServerQueryRequest(instanceRequest, _serverMetrics);
+    DataTable instanceResponse = queryExecutor.processQuery(queryRequest, QUERY_RUNNERS);
+    Assert.assertTrue(queryRequest.isMemoryLimitExceeded());
+    Assert.assertTrue(instanceResponse.getMetadata()
+        .containsKey(DataTable.EXCEPTION_METADATA_KEY + QueryException.QUERY_MEMORY_LIMIT_EXCEEDED_ERROR_CODE));
+  }
+
   @AfterClass
   public void tearDown() {
     for (IndexSegment segment : _indexSegments) {
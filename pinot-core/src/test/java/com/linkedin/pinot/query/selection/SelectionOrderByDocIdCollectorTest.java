@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.selection;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.request.SelectionSort;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.GenericRowRecordReader;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegmentLoader;
+import com.linkedin.pinot.core.query.selection.SelectionOrderByDocIdCollector;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * The <code>SelectionOrderByDocIdCollectorTest</code> class provides unit tests for
+ * {@link SelectionOrderByDocIdCollector}.
+ */
+public class SelectionOrderByDocIdCollectorTest {
+  private static final String SEGMENT_NAME = "selectionOrderByDocIdCollectorTestSegment";
+  private static final String INDEX_DIR_PATH = FileUtils.getTempDirectoryPath() + File.separator + SEGMENT_NAME;
+  private static final int NUM_ROWS = 5000;
+  private static final int BLOCK_SIZE = 1000;
+  private static final int MAX_NUM_DOCS = 100;
+  private static final String DIMENSION_NAME = "dimension";
+  private static final String INT_METRIC_NAME = "int_metric";
+  private static final String FLOAT_METRIC_NAME = "float_metric";
+  private static final String NO_DICT_LONG_METRIC_NAME = "no_dict_long_metric";
+  private static final String NO_DICT_DOUBLE_METRIC_NAME = "no_dict_double_metric";
+
+  private final long _randomSeed = System.currentTimeMillis();
+  private final Random _random = new Random(_randomSeed);
+  private final String _errorMessage = "Random seed is: " + _randomSeed;
+  private final List<Map<String, Object>> _rows = new ArrayList<>(NUM_ROWS);
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Map<String, Object> map = new HashMap<>();
+      // Few distinct dimension values so that the secondary sort column is exercised.
+      map.put(DIMENSION_NAME, "dimension_" + _random.nextInt(10));
+      map.put(INT_METRIC_NAME, _random.nextInt());
+      map.put(FLOAT_METRIC_NAME, _random.nextFloat());
+      map.put(NO_DICT_LONG_METRIC_NAME, _random.nextLong());
+      map.put(NO_DICT_DOUBLE_METRIC_NAME, _random.nextDouble());
+      _rows.add(map);
+      GenericRow genericRow = new GenericRow();
+      genericRow.init(new HashMap<>(map));
+      rows.add(genericRow);
+    }
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec(DIMENSION_NAME, FieldSpec.DataType.STRING, true));
+    schema.addField(new MetricFieldSpec(INT_METRIC_NAME, FieldSpec.DataType.INT));
+    schema.addField(new MetricFieldSpec(FLOAT_METRIC_NAME, FieldSpec.DataType.FLOAT));
+    schema.addField(new MetricFieldSpec(NO_DICT_LONG_METRIC_NAME, FieldSpec.DataType.LONG));
+    schema.addField(new MetricFieldSpec(NO_DICT_DOUBLE_METRIC_NAME, FieldSpec.DataType.DOUBLE));
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+    config.setOutDir(INDEX_DIR_PATH);
+    config.setSegmentName(SEGMENT_NAME);
+    config.setRawIndexCreationColumns(Arrays.asList(NO_DICT_LONG_METRIC_NAME, NO_DICT_DOUBLE_METRIC_NAME));
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new GenericRowRecordReader(rows, schema));
+    driver.build();
+
+    _indexSegment = ImmutableSegmentLoader.load(new File(INDEX_DIR_PATH, SEGMENT_NAME), ReadMode.heap);
+  }
+
+  @Test
+  public void testDictionaryEncodedSortColumns() {
+    testCollect(Collections.singletonList(getSelectionSort(INT_METRIC_NAME, true)));
+    testCollect(Collections.singletonList(getSelectionSort(FLOAT_METRIC_NAME, false)));
+  }
+
+  @Test
+  public void testRawSortColumns() {
+    testCollect(Collections.singletonList(getSelectionSort(NO_DICT_LONG_METRIC_NAME, false)));
+    testCollect(Collections.singletonList(getSelectionSort(NO_DICT_DOUBLE_METRIC_NAME, true)));
+  }
+
+  @Test
+  public void testMultipleSortColumns() {
+    testCollect(
+        Arrays.asList(getSelectionSort(DIMENSION_NAME, false), getSelectionSort(NO_DICT_LONG_METRIC_NAME, true)));
+    testCollect(Arrays.asList(getSelectionSort(DIMENSION_NAME, true), getSelectionSort(INT_METRIC_NAME, false)));
+  }
+
+  @Test
+  public void testLessDocsThanLimit() {
+    List<SelectionSort> sortSequence = Collections.singletonList(getSelectionSort(INT_METRIC_NAME, true));
+    SelectionOrderByDocIdCollector collector = new SelectionOrderByDocIdCollector(_indexSegment, sortSequence, 100);
+    collector.collect(new int[]{30, 10, 20}, 3);
+    Assert.assertEquals(collector.getNumDocs(), 3);
+    Assert.assertEquals(collector.getSortedDocIds(), new int[]{10, 20, 30});
+
+    collector = new SelectionOrderByDocIdCollector(_indexSegment, sortSequence, 0);
+    collector.collect(new int[]{30, 10, 20}, 3);
+    Assert.assertEquals(collector.getNumDocs(), 0);
+  }
+
+  /**
+   * Collects every other document in blocks, and compares the sort values of the collected documents with the sort
+   * values of the top documents computed by sorting all the rows.
+   */
+  private void testCollect(final List<SelectionSort> sortSequence) {
+    SelectionOrderByDocIdCollector collector =
+        new SelectionOrderByDocIdCollector(_indexSegment, sortSequence, MAX_NUM_DOCS);
+    List<Integer> allDocIds = new ArrayList<>();
+    int[] docIds = new int[BLOCK_SIZE];
+    int length = 0;
+    for (int docId = 0; docId < NUM_ROWS; docId += 2) {
+      allDocIds.add(docId);
+      docIds[length++] = docId;
+      if (length == BLOCK_SIZE) {
+        collector.collect(docIds, length);
+        length = 0;
+      }
+    }
+    collector.collect(docIds, length);
+
+    Comparator<Integer> comparator = new Comparator<Integer>() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public int compare(Integer docId1, Integer docId2) {
+        for (SelectionSort selectionSort : sortSequence) {
+          String column = selectionSort.getColumn();
+          int result = ((Comparable) _rows.get(docId1).get(column)).compareTo(_rows.get(docId2).get(column));
+          if (result != 0) {
+            return selectionSort.isIsAsc() ? result : -result;
+          }
+        }
+        return 0;
+      }
+    };
+    Collections.sort(allDocIds, comparator);
+    List<Integer> collectedDocIds = new ArrayList<>();
+    for (int docId : collector.getSortedDocIds()) {
+      collectedDocIds.add(docId);
+    }
+    Collections.sort(collectedDocIds, comparator);
+
+    Assert.assertEquals(collectedDocIds.size(), MAX_NUM_DOCS, _errorMessage);
+    for (int i = 0; i < MAX_NUM_DOCS; i++) {
+      Assert.assertEquals(comparator.compare(collectedDocIds.get(i), allDocIds.get(i)), 0, _errorMessage);
+    }
+  }
+
+  private static SelectionSort getSelectionSort(String column, boolean isAsc) {
+    SelectionSort selectionSort = new SelectionSort();
+    selectionSort.setColumn(column);
+    selectionSort.setIsAsc(isAsc);
+    return selectionSort;
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.segment.memory.PinotByteBuffer;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import com.linkedin.pinot.core.segment.memory.PinotLByteBuffer;
+import com.linkedin.pinot.core.segment.memory.PinotUnsafeBuffer;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+
+/**
+ * Compares the read throughput of the {@link PinotDataBuffer} implementations on a memory mapped file and on direct
+ * memory, for sequential scans (e.g. raw forward indexes) and random probes (e.g. star-tree nodes, dictionaries).
+ */
+@State(Scope.Benchmark)
+public class BenchmarkPinotDataBuffer {
+  private static final File TEMP_FILE =
+      new File(FileUtils.getTempDirectory(), BenchmarkPinotDataBuffer.class.getSimpleName());
+  private static final int NUM_VALUES = 64 * 1024 * 1024;
+  private static final int NUM_RANDOM_READS = 1_000_000;
+
+  @Param({"PinotByteBuffer", "PinotLByteBuffer", "PinotUnsafeBuffer"})
+  private String _bufferType;
+
+  @Param({"mmap", "heap"})
+  private String _readMode;
+
+  private PinotDataBuffer _buffer;
+  private long[] _randomOffsets;
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_FILE);
+    long size = NUM_VALUES * 4L;
+    PinotDataBuffer writeBuffer =
+        PinotByteBuffer.fromFile(TEMP_FILE, 0, size, ReadMode.mmap, FileChannel.MapMode.READ_WRITE, "benchmark");
+    for (int i = 0; i < NUM_VALUES; i++) {
+      writeBuffer.putInt(i * 4, i);
+    }
+    writeBuffer.close();
+
+    ReadMode readMode = ReadMode.valueOf(_readMode);
+    switch (_bufferType) {
+      case "PinotByteBuffer":
+        _buffer = PinotByteBuffer.fromFile(TEMP_FILE, 0, size, readMode, FileChannel.MapMode.READ_ONLY, "benchmark");
+        break;
+      case "PinotLByteBuffer":
+        _buffer = PinotLByteBuffer.fromFile(TEMP_FILE, 0, size, readMode, FileChannel.MapMode.READ_ONLY, "benchmark");
+        break;
+      case "PinotUnsafeBuffer":
+        _buffer =
+            PinotUnsafeBuffer.fromFile(TEMP_FILE, 0, size, readMode, FileChannel.MapMode.READ_ONLY, "benchmark");
+        break;
+      default:
+        throw new IllegalStateException("Unsupported buffer type: " + _bufferType);
+    }
+
+    Random random = new Random(0);
+    _randomOffsets = new long[NUM_RANDOM_READS];
+    for (int i = 0; i < NUM_RANDOM_READS; i++) {
+      _randomOffsets[i] = random.nextInt(NUM_VALUES) * 4L;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    _buffer.close();
+    FileUtils.deleteQuietly(TEMP_FILE);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long sequentialIntIndex() {
+    long sum = 0;
+    for (int i = 0; i < NUM_VALUES; i++) {
+      sum += _buffer.getInt(i * 4);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long sequentialLongIndex() {
+    // PinotByteBuffer does not support long index
+    if (_buffer instanceof PinotByteBuffer) {
+      return sequentialIntIndex();
+    }
+    long sum = 0;
+    for (long i = 0; i < NUM_VALUES; i++) {
+      sum += _buffer.getInt(i * 4);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long randomRead() {
+    long sum = 0;
+    for (long offset : _randomOffsets) {
+      sum += _buffer.getInt((int) offset);
+    }
+    return sum;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkPinotDataBuffer.class.getSimpleName())
+        .warmupTime(TimeValue.seconds(10))
+        .warmupIterations(2)
+        .measurementTime(TimeValue.seconds(10))
+        .measurementIterations(5)
+        .forks(1);
+
+    new Runner(opt.build()).run();
+  }
+}
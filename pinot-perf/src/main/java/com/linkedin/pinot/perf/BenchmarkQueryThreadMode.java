@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.ServerQueryRequest;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.core.query.scheduler.fcfs.FCFSSchedulerGroup;
+import com.linkedin.pinot.core.query.scheduler.resources.PolicyBasedResourceManager;
+import com.linkedin.pinot.core.query.scheduler.resources.QueryExecutorService;
+import com.linkedin.pinot.core.query.scheduler.resources.ResourceManager;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+
+/**
+ * Compares the query throughput of the fixed and elastic thread modes of the {@link ResourceManager} under a mixed
+ * workload: each query fans out one job per segment to the query workers, and some of the jobs block (simulating page
+ * faults on memory mapped segments) while the others are CPU bound.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkQueryThreadMode {
+  private static final int NUM_SEGMENTS = 20;
+  private static final int NUM_CPU_ITERATIONS = 20000;
+  private static final long BLOCKING_TIME_MICROS = 500L;
+
+  @Param({"fixed", "elastic"})
+  private String _threadMode;
+
+  @Param({"0", "10", "50"})
+  private int _blockingJobPercent;
+
+  private ResourceManager _resourceManager;
+  private FCFSSchedulerGroup _schedulerGroup;
+  private ServerQueryRequest _queryRequest;
+
+  @Setup
+  public void setUp() {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(ResourceManager.THREAD_MODE_CONFIG_KEY, _threadMode);
+    _resourceManager = new PolicyBasedResourceManager(config);
+    _schedulerGroup = new FCFSSchedulerGroup("benchmarkTable");
+
+    InstanceRequest instanceRequest = new InstanceRequest(0L, new BrokerRequest());
+    List<String> segments = new ArrayList<>(NUM_SEGMENTS);
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      segments.add("segment_" + i);
+    }
+    instanceRequest.setSearchSegments(segments);
+    _queryRequest = new ServerQueryRequest(instanceRequest, new ServerMetrics(new MetricsRegistry()));
+  }
+
+  @TearDown
+  public void tearDown() {
+    _resourceManager.stop();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(16)
+  public long runQueries() throws Exception {
+    ListenableFuture<Long> queryFuture = _resourceManager.getQueryRunners().submit(new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return runQuery();
+      }
+    });
+    return queryFuture.get();
+  }
+
+  private long runQuery() throws InterruptedException, ExecutionException {
+    _schedulerGroup.startQuery();
+    QueryExecutorService executorService = _resourceManager.getExecutorService(_queryRequest, _schedulerGroup);
+    try {
+      List<Future<Long>> futures = new ArrayList<>(NUM_SEGMENTS);
+      for (int i = 0; i < NUM_SEGMENTS; i++) {
+        futures.add(executorService.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            return processSegment();
+          }
+        }));
+      }
+      long result = 0L;
+      for (Future<Long> future : futures) {
+        result += future.get();
+      }
+      return result;
+    } finally {
+      executorService.releaseWorkers();
+      _schedulerGroup.endQuery();
+    }
+  }
+
+  private long processSegment() throws InterruptedException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (random.nextInt(100) < _blockingJobPercent) {
+      TimeUnit.MICROSECONDS.sleep(BLOCKING_TIME_MICROS);
+    }
+    long result = 0L;
+    for (int i = 0; i < NUM_CPU_ITERATIONS; i++) {
+      result += random.nextInt();
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkQueryThreadMode.class.getSimpleName())
+        .warmupTime(TimeValue.seconds(5))
+        .warmupIterations(2)
+        .measurementTime(TimeValue.seconds(5))
+        .measurementIterations(3)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
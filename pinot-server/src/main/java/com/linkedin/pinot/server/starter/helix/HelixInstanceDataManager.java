@@ -30,6 +30,10 @@ import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManagerProvider;
 import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegment;
 import com.linkedin.pinot.core.indexsegment.immutable.ImmutableSegmentLoader;
+import com.linkedin.pinot.core.io.reader.impl.DecompressedChunkCache;
+import com.linkedin.pinot.core.operator.filter.FilterBitmapCache;
+import com.linkedin.pinot.core.query.executor.SegmentResultCache;
+import com.linkedin.pinot.core.segment.index.column.HotColumnCache;
 import com.linkedin.pinot.core.segment.index.loader.IndexLoadingConfig;
 import com.linkedin.pinot.core.segment.index.loader.LoaderUtils;
 import java.io.File;
@@ -64,6 +68,10 @@ public class HelixInstanceDataManager implements InstanceDataManager {
   private String _instanceId;
   private ZkHelixPropertyStore<ZNRecord> _propertyStore;
   private ServerMetrics _serverMetrics;
+  private HotColumnCache _hotColumnCache;
+  private DecompressedChunkCache _decompressedChunkCache;
+  private SegmentResultCache _segmentResultCache;
+  private FilterBitmapCache _filterBitmapCache;
 
   @Override
   public void init(Configuration config, ZkHelixPropertyStore<ZNRecord> propertyStore, ServerMetrics serverMetrics)
@@ -75,6 +83,11 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     _instanceId = _instanceDataManagerConfig.getInstanceId();
     _propertyStore = propertyStore;
     _serverMetrics = serverMetrics;
+    _hotColumnCache = createHotColumnCache(_instanceDataManagerConfig.getHotColumnCacheConfig());
+    _decompressedChunkCache =
+        createDecompressedChunkCache(_instanceDataManagerConfig.getDecompressedChunkCacheConfig());
+    _segmentResultCache = createSegmentResultCache(_instanceDataManagerConfig.getSegmentResultCacheConfig());
+    _filterBitmapCache = createFilterBitmapCache(_instanceDataManagerConfig.getFilterBitmapCacheConfig());
 
     File instanceDataDir = new File(_instanceDataManagerConfig.getInstanceDataDir());
     if (!instanceDataDir.exists()) {
@@ -88,6 +101,55 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     LOGGER.info("Initialized Helix instance data manager");
   }
 
+  @Nullable
+  private HotColumnCache createHotColumnCache(@Nonnull Configuration config) {
+    long maxSizeBytes = config.getLong(HotColumnCache.MAX_SIZE_BYTES_CONFIG_KEY, HotColumnCache.DEFAULT_MAX_SIZE_BYTES);
+    if (maxSizeBytes <= 0) {
+      return null;
+    }
+    int promotionThreshold =
+        config.getInt(HotColumnCache.PROMOTION_THRESHOLD_CONFIG_KEY, HotColumnCache.DEFAULT_PROMOTION_THRESHOLD);
+    LOGGER.info("Creating hot column cache with max size: {} bytes, promotion threshold: {}", maxSizeBytes,
+        promotionThreshold);
+    return new HotColumnCache(maxSizeBytes, promotionThreshold, _serverMetrics);
+  }
+
+  @Nullable
+  private DecompressedChunkCache createDecompressedChunkCache(@Nonnull Configuration config) {
+    long maxSizeBytes = config.getLong(DecompressedChunkCache.MAX_SIZE_BYTES_CONFIG_KEY,
+        DecompressedChunkCache.DEFAULT_MAX_SIZE_BYTES);
+    if (maxSizeBytes <= 0) {
+      return null;
+    }
+    LOGGER.info("Creating decompressed chunk cache with max size: {} bytes", maxSizeBytes);
+    return new DecompressedChunkCache(maxSizeBytes, _serverMetrics);
+  }
+
+  @Nullable
+  private SegmentResultCache createSegmentResultCache(@Nonnull Configuration config) {
+    long maxSizeBytes =
+        config.getLong(SegmentResultCache.MAX_SIZE_BYTES_CONFIG_KEY, SegmentResultCache.DEFAULT_MAX_SIZE_BYTES);
+    if (maxSizeBytes <= 0) {
+      return null;
+    }
+    LOGGER.info("Creating segment result cache with max size: {} bytes", maxSizeBytes);
+    return new SegmentResultCache(maxSizeBytes, _serverMetrics);
+  }
+
+  @Nullable
+  private FilterBitmapCache createFilterBitmapCache(@Nonnull Configuration config) {
+    long maxSizeBytes =
+        config.getLong(FilterBitmapCache.MAX_SIZE_BYTES_CONFIG_KEY, FilterBitmapCache.DEFAULT_MAX_SIZE_BYTES);
+    if (maxSizeBytes <= 0) {
+      return null;
+    }
+    long minAdmissionCost =
+        config.getLong(FilterBitmapCache.MIN_ADMISSION_COST_CONFIG_KEY, FilterBitmapCache.DEFAULT_MIN_ADMISSION_COST);
+    LOGGER.info("Creating filter bitmap cache with max size: {} bytes, min admission cost: {}", maxSizeBytes,
+        minAdmissionCost);
+    return new FilterBitmapCache(maxSizeBytes, minAdmissionCost, _serverMetrics);
+  }
+
   @Override
   public void start() {
     LOGGER.info("Starting Helix instance data manager");
@@ -107,7 +169,7 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     TableConfig tableConfig = ZKMetadataProvider.getTableConfig(_propertyStore, offlineTableName);
     Preconditions.checkNotNull(tableConfig);
     _tableDataManagerMap.computeIfAbsent(offlineTableName, k -> createTableDataManager(k, tableConfig))
-        .addSegment(indexDir, new IndexLoadingConfig(_instanceDataManagerConfig, tableConfig));
+        .addSegment(indexDir, createIndexLoadingConfig(tableConfig));
     LOGGER.info("Added segment: {} to table: {}", segmentName, offlineTableName);
   }
 
@@ -117,7 +179,7 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     TableConfig tableConfig = ZKMetadataProvider.getTableConfig(_propertyStore, realtimeTableName);
     Preconditions.checkNotNull(tableConfig);
     _tableDataManagerMap.computeIfAbsent(realtimeTableName, k -> createTableDataManager(k, tableConfig))
-        .addSegment(segmentName, tableConfig, new IndexLoadingConfig(_instanceDataManagerConfig, tableConfig));
+        .addSegment(segmentName, tableConfig, createIndexLoadingConfig(tableConfig));
     LOGGER.info("Added segment: {} to table: {}", segmentName, realtimeTableName);
   }
 
@@ -128,12 +190,23 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     tableDataManagerConfig.overrideConfigs(tableConfig);
     TableDataManager tableDataManager =
         TableDataManagerProvider.getTableDataManager(tableDataManagerConfig, _instanceId, _propertyStore,
-            _serverMetrics);
+            _serverMetrics, _segmentResultCache, _filterBitmapCache);
     tableDataManager.start();
     LOGGER.info("Created table data manager for table: {}", tableNameWithType);
     return tableDataManager;
   }
 
+  /**
+   * Helper method to create the index loading config for the segments of the given table, which also hands the
+   * instance level caches to the loaded segments.
+   */
+  private IndexLoadingConfig createIndexLoadingConfig(@Nonnull TableConfig tableConfig) {
+    IndexLoadingConfig indexLoadingConfig = new IndexLoadingConfig(_instanceDataManagerConfig, tableConfig);
+    indexLoadingConfig.setHotColumnCache(_hotColumnCache);
+    indexLoadingConfig.setDecompressedChunkCache(_decompressedChunkCache);
+    return indexLoadingConfig;
+  }
+
   @Override
   public void removeSegment(@Nonnull String tableNameWithType, @Nonnull String segmentName) {
     LOGGER.info("Removing segment: {} from table: {}", segmentName, tableNameWithType);
@@ -215,8 +288,7 @@ public class HelixInstanceDataManager implements InstanceDataManager {
 
       // Load from index directory
       ImmutableSegment immutableSegment =
-          ImmutableSegmentLoader.load(indexDir, new IndexLoadingConfig(_instanceDataManagerConfig, tableConfig),
-              schema);
+          ImmutableSegmentLoader.load(indexDir, createIndexLoadingConfig(tableConfig), schema);
 
       // Replace the old segment in memory
       _tableDataManagerMap.get(tableNameWithType).addSegment(immutableSegment);
@@ -250,6 +322,18 @@ public class HelixInstanceDataManager implements InstanceDataManager {
     return _tableDataManagerMap.get(tableNameWithType);
   }
 
+  @Nullable
+  @Override
+  public SegmentResultCache getSegmentResultCache() {
+    return _segmentResultCache;
+  }
+
+  @Nullable
+  @Override
+  public FilterBitmapCache getFilterBitmapCache() {
+    return _filterBitmapCache;
+  }
+
   @Nonnull
   @Override
   public String getSegmentDataDirectory() {
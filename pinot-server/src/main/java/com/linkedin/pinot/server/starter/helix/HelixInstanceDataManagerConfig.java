@@ -87,6 +87,24 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
   //
   private static final String MAX_PARALLEL_REFRESH_THREADS = "max.parallel.refresh.threads";
 
+  // Prefix of the hot column cache configs (see HotColumnCache): 'maxSizeBytes' is the heap budget for the forward
+  // indexes and dictionaries copied out of the segment buffers (0 by default, which keeps all columns in place), and
+  // 'promotionThreshold' the number of lookups after which a column gets copied.
+  private static final String HOT_COLUMN_CACHE_CONFIG_PREFIX = "hotColumnCache";
+
+  // Prefix of the decompressed chunk cache configs (see DecompressedChunkCache): 'maxSizeBytes' bounds the heap taken
+  // by chunks of compressed raw forward indexes. Without it, every query decompresses the chunks it reads.
+  private static final String DECOMPRESSED_CHUNK_CACHE_CONFIG_PREFIX = "decompressedChunkCache";
+
+  // Prefix of the segment result cache configs (see SegmentResultCache): 'maxSizeBytes' bounds the serialized
+  // aggregation results kept for immutable segments. Without it, aggregations always run on every segment.
+  private static final String SEGMENT_RESULT_CACHE_CONFIG_PREFIX = "segmentResultCache";
+
+  // Prefix of the filter bitmap cache configs (see FilterBitmapCache): 'maxSizeBytes' bounds the bitmaps of repeated
+  // predicates kept for immutable segments, and 'minAdmissionCost' is the estimated evaluation cost below which a
+  // predicate is cheaper to evaluate again than to cache.
+  private static final String FILTER_BITMAP_CACHE_CONFIG_PREFIX = "filterBitmapCache";
+
   private final static String[] REQUIRED_KEYS = { INSTANCE_ID, INSTANCE_DATA_DIR, READ_MODE };
   private Configuration _instanceDataManagerConfiguration = null;
 
@@ -182,6 +200,22 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
     return _instanceDataManagerConfiguration.getInt(MAX_PARALLEL_SEGMENT_BUILDS, 0);
   }
 
+  public Configuration getHotColumnCacheConfig() {
+    return _instanceDataManagerConfiguration.subset(HOT_COLUMN_CACHE_CONFIG_PREFIX);
+  }
+
+  public Configuration getDecompressedChunkCacheConfig() {
+    return _instanceDataManagerConfiguration.subset(DECOMPRESSED_CHUNK_CACHE_CONFIG_PREFIX);
+  }
+
+  public Configuration getSegmentResultCacheConfig() {
+    return _instanceDataManagerConfiguration.subset(SEGMENT_RESULT_CACHE_CONFIG_PREFIX);
+  }
+
+  public Configuration getFilterBitmapCacheConfig() {
+    return _instanceDataManagerConfiguration.subset(FILTER_BITMAP_CACHE_CONFIG_PREFIX);
+  }
+
   @Override
   public String toString() {
     String configString = "";
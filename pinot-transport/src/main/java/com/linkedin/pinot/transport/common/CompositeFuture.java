@@ -25,6 +25,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.linkedin.pinot.common.response.ServerInstance;
@@ -39,6 +40,8 @@ import com.linkedin.pinot.common.response.ServerInstance;
  *  (c) When all underlying futures completes successfully or with error ( GatherModeOnError Config : AND)
  *
  * The error gather mode determines if (b) or (c) has to be employed in case of errors in underlying futures.
+ * If a {@link GatherCompletionCondition} is given, the future also completes as soon as the condition is met by the
+ * responses gathered so far, and the outstanding underlying futures get cancelled.
  * This future is static in the sense that all the underlying futures have to added before we call any operations
  * on them.
  *
@@ -71,12 +74,23 @@ public class CompositeFuture<V> extends AbstractCompositeListenableFuture<V> {
   // Descriptive name of the future
   private final String _name;
 
+  // Condition to complete the future before all underlying futures complete
+  private final GatherCompletionCondition<V> _completionCondition;
+
+  private volatile boolean _completedEarly = false;
+
   public CompositeFuture(String name, GatherModeOnError mode) {
+    this(name, mode, null);
+  }
+
+  public CompositeFuture(String name, GatherModeOnError mode,
+      @Nullable GatherCompletionCondition<V> completionCondition) {
     _name = name;
     _futures = new ArrayList<ServerResponseFuture<V>>();
     _delayedResponseMap = new ConcurrentHashMap<ServerInstance, V>();
     _errorMap = new ConcurrentHashMap<ServerInstance, Throwable>();
     _gatherMode = mode;
+    _completionCondition = completionCondition;
   }
 
   /**
@@ -197,6 +211,15 @@ public class CompositeFuture<V> extends AbstractCompositeListenableFuture<V> {
     if (null != response) {
       LOGGER.debug("Response from {} is {}", server, response);
       _delayedResponseMap.putAll(response);
+      if (_completionCondition != null) {
+        for (Map.Entry<ServerInstance, V> entry : response.entrySet()) {
+          if (_completionCondition.onResponse(entry.getKey(), entry.getValue())) {
+            LOGGER.debug("Gather completion condition met after response from {}", server);
+            _completedEarly = true;
+            ret = true; // We are done as we got enough responses
+          }
+        }
+      }
     } else if (null != error) {
       LOGGER.debug("Error from {} is : {}", server, error);
       _errorMap.putAll(error);
@@ -215,6 +238,14 @@ public class CompositeFuture<V> extends AbstractCompositeListenableFuture<V> {
     return _name;
   }
 
+  /**
+   * Returns true if the future completed because its {@link GatherCompletionCondition} was met, in which case the
+   * responses of the cancelled underlying futures are missing on purpose.
+   */
+  public boolean isCompletedEarly() {
+    return _completedEarly;
+  }
+
   public int getNumFutures() {
     return _futures.size();
   }
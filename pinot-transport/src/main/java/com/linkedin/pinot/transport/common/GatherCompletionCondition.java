@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+/**
+ * Condition checked by a {@link CompositeFuture} on each response gathered. Once the condition is met, the composite
+ * future completes without waiting for the remaining responses, and the outstanding underlying futures get cancelled.
+ *
+ * @param <V> Value type of the underlying future
+ */
+public interface GatherCompletionCondition<V> {
+
+  /**
+   * Called as responses arrive, possibly concurrently from multiple threads.
+   *
+   * @param server Server which sent the response
+   * @param response Response from the server
+   * @return true if no more responses are needed
+   */
+  boolean onResponse(ServerInstance server, V response);
+}
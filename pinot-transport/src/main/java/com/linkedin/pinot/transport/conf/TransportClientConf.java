@@ -19,6 +19,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
+import com.linkedin.pinot.transport.config.HedgedRequestConfig;
 import com.linkedin.pinot.transport.config.RoutingTableConfig;
 
 
@@ -33,6 +34,7 @@ public class TransportClientConf {
   public static final String CFG_BASED_ROUTING = "routing";
   public static final String HELIX_CONFIG = "helix";
   public static final String CONNECTION_POOL_CONFIG = "connPool";
+  public static final String HEDGED_REQUEST_CONFIG = "hedging";
 
   // TODO: Revisit defaults
   private static final String DEFAULT_ROUTING_MODE = "CONFIG";
@@ -40,11 +42,13 @@ public class TransportClientConf {
   private RoutingMode _routingMode;
   private RoutingTableConfig _cfgBasedRouting;
   private ConnectionPoolConfig _connPool;
+  private HedgedRequestConfig _hedging;
 
   public TransportClientConf() {
     _routingMode = RoutingMode.valueOf(DEFAULT_ROUTING_MODE);
     _cfgBasedRouting = new RoutingTableConfig();
     _connPool = new ConnectionPoolConfig();
+    _hedging = new HedgedRequestConfig();
   }
 
   public void init(Configuration cfg) throws ConfigurationException {
@@ -59,6 +63,11 @@ public class TransportClientConf {
     if (connPoolCfg != null) {
       _connPool.init(connPoolCfg);
     }
+
+    Configuration hedgingCfg = cfg.subset(HEDGED_REQUEST_CONFIG);
+    if (hedgingCfg != null) {
+      _hedging.init(hedgingCfg);
+    }
   }
 
   public RoutingMode getRoutingMode() {
@@ -72,4 +81,8 @@ public class TransportClientConf {
   public ConnectionPoolConfig getConnPool() {
     return _connPool;
   }
+
+  public HedgedRequestConfig getHedging() {
+    return _hedging;
+  }
 }
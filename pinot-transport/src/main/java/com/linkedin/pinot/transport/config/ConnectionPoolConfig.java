@@ -36,10 +36,18 @@ public class ConnectionPoolConfig {
   // Idle Timeout (ms) for reaping idle connections
   public static final String IDLE_TIMEOUT_MS_KEY = "idleTimeoutMs";
 
+  // Whether to multiplex concurrent requests over a few long-lived channels per server instead of the pool
+  public static final String MULTIPLEXED_KEY = "multiplexed";
+
+  // Number of long-lived multiplexed channels for each server
+  public static final String MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY = "multiplexedConnectionsPerServer";
+
   private final int DEFAULT_MIN_CONNECTIONS_PER_SERVER = 10;
   private final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 30;
   private final int DEFAULT_MAX_BACKLOG_PER_SERVER = 30;
   private static final long DEFAULT_IDLE_TIMEOUT_MS = 6 * 60L * 60 * 1000L; // 6 hours
+  private static final boolean DEFAULT_MULTIPLEXED = false;
+  private static final int DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER = 2;
 
   // ThreadPool config for the Async Connection Pool
   private ThreadPoolConfig _threadPool;
@@ -56,6 +64,12 @@ public class ConnectionPoolConfig {
   // Idle Timeout (ms) for reaping idle connections
   private long _idleTimeoutMs;
 
+  // Whether to multiplex concurrent requests over a few long-lived channels per server
+  private boolean _multiplexed;
+
+  // Number of long-lived multiplexed channels for each server
+  private int _multiplexedConnectionsPerServer;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolConfig.class);
 
   public ConnectionPoolConfig() {
@@ -64,6 +78,8 @@ public class ConnectionPoolConfig {
     _maxConnectionsPerServer = DEFAULT_MAX_CONNECTIONS_PER_SERVER;
     _maxBacklogPerServer = DEFAULT_MAX_BACKLOG_PER_SERVER;
     _idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    _multiplexed = DEFAULT_MULTIPLEXED;
+    _multiplexedConnectionsPerServer = DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER;
   }
 
   public void init(Configuration cfg) {
@@ -87,6 +103,14 @@ public class ConnectionPoolConfig {
       _maxBacklogPerServer = cfg.getInt(MAX_BACKLOG_PER_SERVER_KEY);
     }
 
+    if (cfg.containsKey(MULTIPLEXED_KEY)) {
+      _multiplexed = cfg.getBoolean(MULTIPLEXED_KEY);
+    }
+
+    if (cfg.containsKey(MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY)) {
+      _multiplexedConnectionsPerServer = cfg.getInt(MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY);
+    }
+
     if (_minConnectionsPerServer > _maxConnectionsPerServer || _maxConnectionsPerServer <= 0 || _minConnectionsPerServer < 1) {
       LOGGER.warn("Invalid values for " + MIN_CONNECTIONS_PER_SERVER_KEY +  "({}) and " + MAX_CONNECTIONS_PER_SERVER_KEY +
           "({}). Resetting to defaults:", _minConnectionsPerServer, _maxConnectionsPerServer);
@@ -101,6 +125,11 @@ public class ConnectionPoolConfig {
       LOGGER.warn("Invalid value for " + MAX_BACKLOG_PER_SERVER_KEY + "({}). Resetting to default.");
       _maxBacklogPerServer = DEFAULT_MAX_BACKLOG_PER_SERVER;
     }
+    if (_multiplexedConnectionsPerServer <= 0) {
+      LOGGER.warn("Invalid value for " + MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY + "({}). Resetting to default.",
+          _multiplexedConnectionsPerServer);
+      _multiplexedConnectionsPerServer = DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER;
+    }
 
     LOGGER.info(toString());
   }
@@ -109,7 +138,9 @@ public class ConnectionPoolConfig {
     return "threadPool = "+_threadPool+", idleTimeoutMs = "+_idleTimeoutMs+
             ", minConnectionsPerServer = "+_minConnectionsPerServer+
             ", maxConnectionsPerServer = "+_maxConnectionsPerServer+
-            ", maxBacklogPerServer = "+_maxBacklogPerServer;
+            ", maxBacklogPerServer = "+_maxBacklogPerServer+
+            ", multiplexed = "+_multiplexed+
+            ", multiplexedConnectionsPerServer = "+_multiplexedConnectionsPerServer;
   }
 
   public ThreadPoolConfig getThreadPool() {
@@ -132,4 +163,12 @@ public class ConnectionPoolConfig {
     return _idleTimeoutMs;
   }
 
+  public boolean isMultiplexed() {
+    return _multiplexed;
+  }
+
+  public int getMultiplexedConnectionsPerServer() {
+    return _multiplexedConnectionsPerServer;
+  }
+
 }
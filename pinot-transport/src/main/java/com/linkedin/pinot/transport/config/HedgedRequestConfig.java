@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.config;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Config for hedged (speculative) requests: when a server has not responded after the configured latency percentile,
+ * its segments are sent again to replica servers and the first complete response is used.
+ */
+public class HedgedRequestConfig {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HedgedRequestConfig.class);
+
+  // Whether to send hedged requests to replica servers
+  public static final String ENABLED_KEY = "enabled";
+
+  // Percentile of the server response times after which a request is hedged
+  public static final String LATENCY_PERCENTILE_KEY = "latencyPercentile";
+
+  // Lower bound (ms) of the delay after which a request is hedged
+  public static final String MIN_DELAY_MS_KEY = "minDelayMs";
+
+  // Maximum percentage of server requests that can be hedged
+  public static final String BUDGET_PERCENT_KEY = "budgetPercent";
+
+  // Maximum number of hedged requests that can be sent in a burst
+  public static final String MAX_BURST_KEY = "maxBurst";
+
+  // Minimum number of response times to collect before hedging any request
+  public static final String MIN_SAMPLES_KEY = "minSamples";
+
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final double DEFAULT_LATENCY_PERCENTILE = 95.0;
+  private static final long DEFAULT_MIN_DELAY_MS = 10L;
+  private static final double DEFAULT_BUDGET_PERCENT = 5.0;
+  private static final int DEFAULT_MAX_BURST = 10;
+  private static final int DEFAULT_MIN_SAMPLES = 100;
+
+  private boolean _enabled;
+  private double _latencyPercentile;
+  private long _minDelayMs;
+  private double _budgetPercent;
+  private int _maxBurst;
+  private int _minSamples;
+
+  public HedgedRequestConfig() {
+    _enabled = DEFAULT_ENABLED;
+    _latencyPercentile = DEFAULT_LATENCY_PERCENTILE;
+    _minDelayMs = DEFAULT_MIN_DELAY_MS;
+    _budgetPercent = DEFAULT_BUDGET_PERCENT;
+    _maxBurst = DEFAULT_MAX_BURST;
+    _minSamples = DEFAULT_MIN_SAMPLES;
+  }
+
+  public void init(Configuration cfg) {
+    if (cfg.containsKey(ENABLED_KEY)) {
+      _enabled = cfg.getBoolean(ENABLED_KEY);
+    }
+
+    if (cfg.containsKey(LATENCY_PERCENTILE_KEY)) {
+      _latencyPercentile = cfg.getDouble(LATENCY_PERCENTILE_KEY);
+    }
+
+    if (cfg.containsKey(MIN_DELAY_MS_KEY)) {
+      _minDelayMs = cfg.getLong(MIN_DELAY_MS_KEY);
+    }
+
+    if (cfg.containsKey(BUDGET_PERCENT_KEY)) {
+      _budgetPercent = cfg.getDouble(BUDGET_PERCENT_KEY);
+    }
+
+    if (cfg.containsKey(MAX_BURST_KEY)) {
+      _maxBurst = cfg.getInt(MAX_BURST_KEY);
+    }
+
+    if (cfg.containsKey(MIN_SAMPLES_KEY)) {
+      _minSamples = cfg.getInt(MIN_SAMPLES_KEY);
+    }
+
+    if (_latencyPercentile <= 0 || _latencyPercentile >= 100) {
+      LOGGER.warn("Invalid value for " + LATENCY_PERCENTILE_KEY + "({}). Resetting to default.", _latencyPercentile);
+      _latencyPercentile = DEFAULT_LATENCY_PERCENTILE;
+    }
+    if (_minDelayMs < 0) {
+      LOGGER.warn("Invalid value for " + MIN_DELAY_MS_KEY + "({}). Resetting to default.", _minDelayMs);
+      _minDelayMs = DEFAULT_MIN_DELAY_MS;
+    }
+    if (_budgetPercent < 0 || _budgetPercent > 100) {
+      LOGGER.warn("Invalid value for " + BUDGET_PERCENT_KEY + "({}). Resetting to default.", _budgetPercent);
+      _budgetPercent = DEFAULT_BUDGET_PERCENT;
+    }
+    if (_maxBurst <= 0) {
+      LOGGER.warn("Invalid value for " + MAX_BURST_KEY + "({}). Resetting to default.", _maxBurst);
+      _maxBurst = DEFAULT_MAX_BURST;
+    }
+    if (_minSamples < 0) {
+      LOGGER.warn("Invalid value for " + MIN_SAMPLES_KEY + "({}). Resetting to default.", _minSamples);
+      _minSamples = DEFAULT_MIN_SAMPLES;
+    }
+
+    LOGGER.info(toString());
+  }
+
+  public String toString() {
+    return "enabled = " + _enabled + ", latencyPercentile = " + _latencyPercentile + ", minDelayMs = " + _minDelayMs
+        + ", budgetPercent = " + _budgetPercent + ", maxBurst = " + _maxBurst + ", minSamples = " + _minSamples;
+  }
+
+  public boolean isEnabled() {
+    return _enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    _enabled = enabled;
+  }
+
+  public double getLatencyPercentile() {
+    return _latencyPercentile;
+  }
+
+  public void setLatencyPercentile(double latencyPercentile) {
+    _latencyPercentile = latencyPercentile;
+  }
+
+  public long getMinDelayMs() {
+    return _minDelayMs;
+  }
+
+  public void setMinDelayMs(long minDelayMs) {
+    _minDelayMs = minDelayMs;
+  }
+
+  public double getBudgetPercent() {
+    return _budgetPercent;
+  }
+
+  public void setBudgetPercent(double budgetPercent) {
+    _budgetPercent = budgetPercent;
+  }
+
+  public int getMaxBurst() {
+    return _maxBurst;
+  }
+
+  public void setMaxBurst(int maxBurst) {
+    _maxBurst = maxBurst;
+  }
+
+  public int getMinSamples() {
+    return _minSamples;
+  }
+
+  public void setMinSamples(int minSamples) {
+    _minSamples = minSamples;
+  }
+}
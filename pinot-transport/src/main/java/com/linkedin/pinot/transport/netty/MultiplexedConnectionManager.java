@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Keeps a small fixed number of long-lived {@link NettyMultiplexedClientConnection}s per server and spreads requests
+ * over them in round-robin order. Broken connections are replaced lazily on the next request, so there is no
+ * checkout and no waiting for a free connection.
+ * <ul>
+ *   <li> Connecting is bounded by the time remaining for the request, and happens outside of any lock: a single
+ *        request connects each connection slot, while the other requests use another active connection to the server,
+ *        or wait for the connect within their own time budget. </li>
+ *   <li> After a failed connect, the server is not connected again before a backoff delay (doubling with each
+ *        consecutive failure), so that requests to a down server fail fast instead of each waiting for a connect. </li>
+ * </ul>
+ */
+public class MultiplexedConnectionManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MultiplexedConnectionManager.class);
+
+  private static final long MIN_RECONNECT_BACKOFF_MS = 100L;
+  private static final long MAX_RECONNECT_BACKOFF_MS = 10_000L;
+
+  private final EventLoopGroup _eventLoop;
+  private final Timer _timer;
+  private final NettyClientMetrics _metrics;
+  private final int _connectionsPerServer;
+  private final Map<ServerInstance, ServerConnections> _serverConnections = new ConcurrentHashMap<>();
+
+  public MultiplexedConnectionManager(EventLoopGroup eventLoop, Timer timer, NettyClientMetrics metrics,
+      int connectionsPerServer) {
+    Preconditions.checkArgument(connectionsPerServer > 0);
+    _eventLoop = eventLoop;
+    _timer = timer;
+    _metrics = metrics;
+    _connectionsPerServer = connectionsPerServer;
+  }
+
+  /**
+   * Returns an active connection to the given server, connecting if needed within the given timeout. Returns null if
+   * the server cannot be connected within the timeout, or if the server is backed off after failed connects.
+   */
+  @Nullable
+  public NettyMultiplexedClientConnection getConnection(ServerInstance server, long timeoutMs) {
+    ServerConnections serverConnections = _serverConnections.get(server);
+    if (serverConnections == null) {
+      ServerConnections newServerConnections = new ServerConnections(server);
+      serverConnections = _serverConnections.putIfAbsent(server, newServerConnections) == null ? newServerConnections
+          : _serverConnections.get(server);
+    }
+    return serverConnections.getConnection(timeoutMs);
+  }
+
+  /**
+   * Closes the connections to the given server, e.g. when the server goes away or restarts.
+   */
+  public void removeServer(ServerInstance server) {
+    ServerConnections serverConnections = _serverConnections.remove(server);
+    if (serverConnections != null) {
+      LOGGER.info("Closing multiplexed connections to server {}", server);
+      serverConnections.close();
+    }
+  }
+
+  public void shutdown() {
+    for (ServerInstance server : _serverConnections.keySet()) {
+      removeServer(server);
+    }
+  }
+
+  private class ServerConnections {
+    private final ServerInstance _server;
+    private final AtomicReferenceArray<NettyMultiplexedClientConnection> _connections;
+    private final AtomicInteger _nextIndex = new AtomicInteger();
+
+    // Guarded by this
+    private final SettableFuture<NettyMultiplexedClientConnection>[] _pendingConnects;
+    private int _numConsecutiveConnectFailures;
+    private long _nextConnectTimeMs;
+    private boolean _closed;
+
+    @SuppressWarnings("unchecked")
+    ServerConnections(ServerInstance server) {
+      _server = server;
+      _connections = new AtomicReferenceArray<>(_connectionsPerServer);
+      _pendingConnects = new SettableFuture[_connectionsPerServer];
+    }
+
+    @Nullable
+    NettyMultiplexedClientConnection getConnection(long timeoutMs) {
+      int index = (_nextIndex.getAndIncrement() & Integer.MAX_VALUE) % _connectionsPerServer;
+      NettyMultiplexedClientConnection connection = _connections.get(index);
+      if (connection != null && connection.validate()) {
+        return connection;
+      }
+
+      SettableFuture<NettyMultiplexedClientConnection> pendingConnect;
+      boolean shouldConnect = false;
+      synchronized (this) {
+        connection = _connections.get(index);
+        if (connection != null && connection.validate()) {
+          return connection;
+        }
+        if (_closed) {
+          return null;
+        }
+        pendingConnect = _pendingConnects[index];
+        if (pendingConnect == null) {
+          if (System.currentTimeMillis() < _nextConnectTimeMs) {
+            // Backing off after failed connects, only use the connections still active
+            return getActiveConnection();
+          }
+          pendingConnect = SettableFuture.create();
+          _pendingConnects[index] = pendingConnect;
+          _connections.set(index, null);
+          shouldConnect = true;
+        }
+      }
+
+      if (shouldConnect) {
+        if (connection != null) {
+          LOGGER.info("Replacing inactive multiplexed connection {}", connection);
+          closeQuietly(connection);
+        }
+        return connect(index, timeoutMs, pendingConnect);
+      }
+
+      // Another request is connecting this slot, use another active connection rather than waiting for it
+      NettyMultiplexedClientConnection activeConnection = getActiveConnection();
+      if (activeConnection != null) {
+        return activeConnection;
+      }
+      try {
+        return pendingConnect.get(timeoutMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException | TimeoutException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Connects the given slot, and completes the pending connect with the new connection (or null on failure).
+     */
+    @Nullable
+    private NettyMultiplexedClientConnection connect(int index, long timeoutMs,
+        SettableFuture<NettyMultiplexedClientConnection> pendingConnect) {
+      NettyMultiplexedClientConnection newConnection =
+          new NettyMultiplexedClientConnection(_server, _eventLoop, _timer, _metrics);
+      boolean connected = false;
+      boolean closed;
+      try {
+        connected = newConnection.connect(timeoutMs);
+      } finally {
+        synchronized (this) {
+          _pendingConnects[index] = null;
+          closed = _closed;
+          if (connected) {
+            _numConsecutiveConnectFailures = 0;
+            _nextConnectTimeMs = 0L;
+            if (!closed) {
+              _connections.set(index, newConnection);
+            }
+          } else {
+            _numConsecutiveConnectFailures++;
+            long backoffMs = Math.min(MIN_RECONNECT_BACKOFF_MS << Math.min(_numConsecutiveConnectFailures - 1, 16),
+                MAX_RECONNECT_BACKOFF_MS);
+            _nextConnectTimeMs = System.currentTimeMillis() + backoffMs;
+          }
+        }
+      }
+      if (connected && closed) {
+        // Server has been removed while connecting
+        closeQuietly(newConnection);
+        connected = false;
+      }
+      NettyMultiplexedClientConnection result = connected ? newConnection : null;
+      pendingConnect.set(result);
+      return result;
+    }
+
+    @Nullable
+    private NettyMultiplexedClientConnection getActiveConnection() {
+      for (int i = 0; i < _connectionsPerServer; i++) {
+        NettyMultiplexedClientConnection connection = _connections.get(i);
+        if (connection != null && connection.validate()) {
+          return connection;
+        }
+      }
+      return null;
+    }
+
+    void close() {
+      synchronized (this) {
+        _closed = true;
+      }
+      for (int i = 0; i < _connectionsPerServer; i++) {
+        NettyMultiplexedClientConnection connection = _connections.getAndSet(i, null);
+        if (connection != null) {
+          closeQuietly(connection);
+        }
+      }
+    }
+
+    private void closeQuietly(NettyMultiplexedClientConnection connection) {
+      try {
+        connection.close();
+      } catch (InterruptedException e) {
+        LOGGER.error("Got interrupted exception when closing connection {}", connection, e);
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
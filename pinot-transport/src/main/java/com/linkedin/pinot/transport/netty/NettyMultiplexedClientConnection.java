@@ -0,0 +1,426 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import com.linkedin.pinot.common.metrics.MetricsHelper;
+import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.Cancellable;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * TCP based Netty Client Connection which can carry many in-flight requests at the same time.
+ *
+ * Each request is tagged with a correlation id unique to the connection, and the server echoes the same header in
+ * front of the response, so responses can arrive in any order and are matched back to their pending request. A
+ * timeout or a cancellation only fails the affected request, the channel stays open for the other requests.
+ *
+ * Request and Response have the following format
+ *
+ * 0                                                         31
+ * ------------------------------------------------------------
+ * |                  Length ( 32 bits)                       |
+ * |                  Magic ( 32 bits)                        |
+ * |                  Correlation Id ( 64 bits)               |
+ * |                                                          |
+ * |                 Payload (Request/Response)               |
+ * |                    ...............                       |
+ * |                    ...............                       |
+ * ------------------------------------------------------------
+ *
+ * The magic value can never start a thrift compact encoded request, which lets the server accept both framings on the
+ * same port.
+ *
+ * When a pending request is cancelled or timed out, a cancel frame carrying only the cancel magic and the correlation
+ * id of the request is sent, so that the server can stop processing it.
+ */
+public class NettyMultiplexedClientConnection extends NettyClientConnection {
+  public static final int MULTIPLEXED_FRAME_MAGIC = 0x504D5558;
+  public static final int MULTIPLEXED_CANCEL_MAGIC = 0x50434E4C;
+  public static final int MULTIPLEXED_HEADER_LENGTH = 12;
+  // Same as the Netty default
+  public static final long DEFAULT_CONNECT_TIMEOUT_MS = 30_000L;
+  private static final long CONNECT_TIMEOUT_GRACE_MS = 100L;
+
+  // Connection Id generator
+  private static final AtomicLong _connIdGen = new AtomicLong(0);
+
+  private final NettyClientMetrics _clientMetric;
+  private final AtomicLong _correlationIdGen = new AtomicLong(0);
+  private final Map<Long, PendingRequest> _pendingRequests = new ConcurrentHashMap<>();
+
+  // Channel Setting notification
+  private final CountDownLatch _channelSet = new CountDownLatch(1);
+
+  public NettyMultiplexedClientConnection(ServerInstance server, EventLoopGroup eventGroup, Timer timer,
+      NettyClientMetrics metric) {
+    super(server, eventGroup, timer, _connIdGen.incrementAndGet());
+    _clientMetric = metric;
+    _bootstrap = new Bootstrap();
+    _bootstrap.group(_eventGroup)
+        .channel(NioSocketChannel.class)
+        .handler(new ChannelHandlerInitializer(new MultiplexedClientHandler()));
+  }
+
+  /**
+   * Returns true if the buffer starts with a multiplexed frame header.
+   */
+  public static boolean isMultiplexedFrame(ByteBuf buf) {
+    return buf.readableBytes() >= MULTIPLEXED_HEADER_LENGTH && buf.getInt(buf.readerIndex()) == MULTIPLEXED_FRAME_MAGIC;
+  }
+
+  /**
+   * Builds the multiplexed frame header for the given correlation id.
+   */
+  public static ByteBuf createHeader(long correlationId) {
+    return Unpooled.buffer(MULTIPLEXED_HEADER_LENGTH).writeInt(MULTIPLEXED_FRAME_MAGIC).writeLong(correlationId);
+  }
+
+  /**
+   * Returns true if the buffer is a cancel frame.
+   */
+  public static boolean isCancelFrame(ByteBuf buf) {
+    return buf.readableBytes() == MULTIPLEXED_HEADER_LENGTH
+        && buf.getInt(buf.readerIndex()) == MULTIPLEXED_CANCEL_MAGIC;
+  }
+
+  /**
+   * Builds the cancel frame for the request with the given correlation id.
+   */
+  public static ByteBuf createCancelFrame(long correlationId) {
+    return Unpooled.buffer(MULTIPLEXED_HEADER_LENGTH).writeInt(MULTIPLEXED_CANCEL_MAGIC).writeLong(correlationId);
+  }
+
+  /**
+   * Open a connection, giving up after the default Netty connect timeout.
+   */
+  @Override
+  public boolean connect() {
+    return connect(DEFAULT_CONNECT_TIMEOUT_MS);
+  }
+
+  /**
+   * Open a connection, giving up after the given timeout.
+   */
+  public boolean connect(long timeoutMs) {
+    try {
+      if (!_connState.isValidTransition(State.CONNECTED)) {
+        throw new IllegalStateException("Wrong transition :" + _connState + " -> " + State.CONNECTED + ", connId:"
+            + getConnId());
+      }
+      int connectTimeoutMs = (int) Math.max(Math.min(timeoutMs, Integer.MAX_VALUE), 1L);
+      TimerContext t = MetricsHelper.startTimer();
+      ChannelFuture f = _bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+          .connect(_server.getHostname(), _server.getPort());
+      // The connect timeout fails the future, only wait a bit longer in case the event loop is busy
+      if (!f.await(connectTimeoutMs + CONNECT_TIMEOUT_GRACE_MS)) {
+        f.cancel(false);
+        f.channel().close();
+        throw new ConnectTimeoutException("Timed out connecting to server " + _server + " after " + connectTimeoutMs
+            + "ms");
+      }
+      f.get();
+      if (!_channelSet.await(connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+        f.channel().close();
+        throw new ConnectTimeoutException("Timed out waiting for the channel to server " + _server + " to be active");
+      }
+      t.stop();
+
+      _connState = State.CONNECTED;
+      _clientMetric.addConnectStats(t.getLatencyMs());
+      return true;
+    } catch (Exception e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      Throwable cause = (e instanceof ExecutionException && e.getCause() != null) ? e.getCause() : e;
+      if (cause instanceof ConnectException) {
+        LOGGER.info("Could not connect to server {}:{} connId:{}", _server, cause.getMessage(), getConnId());
+      } else {
+        LOGGER.error("Got exception when connecting to server {} connId {}", _server, getConnId(), e);
+      }
+      _connState = State.ERROR;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean validate() {
+    return _connState != State.ERROR && super.validate();
+  }
+
+  /**
+   * Sends the request without waiting for the previous ones to complete. Thread-safe.
+   */
+  @Override
+  public ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMs) {
+    long correlationId = _correlationIdGen.incrementAndGet();
+    ResponseFuture responseFuture = new ResponseFuture(_server,
+        "Server response future for reqId " + requestId + " to server " + _server + " connId " + getConnId());
+    if (!validate()) {
+      serializedRequest.release();
+      responseFuture.onError(new IllegalStateException(
+          "Client channel to server " + _server + " connId " + getConnId() + " is not active"));
+      return responseFuture;
+    }
+
+    final PendingRequest pendingRequest =
+        new PendingRequest(correlationId, requestId, responseFuture, serializedRequest.readableBytes());
+    _pendingRequests.put(correlationId, pendingRequest);
+    responseFuture.setCancellable(pendingRequest);
+    if (timeoutMs >= 0) {
+      pendingRequest._timeout = _timer.newTimeout(pendingRequest, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Re-check after registering so that a concurrent channel failure cannot leave the request pending forever
+    if (!validate()) {
+      serializedRequest.release();
+      pendingRequest.fail(new IllegalStateException(
+          "Client channel to server " + _server + " connId " + getConnId() + " is not active"));
+      return responseFuture;
+    }
+    _channel.writeAndFlush(Unpooled.wrappedBuffer(createHeader(correlationId), serializedRequest))
+        .addListener(new ChannelFutureListener() {
+          @Override
+          public void operationComplete(ChannelFuture future) {
+            pendingRequest._sendRequestLatency.stop();
+            if (!future.isSuccess()) {
+              LOGGER.warn("Failed to send request {} to server {} connId {}", pendingRequest._requestId, _server,
+                  getConnId(), future.cause());
+              pendingRequest.fail(future.cause());
+            }
+          }
+        });
+    return responseFuture;
+  }
+
+  /**
+   * Returns the number of requests sent on this connection which are still waiting for a response.
+   */
+  public int getNumPendingRequests() {
+    return _pendingRequests.size();
+  }
+
+  /**
+   * Fails all the pending requests, called when the channel is no longer usable.
+   */
+  private void failPendingRequests(Throwable cause) {
+    for (PendingRequest pendingRequest : _pendingRequests.values()) {
+      pendingRequest.fail(cause);
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    LOGGER.info("Closing multiplexed client channel to {} connId {}", _server, getConnId());
+    if (null != _channel) {
+      _channel.close().sync();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Server:" + _server + ",State:" + _connState + ",connId:" + getConnId() + ",pendingRequests:"
+        + _pendingRequests.size();
+  }
+
+  /**
+   * Request sent on the connection and waiting for its response. Doubles as the timeout task and the cancellable of
+   * the response future.
+   */
+  private class PendingRequest implements TimerTask, Cancellable {
+    private final long _correlationId;
+    private final long _requestId;
+    private final ResponseFuture _responseFuture;
+    private final long _requestSizeInBytes;
+    private final TimerContext _sendRequestLatency = MetricsHelper.startTimer();
+    private final TimerContext _responseLatency = MetricsHelper.startTimer();
+    private volatile Timeout _timeout;
+
+    PendingRequest(long correlationId, long requestId, ResponseFuture responseFuture, long requestSizeInBytes) {
+      _correlationId = correlationId;
+      _requestId = requestId;
+      _responseFuture = responseFuture;
+      _requestSizeInBytes = requestSizeInBytes;
+    }
+
+    /**
+     * Removes the request from the pending requests, returns false if it has already been completed.
+     */
+    private boolean complete() {
+      if (!_pendingRequests.remove(_correlationId, this)) {
+        return false;
+      }
+      if (_timeout != null) {
+        _timeout.cancel();
+      }
+      _responseLatency.stop();
+      return true;
+    }
+
+    void succeed(byte[] response) {
+      if (complete()) {
+        _clientMetric.addRequestResponseStats(_requestSizeInBytes, 1, response.length, false,
+            _sendRequestLatency.getLatencyMs(), _responseLatency.getLatencyMs());
+        _responseFuture.onSuccess(response);
+      }
+    }
+
+    /**
+     * Fails the request, returns false if it has already been completed.
+     */
+    boolean fail(Throwable cause) {
+      if (complete()) {
+        _clientMetric.addRequestResponseStats(_requestSizeInBytes, 1, 0, true, _sendRequestLatency.getLatencyMs(),
+            _responseLatency.getLatencyMs());
+        _responseFuture.onError(cause);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Tells the server to stop processing the request, nobody is waiting for its response anymore.
+     */
+    private void sendCancel() {
+      if (validate()) {
+        _channel.writeAndFlush(createCancelFrame(_correlationId));
+      }
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      String message = "Request (" + _requestId + ") to server " + _server + " connId " + getConnId()
+          + " timed-out waiting for response";
+      LOGGER.warn(message);
+      if (fail(new Exception(message))) {
+        sendCancel();
+      }
+    }
+
+    @Override
+    public boolean cancel() {
+      // A response arriving later for this request is discarded
+      if (complete()) {
+        sendCancel();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Channel Handler for incoming responses.
+   */
+  private class MultiplexedClientHandler extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+      LOGGER.info("Multiplexed client channel to server ({}) (id = {}) is active.", _server, _connId);
+      _channel = ctx.channel();
+      _channelSet.countDown();
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      LOGGER.info("Multiplexed client channel to server ({}) (id = {}) in inactive state (closed).", _server, _connId);
+      _connState = State.ERROR;
+      failPendingRequests(new Exception("Client Channel to server (" + _server + ") is in inactive state (closed) !!"));
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      ByteBuf responseByteBuf = (ByteBuf) msg;
+      try {
+        if (!isMultiplexedFrame(responseByteBuf)) {
+          LOGGER.warn("Got a response without multiplexed frame header from server {} connId {}, discarding it",
+              _server, getConnId());
+          return;
+        }
+        responseByteBuf.skipBytes(4);
+        long correlationId = responseByteBuf.readLong();
+        PendingRequest pendingRequest = _pendingRequests.get(correlationId);
+        if (pendingRequest == null) {
+          // Request has been timed out or cancelled
+          LOGGER.debug("Discarding late response for correlation id {} from server {}", correlationId, _server);
+          return;
+        }
+        byte[] responseBytes = new byte[responseByteBuf.readableBytes()];
+        responseByteBuf.readBytes(responseBytes);
+        pendingRequest.succeed(responseBytes);
+      } finally {
+        responseByteBuf.release();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOGGER.info("Got exception in the multiplexed channel to {}, connId {}, cause:{}", _server, getConnId(),
+          cause.getMessage());
+      _connState = State.ERROR;
+      failPendingRequests(cause);
+      ctx.close();
+    }
+  }
+
+  /**
+   * Netty Client Channel Initializer responsible for setting the pipeline
+   */
+  private static class ChannelHandlerInitializer extends ChannelInitializer<SocketChannel> {
+    private final MultiplexedClientHandler _handler;
+
+    ChannelHandlerInitializer(MultiplexedClientHandler handler) {
+      _handler = handler;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel ch) throws Exception {
+      ChannelPipeline pipeline = ch.pipeline();
+      pipeline.addLast("decoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+      pipeline.addLast("encoder", new LengthFieldPrepender(4));
+      pipeline.addLast("handler", _handler);
+    }
+  }
+}
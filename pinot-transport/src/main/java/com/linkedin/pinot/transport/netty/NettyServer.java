@@ -35,6 +35,11 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.concurrent.Future;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nonnull;
@@ -220,11 +225,21 @@ public abstract class NettyServer implements Runnable {
    * |                    ...............                       |
    * |                    ...............                       |
    * ------------------------------------------------------------
+   *
+   * Requests sent by a {@link NettyMultiplexedClientConnection} carry a multiplexed frame header in front of the
+   * payload. The header is stripped before the request is handed to the {@link RequestHandler} and written back in
+   * front of the response, so that the client can match out-of-order responses to their requests. A cancel frame sent
+   * by the client cancels the processing of the request with the same correlation id, and all the requests still in
+   * flight are cancelled when the client disconnects. No response is sent for a cancelled request.
    */
   public static class NettyChannelInboundHandler extends ChannelInboundHandlerAdapter {
     private final long _defaultLargeQueryLatencyMs;
     private final RequestHandler _handler;
     private final NettyServerMetrics _metric;
+    // Requests still being processed, and the multiplexed ones by correlation id
+    private final Set<ListenableFuture<byte[]>> _inFlightRequests =
+        Collections.newSetFromMap(new ConcurrentHashMap<ListenableFuture<byte[]>, Boolean>());
+    private final Map<Long, ListenableFuture<byte[]>> _inFlightMultiplexedRequests = new ConcurrentHashMap<>();
 
     public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric, long defaultLargeQueryLatencyMs) {
       _handler = handler;
@@ -242,18 +257,53 @@ public abstract class NettyServer implements Runnable {
       LOGGER.debug("Request received by server !!");
 
       final ByteBuf request = (ByteBuf) msg;
+      if (NettyMultiplexedClientConnection.isCancelFrame(request)) {
+        long correlationId = request.getLong(request.readerIndex() + 4);
+        request.release();
+        ListenableFuture<byte[]> serializedQueryResponse = _inFlightMultiplexedRequests.get(correlationId);
+        if (serializedQueryResponse != null) {
+          LOGGER.debug("Cancelling request with correlation id: {}", correlationId);
+          // Do not interrupt the query threads, the query stops at its next cancellation check
+          serializedQueryResponse.cancel(false);
+        }
+        return;
+      }
+
       final long requestSizeInBytes = request.readableBytes();
+      final ByteBuf responseHeader;
+      final Long correlationId;
+      if (NettyMultiplexedClientConnection.isMultiplexedFrame(request)) {
+        responseHeader = request.readSlice(NettyMultiplexedClientConnection.MULTIPLEXED_HEADER_LENGTH).copy();
+        correlationId = responseHeader.getLong(4);
+      } else {
+        responseHeader = null;
+        correlationId = null;
+      }
 
       //Call processing handler
       final TimerContext requestProcessingLatency = MetricsHelper.startTimer();
       final ChannelHandlerContext requestChannelHandlerContext = ctx;
-      ListenableFuture<byte[]> serializedQueryResponse = _handler.processRequest(ctx, request);
+      final ListenableFuture<byte[]> serializedQueryResponse = _handler.processRequest(ctx, request);
+      _inFlightRequests.add(serializedQueryResponse);
+      if (correlationId != null) {
+        _inFlightMultiplexedRequests.put(correlationId, serializedQueryResponse);
+      }
       Futures.addCallback(serializedQueryResponse, new FutureCallback<byte[]>() {
+        void complete() {
+          _inFlightRequests.remove(serializedQueryResponse);
+          if (correlationId != null) {
+            _inFlightMultiplexedRequests.remove(correlationId, serializedQueryResponse);
+          }
+        }
+
         void sendResponse(@Nonnull final byte[] result) {
+          complete();
           requestProcessingLatency.stop();
 
           // Send Response
-          final ByteBuf responseBuf = Unpooled.wrappedBuffer(result);
+          final ByteBuf responseBuf =
+              responseHeader == null ? Unpooled.wrappedBuffer(result) : Unpooled.wrappedBuffer(responseHeader,
+                  Unpooled.wrappedBuffer(result));
           final TimerContext responseSendLatency = MetricsHelper.startTimer();
           ChannelFuture f = requestChannelHandlerContext.writeAndFlush(responseBuf);
           f.addListener(new ChannelFutureListener() {
@@ -286,6 +336,13 @@ public abstract class NettyServer implements Runnable {
 
         @Override
         public void onFailure(Throwable t) {
+          if (t instanceof CancellationException) {
+            // Cancelled by the client, nobody is waiting for the response
+            LOGGER.debug("Request processing has been cancelled");
+            complete();
+            request.release();
+            return;
+          }
           LOGGER.error("Request processing returned unhandled exception, error: ", t);
           sendResponse(new byte[0]);
         }
@@ -293,6 +350,16 @@ public abstract class NettyServer implements Runnable {
 
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx)
+        throws Exception {
+      // The client is gone, stop processing its requests
+      for (ListenableFuture<byte[]> serializedQueryResponse : _inFlightRequests) {
+        serializedQueryResponse.cancel(false);
+      }
+      super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
       LOGGER.error("Got exception in the channel handler", cause);
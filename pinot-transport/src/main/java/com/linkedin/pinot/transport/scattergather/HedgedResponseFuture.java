@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.scattergather;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.ServerResponseFuture;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Response future of a server request which may get hedged to replica servers.
+ *
+ * The future completes with the first complete response: either the one of the original server, or the ones of all
+ * the replica servers the request was hedged to. It fails with the error of the original server once both sides
+ * failed, or as soon as the original server failed if the request was not hedged yet. Responses of the replica servers
+ * are keyed by the replica server with the hedge sequence number, so that they do not collide with the responses of
+ * the other servers queried by the scatter-gather.
+ *
+ * When the replica servers win, the request to the original server is left running until it responds or times out,
+ * so that its own response time can still be recorded by the hedging policy.
+ */
+class HedgedResponseFuture extends AbstractFuture<Map<ServerInstance, byte[]>> implements ServerResponseFuture<byte[]> {
+  private final ServerInstance _server;
+  private final ServerResponseFuture<byte[]> _primaryFuture;
+  private final int _hedgeSeq;
+  private final String _name;
+  private final long _startTimeMs = System.currentTimeMillis();
+
+  // Guarded by this
+  private final Map<ServerInstance, byte[]> _hedgeResponses = new HashMap<>();
+  private List<ServerResponseFuture<byte[]>> _hedgeFutures;
+  private int _numPendingHedges;
+  private boolean _primaryFailed;
+  private boolean _hedgeFailed;
+  private boolean _completed;
+
+  private volatile ScheduledFuture<?> _scheduledHedge;
+  private volatile Map<ServerInstance, Throwable> _error;
+  private volatile boolean _hedgeResponseUsed;
+  private volatile long _durationMillis = -1L;
+
+  HedgedResponseFuture(@Nonnull ServerInstance server, @Nonnull ServerResponseFuture<byte[]> primaryFuture,
+      int hedgeSeq) {
+    _server = server;
+    _primaryFuture = primaryFuture;
+    _hedgeSeq = hedgeSeq;
+    _name = "hedged " + primaryFuture.getName();
+    primaryFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        onPrimaryComplete();
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Sets the scheduled hedging of the request, which gets cancelled once the future completes.
+   */
+  void setScheduledHedge(@Nonnull ScheduledFuture<?> scheduledHedge) {
+    _scheduledHedge = scheduledHedge;
+    if (isDone()) {
+      scheduledHedge.cancel(false);
+    }
+  }
+
+  /**
+   * Returns whether the request still needs to be hedged, i.e. the original server has neither responded nor failed.
+   */
+  synchronized boolean canHedge() {
+    return !_completed && !_primaryFailed && _hedgeFutures == null;
+  }
+
+  /**
+   * Adds the response futures of the requests hedged to the replica servers.
+   *
+   * @return Whether the hedged requests are used, otherwise the future already completed and they are cancelled
+   */
+  boolean addHedges(@Nonnull List<ServerResponseFuture<byte[]>> hedgeFutures) {
+    synchronized (this) {
+      if (_completed || _hedgeFutures != null) {
+        hedgeFutures = null;
+      } else {
+        _hedgeFutures = hedgeFutures;
+        _numPendingHedges = hedgeFutures.size();
+      }
+    }
+    if (hedgeFutures == null) {
+      return false;
+    }
+    for (final ServerResponseFuture<byte[]> hedgeFuture : hedgeFutures) {
+      hedgeFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          onHedgeComplete(hedgeFuture);
+        }
+      }, MoreExecutors.directExecutor());
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the response comes from the replica servers the request was hedged to.
+   */
+  boolean isHedgeResponseUsed() {
+    return _hedgeResponseUsed;
+  }
+
+  private void onPrimaryComplete() {
+    Map<ServerInstance, byte[]> response = getResponse(_primaryFuture);
+    if (response != null) {
+      complete(response, null, false);
+      return;
+    }
+    boolean failed;
+    synchronized (this) {
+      _primaryFailed = true;
+      failed = _hedgeFutures == null || _hedgeFailed;
+    }
+    if (failed) {
+      complete(null, getError(_primaryFuture), false);
+    }
+  }
+
+  private void onHedgeComplete(ServerResponseFuture<byte[]> hedgeFuture) {
+    Map<ServerInstance, byte[]> response = getResponse(hedgeFuture);
+    Map<ServerInstance, byte[]> hedgeResponses = null;
+    boolean failed;
+    synchronized (this) {
+      if (_hedgeFailed) {
+        return;
+      }
+      if (response != null) {
+        for (Map.Entry<ServerInstance, byte[]> entry : response.entrySet()) {
+          _hedgeResponses.put(entry.getKey().withSeq(_hedgeSeq), entry.getValue());
+        }
+        if (--_numPendingHedges == 0) {
+          hedgeResponses = _hedgeResponses;
+        }
+        failed = false;
+      } else {
+        _hedgeFailed = true;
+        failed = _primaryFailed;
+      }
+    }
+    if (hedgeResponses != null) {
+      complete(hedgeResponses, null, true);
+    } else if (failed) {
+      complete(null, getError(_primaryFuture), false);
+    } else if (response == null) {
+      // The hedge cannot complete anymore, keep waiting for the original server only
+      cancelHedges();
+    }
+  }
+
+  private void complete(@Nullable Map<ServerInstance, byte[]> response, @Nullable Map<ServerInstance, Throwable> error,
+      boolean hedgeResponseUsed) {
+    synchronized (this) {
+      if (_completed) {
+        return;
+      }
+      _completed = true;
+      _error = error;
+      _hedgeResponseUsed = hedgeResponseUsed;
+      _durationMillis = System.currentTimeMillis() - _startTimeMs;
+    }
+    set(response);
+    cancelUnderlyingFutures(!hedgeResponseUsed);
+  }
+
+  private void cancelUnderlyingFutures(boolean cancelPrimary) {
+    ScheduledFuture<?> scheduledHedge = _scheduledHedge;
+    if (scheduledHedge != null) {
+      scheduledHedge.cancel(false);
+    }
+    if (cancelPrimary) {
+      _primaryFuture.cancel(true);
+    }
+    cancelHedges();
+  }
+
+  private void cancelHedges() {
+    List<ServerResponseFuture<byte[]>> hedgeFutures;
+    synchronized (this) {
+      hedgeFutures = _hedgeFutures;
+    }
+    if (hedgeFutures != null) {
+      for (ServerResponseFuture<byte[]> hedgeFuture : hedgeFutures) {
+        hedgeFuture.cancel(true);
+      }
+    }
+  }
+
+  @Nullable
+  private static Map<ServerInstance, byte[]> getResponse(ServerResponseFuture<byte[]> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException | ExecutionException | CancellationException e) {
+      return null;
+    }
+  }
+
+  private Map<ServerInstance, Throwable> getError(ServerResponseFuture<byte[]> future) {
+    Map<ServerInstance, Throwable> error = future.getError();
+    if (error == null || error.isEmpty()) {
+      error = Collections.<ServerInstance, Throwable>singletonMap(_server,
+          new CancellationException("Request to " + _server + " was cancelled"));
+    }
+    return error;
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    synchronized (this) {
+      if (_completed) {
+        return false;
+      }
+      _completed = true;
+    }
+    super.cancel(mayInterruptIfRunning);
+    cancelUnderlyingFutures(true);
+    return true;
+  }
+
+  /**
+   * Listeners without executor run in the completing thread, same as for the other server response futures.
+   */
+  @Override
+  public void addListener(Runnable listener, @Nullable Executor executor) {
+    super.addListener(listener, executor != null ? executor : MoreExecutors.directExecutor());
+  }
+
+  @Override
+  public String getName() {
+    return _name;
+  }
+
+  @Override
+  public long getDurationMillis() {
+    return _durationMillis;
+  }
+
+  @Override
+  public byte[] getOne()
+      throws InterruptedException, ExecutionException {
+    return getOne(get());
+  }
+
+  @Override
+  public byte[] getOne(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    return getOne(get(timeout, unit));
+  }
+
+  @Nullable
+  private static byte[] getOne(@Nullable Map<ServerInstance, byte[]> response) {
+    if (response == null || response.isEmpty()) {
+      return null;
+    }
+    return response.values().iterator().next();
+  }
+
+  @Override
+  public Map<ServerInstance, Throwable> getError() {
+    return _error;
+  }
+
+  @Override
+  public ServerInstance getServerInstance() {
+    return _server;
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.scattergather;
+
+import com.linkedin.pinot.transport.config.HedgedRequestConfig;
+import com.yammer.metrics.stats.ExponentiallyDecayingSample;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * Decides when a server request gets hedged, and bounds how many server requests get hedged.
+ * <ul>
+ *   <li>
+ *     The hedging delay is the configured percentile of the recent response times of the original servers
+ *     (exponentially decaying sample biased towards the last 5 minutes), recomputed at most once per second.
+ *   </li>
+ *   <li>
+ *     The budget is a token bucket shared by all queries of the broker: each server request deposits
+ *     <code>budgetPercent / 100</code> token, each hedged request takes one token, and at most
+ *     <code>maxBurst</code> tokens can be saved up.
+ *   </li>
+ * </ul>
+ */
+@ThreadSafe
+public class HedgingPolicy {
+  private static final int SAMPLE_SIZE = 1028;
+  private static final double SAMPLE_ALPHA = 0.015;
+  private static final long DELAY_REFRESH_INTERVAL_MS = 1000L;
+
+  // Tokens are stored in millionths to deposit fractions of a token per request
+  private static final long ONE_TOKEN = 1_000_000L;
+
+  private final HedgedRequestConfig _config;
+  private final ScheduledExecutorService _scheduler;
+  private final ExponentiallyDecayingSample _responseTimes =
+      new ExponentiallyDecayingSample(SAMPLE_SIZE, SAMPLE_ALPHA);
+  private final long _tokensPerRequest;
+  private final long _maxTokens;
+  private final AtomicLong _tokens = new AtomicLong();
+
+  private volatile long _hedgeDelayMs = -1L;
+  private volatile long _hedgeDelayUpdateTimeMs;
+
+  public HedgingPolicy(@Nonnull HedgedRequestConfig config, @Nonnull ScheduledExecutorService scheduler) {
+    _config = config;
+    _scheduler = scheduler;
+    _tokensPerRequest = (long) (config.getBudgetPercent() / 100 * ONE_TOKEN);
+    _maxTokens = config.getMaxBurst() * ONE_TOKEN;
+  }
+
+  /**
+   * Records the response time of a request to the original server. Responses of hedged requests must not be recorded:
+   * they complete sooner than the original request by design, and would pull the hedging delay down with every hedge.
+   */
+  public void recordResponseTime(long responseTimeMs) {
+    _responseTimes.update(responseTimeMs);
+  }
+
+  /**
+   * Returns the delay after which a server request should be hedged, or <code>-1</code> if not enough response times
+   * have been recorded yet.
+   */
+  public long getHedgeDelayMs() {
+    long currentTimeMs = System.currentTimeMillis();
+    if (currentTimeMs - _hedgeDelayUpdateTimeMs >= DELAY_REFRESH_INTERVAL_MS) {
+      _hedgeDelayUpdateTimeMs = currentTimeMs;
+      if (_responseTimes.size() < _config.getMinSamples()) {
+        _hedgeDelayMs = -1L;
+      } else {
+        double percentileMs = _responseTimes.getSnapshot().getValue(_config.getLatencyPercentile() / 100);
+        _hedgeDelayMs = Math.max(_config.getMinDelayMs(), (long) Math.ceil(percentileMs));
+      }
+    }
+    return _hedgeDelayMs;
+  }
+
+  /**
+   * Deposits the budget earned by sending a server request.
+   */
+  public void onRequest() {
+    while (true) {
+      long tokens = _tokens.get();
+      long newTokens = Math.min(tokens + _tokensPerRequest, _maxTokens);
+      if (newTokens == tokens || _tokens.compareAndSet(tokens, newTokens)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Takes the budget for one hedged request.
+   *
+   * @return Whether there is enough budget left to hedge the request
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      long tokens = _tokens.get();
+      if (tokens < ONE_TOKEN) {
+        return false;
+      }
+      if (_tokens.compareAndSet(tokens, tokens - ONE_TOKEN)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Schedules the hedging of a server request.
+   */
+  public ScheduledFuture<?> schedule(@Nonnull Runnable hedge, long delayMs) {
+    return _scheduler.schedule(hedge, delayMs, TimeUnit.MILLISECONDS);
+  }
+}
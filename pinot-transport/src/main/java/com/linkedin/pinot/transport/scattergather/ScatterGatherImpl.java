@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.transport.scattergather;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.BrokerQueryPhase;
@@ -23,11 +24,12 @@ import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.CompositeFuture;
 import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
 import com.linkedin.pinot.transport.common.ServerResponseFuture;
+import com.linkedin.pinot.transport.netty.MultiplexedConnectionManager;
 import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
+import com.linkedin.pinot.transport.netty.NettyMultiplexedClientConnection;
 import com.linkedin.pinot.transport.netty.PooledNettyClientResourceManager;
 import com.linkedin.pinot.transport.pool.KeyedPool;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -52,14 +54,43 @@ public class ScatterGatherImpl implements ScatterGather {
   private static final Logger LOGGER = LoggerFactory.getLogger(ScatterGatherImpl.class);
 
   private final KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> _connPool;
+  private final MultiplexedConnectionManager _connectionManager;
   private final ExecutorService _executorService;
+  private volatile HedgingPolicy _hedgingPolicy;
+  private volatile ServerRequestListener _serverRequestListener;
 
   public ScatterGatherImpl(@Nonnull KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> connPool,
       @Nonnull ExecutorService executorService) {
     _connPool = connPool;
+    _connectionManager = null;
     _executorService = executorService;
   }
 
+  /**
+   * Scatter-Gather sending the requests over multiplexed connections, so that concurrent requests to a server share a
+   * few long-lived channels instead of checking out a pooled connection each.
+   */
+  public ScatterGatherImpl(@Nonnull MultiplexedConnectionManager connectionManager,
+      @Nonnull ExecutorService executorService) {
+    _connPool = null;
+    _connectionManager = connectionManager;
+    _executorService = executorService;
+  }
+
+  /**
+   * Enables hedging slow server requests to replica servers, or disables it if the hedging policy is null.
+   */
+  public void setHedgingPolicy(@Nullable HedgingPolicy hedgingPolicy) {
+    _hedgingPolicy = hedgingPolicy;
+  }
+
+  /**
+   * Sets the listener notified of the outcome of each server request, or removes it if null.
+   */
+  public void setServerRequestListener(@Nullable ServerRequestListener serverRequestListener) {
+    _serverRequestListener = serverRequestListener;
+  }
+
   @Nonnull
   @Override
   public CompositeFuture<byte[]> scatterGather(@Nonnull ScatterGatherRequest scatterGatherRequest,
@@ -97,6 +128,7 @@ public class ScatterGatherImpl implements ScatterGather {
 
     // async checkout of connections and then dispatch of request
     List<SingleRequestHandler> handlers = new ArrayList<>(routingTable.size());
+    List<String> serverNames = new ArrayList<>(routingTable.size());
 
     for (Entry<String, List<String>> entry : routingTable.entrySet()) {
       ServerInstance serverInstance = ServerInstance.forInstanceName(entry.getKey());
@@ -110,16 +142,18 @@ public class ScatterGatherImpl implements ScatterGather {
       }
       scatterGatherStats.initServer(shortServerName);
       SingleRequestHandler handler =
-          new SingleRequestHandler(_connPool, serverInstance, scatterGatherRequest, entry.getValue(),
-              scatterGatherRequestContext.getRemainingTimeMs(), requestDispatchLatch, brokerMetrics);
+          new SingleRequestHandler(_connPool, _connectionManager, entry.getKey(), serverInstance, scatterGatherRequest,
+              entry.getValue(), scatterGatherRequestContext.getRemainingTimeMs(), requestDispatchLatch, brokerMetrics,
+              _serverRequestListener);
       // Submit to thread-pool for checking-out and sending request
       _executorService.submit(handler);
       handlers.add(handler);
+      serverNames.add(entry.getKey());
     }
 
     // Create the composite future for returning
     CompositeFuture<byte[]> response = new CompositeFuture<>("scatterRequest " + scatterGatherRequest.getRequestId(),
-        GatherModeOnError.SHORTCIRCUIT_AND);
+        GatherModeOnError.SHORTCIRCUIT_AND, scatterGatherRequest.getGatherCompletionCondition());
 
     // Wait for requests to be sent
     long timeRemaining = scatterGatherRequestContext.getRemainingTimeMs();
@@ -127,8 +161,16 @@ public class ScatterGatherImpl implements ScatterGather {
 
     if (sentSuccessfully) {
       List<ServerResponseFuture<byte[]>> responseFutures = new ArrayList<>();
-      for (SingleRequestHandler h : handlers) {
-        responseFutures.add(h.getResponseFuture());
+      HedgingPolicy hedgingPolicy = _hedgingPolicy;
+      for (int i = 0; i < handlers.size(); i++) {
+        SingleRequestHandler h = handlers.get(i);
+        if (hedgingPolicy != null && h.isSent()) {
+          // Responses from replica servers are keyed with a distinct sequence number for each hedged server
+          responseFutures.add(
+              enableHedging(hedgingPolicy, h, serverNames.get(i), i + 1, scatterGatherRequestContext, brokerMetrics));
+        } else {
+          responseFutures.add(h.getResponseFuture());
+        }
         String shortServerName = h.getServer().getShortHostName();
         if (isOfflineTable != null) {
           if (isOfflineTable) {
@@ -160,6 +202,99 @@ public class ScatterGatherImpl implements ScatterGather {
     return response;
   }
 
+  /**
+   * Wraps the response future of a server request so that the request gets hedged to replica servers if the server
+   * has not responded after the hedging delay.
+   */
+  private ServerResponseFuture<byte[]> enableHedging(final HedgingPolicy hedgingPolicy,
+      final SingleRequestHandler handler, final String serverName, int hedgeSeq,
+      final ScatterGatherRequestContext scatterGatherRequestContext, final BrokerMetrics brokerMetrics) {
+    hedgingPolicy.onRequest();
+    final ServerResponseFuture<byte[]> primaryFuture = handler.getResponseFuture();
+    final HedgedResponseFuture hedgedResponseFuture =
+        new HedgedResponseFuture(handler.getServer(), primaryFuture, hedgeSeq);
+    final BrokerRequest brokerRequest = scatterGatherRequestContext._request.getBrokerRequest();
+    // Only the original server's own response time drives the hedging delay, whether or not the hedge won
+    primaryFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (!primaryFuture.isCancelled() && primaryFuture.getError() == null) {
+          hedgingPolicy.recordResponseTime(primaryFuture.getDurationMillis());
+        }
+      }
+    }, MoreExecutors.directExecutor());
+    hedgedResponseFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (hedgedResponseFuture.isHedgeResponseUsed()) {
+          brokerMetrics.addMeteredQueryValue(brokerRequest, BrokerMeter.HEDGED_RESPONSES_USED, 1);
+        }
+      }
+    }, MoreExecutors.directExecutor());
+
+    long hedgeDelayMs = hedgingPolicy.getHedgeDelayMs();
+    if (hedgeDelayMs >= 0 && hedgeDelayMs < scatterGatherRequestContext.getRemainingTimeMs()) {
+      hedgedResponseFuture.setScheduledHedge(hedgingPolicy.schedule(new Runnable() {
+        @Override
+        public void run() {
+          _executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+              sendHedgedRequests(hedgingPolicy, hedgedResponseFuture, handler, serverName,
+                  scatterGatherRequestContext, brokerMetrics);
+            }
+          });
+        }
+      }, hedgeDelayMs));
+    }
+    return hedgedResponseFuture;
+  }
+
+  /**
+   * Sends the segments of a slow server request to replica servers, if the server still has not responded and the
+   * hedging budget allows it.
+   */
+  private void sendHedgedRequests(HedgingPolicy hedgingPolicy, HedgedResponseFuture hedgedResponseFuture,
+      SingleRequestHandler handler, String serverName, ScatterGatherRequestContext scatterGatherRequestContext,
+      BrokerMetrics brokerMetrics) {
+    if (!hedgedResponseFuture.canHedge()) {
+      return;
+    }
+    ScatterGatherRequest scatterGatherRequest = scatterGatherRequestContext._request;
+    Map<String, List<String>> replicaRoutingTable =
+        scatterGatherRequest.getReplicaRoutingTable(serverName, handler.getSegments());
+    if (replicaRoutingTable == null || replicaRoutingTable.isEmpty()) {
+      return;
+    }
+    long timeRemainingMs = scatterGatherRequestContext.getRemainingTimeMs();
+    if (timeRemainingMs <= 0 || !hedgingPolicy.tryAcquire()) {
+      return;
+    }
+    LOGGER.debug("Hedging request {} to server {} on servers {}", scatterGatherRequest.getRequestId(), serverName,
+        replicaRoutingTable.keySet());
+    brokerMetrics.addMeteredQueryValue(scatterGatherRequest.getBrokerRequest(), BrokerMeter.HEDGED_REQUESTS, 1);
+
+    // There are only a few replica servers, send the requests from this thread
+    CountDownLatch requestDispatchLatch = new CountDownLatch(replicaRoutingTable.size());
+    List<SingleRequestHandler> hedgeHandlers = new ArrayList<>(replicaRoutingTable.size());
+    List<ServerResponseFuture<byte[]>> hedgeFutures = new ArrayList<>(replicaRoutingTable.size());
+    for (Entry<String, List<String>> entry : replicaRoutingTable.entrySet()) {
+      SingleRequestHandler hedgeHandler =
+          new SingleRequestHandler(_connPool, _connectionManager, entry.getKey(),
+              ServerInstance.forInstanceName(entry.getKey()), scatterGatherRequest, entry.getValue(), timeRemainingMs,
+              requestDispatchLatch, brokerMetrics, _serverRequestListener);
+      hedgeHandler.run();
+      hedgeHandlers.add(hedgeHandler);
+      hedgeFutures.add(hedgeHandler.getResponseFuture());
+    }
+    if (!hedgedResponseFuture.addHedges(hedgeFutures)) {
+      // The server responded while sending the hedged requests
+      for (SingleRequestHandler hedgeHandler : hedgeHandlers) {
+        hedgeHandler.cancel();
+      }
+    }
+  }
+
   private static class ScatterGatherRequestContext {
     private final ScatterGatherRequest _request;
     private final long _startTimeMs;
@@ -192,6 +327,7 @@ public class ScatterGatherImpl implements ScatterGather {
     // List Of Partitions to be queried on the server
     private final List<String> _segments;
     // Server Instance to be queried
+    private final String _serverName;
     private final ServerInstance _server;
     // Latch to signal completion of dispatching request
     private final CountDownLatch _requestDispatchLatch;
@@ -201,6 +337,9 @@ public class ScatterGatherImpl implements ScatterGather {
     // Connection Pool: Used if we need to checkin/destroy object in case of timeout
     private final KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> _connPool;
 
+    // Multiplexed connections: Used instead of the connection pool if not null
+    private final MultiplexedConnectionManager _connectionManager;
+
     // Track if request has been dispatched
     private final AtomicBoolean _isSent = new AtomicBoolean(false);
 
@@ -212,13 +351,17 @@ public class ScatterGatherImpl implements ScatterGather {
 
     private final long _initTime;
     private final BrokerMetrics _brokerMetrics;
+    private final ServerRequestListener _serverRequestListener;
     private long _startTime;
     private long _endTime;
 
     public SingleRequestHandler(KeyedPool<PooledNettyClientResourceManager.PooledClientConnection> connPool,
-        ServerInstance server, ScatterGatherRequest request, List<String> segments, long timeoutMS,
-        CountDownLatch latch, final BrokerMetrics brokerMetrics) {
+        MultiplexedConnectionManager connectionManager, String serverName, ServerInstance server,
+        ScatterGatherRequest request, List<String> segments, long timeoutMS, CountDownLatch latch,
+        final BrokerMetrics brokerMetrics, @Nullable ServerRequestListener serverRequestListener) {
       _connPool = connPool;
+      _connectionManager = connectionManager;
+      _serverName = serverName;
       _server = server;
       _request = request;
       _segments = segments;
@@ -226,6 +369,7 @@ public class ScatterGatherImpl implements ScatterGather {
       _timeoutMS = timeoutMS;
       _initTime = System.currentTimeMillis();
       _brokerMetrics = brokerMetrics;
+      _serverRequestListener = serverRequestListener;
     }
 
     @Override
@@ -235,9 +379,34 @@ public class ScatterGatherImpl implements ScatterGather {
         runInternal();
       } finally {
         _endTime = System.currentTimeMillis();
+        if (_serverRequestListener != null && _responseFuture != null) {
+          notifyServerRequestListener();
+        }
       }
     }
 
+    /**
+     * Reports the request to the listener, and its outcome once the response future completes. Requests which could
+     * not be sent get an error future, and are reported as failed.
+     */
+    private void notifyServerRequestListener() {
+      final ResponseFuture responseFuture = _responseFuture;
+      _serverRequestListener.onRequestSent(_serverName);
+      responseFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          Map<ServerInstance, Throwable> error = responseFuture.getError();
+          if (responseFuture.isCancelled()) {
+            _serverRequestListener.onRequestCancelled(_serverName);
+          } else if (error != null && !error.isEmpty()) {
+            _serverRequestListener.onError(_serverName);
+          } else {
+            _serverRequestListener.onResponse(_serverName, responseFuture.getDurationMillis());
+          }
+        }
+      }, MoreExecutors.directExecutor());
+    }
+
     public long getConnStartTimeMillis() {
       return _startTime - _initTime;
     }
@@ -258,6 +427,10 @@ public class ScatterGatherImpl implements ScatterGather {
         _requestDispatchLatch.countDown();
         return;
       }
+      if (_connectionManager != null) {
+        sendMultiplexedRequest();
+        return;
+      }
 
       PooledNettyClientResourceManager.PooledClientConnection conn = null;
       ServerResponseFuture<PooledNettyClientResourceManager.PooledClientConnection> serverResponseFuture = null;
@@ -266,10 +439,12 @@ public class ScatterGatherImpl implements ScatterGather {
       long timeRemainingMillis = _timeoutMS - (System.currentTimeMillis() - _startTime);
       long startTimeNs = System.nanoTime();
       long timeWaitedNs = 0;
+      // Released here unless handed over to the connection
+      ByteBuf serializedRequest = null;
       try {
         serverResponseFuture = _connPool.checkoutObject(_server, String.valueOf(_request.getRequestId()));
 
-        byte[] serializedRequest = _request.getRequestForService(_segments);
+        serializedRequest = _request.getRequestForService(_segments);
         int ntries = 0;
         // Try a maximum of pool size objects.
         while (true) {
@@ -307,7 +482,8 @@ public class ScatterGatherImpl implements ScatterGather {
           serverResponseFuture = _connPool.checkoutObject(_server, "none");
           timeRemainingMillis = _timeoutMS - (System.currentTimeMillis() - _startTime);
         }
-        ByteBuf req = Unpooled.wrappedBuffer(serializedRequest);
+        ByteBuf req = serializedRequest;
+        serializedRequest = null;
         _responseFuture = conn.sendRequest(req, _request.getRequestId(), timeRemainingMillis);
         _isSent.set(true);
         LOGGER.debug("Response Future is : {}", _responseFuture);
@@ -326,6 +502,9 @@ public class ScatterGatherImpl implements ScatterGather {
             _request.getRequestId(), gotConnection, e);
         _responseFuture = new ResponseFuture(_server, e, "Error Future for request " + _request.getRequestId());
       } finally {
+        if (serializedRequest != null) {
+          serializedRequest.release();
+        }
         _requestDispatchLatch.countDown();
         BrokerRequest brokerRequest = _request.getBrokerRequest();
         _brokerMetrics.addPhaseTiming(brokerRequest, BrokerQueryPhase.REQUEST_CONNECTION_WAIT, timeWaitedNs);
@@ -347,6 +526,70 @@ public class ScatterGatherImpl implements ScatterGather {
       }
     }
 
+    /**
+     * Sends the request over a shared multiplexed connection. There is no checkout, the only wait is for connecting
+     * when there is no active connection to the server yet.
+     */
+    private void sendMultiplexedRequest() {
+      boolean gotConnection = false;
+      boolean error = true;
+      long timeRemainingMillis = _timeoutMS - (System.currentTimeMillis() - _startTime);
+      long startTimeNs = System.nanoTime();
+      long timeWaitedNs = 0;
+      // Released here unless handed over to the connection
+      ByteBuf serializedRequest = null;
+      try {
+        if (timeRemainingMillis <= 0) {
+          throw new TimeoutException(
+              "Timed out before connecting to " + _server + "(timeout=" + _timeoutMS + "ms)");
+        }
+        // Connecting (if needed) is bounded by the time remaining for the request
+        NettyMultiplexedClientConnection conn = _connectionManager.getConnection(_server, timeRemainingMillis);
+        timeWaitedNs = System.nanoTime() - startTimeNs;
+        if (conn == null) {
+          throw new ConnectionLimitReachedException("Could not connect to " + _server);
+        }
+        gotConnection = true;
+
+        serializedRequest = _request.getRequestForService(_segments);
+        timeRemainingMillis = _timeoutMS - (System.currentTimeMillis() - _startTime);
+        if (timeRemainingMillis <= 0) {
+          throw new TimeoutException(
+              "Timed out before sending request to " + _server + "(timeout=" + _timeoutMS + "ms)");
+        }
+        ByteBuf req = serializedRequest;
+        serializedRequest = null;
+        _responseFuture = conn.sendRequest(req, _request.getRequestId(), timeRemainingMillis);
+        _isSent.set(true);
+        error = false;
+      } catch (TimeoutException | ConnectionLimitReachedException e) {
+        LOGGER.warn("Request {} not sent to server {}:{}. See metric {}", _request.getRequestId(), _server,
+            e.getMessage(), BrokerMeter.REQUEST_DROPPED_DUE_TO_CONNECTION_ERROR.getMeterName());
+        _responseFuture = new ResponseFuture(_server, e, "Error Future for request " + _request.getRequestId());
+      } catch (Exception e) {
+        LOGGER.error("Got exception sending request ({})(gotConnection={}). Setting error future",
+            _request.getRequestId(), gotConnection, e);
+        _responseFuture = new ResponseFuture(_server, e, "Error Future for request " + _request.getRequestId());
+      } finally {
+        if (serializedRequest != null) {
+          serializedRequest.release();
+        }
+        _requestDispatchLatch.countDown();
+        BrokerRequest brokerRequest = _request.getBrokerRequest();
+        _brokerMetrics.addPhaseTiming(brokerRequest, BrokerQueryPhase.REQUEST_CONNECTION_WAIT, timeWaitedNs);
+        if (timeRemainingMillis < 0) {
+          _brokerMetrics.addMeteredQueryValue(brokerRequest, BrokerMeter.REQUEST_CONNECTION_TIMEOUTS, 1);
+        }
+        if (error) {
+          if (gotConnection) {
+            _brokerMetrics.addMeteredQueryValue(brokerRequest, BrokerMeter.REQUEST_DROPPED_DUE_TO_SEND_ERROR, 1);
+          } else {
+            _brokerMetrics.addMeteredQueryValue(brokerRequest, BrokerMeter.REQUEST_DROPPED_DUE_TO_CONNECTION_ERROR, 1);
+          }
+        }
+      }
+    }
+
     /**
      * Cancel checking-out request if possible. If in unsafe state (request already sent),
      * discard the connection from the pool.
@@ -372,6 +615,10 @@ public class ScatterGatherImpl implements ScatterGather {
       return _server;
     }
 
+    public List<String> getSegments() {
+      return _segments;
+    }
+
     public ResponseFuture getResponseFuture() {
       return _responseFuture;
     }
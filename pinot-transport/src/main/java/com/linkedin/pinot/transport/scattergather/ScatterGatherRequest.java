@@ -16,8 +16,11 @@
 package com.linkedin.pinot.transport.scattergather;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.transport.common.GatherCompletionCondition;
+import io.netty.buffer.ByteBuf;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 
 /**
@@ -35,12 +38,32 @@ public interface ScatterGatherRequest {
   Map<String, List<String>> getRoutingTable();
 
   /**
-   * Get the request to be sent to the server.
+   * Get a routing table for the given segments which excludes the given server, used to hedge a slow request to
+   * replica servers.
+   *
+   * @param server Server (key of the routing table) to exclude
+   * @param segments List of segments queried on the server
+   * @return Map from replica server to list of segments, or null if some segments are not served by another server
+   */
+  @Nullable
+  Map<String, List<String>> getReplicaRoutingTable(String server, List<String> segments);
+
+  /**
+   * Get the condition to stop gathering responses before all servers respond, e.g. once enough rows are gathered.
+   *
+   * @return Gather completion condition, or null to gather the responses from all servers
+   */
+  @Nullable
+  GatherCompletionCondition<byte[]> getGatherCompletionCondition();
+
+  /**
+   * Get the request to be sent to the server. Called concurrently for the servers of the routing table.
+   * The caller owns the returned buffer, which is released once the request is written to the channel.
    *
    * @param segments List of segments to be queried
-   * @return Request to be sent
+   * @return Serialized request to be sent
    */
-  byte[] getRequestForService(List<String> segments);
+  ByteBuf getRequestForService(List<String> segments);
 
   /**
    * Get the request id for tracing purpose.
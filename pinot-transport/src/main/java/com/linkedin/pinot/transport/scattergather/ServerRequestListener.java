@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.scattergather;
+
+import javax.annotation.Nonnull;
+
+
+/**
+ * Listener notified of the outcome of every request the scatter-gather sends to a server, including the requests
+ * hedged to replica servers. Each request reported as sent is later reported exactly once as responded, failed or
+ * cancelled. Servers are identified by their instance name, as in the routing table.
+ */
+public interface ServerRequestListener {
+
+  /**
+   * Called when a request is dispatched to the given server, or fails to be.
+   */
+  void onRequestSent(@Nonnull String server);
+
+  /**
+   * Called when the given server responded to a request after the given latency.
+   */
+  void onResponse(@Nonnull String server, long latencyMs);
+
+  /**
+   * Called when a request to the given server failed or timed out.
+   */
+  void onError(@Nonnull String server);
+
+  /**
+   * Called when a request to the given server got cancelled before completing, e.g. because the query completed
+   * without its response.
+   */
+  void onRequestCancelled(@Nonnull String server);
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class NettyMultiplexedConnectionIntegrationTest {
+  private static final int NUM_CONCURRENT_REQUESTS = 100;
+  private static final String SLOW_REQUEST_PREFIX = "slow";
+
+  private ScheduledExecutorService _responseExecutor;
+  private EchoRequestHandler _requestHandler;
+  private NettyTCPServer _nettyTCPServer;
+  private ServerInstance _clientServer;
+  private NioEventLoopGroup _eventLoopGroup;
+  private NettyMultiplexedClientConnection _connection;
+
+  @BeforeMethod
+  public void setUp()
+      throws Exception {
+    _responseExecutor = Executors.newScheduledThreadPool(4);
+    _requestHandler = new EchoRequestHandler();
+    _nettyTCPServer = new NettyTCPServer(NettyTestUtils.DEFAULT_PORT, new NettyServer.RequestHandlerFactory() {
+      @Override
+      public NettyServer.RequestHandler createNewRequestHandler() {
+        return _requestHandler;
+      }
+    }, null);
+    Thread serverThread = new Thread(_nettyTCPServer, "NettyTCPServer");
+    serverThread.start();
+    NettyTestUtils.waitForServerStarted(_nettyTCPServer, 10 * 1000L);
+
+    _clientServer = new ServerInstance("localhost", NettyTestUtils.DEFAULT_PORT);
+    _eventLoopGroup = new NioEventLoopGroup();
+    _connection = new NettyMultiplexedClientConnection(_clientServer, _eventLoopGroup, new HashedWheelTimer(),
+        new NettyClientMetrics(null, "abc"));
+  }
+
+  @Test
+  public void testConcurrentRequests()
+      throws Exception {
+    Assert.assertTrue(_connection.connect());
+    List<ResponseFuture> responseFutures = new ArrayList<>(NUM_CONCURRENT_REQUESTS);
+    for (int i = 0; i < NUM_CONCURRENT_REQUESTS; i++) {
+      responseFutures.add(_connection.sendRequest(Unpooled.wrappedBuffer((NettyTestUtils.DUMMY_REQUEST + i).getBytes()),
+          i, 5000L));
+    }
+    // Responses are sent back in reverse order of the requests
+    for (int i = NUM_CONCURRENT_REQUESTS - 1; i >= 0; i--) {
+      _requestHandler.respond(NettyTestUtils.DUMMY_REQUEST + i);
+    }
+    for (int i = 0; i < NUM_CONCURRENT_REQUESTS; i++) {
+      Assert.assertEquals(new String(responseFutures.get(i).getOne()), NettyTestUtils.DUMMY_RESPONSE + i);
+    }
+    Assert.assertEquals(_connection.getNumPendingRequests(), 0);
+  }
+
+  @Test
+  public void testRequestTimeout()
+      throws Exception {
+    Assert.assertTrue(_connection.connect());
+    ResponseFuture slowFuture =
+        _connection.sendRequest(Unpooled.wrappedBuffer(SLOW_REQUEST_PREFIX.getBytes()), 1L, 200L);
+    Assert.assertNull(slowFuture.getOne());
+    Assert.assertNotNull(slowFuture.getError());
+
+    // The timed out request does not affect the channel, and its late response is discarded
+    Assert.assertTrue(_connection.validate());
+    _requestHandler.respond(SLOW_REQUEST_PREFIX);
+    ResponseFuture responseFuture =
+        _connection.sendRequest(Unpooled.wrappedBuffer(NettyTestUtils.DUMMY_REQUEST.getBytes()), 2L, 5000L);
+    _requestHandler.respond(NettyTestUtils.DUMMY_REQUEST);
+    Assert.assertEquals(new String(responseFuture.getOne()), NettyTestUtils.DUMMY_RESPONSE);
+    Assert.assertEquals(_connection.getNumPendingRequests(), 0);
+  }
+
+  @Test
+  public void testCancelRequest()
+      throws Exception {
+    Assert.assertTrue(_connection.connect());
+    ResponseFuture cancelledFuture =
+        _connection.sendRequest(Unpooled.wrappedBuffer(SLOW_REQUEST_PREFIX.getBytes()), 1L, 5000L);
+    ResponseFuture responseFuture =
+        _connection.sendRequest(Unpooled.wrappedBuffer(NettyTestUtils.DUMMY_REQUEST.getBytes()), 2L, 5000L);
+    Assert.assertTrue(cancelledFuture.cancel(false));
+    Assert.assertTrue(cancelledFuture.isCancelled());
+    Assert.assertEquals(_connection.getNumPendingRequests(), 1);
+
+    _requestHandler.respond(SLOW_REQUEST_PREFIX);
+    _requestHandler.respond(NettyTestUtils.DUMMY_REQUEST);
+    Assert.assertEquals(new String(responseFuture.getOne()), NettyTestUtils.DUMMY_RESPONSE);
+    Assert.assertNull(cancelledFuture.getOne());
+    Assert.assertEquals(_connection.getNumPendingRequests(), 0);
+  }
+
+  @Test
+  public void testCancelPropagatedToServer()
+      throws Exception {
+    Assert.assertTrue(_connection.connect());
+    ResponseFuture cancelledFuture =
+        _connection.sendRequest(Unpooled.wrappedBuffer(SLOW_REQUEST_PREFIX.getBytes()), 1L, 5000L);
+    ListenableFuture<byte[]> serverFuture = _requestHandler.waitForRequest(SLOW_REQUEST_PREFIX, 5000L);
+    Assert.assertTrue(cancelledFuture.cancel(false));
+    waitForCancelled(serverFuture, 5000L);
+
+    // Requests still in flight are cancelled when the client disconnects
+    _connection.sendRequest(Unpooled.wrappedBuffer(NettyTestUtils.DUMMY_REQUEST.getBytes()), 2L, 5000L);
+    serverFuture = _requestHandler.waitForRequest(NettyTestUtils.DUMMY_REQUEST, 5000L);
+    _connection.close();
+    waitForCancelled(serverFuture, 5000L);
+  }
+
+  private static void waitForCancelled(ListenableFuture<byte[]> future, long timeOutInMillis) {
+    long endTime = System.currentTimeMillis() + timeOutInMillis;
+    while (!future.isCancelled() && System.currentTimeMillis() < endTime) {
+      Uninterruptibles.sleepUninterruptibly(10L, TimeUnit.MILLISECONDS);
+    }
+    Assert.assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void testServerShutdown()
+      throws Exception {
+    Assert.assertTrue(_connection.connect());
+    ResponseFuture responseFuture =
+        _connection.sendRequest(Unpooled.wrappedBuffer(SLOW_REQUEST_PREFIX.getBytes()), 1L, 60000L);
+    NettyTestUtils.closeServerConnection(_nettyTCPServer);
+    Assert.assertNull(responseFuture.getOne());
+    Assert.assertNotNull(responseFuture.getError());
+    Assert.assertFalse(_connection.validate());
+    Assert.assertEquals(_connection.getNumPendingRequests(), 0);
+
+    // Requests on a closed connection fail immediately
+    responseFuture = _connection.sendRequest(Unpooled.wrappedBuffer(SLOW_REQUEST_PREFIX.getBytes()), 2L, 60000L);
+    Assert.assertTrue(responseFuture.isDone());
+    Assert.assertNotNull(responseFuture.getError());
+  }
+
+  @Test
+  public void testConnectionManager()
+      throws Exception {
+    MultiplexedConnectionManager connectionManager =
+        new MultiplexedConnectionManager(_eventLoopGroup, new HashedWheelTimer(), new NettyClientMetrics(null, "abc"),
+            2);
+    try {
+      NettyMultiplexedClientConnection connection1 = connectionManager.getConnection(_clientServer, 5000L);
+      NettyMultiplexedClientConnection connection2 = connectionManager.getConnection(_clientServer, 5000L);
+      Assert.assertNotNull(connection1);
+      Assert.assertNotNull(connection2);
+      Assert.assertFalse(connection1 == connection2);
+      Assert.assertTrue(connectionManager.getConnection(_clientServer, 5000L) == connection1);
+      Assert.assertTrue(connectionManager.getConnection(_clientServer, 5000L) == connection2);
+
+      // A closed connection is replaced on the next request
+      connection1.close();
+      NettyMultiplexedClientConnection connection3 = connectionManager.getConnection(_clientServer, 5000L);
+      Assert.assertNotNull(connection3);
+      Assert.assertFalse(connection3 == connection1);
+      Assert.assertTrue(connection3.validate());
+
+      ResponseFuture responseFuture =
+          connection3.sendRequest(Unpooled.wrappedBuffer(NettyTestUtils.DUMMY_REQUEST.getBytes()), 1L, 5000L);
+      _requestHandler.respond(NettyTestUtils.DUMMY_REQUEST);
+      Assert.assertEquals(new String(responseFuture.getOne()), NettyTestUtils.DUMMY_RESPONSE);
+
+      // Removing the server closes its connections, the next request connects again
+      connectionManager.removeServer(_clientServer);
+      Assert.assertFalse(connection2.validate());
+      Assert.assertFalse(connection3.validate());
+      NettyMultiplexedClientConnection connection4 = connectionManager.getConnection(_clientServer, 5000L);
+      Assert.assertNotNull(connection4);
+      Assert.assertTrue(connection4.validate());
+
+      // Servers which cannot be connected do not get a connection, and are not connected again during the backoff
+      ServerInstance downServer = new ServerInstance("localhost", NettyTestUtils.DEFAULT_PORT + 1);
+      Assert.assertNull(connectionManager.getConnection(downServer, 5000L));
+      NettyTCPServer restartedServer =
+          new NettyTCPServer(NettyTestUtils.DEFAULT_PORT + 1, new NettyServer.RequestHandlerFactory() {
+            @Override
+            public NettyServer.RequestHandler createNewRequestHandler() {
+              return _requestHandler;
+            }
+          }, null);
+      new Thread(restartedServer, "RestartedNettyTCPServer").start();
+      try {
+        NettyTestUtils.waitForServerStarted(restartedServer, 10 * 1000L);
+        Assert.assertNull(connectionManager.getConnection(downServer, 5000L));
+        Thread.sleep(200L);
+        Assert.assertNotNull(connectionManager.getConnection(downServer, 5000L));
+      } finally {
+        connectionManager.removeServer(downServer);
+        NettyTestUtils.closeServerConnection(restartedServer);
+      }
+    } finally {
+      connectionManager.shutdown();
+    }
+  }
+
+  @Test
+  public void testNonMultiplexedClient()
+      throws Exception {
+    // Connections without the multiplexed frame header keep working against the same server
+    NettyTCPClientConnection connection = new NettyTCPClientConnection(_clientServer, _eventLoopGroup,
+        new HashedWheelTimer(), new NettyClientMetrics(null, "abc"));
+    try {
+      Assert.assertTrue(connection.connect());
+      ResponseFuture responseFuture =
+          connection.sendRequest(Unpooled.wrappedBuffer(NettyTestUtils.DUMMY_REQUEST.getBytes()), 1L, 5000L);
+      _requestHandler.respond(NettyTestUtils.DUMMY_REQUEST);
+      Assert.assertEquals(new String(responseFuture.getOne()), NettyTestUtils.DUMMY_RESPONSE);
+    } finally {
+      connection.close();
+    }
+  }
+
+  @AfterMethod
+  public void tearDown()
+      throws Exception {
+    _connection.close();
+    NettyTestUtils.closeServerConnection(_nettyTCPServer);
+    _eventLoopGroup.shutdownGracefully();
+    _responseExecutor.shutdownNow();
+  }
+
+  /**
+   * Request handler which completes the responses asynchronously, only when asked to, in any order. A response can be
+   * completed before its request arrives. The response to "Dummy Request" + suffix is "Dummy Response" + suffix.
+   */
+  private class EchoRequestHandler implements NettyServer.RequestHandler {
+    private final Map<String, SettableFuture<byte[]>> _pendingResponses = new ConcurrentHashMap<>();
+    private final Set<String> _receivedRequests = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Override
+    public ListenableFuture<byte[]> processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request) {
+      byte[] bytes = new byte[request.readableBytes()];
+      request.readBytes(bytes);
+      String requestString = new String(bytes);
+      _receivedRequests.add(requestString);
+      return getPendingResponse(requestString);
+    }
+
+    private synchronized SettableFuture<byte[]> getPendingResponse(String request) {
+      SettableFuture<byte[]> pendingResponse = _pendingResponses.get(request);
+      if (pendingResponse == null) {
+        pendingResponse = SettableFuture.create();
+        _pendingResponses.put(request, pendingResponse);
+      }
+      return pendingResponse;
+    }
+
+    /**
+     * Waits until the given request has been received, returns its pending response.
+     */
+    ListenableFuture<byte[]> waitForRequest(String request, long timeOutInMillis) {
+      long endTime = System.currentTimeMillis() + timeOutInMillis;
+      while (!_receivedRequests.contains(request) && System.currentTimeMillis() < endTime) {
+        Uninterruptibles.sleepUninterruptibly(10L, TimeUnit.MILLISECONDS);
+      }
+      Assert.assertTrue(_receivedRequests.contains(request));
+      return getPendingResponse(request);
+    }
+
+    void respond(final String request)
+        throws ExecutionException, InterruptedException {
+      final SettableFuture<byte[]> pendingResponse = getPendingResponse(request);
+      final String response = request.replace(NettyTestUtils.DUMMY_REQUEST, NettyTestUtils.DUMMY_RESPONSE);
+      _responseExecutor.submit(new Runnable() {
+        @Override
+        public void run() {
+          pendingResponse.set(response.getBytes());
+        }
+      }).get();
+    }
+  }
+}
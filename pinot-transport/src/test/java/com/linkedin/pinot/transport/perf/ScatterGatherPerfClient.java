@@ -22,6 +22,7 @@ import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.GatherCompletionCondition;
 import com.linkedin.pinot.transport.config.PerTableRoutingConfig;
 import com.linkedin.pinot.transport.config.RoutingTableConfig;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
@@ -34,6 +35,8 @@ import com.linkedin.pinot.transport.scattergather.ScatterGatherStats;
 import com.yammer.metrics.core.Histogram;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricsRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.HashedWheelTimer;
@@ -404,8 +407,18 @@ public class ScatterGatherPerfClient implements Runnable {
     }
 
     @Override
-    public byte[] getRequestForService(List<String> segments) {
-      return _brokerRequest;
+    public Map<String, List<String>> getReplicaRoutingTable(String server, List<String> segments) {
+      return null;
+    }
+
+    @Override
+    public GatherCompletionCondition<byte[]> getGatherCompletionCondition() {
+      return null;
+    }
+
+    @Override
+    public ByteBuf getRequestForService(List<String> segments) {
+      return Unpooled.wrappedBuffer(_brokerRequest);
     }
 
     @Override
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.scattergather;
+
+import com.linkedin.pinot.transport.config.HedgedRequestConfig;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class HedgingPolicyTest {
+
+  @Test
+  public void testBudget() {
+    HedgedRequestConfig config = new HedgedRequestConfig();
+    config.setBudgetPercent(10);
+    config.setMaxBurst(2);
+    ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+    HedgingPolicy hedgingPolicy = new HedgingPolicy(config, scheduler);
+
+    // No budget before any request
+    Assert.assertFalse(hedgingPolicy.tryAcquire());
+
+    // One hedged request every 10 requests
+    for (int i = 0; i < 9; i++) {
+      hedgingPolicy.onRequest();
+    }
+    Assert.assertFalse(hedgingPolicy.tryAcquire());
+    hedgingPolicy.onRequest();
+    Assert.assertTrue(hedgingPolicy.tryAcquire());
+    Assert.assertFalse(hedgingPolicy.tryAcquire());
+
+    // Budget is capped by the max burst
+    for (int i = 0; i < 100; i++) {
+      hedgingPolicy.onRequest();
+    }
+    Assert.assertTrue(hedgingPolicy.tryAcquire());
+    Assert.assertTrue(hedgingPolicy.tryAcquire());
+    Assert.assertFalse(hedgingPolicy.tryAcquire());
+
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testHedgeDelay() {
+    HedgedRequestConfig config = new HedgedRequestConfig();
+    config.setLatencyPercentile(90);
+    config.setMinDelayMs(5L);
+    config.setMinSamples(100);
+    ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+    HedgingPolicy hedgingPolicy = new HedgingPolicy(config, scheduler);
+
+    // Not enough samples
+    Assert.assertEquals(hedgingPolicy.getHedgeDelayMs(), -1L);
+    scheduler.shutdown();
+
+    scheduler = new ScheduledThreadPoolExecutor(1);
+    hedgingPolicy = new HedgingPolicy(config, scheduler);
+    for (int i = 1; i <= 100; i++) {
+      hedgingPolicy.recordResponseTime(i);
+    }
+    long hedgeDelayMs = hedgingPolicy.getHedgeDelayMs();
+    Assert.assertTrue(hedgeDelayMs >= 89L && hedgeDelayMs <= 92L, "Hedge delay: " + hedgeDelayMs);
+    scheduler.shutdown();
+
+    // Delay is bounded by the min delay
+    scheduler = new ScheduledThreadPoolExecutor(1);
+    hedgingPolicy = new HedgingPolicy(config, scheduler);
+    for (int i = 0; i < 100; i++) {
+      hedgingPolicy.recordResponseTime(1L);
+    }
+    Assert.assertEquals(hedgingPolicy.getHedgeDelayMs(), 5L);
+    scheduler.shutdown();
+  }
+}
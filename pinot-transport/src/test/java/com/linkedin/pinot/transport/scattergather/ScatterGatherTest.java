@@ -24,20 +24,26 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.GatherCompletionCondition;
+import com.linkedin.pinot.transport.config.HedgedRequestConfig;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.netty.MultiplexedConnectionManager;
 import com.linkedin.pinot.transport.netty.NettyServer;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 import com.linkedin.pinot.transport.netty.NettyTCPServer;
+import com.linkedin.pinot.transport.netty.NettyTestUtils;
 import com.linkedin.pinot.transport.netty.PooledNettyClientResourceManager;
 import com.linkedin.pinot.transport.pool.KeyedPoolImpl;
 import com.yammer.metrics.core.MetricsRegistry;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.ResourceLeakDetector;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -47,6 +53,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -115,6 +122,254 @@ public class ScatterGatherTest {
     }
   }
 
+  @Test
+  public void testMultiplexed() throws Exception {
+    NettyTCPServer[] nettyServers = new NettyTCPServer[NUM_SERVERS];
+    String[] serverNames = new String[NUM_SERVERS];
+    ServerInstance[] serverInstances = new ServerInstance[NUM_SERVERS];
+    Map<String, List<String>> routingTable = new HashMap<>(NUM_SERVERS);
+
+    for (int i = 0; i < NUM_SERVERS; i++) {
+      int serverPort = BASE_SERVER_PORT + i;
+      nettyServers[i] = new NettyTCPServer(serverPort, new TestRequestHandlerFactory(100L, false), null);
+      new Thread(nettyServers[i]).start();
+      NettyTestUtils.waitForServerStarted(nettyServers[i], 10_000L);
+
+      String serverName = CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE + LOCAL_HOST
+          + ServerInstance.NAME_PORT_DELIMITER_FOR_INSTANCE_NAME + serverPort;
+      serverNames[i] = serverName;
+      serverInstances[i] = ServerInstance.forInstanceName(serverName);
+      routingTable.put(serverName, Collections.singletonList("segment_" + i));
+    }
+
+    // Setup client with a single multiplexed connection per server
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    MultiplexedConnectionManager connectionManager = new MultiplexedConnectionManager(eventLoopGroup,
+        new HashedWheelTimer(), new NettyClientMetrics(metricsRegistry, "client_"), 1);
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    ScatterGather scatterGather = new ScatterGatherImpl(connectionManager, executorService);
+    BrokerMetrics brokerMetrics = new BrokerMetrics(metricsRegistry);
+
+    // Send several requests at the same time, they all share the same connection to each server
+    int numRequests = 10;
+    List<CompositeFuture<byte[]>> futures = new ArrayList<>(numRequests);
+    for (int i = 0; i < numRequests; i++) {
+      ScatterGatherRequest scatterGatherRequest = new TestScatterGatherRequest(routingTable, 10_000L);
+      futures.add(scatterGather.scatterGather(scatterGatherRequest, new ScatterGatherStats(), brokerMetrics));
+    }
+
+    // Should have response from all servers for all requests
+    for (CompositeFuture<byte[]> future : futures) {
+      Map<ServerInstance, byte[]> serverToResponseMap = future.get();
+      Assert.assertEquals(serverToResponseMap.size(), NUM_SERVERS);
+      for (int i = 0; i < NUM_SERVERS; i++) {
+        Assert.assertEquals(new String(serverToResponseMap.get(serverInstances[i])),
+            routingTable.get(serverNames[i]).get(0));
+      }
+      Assert.assertTrue(future.getError().isEmpty());
+    }
+
+    connectionManager.shutdown();
+    executorService.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    for (int i = 0; i < NUM_SERVERS; i++) {
+      nettyServers[i].shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void testHedging() throws Exception {
+    NettyServer[] nettyServers = new NettyServer[NUM_SERVERS + 1];
+    String[] serverNames = new String[NUM_SERVERS];
+    ServerInstance[] serverInstances = new ServerInstance[NUM_SERVERS];
+    Map<String, List<String>> routingTable = new HashMap<>(NUM_SERVERS);
+
+    for (int i = 0; i < NUM_SERVERS; i++) {
+      int serverPort = BASE_SERVER_PORT + i;
+
+      // Set first server as slow server
+      if (i == 0) {
+        nettyServers[i] = new NettyTCPServer(serverPort, new TestRequestHandlerFactory(2000L, false), null);
+      } else {
+        nettyServers[i] = new NettyTCPServer(serverPort, new TestRequestHandlerFactory(0L, false), null);
+      }
+      new Thread(nettyServers[i]).start();
+
+      String serverName = CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE + LOCAL_HOST
+          + ServerInstance.NAME_PORT_DELIMITER_FOR_INSTANCE_NAME + serverPort;
+      serverNames[i] = serverName;
+      serverInstances[i] = ServerInstance.forInstanceName(serverName);
+      routingTable.put(serverName, Collections.singletonList("segment_" + i));
+    }
+
+    // Set up a replica server for the segment of the slow server
+    int replicaServerPort = BASE_SERVER_PORT + NUM_SERVERS;
+    nettyServers[NUM_SERVERS] =
+        new NettyTCPServer(replicaServerPort, new TestRequestHandlerFactory(0L, false), null);
+    new Thread(nettyServers[NUM_SERVERS]).start();
+    String replicaServerName = CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE + LOCAL_HOST
+        + ServerInstance.NAME_PORT_DELIMITER_FOR_INSTANCE_NAME + replicaServerPort;
+    ServerInstance replicaServerInstance = ServerInstance.forInstanceName(replicaServerName);
+    Map<String, List<String>> replicaRoutingTable = new HashMap<>();
+    replicaRoutingTable.put(replicaServerName, routingTable.get(serverNames[0]));
+
+    // Setup client hedging every request not answered within 100ms
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    KeyedPoolImpl<PooledNettyClientResourceManager.PooledClientConnection> connectionPool =
+        setUpConnectionPool(metricsRegistry, eventLoopGroup);
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    ScheduledExecutorService hedgingExecutor = new ScheduledThreadPoolExecutor(1);
+    ScatterGatherImpl scatterGather = new ScatterGatherImpl(connectionPool, executorService);
+    HedgedRequestConfig hedgedRequestConfig = new HedgedRequestConfig();
+    hedgedRequestConfig.setEnabled(true);
+    hedgedRequestConfig.setMinSamples(0);
+    hedgedRequestConfig.setMinDelayMs(100L);
+    hedgedRequestConfig.setBudgetPercent(100);
+    hedgedRequestConfig.setLatencyPercentile(100);
+    HedgingPolicy hedgingPolicy = new HedgingPolicy(hedgedRequestConfig, hedgingExecutor);
+    scatterGather.setHedgingPolicy(hedgingPolicy);
+    TestServerRequestListener serverRequestListener = new TestServerRequestListener();
+    scatterGather.setServerRequestListener(serverRequestListener);
+    ScatterGatherStats scatterGatherStats = new ScatterGatherStats();
+    BrokerMetrics brokerMetrics = new BrokerMetrics(metricsRegistry);
+
+    // Send the request
+    long startTimeMs = System.currentTimeMillis();
+    ScatterGatherRequest scatterGatherRequest =
+        new TestScatterGatherRequest(routingTable, replicaRoutingTable, null, 10_000L);
+    CompositeFuture<byte[]> future =
+        scatterGather.scatterGather(scatterGatherRequest, scatterGatherStats, brokerMetrics);
+
+    // Should have response from all fast servers and the replica server, without waiting for the slow server
+    Map<ServerInstance, byte[]> serverToResponseMap = future.get();
+    Assert.assertTrue(System.currentTimeMillis() - startTimeMs < 2000L);
+    Assert.assertEquals(serverToResponseMap.size(), NUM_SERVERS);
+    Assert.assertFalse(serverToResponseMap.containsKey(serverInstances[0]));
+    for (int i = 1; i < NUM_SERVERS; i++) {
+      Assert.assertEquals(new String(serverToResponseMap.get(serverInstances[i])),
+          routingTable.get(serverNames[i]).get(0));
+    }
+    int numReplicaResponses = 0;
+    for (Map.Entry<ServerInstance, byte[]> entry : serverToResponseMap.entrySet()) {
+      ServerInstance serverInstance = entry.getKey();
+      if (serverInstance.getPort() == replicaServerPort) {
+        // Response from the replica server is keyed with a non-zero sequence
+        Assert.assertFalse(serverInstance.equals(replicaServerInstance));
+        Assert.assertEquals(new String(entry.getValue()), routingTable.get(serverNames[0]).get(0));
+        numReplicaResponses++;
+      }
+    }
+    Assert.assertEquals(numReplicaResponses, 1);
+
+    // Should get empty error map
+    Map<ServerInstance, Throwable> serverToErrorMap = future.getError();
+    Assert.assertTrue(serverToErrorMap.isEmpty());
+
+    // The hedging delay should follow the response time of the slow server itself, not the hedged completion time
+    long hedgeDelayMs = hedgingPolicy.getHedgeDelayMs();
+    long deadlineMs = System.currentTimeMillis() + 10_000L;
+    while (hedgeDelayMs < 2000L && System.currentTimeMillis() < deadlineMs) {
+      Thread.sleep(100L);
+      hedgeDelayMs = hedgingPolicy.getHedgeDelayMs();
+    }
+    Assert.assertTrue(hedgeDelayMs >= 2000L, "Hedge delay: " + hedgeDelayMs);
+
+    // Each server, including the replica server, should be accounted its own request and latency
+    for (String serverName : serverNames) {
+      Assert.assertEquals(serverRequestListener.getNumRequestsSent(serverName), 1);
+      Assert.assertEquals(serverRequestListener.getLatencies(serverName).size(), 1);
+    }
+    Assert.assertTrue(serverRequestListener.getLatencies(serverNames[0]).get(0) >= 2000L);
+    Assert.assertEquals(serverRequestListener.getNumRequestsSent(replicaServerName), 1);
+    Assert.assertEquals(serverRequestListener.getLatencies(replicaServerName).size(), 1);
+    Assert.assertTrue(serverRequestListener.getLatencies(replicaServerName).get(0) < 2000L);
+
+    connectionPool.shutdown();
+    executorService.shutdown();
+    hedgingExecutor.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    for (NettyServer nettyServer : nettyServers) {
+      nettyServer.shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void testGatherCompletionCondition() throws Exception {
+    NettyServer[] nettyServers = new NettyServer[NUM_SERVERS];
+    String[] serverNames = new String[NUM_SERVERS];
+    ServerInstance[] serverInstances = new ServerInstance[NUM_SERVERS];
+    Map<String, List<String>> routingTable = new HashMap<>(NUM_SERVERS);
+
+    for (int i = 0; i < NUM_SERVERS; i++) {
+      int serverPort = BASE_SERVER_PORT + i;
+
+      // Set first server as slow server
+      if (i == 0) {
+        nettyServers[i] = new NettyTCPServer(serverPort, new TestRequestHandlerFactory(5000L, false), null);
+      } else {
+        nettyServers[i] = new NettyTCPServer(serverPort, new TestRequestHandlerFactory(0L, false), null);
+      }
+      new Thread(nettyServers[i]).start();
+
+      String serverName = CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE + LOCAL_HOST
+          + ServerInstance.NAME_PORT_DELIMITER_FOR_INSTANCE_NAME + serverPort;
+      serverNames[i] = serverName;
+      serverInstances[i] = ServerInstance.forInstanceName(serverName);
+      routingTable.put(serverName, Collections.singletonList("segment_" + i));
+    }
+
+    // Setup client
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    KeyedPoolImpl<PooledNettyClientResourceManager.PooledClientConnection> connectionPool =
+        setUpConnectionPool(metricsRegistry, eventLoopGroup);
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    ScatterGatherImpl scatterGather = new ScatterGatherImpl(connectionPool, executorService);
+    ScatterGatherStats scatterGatherStats = new ScatterGatherStats();
+    BrokerMetrics brokerMetrics = new BrokerMetrics(metricsRegistry);
+
+    // Send the request, which only needs responses from all but one server
+    final AtomicInteger numResponses = new AtomicInteger();
+    GatherCompletionCondition<byte[]> completionCondition = new GatherCompletionCondition<byte[]>() {
+      @Override
+      public boolean onResponse(ServerInstance server, byte[] response) {
+        return numResponses.incrementAndGet() >= NUM_SERVERS - 1;
+      }
+    };
+    long startTimeMs = System.currentTimeMillis();
+    ScatterGatherRequest scatterGatherRequest =
+        new TestScatterGatherRequest(routingTable, null, completionCondition, 10_000L);
+    CompositeFuture<byte[]> future =
+        scatterGather.scatterGather(scatterGatherRequest, scatterGatherStats, brokerMetrics);
+
+    // Should have response from all fast servers, without waiting for the slow server
+    Map<ServerInstance, byte[]> serverToResponseMap = future.get();
+    Assert.assertTrue(System.currentTimeMillis() - startTimeMs < 5000L);
+    Assert.assertTrue(future.isCompletedEarly());
+    Assert.assertEquals(serverToResponseMap.size(), NUM_SERVERS - 1);
+    Assert.assertFalse(serverToResponseMap.containsKey(serverInstances[0]));
+    for (int i = 1; i < NUM_SERVERS; i++) {
+      Assert.assertEquals(new String(serverToResponseMap.get(serverInstances[i])),
+          routingTable.get(serverNames[i]).get(0));
+    }
+
+    // Should get empty error map
+    Map<ServerInstance, Throwable> serverToErrorMap = future.getError();
+    Assert.assertTrue(serverToErrorMap.isEmpty());
+
+    connectionPool.shutdown();
+    executorService.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    for (NettyServer nettyServer : nettyServers) {
+      nettyServer.shutdownGracefully();
+    }
+  }
+
   @Test
   public void testTimeout() throws Exception {
     NettyServer[] nettyServers = new NettyServer[NUM_SERVERS];
@@ -255,10 +510,20 @@ public class ScatterGatherTest {
 
   private static class TestScatterGatherRequest implements ScatterGatherRequest {
     private final Map<String, List<String>> _routingTable;
+    private final Map<String, List<String>> _replicaRoutingTable;
+    private final GatherCompletionCondition<byte[]> _completionCondition;
     private final long _timeoutMs;
 
     public TestScatterGatherRequest(Map<String, List<String>> routingTable, long timeoutMs) {
+      this(routingTable, null, null, timeoutMs);
+    }
+
+    public TestScatterGatherRequest(Map<String, List<String>> routingTable,
+        Map<String, List<String>> replicaRoutingTable, GatherCompletionCondition<byte[]> completionCondition,
+        long timeoutMs) {
       _routingTable = routingTable;
+      _replicaRoutingTable = replicaRoutingTable;
+      _completionCondition = completionCondition;
       _timeoutMs = timeoutMs;
     }
 
@@ -268,8 +533,18 @@ public class ScatterGatherTest {
     }
 
     @Override
-    public byte[] getRequestForService(List<String> segments) {
-      return segments.get(0).getBytes();
+    public Map<String, List<String>> getReplicaRoutingTable(String server, List<String> segments) {
+      return _replicaRoutingTable;
+    }
+
+    @Override
+    public GatherCompletionCondition<byte[]> getGatherCompletionCondition() {
+      return _completionCondition;
+    }
+
+    @Override
+    public ByteBuf getRequestForService(List<String> segments) {
+      return Unpooled.wrappedBuffer(segments.get(0).getBytes());
     }
 
     @Override
@@ -288,6 +563,46 @@ public class ScatterGatherTest {
     }
   }
 
+  private static class TestServerRequestListener implements ServerRequestListener {
+    private final Map<String, Integer> _numRequestsSent = new HashMap<>();
+    private final Map<String, List<Long>> _latencies = new HashMap<>();
+
+    @Override
+    public synchronized void onRequestSent(String server) {
+      _numRequestsSent.put(server, getNumRequestsSent(server) + 1);
+    }
+
+    @Override
+    public synchronized void onResponse(String server, long latencyMs) {
+      List<Long> latencies = _latencies.get(server);
+      if (latencies == null) {
+        latencies = new ArrayList<>();
+        _latencies.put(server, latencies);
+      }
+      latencies.add(latencyMs);
+    }
+
+    @Override
+    public synchronized void onError(String server) {
+      Assert.fail("Unexpected error from server: " + server);
+    }
+
+    @Override
+    public synchronized void onRequestCancelled(String server) {
+      Assert.fail("Unexpected cancelled request to server: " + server);
+    }
+
+    synchronized int getNumRequestsSent(String server) {
+      Integer numRequestsSent = _numRequestsSent.get(server);
+      return numRequestsSent != null ? numRequestsSent : 0;
+    }
+
+    synchronized List<Long> getLatencies(String server) {
+      List<Long> latencies = _latencies.get(server);
+      return latencies != null ? new ArrayList<>(latencies) : Collections.<Long>emptyList();
+    }
+  }
+
   private static class TestRequestHandlerFactory implements RequestHandlerFactory {
     private final long _delayMs;
     private final boolean _throwError;